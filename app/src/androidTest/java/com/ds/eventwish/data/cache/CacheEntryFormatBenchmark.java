@@ -0,0 +1,218 @@
+package com.ds.eventwish.data.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the binary {@link CacheEntryFormat} with the Java-serialized
+ * entries the cache used to write, for a template of typical size. Each case
+ * writes and reads a real {@link DiskLruCache} entry; timings are logged under
+ * the {@code CacheEntryFormatBenchmark} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheEntryFormatBenchmark {
+    private static final String TAG = "CacheEntryFormatBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+    private static final long MAX_SIZE = 16 * 1024 * 1024;
+
+    private File directory;
+    private DiskLruCache cache;
+    private JsonObject template;
+
+    /**
+     * Shape of the entries the old Serializable path wrote
+     */
+    private static class LegacyCacheEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Object value;
+        final long expirationTime;
+
+        LegacyCacheEntry(Object value, long expirationTime) {
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /**
+     * One way of writing and reading an entry
+     */
+    private interface EntryPath {
+        void write(String diskKey, JsonObject value) throws IOException;
+
+        JsonObject read(String diskKey) throws IOException;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        directory = new File(context.getCacheDir(), "cache_entry_format_benchmark");
+        cache = DiskLruCache.open(directory, 1, 1, MAX_SIZE);
+        cache.delete();
+        cache = DiskLruCache.open(directory, 1, 1, MAX_SIZE);
+        template = typicalTemplate();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.delete();
+    }
+
+    @Test
+    public void binaryFormatVersusObjectStream() throws IOException {
+        EntryPath legacy = new EntryPath() {
+            @Override
+            public void write(String diskKey, JsonObject value) throws IOException {
+                DiskLruCache.Editor editor = cache.edit(diskKey);
+                try (ObjectOutputStream out = new ObjectOutputStream(
+                        new BufferedOutputStream(editor.newOutputStream(0)))) {
+                    out.writeObject(new LegacyCacheEntry(value.toString(), Long.MAX_VALUE));
+                }
+                editor.commit();
+            }
+
+            @Override
+            public JsonObject read(String diskKey) throws IOException {
+                try (DiskLruCache.Snapshot snapshot = cache.get(diskKey);
+                     ObjectInputStream in = new ObjectInputStream(
+                             new BufferedInputStream(snapshot.getInputStream(0)))) {
+                    LegacyCacheEntry entry = (LegacyCacheEntry) in.readObject();
+                    return JsonParser.parseString((String) entry.value).getAsJsonObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+
+        EntryPath binary = new EntryPath() {
+            @Override
+            public void write(String diskKey, JsonObject value) throws IOException {
+                byte[] payload = CacheCodecs.JSON_OBJECT.encode(value);
+                CacheEntryFormat.Header header = new CacheEntryFormat.Header(diskKey,
+                        CacheCodecs.JSON_OBJECT.typeTag(), true, Long.MAX_VALUE, Long.MAX_VALUE, payload.length);
+                DiskLruCache.Editor editor = cache.edit(diskKey);
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(editor.newOutputStream(0)))) {
+                    CacheEntryFormat.write(out, header, payload);
+                }
+                editor.commit();
+            }
+
+            @Override
+            public JsonObject read(String diskKey) throws IOException {
+                try (DiskLruCache.Snapshot snapshot = cache.get(diskKey)) {
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(snapshot.getInputStream(0)));
+                    CacheEntryFormat.Header header = CacheEntryFormat.readHeader(in);
+                    return CacheCodecs.JSON_OBJECT.decode(
+                            CacheEntryFormat.payloadStream(in, header), header.payloadLength);
+                }
+            }
+        };
+
+        long[] legacyTimes = measure("legacy", legacy);
+        long[] binaryTimes = measure("binary", binary);
+
+        long legacyBytes = entryLength("legacy");
+        long binaryBytes = entryLength("binary");
+        Log.i(TAG, String.format("Template of %d JSON bytes", template.toString().length()));
+        Log.i(TAG, String.format("ObjectStream: write %d ns/op, read %d ns/op, %d bytes",
+                legacyTimes[0], legacyTimes[1], legacyBytes));
+        Log.i(TAG, String.format("Binary:       write %d ns/op, read %d ns/op, %d bytes",
+                binaryTimes[0], binaryTimes[1], binaryBytes));
+
+        // The binary header is smaller than the serialized class descriptors it replaces
+        assertTrue("Binary entry should be smaller: " + binaryBytes + " vs " + legacyBytes,
+                binaryBytes < legacyBytes);
+    }
+
+    /**
+     * Time writes and reads of one path
+     * @return Average write and read time in nanoseconds
+     */
+    private long[] measure(String name, EntryPath path) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            path.write(name, template);
+            assertEquals(template, path.read(name));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            path.write(name, template);
+        }
+        long writeNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        JsonObject last = null;
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            last = path.read(name);
+        }
+        long readNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        assertEquals(template, last);
+        return new long[] {writeNanos, readNanos};
+    }
+
+    private long entryLength(String diskKey) throws IOException {
+        try (DiskLruCache.Snapshot snapshot = cache.get(diskKey)) {
+            return snapshot.getLength(0);
+        }
+    }
+
+    /**
+     * A template as the API returns it, about 20 KB of JSON
+     */
+    private static JsonObject typicalTemplate() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 120; i++) {
+            html.append("<div class=\"card-section\" id=\"section-").append(i)
+                    .append("\"><h2 class=\"title\">Happy Birthday {{name}}!</h2>")
+                    .append("<p>Wishing you a wonderful year ahead.</p></div>\n");
+        }
+        StringBuilder css = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            css.append(".card-section#section-").append(i)
+                    .append(" { margin: 8px; padding: 12px; color: #33").append(i % 10).append("366; }\n");
+        }
+
+        JsonObject template = new JsonObject();
+        template.addProperty("id", "64f1c2a9e4b0a1b2c3d4e5f6");
+        template.addProperty("title", "Birthday Balloons");
+        template.addProperty("category", "Birthday");
+        template.addProperty("categoryIcon", "https://example.com/icons/birthday.png");
+        template.addProperty("htmlContent", html.toString());
+        template.addProperty("cssContent", css.toString());
+        template.addProperty("jsContent", "document.querySelectorAll('.title').forEach(function (t) { t.classList.add('fade-in'); });");
+        template.addProperty("previewUrl", "https://example.com/previews/birthday-balloons.png");
+        template.addProperty("status", true);
+        template.addProperty("usageCount", 1234);
+        template.addProperty("createdAt", "2024-03-01T10:15:30.000Z");
+        template.addProperty("updatedAt", "2024-03-15T08:00:00.000Z");
+        return template;
+    }
+}
@@ -0,0 +1,183 @@
+package com.ds.eventwish.data.cache;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test that hammers {@link DiskLruCache} from many threads at once.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DiskLruCacheConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 2000;
+    private static final int KEY_SPACE = 200;
+    private static final long MAX_SIZE = 64 * 1024;
+
+    private File directory;
+    private DiskLruCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        directory = new File(context.getCacheDir(), "disk_lru_cache_concurrency_test");
+        cache = DiskLruCache.open(directory, 1, 1, MAX_SIZE);
+        cache.delete();
+        cache = DiskLruCache.open(directory, 1, 1, MAX_SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.delete();
+    }
+
+    @Test
+    public void concurrentReadsWritesAndRemovesStayConsistent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger hits = new AtomicInteger();
+
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            pool.execute(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        String key = "k" + random.nextInt(KEY_SPACE);
+                        int op = random.nextInt(10);
+                        if (op < 6) {
+                            DiskLruCache.Snapshot snapshot = cache.get(key);
+                            if (snapshot != null) {
+                                String value = snapshot.getString(0);
+                                snapshot.close();
+                                // Values are always written whole, so a reader must never see a torn one
+                                assertTrue("Torn read for " + key + ": " + value, isValid(key, value));
+                                hits.incrementAndGet();
+                            }
+                        } else if (op < 9) {
+                            DiskLruCache.Editor editor = cache.edit(key);
+                            if (editor != null) {
+                                editor.set(0, valueFor(key, random.nextInt(1000)));
+                                editor.commit();
+                            }
+                        } else {
+                            cache.remove(key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue("Workers did not finish in time", pool.awaitTermination(2, TimeUnit.MINUTES));
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Worker failed", failures.peek());
+        }
+        assertTrue("Expected some cache hits", hits.get() > 0);
+
+        cache.flush();
+        assertTrue("Cache exceeded its budget: " + cache.size(), cache.size() <= MAX_SIZE);
+        long sizeBeforeReopen = cache.size();
+        List<String> survivors = readableKeys();
+        cache.close();
+
+        // The journal written under contention must replay to the same state
+        cache = DiskLruCache.open(directory, 1, 1, MAX_SIZE);
+        assertEquals(sizeBeforeReopen, cache.size());
+        assertEquals(survivors, readableKeys());
+    }
+
+    @Test
+    public void readersOfDifferentKeysDoNotWaitForAnOpenEdit() throws Exception {
+        DiskLruCache.Editor seed = cache.edit("reader");
+        seed.set(0, valueFor("reader", 1));
+        seed.commit();
+
+        // Hold an edit open on another key while readers run on other threads
+        DiskLruCache.Editor pending = cache.edit("writer");
+        assertNotNull(pending);
+        assertNull("Second edit of the same key must be refused", cache.edit("writer"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        DiskLruCache.Snapshot snapshot = cache.get("reader");
+                        assertNotNull(snapshot);
+                        snapshot.close();
+                    }
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue("Readers blocked behind an unrelated edit", done.await(10, TimeUnit.SECONDS));
+        pool.shutdownNow();
+
+        pending.set(0, valueFor("writer", 2));
+        pending.commit();
+        assertEquals(valueFor("writer", 2), cache.get("writer").getString(0));
+    }
+
+    private List<String> readableKeys() throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < KEY_SPACE; i++) {
+            String key = "k" + i;
+            DiskLruCache.Snapshot snapshot = cache.get(key);
+            if (snapshot != null) {
+                snapshot.close();
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static String valueFor(String key, int version) {
+        StringBuilder value = new StringBuilder(key).append(':').append(version).append(':');
+        // Pad so that evictions kick in well before the key space is exhausted
+        for (int i = 0; i < 512; i++) {
+            value.append((char) ('a' + (version + i) % 26));
+        }
+        return value.append(":end").toString();
+    }
+
+    private static boolean isValid(String key, String value) {
+        if (value == null || !value.startsWith(key + ":") || !value.endsWith(":end")) {
+            return false;
+        }
+        int version = Integer.parseInt(value.substring(key.length() + 1, value.indexOf(':', key.length() + 1)));
+        return value.equals(valueFor(key, version));
+    }
+}
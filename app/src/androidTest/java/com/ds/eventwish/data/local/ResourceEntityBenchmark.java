@@ -0,0 +1,147 @@
+package com.ds.eventwish.data.local;
+
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ds.eventwish.data.local.converter.ObjectTypeConverter;
+import com.ds.eventwish.data.local.entity.ResourceEntity;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares allocations of reading {@link ResourceEntity} data stored as raw
+ * UTF-8 JSON with the {@link ObjectTypeConverter} text column it replaced.
+ * Each case starts from the bytes a cursor hands over, the way Room loads a
+ * row. Results are logged under the {@code ResourceEntityBenchmark} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResourceEntityBenchmark {
+    private static final String TAG = "ResourceEntityBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int MEASURED_ITERATIONS = 100;
+
+    // Rows loaded by a getResourcesByType query, of which one is displayed
+    private static final int ROWS_PER_QUERY = 20;
+
+    /**
+     * One way of loading rows and reading the data of the first
+     */
+    private interface ReadPath {
+        JsonObject read(List<byte[]> rows);
+    }
+
+    @Test
+    public void blobVersusConverterText() {
+        JsonObject template = typicalTemplate();
+        byte[] stored = template.toString().getBytes(StandardCharsets.UTF_8);
+        List<byte[]> singleRow = new ArrayList<>();
+        singleRow.add(stored);
+        List<byte[]> query = new ArrayList<>();
+        for (int i = 0; i < ROWS_PER_QUERY; i++) {
+            query.add(stored);
+        }
+
+        ReadPath legacy = rows -> {
+            // Every row is decoded to a String and converted as it is loaded
+            JsonObject first = null;
+            for (byte[] row : rows) {
+                Object data = ObjectTypeConverter.toObject(new String(row, StandardCharsets.UTF_8));
+                if (first == null) {
+                    first = (JsonObject) data;
+                }
+            }
+            return first;
+        };
+
+        ReadPath blob = rows -> {
+            // Rows keep their bytes and only the one that is read gets parsed
+            List<ResourceEntity> entities = new ArrayList<>(rows.size());
+            for (byte[] row : rows) {
+                ResourceEntity entity = new ResourceEntity();
+                entity.setRawData(row);
+                entities.add(entity);
+            }
+            return entities.get(0).getData();
+        };
+
+        long[] legacySingle = measure(legacy, singleRow, template);
+        long[] blobSingle = measure(blob, singleRow, template);
+        long[] legacyQuery = measure(legacy, query, template);
+        long[] blobQuery = measure(blob, query, template);
+
+        Log.i(TAG, String.format("Template of %d JSON bytes", stored.length));
+        Log.i(TAG, String.format("Single row, converter: %d objects, %d bytes per read",
+                legacySingle[0], legacySingle[1]));
+        Log.i(TAG, String.format("Single row, blob:      %d objects, %d bytes per read",
+                blobSingle[0], blobSingle[1]));
+        Log.i(TAG, String.format("%d-row query, converter: %d objects, %d bytes per read",
+                ROWS_PER_QUERY, legacyQuery[0], legacyQuery[1]));
+        Log.i(TAG, String.format("%d-row query, blob:      %d objects, %d bytes per read",
+                ROWS_PER_QUERY, blobQuery[0], blobQuery[1]));
+
+        // Allocation counting is not available on every runtime
+        assumeTrue(legacyQuery[0] > 0);
+        assertTrue("Blob rows should allocate less: " + blobQuery[1] + " vs " + legacyQuery[1],
+                blobQuery[1] < legacyQuery[1]);
+    }
+
+    /**
+     * Count allocations of one path
+     * @return Average objects and bytes allocated per read
+     */
+    private long[] measure(ReadPath path, List<byte[]> rows, JsonObject expected) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            assertEquals(expected, path.read(rows));
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        JsonObject last = null;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            last = path.read(rows);
+        }
+        Debug.stopAllocCounting();
+        long objects = Debug.getThreadAllocCount() / MEASURED_ITERATIONS;
+        long bytes = Debug.getThreadAllocSize() / MEASURED_ITERATIONS;
+
+        assertEquals(expected, last);
+        return new long[] {objects, bytes};
+    }
+
+    /**
+     * A template as the API returns it, about 20 KB of JSON
+     */
+    private static JsonObject typicalTemplate() {
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 120; i++) {
+            html.append("<div class=\"card-section\" id=\"section-").append(i)
+                    .append("\"><h2 class=\"title\">Happy Birthday {{name}}!</h2>")
+                    .append("<p>Wishing you a wonderful year ahead.</p></div>\n");
+        }
+
+        JsonObject template = new JsonObject();
+        template.addProperty("id", "64f1c2a9e4b0a1b2c3d4e5f6");
+        template.addProperty("title", "Birthday Balloons");
+        template.addProperty("category", "Birthday");
+        template.addProperty("htmlContent", html.toString());
+        template.addProperty("cssContent", ".card-section { margin: 8px; padding: 12px; }");
+        template.addProperty("previewUrl", "https://example.com/previews/birthday-balloons.png");
+        template.addProperty("status", true);
+        template.addProperty("usageCount", 1234);
+        return template;
+    }
+}
@@ -0,0 +1,244 @@
+package com.ds.eventwish.data.local.dao;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ds.eventwish.data.local.AppDatabase;
+import com.ds.eventwish.data.local.entity.CategoryAffinityEntity;
+import com.ds.eventwish.data.model.EngagementData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic engagement histories into an in-memory database and
+ * checks the category affinities kept by {@link EngagementDataDao} against
+ * a full recomputation. The ranking deliberately differs from the previous
+ * scoring, which used step recency factors over every stored record: with
+ * exponential decay, recent engagement outweighs a large old history.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CategoryAffinityTest {
+    private static final int HISTORY_SIZE = 100_000;
+    private static final int INSERT_CHUNK = 5_000;
+    private static final String[] CATEGORIES = {
+        "birthday", "anniversary", "wedding", "diwali", "holi", "christmas", "newyear", "eid"
+    };
+    private static final String[] SOURCES = {
+        EngagementData.SOURCE_DIRECT, EngagementData.SOURCE_RECOMMENDATION,
+        EngagementData.SOURCE_SEARCH, EngagementData.SOURCE_HISTORY
+    };
+
+    private AppDatabase database;
+    private EngagementDataDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.engagementDataDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void replayedHistoryMatchesRecomputation() {
+        long now = System.currentTimeMillis();
+        List<EngagementData> history = createHistory(HISTORY_SIZE, now, new Random(7));
+        for (int i = 0; i < history.size(); i += INSERT_CHUNK) {
+            dao.insertAll(history.subList(i, Math.min(i + INSERT_CHUNK, history.size())));
+        }
+
+        Map<String, Double> expected = new HashMap<>();
+        for (EngagementData engagement : dao.getAll()) {
+            Double score = expected.get(engagement.getCategory());
+            expected.put(engagement.getCategory(),
+                (score != null ? score : 0) + CategoryAffinityEntity.contribution(engagement));
+        }
+
+        List<String> ranking = new ArrayList<>();
+        int engagementCount = 0;
+        for (CategoryAffinityEntity affinity : dao.getCategoryAffinities()) {
+            double score = expected.get(affinity.getCategory());
+            assertEquals(score, affinity.getScore(), Math.abs(score) * 1e-9);
+            ranking.add(affinity.getCategory());
+            engagementCount += affinity.getEngagementCount();
+        }
+
+        assertEquals(rank(expected), ranking);
+        assertEquals(HISTORY_SIZE, engagementCount);
+    }
+
+    @Test
+    public void recencyOutweighsOldVolume() {
+        long now = System.currentTimeMillis();
+        // Every record has a base score of 1, so only count and age differ
+        addEngagements("wedding", 100, now - TimeUnit.DAYS.toMillis(75)); // Heavy but old
+        addEngagements("diwali", 60, now - TimeUnit.DAYS.toMillis(10));   // Heavy and fairly recent
+        addEngagements("holi", 20, now - TimeUnit.HOURS.toMillis(36));    // Light and recent
+        addEngagements("birthday", 15, now - TimeUnit.DAYS.toMillis(3));  // Light and recent
+
+        List<String> ranking = new ArrayList<>();
+        for (CategoryAffinityEntity affinity : dao.getCategoryAffinities()) {
+            ranking.add(affinity.getCategory());
+        }
+
+        // The step factors never went below 0.2, so a large old history
+        // stayed near the top; with a 21-day half-life it falls behind
+        // categories with fewer but recent engagements
+        assertEquals(Arrays.asList("diwali", "wedding", "holi", "birthday"),
+            rank(legacyScores(dao.getAll(), now)));
+        assertEquals(Arrays.asList("diwali", "holi", "birthday", "wedding"), ranking);
+    }
+
+    @Test
+    public void deletesAndReplacesKeepAffinitiesExact() {
+        long now = System.currentTimeMillis();
+        List<EngagementData> history = createHistory(2_000, now, new Random(11));
+        dao.insertAll(history);
+
+        // Replacing a record must not count it twice
+        EngagementData replaced = history.get(0);
+        replaced.setCategory(CATEGORIES[CATEGORIES.length - 1]);
+        dao.insert(replaced);
+
+        dao.delete(history.get(1));
+        dao.deleteOlderThan(now - TimeUnit.DAYS.toMillis(45));
+
+        Map<String, Double> expected = new HashMap<>();
+        Map<String, Integer> expectedCounts = new HashMap<>();
+        for (EngagementData engagement : dao.getAll()) {
+            Double score = expected.get(engagement.getCategory());
+            expected.put(engagement.getCategory(),
+                (score != null ? score : 0) + CategoryAffinityEntity.contribution(engagement));
+            Integer count = expectedCounts.get(engagement.getCategory());
+            expectedCounts.put(engagement.getCategory(), (count != null ? count : 0) + 1);
+        }
+
+        List<CategoryAffinityEntity> affinities = dao.getCategoryAffinities();
+        assertEquals(expected.size(), affinities.size());
+        for (CategoryAffinityEntity affinity : affinities) {
+            double score = expected.get(affinity.getCategory());
+            assertEquals(score, affinity.getScore(), Math.abs(score) * 1e-9);
+            assertEquals(expectedCounts.get(affinity.getCategory()).intValue(), affinity.getEngagementCount());
+        }
+    }
+
+    @Test
+    public void removingLastEngagementDropsCategory() {
+        EngagementData engagement = new EngagementData(CATEGORIES[0], EngagementData.SOURCE_DIRECT);
+        dao.insert(engagement);
+        assertEquals(1, dao.getCategoryAffinities().size());
+
+        dao.delete(engagement);
+        assertTrue(dao.getCategoryAffinities().isEmpty());
+    }
+
+    private void addEngagements(String category, int count, long timestamp) {
+        List<EngagementData> engagements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            EngagementData engagement = new EngagementData(EngagementData.TYPE_TEMPLATE_VIEW,
+                "template_" + i, category, EngagementData.SOURCE_DIRECT);
+            engagement.setEngagementScore(3);
+            engagement.setTimestamp(timestamp - i);
+            engagements.add(engagement);
+        }
+        dao.insertAll(engagements);
+    }
+
+    /**
+     * Engagements over the last 90 days that mix volume and recency:
+     * earlier categories are engaged with more often but longer ago, later
+     * ones less often but more recently. The mix of types, scores and
+     * sources is the same for every category.
+     */
+    private List<EngagementData> createHistory(int size, long now, Random random) {
+        double[] popularity = new double[CATEGORIES.length];
+        double total = 0;
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            popularity[i] = CATEGORIES.length - i;
+            total += popularity[i];
+        }
+
+        List<EngagementData> history = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            double pick = random.nextDouble() * total;
+            int category = 0;
+            while (pick >= popularity[category]) {
+                pick -= popularity[category];
+                category++;
+            }
+
+            EngagementData engagement = new EngagementData(
+                1 + random.nextInt(5), "template_" + random.nextInt(500),
+                CATEGORIES[category], SOURCES[random.nextInt(SOURCES.length)]);
+            engagement.setEngagementScore(1 + random.nextInt(5));
+            // The most popular category's engagements are 45 to 90 days
+            // old; each later category's window reaches 6 days closer to now
+            long newestAge = TimeUnit.DAYS.toMillis(45 - 6 * category);
+            long window = TimeUnit.DAYS.toMillis(90) - newestAge;
+            engagement.setTimestamp(now - newestAge - (long) (random.nextDouble() * window));
+            history.add(engagement);
+        }
+        return history;
+    }
+
+    /**
+     * Category scores as computed before the affinity table: every record
+     * scored with a step recency factor
+     */
+    private static Map<String, Double> legacyScores(List<EngagementData> engagements, long now) {
+        Map<String, Double> scores = new HashMap<>();
+        for (EngagementData engagement : engagements) {
+            if (engagement.getCategory() == null) continue;
+            double score = CategoryAffinityEntity.baseScore(engagement) *
+                legacyRecencyFactor(now - engagement.getTimestamp());
+            Double current = scores.get(engagement.getCategory());
+            scores.put(engagement.getCategory(), (current != null ? current : 0) + score);
+        }
+        return scores;
+    }
+
+    private static float legacyRecencyFactor(long ageMs) {
+        long ageDays = TimeUnit.MILLISECONDS.toDays(ageMs);
+        if (ageDays < 1) {
+            return 1.0f;
+        } else if (ageDays < 7) {
+            return 0.8f;
+        } else if (ageDays < 14) {
+            return 0.6f;
+        } else if (ageDays < 30) {
+            return 0.4f;
+        } else {
+            return 0.2f;
+        }
+    }
+
+    private static List<String> rank(Map<String, Double> scores) {
+        List<String> ranking = new ArrayList<>(scores.keySet());
+        Collections.sort(ranking, (c1, c2) -> Double.compare(scores.get(c2), scores.get(c1)));
+        return ranking;
+    }
+}
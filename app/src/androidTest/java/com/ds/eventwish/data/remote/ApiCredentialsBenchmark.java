@@ -0,0 +1,122 @@
+package com.ds.eventwish.data.remote;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ds.eventwish.util.SecureTokenManager;
+import com.ds.eventwish.utils.DeviceUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import okhttp3.Headers;
+import okhttp3.Request;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the per-request cost of adding credential headers from the cached
+ * {@link ApiCredentials} block with reading and decrypting them for every
+ * request, as the ApiClient interceptor used to. Results are logged under
+ * the {@code ApiCredentialsBenchmark} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ApiCredentialsBenchmark {
+    private static final String TAG = "ApiCredentialsBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 500;
+
+    private Context context;
+    private SecureTokenManager tokenManager;
+    private ApiCredentials credentials;
+    private Request original;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        ApiClient.init(context);
+        tokenManager = SecureTokenManager.getInstance();
+        tokenManager.saveAccessToken("benchmark-access-token");
+        credentials = ApiCredentials.getInstance(context);
+        original = new Request.Builder()
+                .url("https://eventwish2.onrender.com/api/templates?page=1&limit=20")
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        tokenManager.clearTokens();
+    }
+
+    @Test
+    public void cachedHeadersVersusPerRequestDecryption() {
+        long legacy = measure(() -> {
+            Request.Builder builder = original.newBuilder()
+                    .header("Content-Type", "application/json")
+                    .method(original.method(), original.body());
+            String apiKey = ApiClient.getApiKey();
+            if (apiKey != null && !apiKey.isEmpty()) {
+                builder.header("x-api-key", apiKey);
+            }
+            String deviceId = DeviceUtils.getDeviceId(context);
+            if (deviceId != null && !deviceId.isEmpty()) {
+                builder.header("x-device-id", deviceId);
+            }
+            String authToken = tokenManager.getAccessToken();
+            if (authToken != null && !authToken.isEmpty()) {
+                builder.header("Authorization", "Bearer " + authToken);
+            }
+            return builder.build();
+        });
+        long cached = measure(() -> original.newBuilder()
+                .headers(ApiCredentials.merge(original.headers(), credentials.getHeaders()))
+                .build());
+
+        Log.i(TAG, String.format("Per request, decrypting: %d ns", legacy));
+        Log.i(TAG, String.format("Per request, cached:     %d ns", cached));
+        assertTrue("Cached headers should be faster: " + cached + " vs " + legacy + " ns", cached < legacy);
+    }
+
+    @Test
+    public void tokenChangeRebuildsHeaders() {
+        Headers before = credentials.getHeaders();
+        assertEquals("Bearer benchmark-access-token", before.get("Authorization"));
+        // The block is reused until a credential changes
+        assertTrue(before == credentials.getHeaders());
+
+        tokenManager.saveAccessToken("rotated-access-token");
+        Headers after = credentials.getHeaders();
+        assertNotEquals(before, after);
+        assertEquals("Bearer rotated-access-token", after.get("Authorization"));
+    }
+
+    private interface RequestPath {
+        Request build();
+    }
+
+    /**
+     * Time one way of building a request
+     * @return Average nanoseconds per request
+     */
+    private long measure(RequestPath path) {
+        Request request = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            request = path.build();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            request = path.build();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals("Bearer benchmark-access-token", request.header("Authorization"));
+        return elapsed / MEASURED_ITERATIONS;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ds.eventwish.data.remote;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link RetryingCallFactory} against a local {@link MockWebServer}
+ */
+@RunWith(AndroidJUnit4.class)
+public class RetryingCallFactoryTest {
+    private MockWebServer server;
+    private ScheduledExecutorService timer;
+    private RetryingCallFactory factory;
+
+    @Before
+    public void setUp() throws IOException {
+        RetryingCallFactory.resetHosts();
+        server = new MockWebServer();
+        server.start();
+        timer = Executors.newSingleThreadScheduledExecutor();
+        factory = new RetryingCallFactory(new OkHttpClient(), timer, new Random(42));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        timer.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void retryAfterIsHonoured() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        long start = SystemClock.elapsedRealtime();
+        Response response = enqueueAndWait(get());
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(200, response.code());
+        assertEquals(2, server.getRequestCount());
+        assertTrue("Retried after " + elapsed + "ms", elapsed >= 1000);
+        response.close();
+    }
+
+    @Test
+    public void serverErrorIsRetriedForGet() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(502));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = enqueueAndWait(get());
+
+        assertEquals(200, response.code());
+        assertEquals(3, server.getRequestCount());
+        response.close();
+    }
+
+    @Test
+    public void serverErrorIsNotRetriedForPost() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("ok"));
+
+        Response response = enqueueAndWait(post());
+
+        assertEquals(500, response.code());
+        assertEquals(1, server.getRequestCount());
+        response.close();
+    }
+
+    @Test
+    public void circuitOpensAfterRepeatedFailures() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        // Two calls of up to three attempts are enough to open the circuit
+        for (int i = 0; i < 2; i++) {
+            factory.newCall(get()).execute().close();
+        }
+        int sent = server.getRequestCount();
+
+        // Nothing is cached, so an open circuit answers GETs with 504 from OkHttp
+        Response response = factory.newCall(get()).execute();
+        assertEquals(504, response.code());
+        response.close();
+        try {
+            factory.newCall(post()).execute();
+            fail("POST should fail while the circuit is open");
+        } catch (IOException expected) {
+            // Fails without reaching the server
+        }
+        assertEquals(sent, server.getRequestCount());
+    }
+
+    private Request get() {
+        return new Request.Builder().url(server.url("/templates")).build();
+    }
+
+    private Request post() {
+        return new Request.Builder()
+                .url(server.url("/analytics"))
+                .post(RequestBody.create("{}", MediaType.get("application/json")))
+                .build();
+    }
+
+    private Response enqueueAndWait(Request request) throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Response> result = new AtomicReference<>();
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        factory.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                result.set(response);
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                failure.set(e);
+                latch.countDown();
+            }
+        });
+        assertTrue("Call did not finish", latch.await(30, TimeUnit.SECONDS));
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return result.get();
+    }
+}
@@ -0,0 +1,273 @@
+package com.ds.eventwish.data.repository;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ds.eventwish.data.local.AppDatabase;
+import com.ds.eventwish.data.local.dao.AdEventDao;
+import com.ds.eventwish.data.local.dao.AdEventDao.AggregatedAdEvent;
+import com.ds.eventwish.data.local.entity.AdEventEntity;
+import com.ds.eventwish.data.remote.ApiService;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link AdEventQueue} with an in-memory database against a local
+ * {@link MockWebServer}
+ */
+@RunWith(AndroidJUnit4.class)
+public class AdEventQueueTest {
+    private static final int CAPACITY = 8;
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_SEND_FAILURES = 3;
+
+    private AppDatabase database;
+    private AdEventDao adEventDao;
+    private MockWebServer server;
+    private ExecutorService diskIO;
+    private AdEventQueue queue;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        adEventDao = database.adEventDao();
+        server = new MockWebServer();
+        server.start();
+        ApiService apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/api/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(ApiService.class);
+        diskIO = Executors.newSingleThreadExecutor();
+        queue = new AdEventQueue(adEventDao, apiService, diskIO, CAPACITY, BATCH_SIZE, MAX_SEND_FAILURES);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        diskIO.shutdownNow();
+        server.shutdown();
+        database.close();
+    }
+
+    @Test
+    public void duplicateEventsAreSentOnceWithCount() throws Exception {
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-1", "s1"), CAPACITY);
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-1", "s1"), CAPACITY);
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-1", "s2"), CAPACITY);
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-2", "s1"), CAPACITY);
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+
+        RecordingCallback callback = flushAndWait();
+
+        assertEquals(5, callback.flushed);
+        assertEquals(1, server.getRequestCount());
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/api/sponsored-ads/events/batch", request.getPath());
+        assertEquals("device-1", request.getHeader("x-device-id"));
+        assertNotNull(request.getHeader("Idempotency-Key"));
+
+        JsonObject body = JsonParser.parseString(request.getBody().readUtf8()).getAsJsonObject();
+        assertEquals("device-1", body.get("deviceId").getAsString());
+        JsonArray events = body.getAsJsonArray("events");
+        assertEquals(4, events.size());
+        int total = 0;
+        for (int i = 0; i < events.size(); i++) {
+            JsonObject event = events.get(i).getAsJsonObject();
+            total += event.get("count").getAsInt();
+            if ("ad-1".equals(event.get("adId").getAsString())
+                    && "s1".equals(event.get("sessionId").getAsString())
+                    && "impression".equals(event.get("type").getAsString())) {
+                assertEquals(2, event.get("count").getAsInt());
+            }
+        }
+        assertEquals(5, total);
+        assertEquals(0, adEventDao.count());
+    }
+
+    @Test
+    public void fullQueueOverwritesOldestEvents() {
+        for (int i = 0; i < CAPACITY + 3; i++) {
+            adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-" + i, "s1"), CAPACITY);
+        }
+
+        assertEquals(CAPACITY, adEventDao.count());
+        List<AggregatedAdEvent> events = adEventDao.getAggregated(BATCH_SIZE);
+        assertEquals(CAPACITY, events.size());
+        // ad-0 to ad-2 were overwritten by the last three events
+        assertEquals("ad-3", events.get(0).adId);
+        assertEquals("ad-" + (CAPACITY + 2), events.get(events.size() - 1).adId);
+    }
+
+    @Test
+    public void failedBatchStaysQueuedAndKeepsItsKey() throws Exception {
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+
+        RecordingCallback failed = flushAndWait();
+        assertNotNull(failed.failure);
+        assertEquals(500, failed.failure.code());
+        assertNotNull(adEventDao.getPendingBatchId());
+
+        RecordingCallback retried = flushAndWait();
+        assertEquals(1, retried.flushed);
+        assertEquals(0, adEventDao.count());
+        assertNull(adEventDao.getPendingBatchId());
+        String firstKey = server.takeRequest().getHeader("Idempotency-Key");
+        String retryKey = server.takeRequest().getHeader("Idempotency-Key");
+        assertEquals(firstKey, retryKey);
+    }
+
+    @Test
+    public void batchIsDroppedAfterRepeatedErrors() throws Exception {
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        for (int i = 0; i < MAX_SEND_FAILURES; i++) {
+            server.enqueue(new MockResponse().setResponseCode(500));
+        }
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+
+        for (int i = 0; i < MAX_SEND_FAILURES - 1; i++) {
+            flushAndWait();
+            assertNotNull(adEventDao.getPendingBatchId());
+        }
+        flushAndWait();
+        assertNull(adEventDao.getPendingBatchId());
+
+        // The queue moves on to later events
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-2", "s1"), CAPACITY);
+        RecordingCallback next = flushAndWait();
+        assertEquals(1, next.flushed);
+        assertEquals(MAX_SEND_FAILURES + 1, server.getRequestCount());
+    }
+
+    @Test
+    public void retriedEventsKeepTheirRetryCount() throws Exception {
+        AdEventEntity retried = new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1");
+        retried.setRetryCount(2);
+        adEventDao.append(retried, CAPACITY);
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        RecordingCallback callback = flushAndWait();
+
+        assertEquals(2, callback.missing.size());
+        int retriedCount = -1;
+        for (AggregatedAdEvent event : callback.missing) {
+            assertEquals(1, event.count);
+            if (event.retryCount != 0) {
+                retriedCount = event.retryCount;
+            }
+        }
+        assertEquals(2, retriedCount);
+    }
+
+    @Test
+    public void retryResendsTheClaimedBatchAfterTheRingWraps() throws Exception {
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+
+        flushAndWait();
+        // Fill every slot, including the one the failed event used
+        for (int i = 0; i < CAPACITY; i++) {
+            adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-" + (i + 2), "s1"), CAPACITY);
+        }
+
+        RecordingCallback retried = flushAndWait();
+        assertEquals(1 + CAPACITY, retried.flushed);
+        RecordedRequest first = server.takeRequest();
+        RecordedRequest retry = server.takeRequest();
+        assertEquals(first.getHeader("Idempotency-Key"), retry.getHeader("Idempotency-Key"));
+        assertEquals(first.getBody().readUtf8(), retry.getBody().readUtf8());
+        RecordedRequest next = server.takeRequest();
+        assertNotEquals(first.getHeader("Idempotency-Key"), next.getHeader("Idempotency-Key"));
+        JsonObject body = JsonParser.parseString(next.getBody().readUtf8()).getAsJsonObject();
+        assertEquals(CAPACITY, body.getAsJsonArray("events").size());
+    }
+
+    @Test
+    public void missingBulkEndpointHandsEventsBack() throws Exception {
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, "ad-1", "s1"), CAPACITY);
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        RecordingCallback callback = flushAndWait();
+
+        assertEquals(1, callback.missing.size());
+        assertEquals(2, callback.missing.get(0).count);
+        assertEquals(0, adEventDao.count());
+
+        // Later flushes do not try the bulk endpoint again
+        adEventDao.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, "ad-2", "s1"), CAPACITY);
+        RecordingCallback next = flushAndWait();
+        assertEquals(1, next.missing.size());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    private RecordingCallback flushAndWait() throws InterruptedException {
+        RecordingCallback callback = new RecordingCallback();
+        queue.flush("device-1", callback);
+        assertTrue("Flush did not finish", callback.done.await(10, TimeUnit.SECONDS));
+        return callback;
+    }
+
+    private static class RecordingCallback implements AdEventQueue.FlushCallback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<AggregatedAdEvent> missing = new ArrayList<>();
+        int flushed = -1;
+        Response<JsonObject> failure;
+
+        @Override
+        public void onFlushed(int events) {
+            flushed = events;
+            done.countDown();
+        }
+
+        @Override
+        public void onBulkEndpointMissing(@NonNull List<AggregatedAdEvent> events) {
+            missing.addAll(events);
+        }
+
+        @Override
+        public void onFailure(Response<JsonObject> response, Throwable t) {
+            failure = response;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.ds.eventwish.data.repository;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ds.eventwish.data.local.entity.SponsoredAdEntity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Simulates rotations against {@link AdSelectionIndex}: checks that picks
+ * follow the ad weights, and compares the cost of a pick with recomputing
+ * the weights and scanning them for every rotation. Timings are logged
+ * under the {@code AdSelectionIndexTest} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AdSelectionIndexTest {
+    private static final String TAG = "AdSelectionIndexTest";
+    private static final String LOCATION = "home_top";
+
+    private static final int FAIRNESS_ROTATIONS = 200_000;
+    private static final int BENCHMARK_ADS = 500;
+    private static final int BENCHMARK_ROTATIONS = 20_000;
+
+    @Test
+    public void picksFollowWeights() {
+        List<SponsoredAdEntity> ads = createAds(12, new Random(1));
+        AdSelectionIndex index = new AdSelectionIndex(new Random(42));
+        index.load(LOCATION, ads);
+
+        Map<String, Integer> picks = rotate(index, null, FAIRNESS_ROTATIONS);
+        assertShares(ads, Collections.emptySet(), picks, FAIRNESS_ROTATIONS);
+    }
+
+    @Test
+    public void excludedAdsAreNeverPicked() {
+        List<SponsoredAdEntity> ads = createAds(12, new Random(2));
+        AdSelectionIndex index = new AdSelectionIndex(new Random(42));
+        index.load(LOCATION, ads);
+
+        // A few exclusions use rejection sampling, most of them a linear scan
+        for (int excluded : new int[] {2, 10}) {
+            Set<String> excludeIds = new HashSet<>();
+            for (int i = 0; i < excluded; i++) {
+                excludeIds.add(ads.get(i).getId());
+            }
+            Map<String, Integer> picks = rotate(index, excludeIds, FAIRNESS_ROTATIONS);
+            for (String id : excludeIds) {
+                assertNull("Picked excluded ad " + id, picks.get(id));
+            }
+            assertShares(ads, excludeIds, picks, FAIRNESS_ROTATIONS);
+        }
+
+        Set<String> all = new HashSet<>();
+        for (SponsoredAdEntity ad : ads) {
+            all.add(ad.getId());
+        }
+        assertNull(index.select(LOCATION, all));
+    }
+
+    @Test
+    public void impressionUpdatesShiftWeights() {
+        List<SponsoredAdEntity> ads = createAds(4, new Random(3));
+        for (SponsoredAdEntity ad : ads) {
+            ad.setPriority(5);
+            ad.setImpressionCount(0);
+        }
+        AdSelectionIndex index = new AdSelectionIndex(new Random(42));
+        index.load(LOCATION, ads);
+
+        SponsoredAdEntity seen = ads.get(0);
+        seen.setImpressionCount(1000);
+        index.update(seen);
+
+        Map<String, Integer> picks = rotate(index, null, FAIRNESS_ROTATIONS);
+        assertShares(ads, Collections.emptySet(), picks, FAIRNESS_ROTATIONS);
+        assertTrue(count(picks, seen.getId()) < count(picks, ads.get(1).getId()));
+    }
+
+    @Test
+    public void aliasPickIsFasterThanRescanning() {
+        List<SponsoredAdEntity> ads = createAds(BENCHMARK_ADS, new Random(4));
+        AdSelectionIndex index = new AdSelectionIndex(new Random(42));
+        index.load(LOCATION, ads);
+        Random random = new Random(42);
+
+        // Warm up both paths
+        rotate(index, null, BENCHMARK_ROTATIONS);
+        for (int i = 0; i < BENCHMARK_ROTATIONS; i++) {
+            assertNotNull(rescan(ads, random));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROTATIONS; i++) {
+            assertNotNull(index.select(LOCATION, null));
+        }
+        long alias = (System.nanoTime() - start) / BENCHMARK_ROTATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROTATIONS; i++) {
+            assertNotNull(rescan(ads, random));
+        }
+        long linear = (System.nanoTime() - start) / BENCHMARK_ROTATIONS;
+
+        Log.i(TAG, String.format("Per rotation over %d ads, alias table: %d ns", BENCHMARK_ADS, alias));
+        Log.i(TAG, String.format("Per rotation over %d ads, rescanning:  %d ns", BENCHMARK_ADS, linear));
+        assertTrue("Alias pick should be faster: " + alias + " vs " + linear + " ns", alias < linear);
+    }
+
+    private static List<SponsoredAdEntity> createAds(int count, Random random) {
+        List<SponsoredAdEntity> ads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SponsoredAdEntity ad = new SponsoredAdEntity();
+            ad.setId("ad-" + i);
+            ad.setLocation(LOCATION);
+            ad.setStatus(true);
+            ad.setPriority(1 + random.nextInt(10));
+            ad.setImpressionCount(random.nextInt(500));
+            ad.setExpiresAt(Long.MAX_VALUE);
+            ads.add(ad);
+        }
+        return ads;
+    }
+
+    private static Map<String, Integer> rotate(AdSelectionIndex index, Set<String> excludeIds, int rotations) {
+        Map<String, Integer> picks = new HashMap<>();
+        for (int i = 0; i < rotations; i++) {
+            SponsoredAdEntity ad = index.select(LOCATION, excludeIds);
+            assertNotNull(ad);
+            picks.put(ad.getId(), count(picks, ad.getId()) + 1);
+        }
+        return picks;
+    }
+
+    private static int count(Map<String, Integer> picks, String id) {
+        Integer count = picks.get(id);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Check every eligible ad was picked in proportion to its weight,
+     * within five standard deviations
+     */
+    private static void assertShares(List<SponsoredAdEntity> ads, Set<String> excludeIds,
+                                     Map<String, Integer> picks, int rotations) {
+        double total = 0;
+        for (SponsoredAdEntity ad : ads) {
+            if (!excludeIds.contains(ad.getId())) {
+                total += AdSelectionIndex.weightOf(ad.getPriority(), ad.getImpressionCount());
+            }
+        }
+        int picked = 0;
+        for (SponsoredAdEntity ad : ads) {
+            if (excludeIds.contains(ad.getId())) {
+                continue;
+            }
+            double p = AdSelectionIndex.weightOf(ad.getPriority(), ad.getImpressionCount()) / total;
+            double expected = p * rotations;
+            double tolerance = 5 * Math.sqrt(rotations * p * (1 - p));
+            int actual = count(picks, ad.getId());
+            picked += actual;
+            assertEquals("Picks of " + ad.getId(), expected, actual, tolerance);
+        }
+        assertEquals(rotations, picked);
+    }
+
+    /**
+     * The previous selection: recompute all weights and scan them
+     */
+    private static SponsoredAdEntity rescan(List<SponsoredAdEntity> ads, Random random) {
+        double totalWeight = 0;
+        double[] weights = new double[ads.size()];
+        for (int i = 0; i < ads.size(); i++) {
+            SponsoredAdEntity ad = ads.get(i);
+            weights[i] = ad.getPriority() * (1.0 / (1 + Math.log(1 + ad.getImpressionCount())));
+            totalWeight += weights[i];
+        }
+        double target = random.nextDouble() * totalWeight;
+        double weightSum = 0;
+        for (int i = 0; i < ads.size(); i++) {
+            weightSum += weights[i];
+            if (target <= weightSum) {
+                return ads.get(i);
+            }
+        }
+        return ads.get(0);
+    }
+}
@@ -0,0 +1,220 @@
+package com.ds.eventwish.data.repository;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ds.eventwish.data.db.TemplateDao;
+import com.ds.eventwish.data.local.AppDatabase;
+import com.ds.eventwish.data.local.dao.EngagementDataDao;
+import com.ds.eventwish.data.local.entity.CategoryAffinityEntity;
+import com.ds.eventwish.data.model.EngagementData;
+import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.data.model.TemplateQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of the data layer, measured on the device that runs the
+ * instrumented tests. The benchmarks only log their medians under the
+ * {@code PerformanceBenchmarkTest} tag and never fail on a duration;
+ * behaviour is covered by the tests of the classes themselves.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PerformanceBenchmarkTest {
+    private static final String TAG = "PerformanceBenchmarkTest";
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 21;
+
+    private AppDatabase database;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Category weights come from one query over the affinity table instead
+     * of scoring the whole engagement history; compares the two at 100k
+     * engagements
+     */
+    @Test
+    public void categoryWeightsDoNotScanHistory() {
+        EngagementDataDao dao = database.engagementDataDao();
+        List<String> categories = Arrays.asList(
+            "birthday", "anniversary", "wedding", "diwali", "holi", "christmas", "newyear", "eid");
+        long now = System.currentTimeMillis();
+        Random random = new Random(7);
+        List<EngagementData> chunk = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            EngagementData engagement = new EngagementData(EngagementData.TYPE_TEMPLATE_VIEW,
+                "template_" + random.nextInt(500), categories.get(random.nextInt(categories.size())),
+                EngagementData.SOURCE_DIRECT);
+            engagement.setTimestamp(now - (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(90)));
+            chunk.add(engagement);
+            if (chunk.size() == 5_000) {
+                dao.insertAll(chunk);
+                chunk.clear();
+            }
+        }
+
+        long scanNs = medianNanos(() -> {
+            Map<String, Double> scores = new HashMap<>();
+            for (EngagementData engagement : dao.getAll()) {
+                Double score = scores.get(engagement.getCategory());
+                scores.put(engagement.getCategory(),
+                    (score != null ? score : 0) + CategoryAffinityEntity.contribution(engagement));
+            }
+        });
+        long affinityNs = medianNanos(dao::getCategoryAffinities);
+
+        report("Category weights over 100k engagements: full scan %.2f ms, affinity table %.3f ms",
+            scanNs, affinityNs);
+    }
+
+    /**
+     * Compares picking the top recommendations from a 10k candidate catalog
+     * with the full sort and interleave it replaced
+     */
+    @Test
+    public void recommendationSelectionBeatsFullSort() {
+        Random random = new Random(8);
+        List<Template> templates = RecommendationSelectorTest.createTemplates(10_000, 25, random);
+        float[] scores = RecommendationSelectorTest.createScores(templates.size(), random);
+
+        long sortNs = medianNanos(() -> RecommendationSelectorTest.fullSortAndInterleave(templates, scores, 10));
+        long selectNs = medianNanos(() -> RecommendationSelectorTest.select(templates, scores, 10));
+
+        report("Top 10 of 10k candidates: full sort %.3f ms, selector %.3f ms", sortNs, selectNs);
+    }
+
+    /**
+     * Times building the on-device "more like this" index over a 10k
+     * template catalog and answering a lookup from it
+     */
+    @Test
+    public void similarTemplatesFromIndex() {
+        Random random = new Random(4);
+        List<Template> catalog = TemplateSimilarityIndexTest.createCatalog(10_000, random);
+        TemplateSimilarityIndex index = new TemplateSimilarityIndex();
+
+        long buildNs = medianNanos(() -> index.replaceAll(catalog));
+        long lookupNs = medianNanos(() ->
+            index.findSimilar(catalog.get(random.nextInt(catalog.size())).getId(), 10));
+
+        report("Similarity index over 10k templates: build %.2f ms, lookup %.3f ms", buildNs, lookupNs);
+    }
+
+    /**
+     * Home paints its first page straight from the stored catalog; times
+     * that page and a page deep into a category over 10k stored templates
+     */
+    @Test
+    public void firstPageFromDisk() {
+        com.ds.eventwish.data.db.AppDatabase catalogDatabase = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                com.ds.eventwish.data.db.AppDatabase.class)
+            .allowMainThreadQueries()
+            .build();
+        try {
+            TemplateDao dao = catalogDatabase.templateDao();
+            List<Template> catalog = TemplateCatalogTest.createCatalog(10_000, "Birthday");
+            for (int i = 0; i < catalog.size(); i += 500) {
+                dao.upsertAll(catalog.subList(i, i + 500));
+            }
+            TemplateQuery all = TemplateQuery.all();
+            TemplateQuery birthdays = TemplateCatalogTest.newest("Birthday");
+
+            long firstPageNs = medianNanos(() -> new TemplatePageWindow(
+                    (offset, limit) -> dao.loadPage(all, Long.MIN_VALUE, limit, offset),
+                    TemplateCatalogTest.PAGE_SIZE, TemplateCatalogTest.MAX_PAGES)
+                .loadNext());
+            long deepPageNs = medianNanos(() ->
+                dao.loadPage(birthdays, Long.MIN_VALUE, TemplateCatalogTest.PAGE_SIZE, 5_000));
+
+            report("10k stored templates: first page %.2f ms, page at offset 5000 %.2f ms",
+                firstPageNs, deepPageNs);
+        } finally {
+            catalogDatabase.close();
+        }
+    }
+
+    /**
+     * Times search-as-you-type against the local index over 50k documents,
+     * for broad two-letter prefixes as well as narrow queries
+     */
+    @Test
+    public void searchFromIndex() {
+        String[] categories = {"Birthday", "Wedding", "Anniversary", "Diwali", "Holi", "Christmas", "New Year", "Eid"};
+        String[] words = {"wishes", "celebration", "party", "love", "family", "friends", "lights", "flowers",
+            "golden", "sparkle", "cake", "balloons", "classic", "modern", "floral", "elegant"};
+        SearchRepository search = new SearchRepository(database.searchDao());
+        Random random = new Random(5);
+        List<Template> batch = new ArrayList<>(1000);
+        for (int i = 0; i < 50_000; i++) {
+            String category = categories[random.nextInt(categories.length)];
+            batch.add(SearchIndexTest.template("template_" + i,
+                category + " " + words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                category, random.nextInt(500), words[random.nextInt(words.length)]));
+            if (batch.size() == 1000) {
+                search.indexTemplatesSync(batch);
+                batch.clear();
+            }
+        }
+
+        for (String query : new String[] {"bi", "ca", "wed", "flowers", "golden ca", "new year pa", "diwali lights"}) {
+            long queryNs = medianNanos(() -> search.searchSync(query, null, 20));
+            report("Search \"" + query + "\" over 50k documents: %.2f ms", queryNs);
+        }
+    }
+
+    /**
+     * Median time of a piece of work, after a few warm-up runs
+     */
+    private static long medianNanos(Runnable work) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            work.run();
+        }
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            work.run();
+            samples[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        Arrays.sort(samples);
+        return samples[RUNS / 2];
+    }
+
+    private static void report(String format, long... nanos) {
+        Object[] millis = new Object[nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            millis[i] = nanos[i] / 1e6;
+        }
+        Log.i(TAG, String.format(Locale.US, format, millis));
+    }
+}
@@ -0,0 +1,146 @@
+package com.ds.eventwish.data.repository;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ds.eventwish.data.model.Template;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks {@link RecommendationSelector} against sorting every candidate and
+ * interleaving the full list by category
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecommendationSelectorTest {
+    private static final int LIMIT = 10;
+
+    @Test
+    public void matchesFullSortAndInterleave() {
+        Random random = new Random(5);
+        for (int run = 0; run < 50; run++) {
+            List<Template> templates = createTemplates(1 + random.nextInt(300), 1 + random.nextInt(8), random);
+            float[] scores = createScores(templates.size(), random);
+
+            assertSameTemplates(fullSortAndInterleave(templates, scores, LIMIT),
+                select(templates, scores, LIMIT));
+        }
+    }
+
+    @Test
+    public void singleCategoryFillsLimit() {
+        Random random = new Random(6);
+        List<Template> templates = createTemplates(40, 1, random);
+        float[] scores = createScores(templates.size(), random);
+
+        List<RecommendationSelector.ScoredTemplate> selected = select(templates, scores, LIMIT);
+        assertEquals(LIMIT, selected.size());
+        assertSameTemplates(fullSortAndInterleave(templates, scores, LIMIT), selected);
+    }
+
+    @Test
+    public void fewerCandidatesThanLimit() {
+        Random random = new Random(7);
+        List<Template> templates = createTemplates(3, 2, random);
+        float[] scores = createScores(templates.size(), random);
+
+        assertEquals(3, select(templates, scores, LIMIT).size());
+        assertEquals(0, select(templates, scores, 0).size());
+    }
+
+    static List<RecommendationSelector.ScoredTemplate> select(
+            List<Template> templates, float[] scores, int limit) {
+        RecommendationSelector selector = new RecommendationSelector(limit);
+        for (int i = 0; i < templates.size(); i++) {
+            selector.offer(templates.get(i), scores[i]);
+        }
+        return selector.select();
+    }
+
+    /**
+     * The previous selection: stable sort of every candidate, then
+     * round-robin over categories ordered by their best template
+     */
+    static List<Template> fullSortAndInterleave(List<Template> templates, float[] scores, int limit) {
+        List<Integer> order = new ArrayList<>(templates.size());
+        for (int i = 0; i < templates.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Float.compare(scores[i2], scores[i1]);
+            }
+        });
+
+        // Categories appear in order of their best template
+        Map<String, List<Template>> byCategory = new LinkedHashMap<>();
+        for (int i : order) {
+            Template template = templates.get(i);
+            List<Template> category = byCategory.get(template.getCategory());
+            if (category == null) {
+                category = new ArrayList<>();
+                byCategory.put(template.getCategory(), category);
+            }
+            category.add(template);
+        }
+
+        List<Template> result = new ArrayList<>();
+        for (int round = 0; result.size() < templates.size(); round++) {
+            for (List<Template> category : byCategory.values()) {
+                if (round < category.size()) {
+                    result.add(category.get(round));
+                }
+            }
+        }
+        return result.subList(0, Math.min(limit, result.size()));
+    }
+
+    private static void assertSameTemplates(List<Template> expected,
+                                            List<RecommendationSelector.ScoredTemplate> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame("Position " + i, expected.get(i), actual.get(i).getTemplate());
+        }
+    }
+
+    static List<Template> createTemplates(int count, int categories, Random random) {
+        Map<Integer, String> names = new HashMap<>();
+        List<Template> templates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int category = random.nextInt(categories);
+            String name = names.get(category);
+            if (name == null) {
+                name = "category_" + category;
+                names.put(category, name);
+            }
+            Template template = new Template();
+            template.setId("template_" + i);
+            template.setTitle("Template " + i);
+            template.setCategory(name);
+            templates.add(template);
+        }
+        return templates;
+    }
+
+    static float[] createScores(int count, Random random) {
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            // Coarse scores so that ties occur
+            scores[i] = random.nextInt(50) / 50f;
+        }
+        return scores;
+    }
+}
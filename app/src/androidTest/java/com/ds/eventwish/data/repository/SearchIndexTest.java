@@ -0,0 +1,139 @@
+package com.ds.eventwish.data.repository;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ds.eventwish.data.local.AppDatabase;
+import com.ds.eventwish.data.local.dao.SearchDao;
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
+import com.ds.eventwish.data.model.Template;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the local search index: prefix matching, ranking and keeping the
+ * index in sync with the documents.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchIndexTest {
+    private AppDatabase database;
+    private SearchDao dao;
+    private SearchRepository search;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.searchDao();
+        search = new SearchRepository(dao);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void prefixesMatchAndTitlesRankFirst() {
+        Template inBody = template("body", "Golden Lights", "Birthday", 50, "cake");
+        Template popular = template("popular", "Party Cake", "Birthday", 40);
+        Template startsWith = template("starts", "Cake Party", "Birthday", 1);
+        search.indexTemplatesSync(Arrays.asList(inBody, popular, startsWith));
+
+        assertIds(search.searchSync("ca", null, 10), "starts", "popular", "body");
+        assertIds(search.searchSync("CAKE par", null, 10), "starts", "popular");
+        assertIds(search.searchSync("bir", null, 10), "body", "popular", "starts");
+        assertTrue(search.searchSync("cakes", null, 10).isEmpty());
+    }
+
+    @Test
+    public void festivalsAndCategoriesAreSearchable() {
+        search.indexTemplatesSync(Collections.singletonList(template("t", "Diwali Lights", "Diwali", 3)));
+        dao.replaceType(SearchDocumentEntity.TYPE_FESTIVAL, Collections.singletonList(
+            new SearchDocumentEntity(SearchDocumentEntity.TYPE_FESTIVAL, "f", "Diwali", "Festival of lights", 12)));
+        dao.replaceType(SearchDocumentEntity.TYPE_CATEGORY, Collections.singletonList(
+            new SearchDocumentEntity(SearchDocumentEntity.TYPE_CATEGORY, "Diwali", "Diwali", null, 40)));
+
+        assertEquals(3, search.searchSync("diw", null, 10).size());
+        assertIds(search.searchSync("diw", SearchDocumentEntity.TYPE_FESTIVAL, 10), "f");
+        assertIds(search.searchSync("lights", SearchDocumentEntity.TYPE_FESTIVAL, 10), "f");
+    }
+
+    @Test
+    public void reindexingReplacesDocuments() {
+        Template template = template("t", "Wedding Flowers", "Wedding", 0);
+        search.indexTemplatesSync(Collections.singletonList(template));
+        template.setTitle("Wedding Bells");
+        search.indexTemplatesSync(Arrays.asList(template, template));
+
+        assertTrue(search.searchSync("flowers", null, 10).isEmpty());
+        assertIds(search.searchSync("bells", null, 10), "t");
+        assertEquals(1, dao.getDocumentCount(SearchDocumentEntity.TYPE_TEMPLATE));
+
+        dao.removeDocuments(SearchDocumentEntity.TYPE_TEMPLATE, Collections.singletonList("t"));
+        assertTrue(search.searchSync("wedding", null, 10).isEmpty());
+    }
+
+    @Test
+    public void queryTextIsSanitized() {
+        assertEquals(Arrays.asList("happy", "bi"), SearchRepository.terms("Happy b bi"));
+        assertEquals(Arrays.asList("and", "near"), SearchRepository.terms("\"AND* -NEAR:( ) a"));
+        assertEquals("title:happy* title:bi*",
+            SearchRepository.matchExpression(Arrays.asList("happy", "bi"), true));
+
+        search.indexTemplatesSync(Collections.singletonList(template("t", "Near and far", "Travel", 0)));
+        assertIds(search.searchSync("NEAR AND", null, 10), "t");
+        assertTrue(search.searchSync("\"*", null, 10).isEmpty());
+    }
+
+    @Test
+    public void broadQueriesRankEveryMatch() {
+        // Indexed first, ahead of more matches than are sorted per query
+        search.indexTemplatesSync(Collections.singletonList(template("popular", "Birthday Balloons", "Birthday", 900)));
+        List<Template> others = new ArrayList<>();
+        for (int i = 0; i < SearchRepository.MAX_SORTED_MATCHES * 2; i++) {
+            others.add(template("t" + i, "Birthday Card " + i, "Birthday", i % 500));
+        }
+        search.indexTemplatesSync(others);
+        dao.replaceType(SearchDocumentEntity.TYPE_FESTIVAL, Collections.singletonList(
+            new SearchDocumentEntity(SearchDocumentEntity.TYPE_FESTIVAL, "f", "Birthday Week", null, 0)));
+
+        assertEquals("popular", search.searchSync("bi", null, 10).get(0).getDocId());
+        assertEquals("popular", search.searchSync("bi", SearchDocumentEntity.TYPE_TEMPLATE, 10).get(0).getDocId());
+        assertIds(search.searchSync("bi", SearchDocumentEntity.TYPE_FESTIVAL, 10), "f");
+    }
+
+    static Template template(String id, String title, String category, int shares, String... tags) {
+        Template template = new Template();
+        template.setId(id);
+        template.setTitle(title);
+        template.setCategory(category);
+        template.setShareCount(shares);
+        template.setTags(tags.length > 0 ? Arrays.asList(tags) : Collections.<String>emptyList());
+        return template;
+    }
+
+    private static void assertIds(List<SearchDocumentEntity> actual, String... expected) {
+        List<String> ids = new ArrayList<>(actual.size());
+        for (SearchDocumentEntity document : actual) {
+            ids.add(document.getDocId());
+        }
+        assertEquals(Arrays.asList(expected), ids);
+    }
+}
@@ -0,0 +1,264 @@
+package com.ds.eventwish.data.repository;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.ds.eventwish.data.db.AppDatabase;
+import com.ds.eventwish.data.db.TemplateDao;
+import com.ds.eventwish.data.local.entity.TemplateSyncStateEntity;
+import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.data.model.TemplateQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the local template catalog: merging server pages with
+ * {@link TemplateDao#mergePage} and reading it through a bounded
+ * {@link TemplatePageWindow}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TemplateCatalogTest {
+    static final int PAGE_SIZE = 20;
+    static final int MAX_PAGES = 5;
+    private static final long NOW = 1_760_000_000_000L;
+    private static final long ALL_TIME = Long.MIN_VALUE;
+    private static final TemplateQuery ALL = TemplateQuery.all();
+
+    private AppDatabase database;
+    private TemplateDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.templateDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void windowStaysBoundedWhileScrolling() {
+        List<Template> catalog = createCatalog(300, "Birthday");
+        syncAll(null, catalog);
+
+        TemplatePageWindow window = new TemplatePageWindow(
+            (offset, limit) -> dao.loadPage(ALL, ALL_TIME, limit, offset), PAGE_SIZE, MAX_PAGES);
+        int pages = 0;
+        while (window.loadNext() > 0) {
+            pages++;
+            assertTrue(window.size() <= PAGE_SIZE * MAX_PAGES);
+        }
+        assertEquals(catalog.size() / PAGE_SIZE, pages);
+        assertEquals(catalog.size() - PAGE_SIZE * MAX_PAGES, window.getStartOffset());
+        assertIds(catalog, window.getStartOffset(), window.getTemplates());
+
+        // Scrolling back re-reads dropped pages and drops the ones at the end
+        while (window.hasPrevious()) {
+            window.loadPrevious();
+            assertTrue(window.size() <= PAGE_SIZE * MAX_PAGES);
+        }
+        assertEquals(0, window.getStartOffset());
+        assertIds(catalog, 0, window.getTemplates());
+    }
+
+    @Test
+    public void categoryPagesOnlyHoldTheirCategory() {
+        List<Template> birthdays = createCatalog(30, "Birthday");
+        List<Template> weddings = createCatalog(30, "Wedding");
+        syncAll("Birthday", birthdays);
+        syncAll("Wedding", weddings);
+
+        TemplatePageWindow window = new TemplatePageWindow(
+            (offset, limit) -> dao.loadPage(newest("Wedding"), ALL_TIME, limit, offset), PAGE_SIZE, MAX_PAGES);
+        window.loadNext();
+        window.loadNext();
+        assertIds(weddings, 0, window.getTemplates());
+        assertFalse(window.mayHaveNext());
+    }
+
+    @Test
+    public void refreshCountsChangesAndDropsRemovedTemplates() {
+        List<Template> catalog = createCatalog(60, "Birthday");
+        syncAll(null, catalog);
+
+        // The server edited one template, removed one and added a new one
+        List<Template> page = new ArrayList<>(catalog.subList(0, PAGE_SIZE));
+        Template edited = page.get(3);
+        edited.setUpdatedAt(new Date(NOW + 1000));
+        Template removed = page.remove(7);
+        Template added = template("new", "Birthday", NOW + 60_000);
+        page.add(0, added);
+        page.add(catalog.get(PAGE_SIZE));
+
+        assertEquals(2, dao.mergePage(ALL, ALL_TIME, 1, page, true));
+        assertEquals(0, dao.getTemplatesByIds(listOf(removed.getId())).size());
+        assertEquals(added.getId(), dao.loadPage(ALL, ALL_TIME, 1, 0).get(0).getId());
+        assertEquals(catalog.size(), dao.loadPage(ALL, ALL_TIME, 1000, 0).size());
+
+        // Unchanged pages do not count
+        assertEquals(0, dao.mergePage(ALL, ALL_TIME, 1, page, true));
+    }
+
+    @Test
+    public void syncStateTracksNextPageAndEnd() {
+        List<Template> catalog = createCatalog(50, "Birthday");
+        String key = ALL.getKey();
+
+        dao.mergePage(ALL, ALL_TIME, 1, catalog.subList(0, 20), true);
+        TemplateSyncStateEntity state = dao.getSyncState(key);
+        assertNotNull(state);
+        assertEquals(2, state.getNextPage());
+        assertFalse(state.isEndReached());
+        assertTrue(state.getLastRefreshedAt() > 0);
+
+        dao.mergePage(ALL, ALL_TIME, 2, catalog.subList(20, 40), true);
+        dao.mergePage(ALL, ALL_TIME, 3, catalog.subList(40, 50), false);
+        state = dao.getSyncState(key);
+        assertEquals(4, state.getNextPage());
+        assertTrue(state.isEndReached());
+
+        // Refreshing the head keeps the append position
+        dao.mergePage(ALL, ALL_TIME, 1, catalog.subList(0, 20), true);
+        assertEquals(4, dao.getSyncState(key).getNextPage());
+        assertTrue(dao.getSyncState(key).isEndReached());
+
+        // Other filters are synced on their own
+        assertNull(dao.getSyncState(new TemplateQuery(null, TemplateQuery.Sort.TRENDING, TemplateQuery.TimeRange.ALL).getKey()));
+    }
+
+    @Test
+    public void sortsAndTimeWindowsReadFromTheStoredCatalog() {
+        List<Template> catalog = createCatalog(100, "Birthday");
+        for (int i = 0; i < catalog.size(); i++) {
+            catalog.get(i).setShareCount(i % 10);
+            catalog.get(i).setTrendingScore(i % 7);
+        }
+        syncAll(null, catalog);
+        long since = NOW - 30 * 60_000L;
+
+        List<Template> oldest = dao.loadPage(query(TemplateQuery.Sort.OLDEST), ALL_TIME, PAGE_SIZE, 0);
+        assertEquals(catalog.get(catalog.size() - 1).getId(), oldest.get(0).getId());
+
+        List<Template> mostUsed = dao.loadPage(query(TemplateQuery.Sort.MOST_USED), ALL_TIME, 1000, 0);
+        for (int i = 1; i < mostUsed.size(); i++) {
+            assertTrue(mostUsed.get(i - 1).getShareCount() >= mostUsed.get(i).getShareCount());
+        }
+
+        List<Template> trending = dao.loadPage(query(TemplateQuery.Sort.TRENDING), since, 1000, 0);
+        assertEquals(31, trending.size());
+        for (int i = 1; i < trending.size(); i++) {
+            assertTrue(trending.get(i - 1).getTrendingScore() >= trending.get(i).getTrendingScore());
+            assertTrue(trending.get(i).getCreatedAt().getTime() >= since);
+        }
+    }
+
+    @Test
+    public void timeWindowSyncKeepsTemplatesOutsideIt() {
+        List<Template> catalog = createCatalog(60, "Birthday");
+        syncAll(null, catalog);
+        TemplateQuery week = new TemplateQuery(null, TemplateQuery.Sort.NEWEST, TemplateQuery.TimeRange.WEEK);
+        long since = NOW - 30 * 60_000L;
+
+        // The last page of a windowed listing ends at the window, not at the end of the catalog
+        dao.mergePage(week, since, 1, catalog.subList(0, 31), false);
+        assertEquals(catalog.size(), dao.loadPage(ALL, ALL_TIME, 1000, 0).size());
+        assertEquals(31, dao.loadPage(week, since, 1000, 0).size());
+
+        // Pages of other sort orders are not a time range, so nothing is deleted
+        TemplateQuery trending = query(TemplateQuery.Sort.TRENDING);
+        dao.mergePage(trending, ALL_TIME, 1, catalog.subList(40, 50), false);
+        assertEquals(catalog.size(), dao.loadPage(ALL, ALL_TIME, 1000, 0).size());
+    }
+
+    @Test
+    public void templatesWithoutCreationTimeAreListedWithoutTimeWindow() {
+        List<Template> catalog = createCatalog(10, "Birthday");
+        syncAll(null, catalog);
+        Template undated = template("undated", "Birthday", NOW);
+        undated.setCreatedAt(null);
+        dao.upsertAll(Collections.singletonList(undated));
+
+        for (TemplateQuery.Sort sort : TemplateQuery.Sort.values()) {
+            List<Template> page = dao.loadPage(query(sort), ALL_TIME, 1000, 0);
+            assertEquals(sort.name(), catalog.size() + 1, page.size());
+        }
+        assertEquals(catalog.size() + 1, dao.loadPage(newest("Birthday"), ALL_TIME, 1000, 0).size());
+
+        // A time window only lists templates known to be created in it
+        TemplateQuery week = new TemplateQuery(null, TemplateQuery.Sort.NEWEST, TemplateQuery.TimeRange.WEEK);
+        assertEquals(catalog.size(), dao.loadPage(week, NOW - 30 * 60_000L, 1000, 0).size());
+    }
+
+    /**
+     * Merge a catalog page by page, as appends would
+     */
+    private void syncAll(String category, List<Template> catalog) {
+        for (int i = 0, page = 1; i < catalog.size(); i += PAGE_SIZE, page++) {
+            int end = Math.min(i + PAGE_SIZE, catalog.size());
+            dao.mergePage(newest(category), ALL_TIME, page, catalog.subList(i, end), end < catalog.size());
+        }
+    }
+
+    static TemplateQuery newest(String category) {
+        return new TemplateQuery(category, TemplateQuery.Sort.NEWEST, TemplateQuery.TimeRange.ALL);
+    }
+
+    private static TemplateQuery query(TemplateQuery.Sort sort) {
+        return new TemplateQuery(null, sort, TemplateQuery.TimeRange.ALL);
+    }
+
+    /**
+     * Templates of one category, newest first, one minute apart
+     */
+    static List<Template> createCatalog(int size, String category) {
+        List<Template> catalog = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            catalog.add(template(category + "_" + i, category, NOW - i * 60_000L));
+        }
+        return catalog;
+    }
+
+    private static Template template(String id, String category, long createdAt) {
+        Template template = new Template();
+        template.setId(id);
+        template.setTitle(category + " " + id);
+        template.setCategory(category);
+        template.setCreatedAt(new Date(createdAt));
+        template.setUpdatedAt(new Date(createdAt));
+        return template;
+    }
+
+    private static void assertIds(List<Template> catalog, int offset, List<Template> actual) {
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals("Position " + (offset + i), catalog.get(offset + i).getId(), actual.get(i).getId());
+        }
+    }
+
+    private static List<String> listOf(String id) {
+        List<String> ids = new ArrayList<>();
+        ids.add(id);
+        return ids;
+    }
+}
@@ -0,0 +1,135 @@
+package com.ds.eventwish.data.repository;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.ds.eventwish.data.model.Template;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link TemplateSimilarityIndex}
+ */
+@RunWith(AndroidJUnit4.class)
+public class TemplateSimilarityIndexTest {
+    private static final String[] CATEGORIES = {
+        "Birthday", "Wedding", "Anniversary", "Diwali", "Holi", "Christmas", "New Year", "Eid"
+    };
+    private static final String[] WORDS = {
+        "wishes", "celebration", "party", "love", "family", "friends", "lights", "flowers",
+        "golden", "sparkle", "cake", "balloons", "classic", "modern", "floral", "elegant"
+    };
+
+    @Test
+    public void ranksSharedCategoryAndTagsFirst() {
+        TemplateSimilarityIndex index = new TemplateSimilarityIndex();
+        Template query = template("q", "Birthday Cake Party", "Birthday", "cake", "kids");
+        Template sameTags = template("a", "Sparkling Cake", "Birthday", "cake", "kids");
+        Template sameCategory = template("b", "Golden Wishes", "Birthday");
+        Template otherCategory = template("c", "Diwali Lights", "Diwali", "lights");
+        index.addAll(Arrays.asList(otherCategory, sameCategory, query, sameTags));
+
+        List<Template> similar = index.findSimilar("q", 3);
+        assertSame(sameTags, similar.get(0));
+        assertSame(sameCategory, similar.get(1));
+        assertFalse(similar.contains(query));
+    }
+
+    @Test
+    public void cssDoesNotChangeVectors() {
+        Template catalogEntry = template("a", "Wedding Card", "Wedding", "floral");
+        Template loaded = template("a", "Wedding Card", "Wedding", "floral");
+        loaded.setCssContent("body { background: #c0392b; font-family: 'Great Vibes'; }");
+
+        assertArrayEquals(TemplateSimilarityIndex.vectorOf(catalogEntry),
+            TemplateSimilarityIndex.vectorOf(loaded), 0f);
+    }
+
+    @Test
+    public void replaceAllDropsRemovedTemplates() {
+        TemplateSimilarityIndex index = new TemplateSimilarityIndex();
+        Template query = template("q", "Birthday Cake", "Birthday", "cake");
+        Template kept = template("kept", "Birthday Wishes", "Birthday", "cake");
+        Template removed = template("removed", "Birthday Party", "Birthday", "cake");
+        index.addAll(Arrays.asList(query, kept, removed));
+        assertEquals(3, index.size());
+
+        index.replaceAll(Arrays.asList(query, kept));
+
+        assertEquals(2, index.size());
+        assertEquals(Collections.singletonList(kept), index.findSimilar("q", 5));
+        assertTrue(index.findSimilar("removed", 5).isEmpty());
+    }
+
+    @Test
+    public void unknownTemplateHasNoResults() {
+        TemplateSimilarityIndex index = new TemplateSimilarityIndex();
+        index.add(template("a", "Birthday Cake", "Birthday"));
+
+        assertTrue(index.findSimilar("missing", 5).isEmpty());
+        assertTrue(index.findSimilar(null, 5).isEmpty());
+        assertTrue(index.findSimilar("a", 0).isEmpty());
+    }
+
+    @Test
+    public void quantizedScoresFollowFloatScores() {
+        Random random = new Random(3);
+        List<Template> catalog = createCatalog(500, random);
+        TemplateSimilarityIndex index = new TemplateSimilarityIndex();
+        index.addAll(catalog);
+
+        Template query = catalog.get(0);
+        float[] queryVector = TemplateSimilarityIndex.vectorOf(query);
+        List<Template> similar = index.findSimilar(query.getId(), 10);
+        assertEquals(10, similar.size());
+
+        // Quantization may swap near ties but never ranks a weak match above a strong one
+        float previous = Float.MAX_VALUE;
+        for (Template template : similar) {
+            float score = dot(queryVector, TemplateSimilarityIndex.vectorOf(template));
+            assertTrue(score <= previous + 0.02f);
+            previous = score;
+        }
+    }
+
+    static List<Template> createCatalog(int size, Random random) {
+        List<Template> catalog = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            String title = category + " " + WORDS[random.nextInt(WORDS.length)] + " " +
+                WORDS[random.nextInt(WORDS.length)];
+            catalog.add(template("template_" + i, title, category,
+                WORDS[random.nextInt(WORDS.length)], WORDS[random.nextInt(WORDS.length)]));
+        }
+        return catalog;
+    }
+
+    private static Template template(String id, String title, String category, String... tags) {
+        Template template = new Template();
+        template.setId(id);
+        template.setTitle(title);
+        template.setCategory(category);
+        template.setTags(tags.length > 0 ? Arrays.asList(tags) : Collections.<String>emptyList());
+        return template;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
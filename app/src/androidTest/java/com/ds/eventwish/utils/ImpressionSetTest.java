@@ -0,0 +1,62 @@
+package com.ds.eventwish.utils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link ImpressionSet}
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImpressionSetTest {
+
+    @Test
+    public void tracksAdsOncePerSession() {
+        ImpressionSet set = new ImpressionSet(1);
+        assertFalse(set.contains("a"));
+        assertTrue(set.add("a"));
+        assertFalse(set.add("a"));
+        assertTrue(set.contains("a"));
+        assertFalse(set.contains("b"));
+        assertFalse(set.contains(null));
+        assertEquals(1, set.size());
+
+        assertTrue(set.remove("a"));
+        assertFalse(set.remove("a"));
+        assertFalse(set.contains("a"));
+    }
+
+    @Test
+    public void newSessionForgetsImpressions() {
+        ImpressionSet set = new ImpressionSet(1);
+        set.add("a");
+        set.add("b");
+
+        set.startSession(2);
+
+        assertEquals(2, set.getSessionId());
+        assertEquals(0, set.size());
+        assertFalse(set.contains("a"));
+        assertTrue(set.add("a"));
+        assertEquals(Collections.singletonList("a"), set.getTrackedIds());
+    }
+
+    @Test
+    public void listsTrackedIdsInInternOrder() {
+        ImpressionSet set = new ImpressionSet(1);
+        set.add("a1");
+        set.add("b2");
+        set.add("c3");
+        set.remove("b2");
+
+        assertEquals(Arrays.asList("a1", "c3"), set.getTrackedIds());
+    }
+}
@@ -0,0 +1,52 @@
+package com.ds.eventwish.data.cache;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts cached values to and from the bytes stored in the disk tier of
+ * {@link TieredCache}.
+ * @param <T> Type of value handled by this codec
+ */
+public interface CacheCodec<T> {
+
+    /**
+     * Tag written into each disk entry's header. An entry whose tag does not
+     * match the codec it is read with is treated as a miss rather than decoded.
+     * @return Tag unique among the codecs sharing a cache
+     */
+    byte typeTag();
+
+    /**
+     * Encode a value for storage on disk
+     * @param value Value to encode
+     * @return Encoded bytes
+     * @throws IOException If the value cannot be encoded
+     */
+    @NonNull
+    byte[] encode(@NonNull T value) throws IOException;
+
+    /**
+     * Decode a value previously produced by {@link #encode}. The stream reads
+     * straight from the disk entry and ends after the payload.
+     * @param in Encoded bytes; must not be closed by the codec
+     * @param length Number of bytes available in {@code in}
+     * @return Decoded value
+     * @throws IOException If the bytes cannot be decoded
+     */
+    @NonNull
+    T decode(@NonNull InputStream in, int length) throws IOException;
+
+    /**
+     * Estimate how many bytes of heap a decoded value occupies, used to charge
+     * the shared memory budget
+     * @param value Decoded value
+     * @param encodedLength Length of the encoded form, or -1 if it was not encoded
+     * @return Estimated size in bytes
+     */
+    default int weigh(@NonNull T value, int encodedLength) {
+        return Math.max(encodedLength, 1);
+    }
+}
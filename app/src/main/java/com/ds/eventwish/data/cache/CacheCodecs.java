@@ -0,0 +1,343 @@
+package com.ds.eventwish.data.cache;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Standard codecs for values stored in {@link TieredCache}
+ */
+public final class CacheCodecs {
+
+    private static final Gson GSON = new Gson();
+
+    // Type tags written into entry headers
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_BYTES = 2;
+    private static final byte TAG_JSON_OBJECT = 3;
+    private static final byte TAG_GSON = 4;
+    private static final byte TAG_OBJECT = 5;
+
+    // Value types of the OBJECT codec
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_INT = 2;
+    private static final int VALUE_LONG = 3;
+    private static final int VALUE_DOUBLE = 4;
+    private static final int VALUE_FLOAT = 5;
+    private static final int VALUE_BOOLEAN = 6;
+    private static final int VALUE_BYTES = 7;
+    private static final int VALUE_LIST = 8;
+    private static final int VALUE_MAP = 9;
+    private static final int VALUE_SERIALIZED = 10;
+
+    /**
+     * UTF-8 strings. Java strings hold two bytes per char on the heap.
+     */
+    public static final CacheCodec<String> STRING = new CacheCodec<String>() {
+        @Override
+        public byte typeTag() {
+            return TAG_STRING;
+        }
+
+        @NonNull
+        @Override
+        public byte[] encode(@NonNull String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @NonNull
+        @Override
+        public String decode(@NonNull InputStream in, int length) throws IOException {
+            return new String(readFully(in, length), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int weigh(@NonNull String value, int encodedLength) {
+            return value.length() * 2;
+        }
+    };
+
+    /**
+     * Raw bytes, stored as-is
+     */
+    public static final CacheCodec<byte[]> BYTES = new CacheCodec<byte[]>() {
+        @Override
+        public byte typeTag() {
+            return TAG_BYTES;
+        }
+
+        @NonNull
+        @Override
+        public byte[] encode(@NonNull byte[] value) {
+            return value;
+        }
+
+        @NonNull
+        @Override
+        public byte[] decode(@NonNull InputStream in, int length) throws IOException {
+            return readFully(in, length);
+        }
+
+        @Override
+        public int weigh(@NonNull byte[] value, int encodedLength) {
+            return Math.max(value.length, 1);
+        }
+    };
+
+    /**
+     * Gson JSON objects, stored as UTF-8 JSON text and parsed straight from
+     * the stream
+     */
+    public static final CacheCodec<JsonObject> JSON_OBJECT = new CacheCodec<JsonObject>() {
+        @Override
+        public byte typeTag() {
+            return TAG_JSON_OBJECT;
+        }
+
+        @NonNull
+        @Override
+        public byte[] encode(@NonNull JsonObject value) {
+            return value.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @NonNull
+        @Override
+        public JsonObject decode(@NonNull InputStream in, int length) throws IOException {
+            try {
+                JsonElement element = JsonParser.parseReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                if (!element.isJsonObject()) {
+                    throw new IOException("Cached value is not a JSON object");
+                }
+                return element.getAsJsonObject();
+            } catch (JsonParseException e) {
+                throw new IOException("Malformed cached JSON", e);
+            }
+        }
+
+        @Override
+        public int weigh(@NonNull JsonObject value, int encodedLength) {
+            return JsonWeigher.weigh(value);
+        }
+    };
+
+    /**
+     * Plain values in a compact tagged binary form: strings, boxed primitives,
+     * byte arrays, and lists and maps of those. Any other {@link Serializable}
+     * is embedded with Java serialization, which is slower and tied to the
+     * class layout, so prefer the plain types.
+     */
+    public static final CacheCodec<Serializable> OBJECT = new CacheCodec<Serializable>() {
+        @Override
+        public byte typeTag() {
+            return TAG_OBJECT;
+        }
+
+        @NonNull
+        @Override
+        public byte[] encode(@NonNull Serializable value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                writeValue(out, value);
+            }
+            return bytes.toByteArray();
+        }
+
+        @NonNull
+        @Override
+        public Serializable decode(@NonNull InputStream in, int length) throws IOException {
+            Object value = readValue(new DataInputStream(in));
+            if (!(value instanceof Serializable)) {
+                throw new IOException("Cached object decoded to null");
+            }
+            return (Serializable) value;
+        }
+
+        @Override
+        public int weigh(@NonNull Serializable value, int encodedLength) {
+            // Decoded strings are UTF-16 and boxed values carry object headers
+            return Math.max(encodedLength, 1) * 2;
+        }
+    };
+
+    private CacheCodecs() {
+        // Utility class
+    }
+
+    /**
+     * Codec that stores values as Gson JSON text
+     * @param type Type to decode into, e.g. from a {@code TypeToken}
+     * @param <T> Type of value
+     * @return Codec for the type
+     */
+    public static <T> CacheCodec<T> gson(final Type type) {
+        return new CacheCodec<T>() {
+            @Override
+            public byte typeTag() {
+                return TAG_GSON;
+            }
+
+            @NonNull
+            @Override
+            public byte[] encode(@NonNull T value) {
+                return GSON.toJson(value).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @NonNull
+            @Override
+            public T decode(@NonNull InputStream in, int length) throws IOException {
+                try {
+                    T value = GSON.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), type);
+                    if (value == null) {
+                        throw new IOException("Cached JSON decoded to null");
+                    }
+                    return value;
+                } catch (JsonParseException e) {
+                    throw new IOException("Malformed cached JSON", e);
+                }
+            }
+
+            @Override
+            public int weigh(@NonNull T value, int encodedLength) {
+                if (value instanceof JsonElement) {
+                    return JsonWeigher.weigh((JsonElement) value);
+                }
+                // Mapped objects cost several times their text form in headers and UTF-16 strings
+                return Math.max(encodedLength, 1) * 4;
+            }
+        };
+    }
+
+    @NonNull
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        new DataInputStream(in).readFully(data);
+        return data;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(VALUE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(VALUE_BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(VALUE_LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(VALUE_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof Serializable) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(value);
+            }
+            out.writeByte(VALUE_SERIALIZED);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        } else {
+            throw new IOException("Cannot cache value of " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return new String(readFully(in, in.readInt()), StandardCharsets.UTF_8);
+            case VALUE_INT:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_FLOAT:
+                return in.readFloat();
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_BYTES:
+                return readFully(in, in.readInt());
+            case VALUE_LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case VALUE_MAP: {
+                int size = in.readInt();
+                Map<Object, Object> map = new HashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            }
+            case VALUE_SERIALIZED: {
+                // ObjectInputStream may read ahead, so give it only this value's bytes
+                byte[] serialized = readFully(in, in.readInt());
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    return objectIn.readObject();
+                } catch (ClassNotFoundException | RuntimeException e) {
+                    throw new IOException("Cached object can no longer be deserialized", e);
+                }
+            }
+            default:
+                throw new IOException("Unknown cached value type " + type);
+        }
+    }
+}
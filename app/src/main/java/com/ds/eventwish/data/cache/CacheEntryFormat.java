@@ -0,0 +1,184 @@
+package com.ds.eventwish.data.cache;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary layout of a {@link TieredCache} entry on disk.
+ *
+ * <pre>
+ *     int     magic "EWCE"
+ *     byte    format version
+ *     byte    codec type tag, see {@link CacheCodec#typeTag()}
+ *     byte    flags (bit 0: promote to memory when read)
+ *     long    expiresAt, epoch millis
+ *     long    staleUntil, epoch millis
+ *     short   key length, followed by the UTF-8 key
+ *     int     payload length, followed by the payload
+ * </pre>
+ *
+ * The header is fixed-size apart from the key, so expiry and type can be
+ * checked before any of the payload is read. The payload is handed to the
+ * codec as a bounded stream straight from the file.
+ */
+final class CacheEntryFormat {
+
+    static final int MAGIC = 0x45574345; // "EWCE"
+    static final byte VERSION = 1;
+
+    private static final int FLAG_IN_MEMORY = 1;
+
+    private CacheEntryFormat() {
+        // Utility class
+    }
+
+    /**
+     * Header of an entry, everything but the payload
+     */
+    static final class Header {
+        final String key;
+        final byte typeTag;
+        final boolean inMemory;
+        final long expiresAt;
+        final long staleUntil;
+        final int payloadLength;
+
+        Header(String key, byte typeTag, boolean inMemory, long expiresAt, long staleUntil, int payloadLength) {
+            this.key = key;
+            this.typeTag = typeTag;
+            this.inMemory = inMemory;
+            this.expiresAt = expiresAt;
+            this.staleUntil = staleUntil;
+            this.payloadLength = payloadLength;
+        }
+    }
+
+    /**
+     * Write a complete entry
+     * @param out Destination, usually buffered
+     * @param header Entry header; its payload length must match {@code payload}
+     * @param payload Encoded value
+     * @throws IOException If writing fails
+     */
+    static void write(@NonNull DataOutputStream out, @NonNull Header header, @NonNull byte[] payload) throws IOException {
+        byte[] key = header.key.getBytes(StandardCharsets.UTF_8);
+        if (key.length > 0xFFFF) {
+            throw new IOException("Cache key too long: " + key.length + " bytes");
+        }
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(header.typeTag);
+        out.writeByte(header.inMemory ? FLAG_IN_MEMORY : 0);
+        out.writeLong(header.expiresAt);
+        out.writeLong(header.staleUntil);
+        out.writeShort(key.length);
+        out.write(key);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Read an entry header, leaving {@code in} positioned at the payload
+     * @param in Source positioned at the start of an entry
+     * @return Header
+     * @throws IOException If the entry is truncated or not in a supported format
+     */
+    @NonNull
+    static Header readHeader(@NonNull DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a cache entry: magic " + Integer.toHexString(magic));
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cache entry version " + version);
+        }
+        byte typeTag = in.readByte();
+        int flags = in.readUnsignedByte();
+        long expiresAt = in.readLong();
+        long staleUntil = in.readLong();
+        byte[] key = new byte[in.readUnsignedShort()];
+        in.readFully(key);
+        int payloadLength = in.readInt();
+        if (payloadLength < 0) {
+            throw new IOException("Negative payload length " + payloadLength);
+        }
+        return new Header(new String(key, StandardCharsets.UTF_8), typeTag,
+                (flags & FLAG_IN_MEMORY) != 0, expiresAt, staleUntil, payloadLength);
+    }
+
+    /**
+     * Wrap {@code in} so that codecs can read at most the entry's payload
+     * @param in Source positioned at the payload
+     * @param header Header read from {@code in}
+     * @return Bounded stream; closing it does not close {@code in}
+     */
+    @NonNull
+    static InputStream payloadStream(@NonNull InputStream in, @NonNull Header header) {
+        return new BoundedInputStream(in, header.payloadLength);
+    }
+
+    /**
+     * Stream that ends after a fixed number of bytes
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // The snapshot owns the underlying stream
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.ds.eventwish.data.cache;
+
+/**
+ * Describes how long a {@link TieredCache} entry stays fresh, how long it may
+ * be served stale while it is revalidated, and which tiers it is stored in.
+ * Instances are immutable; the {@code with*} methods return copies.
+ */
+public final class CachePolicy {
+
+    /**
+     * Time to live for entries that should never expire on their own
+     */
+    public static final long NO_EXPIRY = Long.MAX_VALUE / 4;
+
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final boolean memory;
+    private final boolean disk;
+
+    private CachePolicy(long ttlMillis, long staleMillis, boolean memory, boolean disk) {
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = staleMillis;
+        this.memory = memory;
+        this.disk = disk;
+    }
+
+    /**
+     * Policy for an entry kept in both tiers that is fresh for {@code ttlMillis}
+     * and never served stale
+     * @param ttlMillis Time to live in milliseconds
+     * @return Policy
+     */
+    public static CachePolicy ttl(long ttlMillis) {
+        return new CachePolicy(Math.max(ttlMillis, 0), 0, true, true);
+    }
+
+    /**
+     * Policy for an entry kept in both tiers that never expires
+     * @return Policy
+     */
+    public static CachePolicy forever() {
+        return ttl(NO_EXPIRY);
+    }
+
+    /**
+     * Copy of this policy that may serve the entry for another
+     * {@code staleMillis} after it expires, while a refresh runs
+     * @param staleMillis Stale window in milliseconds
+     * @return Policy
+     */
+    public CachePolicy withStaleWhileRevalidate(long staleMillis) {
+        return new CachePolicy(ttlMillis, Math.max(staleMillis, 0), memory, disk);
+    }
+
+    /**
+     * Copy of this policy that keeps the entry in memory only
+     * @return Policy
+     */
+    public CachePolicy memoryOnly() {
+        return new CachePolicy(ttlMillis, staleMillis, true, false);
+    }
+
+    /**
+     * Copy of this policy that keeps the entry on disk only
+     * @return Policy
+     */
+    public CachePolicy diskOnly() {
+        return new CachePolicy(ttlMillis, staleMillis, false, true);
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public long getStaleMillis() {
+        return staleMillis;
+    }
+
+    public boolean isMemory() {
+        return memory;
+    }
+
+    public boolean isDisk() {
+        return disk;
+    }
+
+    /**
+     * Absolute time after which an entry written at {@code now} is stale
+     */
+    long expiresAt(long now) {
+        return saturatedAdd(now, ttlMillis);
+    }
+
+    /**
+     * Absolute time after which an entry written at {@code now} can no longer be served
+     */
+    long staleUntil(long now) {
+        return saturatedAdd(expiresAt(now), staleMillis);
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long result = a + b;
+        return result < a ? Long.MAX_VALUE : result;
+    }
+}
@@ -0,0 +1,115 @@
+package com.ds.eventwish.data.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Point-in-time counters of a {@link TieredCache}. Counts are cumulative
+ * since the process started.
+ */
+public final class CacheStats {
+    private final long memoryHits;
+    private final long diskHits;
+    private final long misses;
+    private final long evictions;
+    private final long evictedBytes;
+    private final long rejectedBytes;
+    private final int memoryBytes;
+    private final int memoryMaxBytes;
+    private final long diskBytes;
+
+    CacheStats(long memoryHits, long diskHits, long misses, long evictions, long evictedBytes,
+               long rejectedBytes, int memoryBytes, int memoryMaxBytes, long diskBytes) {
+        this.memoryHits = memoryHits;
+        this.diskHits = diskHits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.evictedBytes = evictedBytes;
+        this.rejectedBytes = rejectedBytes;
+        this.memoryBytes = memoryBytes;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.diskBytes = diskBytes;
+    }
+
+    /**
+     * @return Reads served from the memory tier
+     */
+    public long getMemoryHits() {
+        return memoryHits;
+    }
+
+    /**
+     * @return Reads served from the disk tier
+     */
+    public long getDiskHits() {
+        return diskHits;
+    }
+
+    /**
+     * @return Reads that found nothing usable in either tier
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Entries evicted from memory to stay within budget
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Bytes evicted from memory to stay within budget
+     */
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * @return Bytes of values too large to be held in memory at all
+     */
+    public long getRejectedBytes() {
+        return rejectedBytes;
+    }
+
+    /**
+     * @return Bytes currently charged against the memory budget
+     */
+    public int getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return Memory budget in bytes
+     */
+    public int getMemoryMaxBytes() {
+        return memoryMaxBytes;
+    }
+
+    /**
+     * @return Bytes used by the disk tier
+     */
+    public long getDiskBytes() {
+        return diskBytes;
+    }
+
+    /**
+     * @return Share of reads served from either tier, between 0 and 1
+     */
+    public double getHitRate() {
+        long total = memoryHits + diskHits + misses;
+        return total == 0 ? 0 : (double) (memoryHits + diskHits) / total;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "CacheStats{hits=%d memory + %d disk, misses=%d, hitRate=%.2f, evictions=%d (%d bytes), "
+                        + "rejected=%d bytes, memory=%d/%d bytes, disk=%d bytes}",
+                memoryHits, diskHits, misses, getHitRate(), evictions, evictedBytes,
+                rejectedBytes, memoryBytes, memoryMaxBytes, diskBytes);
+    }
+}
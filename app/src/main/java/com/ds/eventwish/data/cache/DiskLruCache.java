@@ -3,6 +3,8 @@ package com.ds.eventwish.data.cache;
 import android.util.Log;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
@@ -12,39 +14,176 @@ import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 /**
- * A persistent disk cache using LRU policy
+ * A persistent disk cache using LRU policy.
+ *
+ * <p>Every mutation is appended to a journal file in the cache directory so that
+ * entries and their sizes survive process death. The journal is replayed on
+ * {@link #open} and compacted in the background once it accumulates enough
+ * redundant operations. Entries are kept in access order and the least recently
+ * used ones are evicted whenever the total size exceeds {@code maxSize}.
+ *
+ * <p>The cache is safe to use from any number of threads. Lookups go through a
+ * {@link ConcurrentHashMap} without taking a lock, so readers never block each
+ * other or wait for writers. Edits to an entry are guarded by one of
+ * {@link #LOCK_STRIPES} striped locks chosen by the key's hash, so edits of
+ * unrelated keys proceed in parallel. Only the short journal append is
+ * serialized, and READ records are queued and appended in batches.
+ *
+ * <p>Journal format:
+ * <pre>
+ *     com.ds.eventwish.DiskLruCache
+ *     1
+ *     [appVersion]
+ *     [valueCount]
+ *
+ *     DIRTY key
+ *     CLEAN key 3400
+ *     READ key
+ *     REMOVE key
+ * </pre>
+ * A DIRTY line without a following CLEAN or REMOVE line for the same key
+ * marks an edit that never completed; its temporary files are deleted on open.
  */
-public class DiskLruCache {
+public class DiskLruCache implements Closeable {
     private static final String TAG = "DiskLruCache";
+
+    static final String JOURNAL_FILE = "journal";
+    static final String JOURNAL_FILE_TEMP = "journal.tmp";
+    static final String JOURNAL_FILE_BACKUP = "journal.bkp";
+    static final String MAGIC = "com.ds.eventwish.DiskLruCache";
+    static final String VERSION_1 = "1";
+    static final long ANY_SEQUENCE_NUMBER = -1;
+    static final Pattern LEGAL_KEY_PATTERN = Pattern.compile("[a-zA-Z0-9_-]{1,120}");
+
+    // Number of edit locks; must be a power of two
+    static final int LOCK_STRIPES = 32;
+
+    private static final String CLEAN = "CLEAN";
+    private static final String DIRTY = "DIRTY";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+
+    // Rebuild the journal once it holds this many lines that no longer describe live state
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+    // Queued READ records are appended to the journal once this many are pending
+    private static final int READ_RECORD_BATCH_SIZE = 64;
+
     private final File directory;
+    private final File journalFile;
+    private final File journalFileTmp;
+    private final File journalFileBackup;
+    private final int appVersion;
     private final long maxSize;
-    private long size = 0;
-    private final Map<String, Entry> entries = new HashMap<>();
     private final int valueCount;
-    private boolean closed = false;
+    private final AtomicLong size = new AtomicLong();
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger redundantOpCount = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    // Guards journalWriter; held only while appending lines or rebuilding the journal
+    private final Object journalLock = new Object();
+    private Writer journalWriter;
+
+    // Serializes evictions so concurrent trims don't both evict past maxSize
+    private final Object trimLock = new Object();
+
+    // Striped edit locks; an entry's editor and files are only mutated under its stripe
+    private final Object[] editLocks = new Object[LOCK_STRIPES];
+
+    // Keys read since the last journal write, appended lazily so get() stays lock-free
+    private final ConcurrentLinkedQueue<String> pendingReads = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingReadCount = new AtomicInteger();
+
+    // Logical clock stamped on entries when they are read or written, used for LRU ordering
+    private final AtomicLong accessClock = new AtomicLong();
+
+    // Sequence number handed to each committed edit so stale snapshots can't overwrite newer data
+    private final AtomicLong nextSequenceNumber = new AtomicLong();
+
+    // Trimming and journal compaction run on a single background thread
+    private final ThreadPoolExecutor executorService =
+            new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private final AtomicBoolean cleanupScheduled = new AtomicBoolean();
+
+    private final Callable<Void> cleanupCallable = new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+            cleanupScheduled.set(false);
+            if (closed) {
+                return null;
+            }
+            trimToSize();
+            synchronized (journalLock) {
+                if (journalWriter == null) {
+                    return null; // Closed.
+                }
+                flushPendingReads();
+                if (journalRebuildRequired()) {
+                    rebuildJournal();
+                }
+            }
+            return null;
+        }
+    };
+
     private static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
         @Override
         public void write(int b) throws IOException {
             // Do nothing
         }
-        
+
         @Override
         public void write(byte[] b, int off, int len) throws IOException {
             // Do nothing
         }
     };
-    
-    private DiskLruCache(File directory, long maxSize, int valueCount) {
+
+    private DiskLruCache(File directory, int appVersion, int valueCount, long maxSize) {
         this.directory = directory;
-        this.maxSize = maxSize;
+        this.appVersion = appVersion;
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
+        this.journalFileBackup = new File(directory, JOURNAL_FILE_BACKUP);
         this.valueCount = valueCount;
+        this.maxSize = maxSize;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            editLocks[i] = new Object();
+        }
     }
-    
+
+    /**
+     * Opens the cache in {@code directory}, creating a cache if none exists there.
+     * Existing entries are restored from the journal together with their sizes.
+     * @param directory A writable directory
+     * @param appVersion Version of the calling app; a mismatch discards the cache
+     * @param valueCount Number of values per cache entry. Must be positive.
+     * @param maxSize Maximum number of bytes this cache should use to store
+     * @return DiskLruCache instance
+     * @throws IOException if reading or writing the cache directory fails
+     */
     public static DiskLruCache open(File directory, int appVersion, int valueCount, long maxSize) throws IOException {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("maxSize <= 0");
@@ -52,176 +191,694 @@ public class DiskLruCache {
         if (valueCount <= 0) {
             throw new IllegalArgumentException("valueCount <= 0");
         }
-        
-        // Create directory if needed
-        if (!directory.exists()) {
-            directory.mkdirs();
-            if (!directory.isDirectory()) {
-                throw new IOException("Failed to create directory: " + directory);
+
+        // If a backup journal exists, use it instead
+        File backupFile = new File(directory, JOURNAL_FILE_BACKUP);
+        if (backupFile.exists()) {
+            File journalFile = new File(directory, JOURNAL_FILE);
+            if (journalFile.exists()) {
+                backupFile.delete();
+            } else {
+                renameTo(backupFile, journalFile, false);
+            }
+        }
+
+        // Prefer to pick up where we left off
+        DiskLruCache cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+        if (cache.journalFile.exists()) {
+            try {
+                cache.readJournal();
+                cache.processJournal();
+                cache.journalWriter = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(cache.journalFile, true), StandardCharsets.US_ASCII));
+                Log.d(TAG, "Restored " + cache.entries.size() + " entries (" + cache.size.get() + " bytes) from journal");
+                return cache;
+            } catch (IOException journalIsCorrupt) {
+                Log.w(TAG, "Journal in " + directory + " is corrupt, removing cache", journalIsCorrupt);
+                cache.delete();
             }
         }
-        
-        return new DiskLruCache(directory, maxSize, valueCount);
+
+        // Create a new empty cache
+        directory.mkdirs();
+        if (!directory.isDirectory()) {
+            throw new IOException("Failed to create directory: " + directory);
+        }
+        cache = new DiskLruCache(directory, appVersion, valueCount, maxSize);
+        synchronized (cache.journalLock) {
+            cache.rebuildJournal();
+        }
+        return cache;
     }
-    
-    public Editor edit(String key) throws IOException {
-        if (closed) {
-            throw new IllegalStateException("Cache is closed");
+
+    private void readJournal() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.US_ASCII))) {
+            String magic = reader.readLine();
+            String version = reader.readLine();
+            String appVersionString = reader.readLine();
+            String valueCountString = reader.readLine();
+            String blank = reader.readLine();
+            if (!MAGIC.equals(magic)
+                    || !VERSION_1.equals(version)
+                    || !Integer.toString(appVersion).equals(appVersionString)
+                    || !Integer.toString(valueCount).equals(valueCountString)
+                    || !"".equals(blank)) {
+                throw new IOException("Unexpected journal header: ["
+                        + magic + ", " + version + ", " + valueCountString + ", " + blank + "]");
+            }
+
+            int lineCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                readJournalLine(line);
+                lineCount++;
+            }
+            redundantOpCount.set(lineCount - entries.size());
+        }
+    }
+
+    private void readJournalLine(String line) throws IOException {
+        int firstSpace = line.indexOf(' ');
+        if (firstSpace == -1) {
+            throw new IOException("Unexpected journal line: " + line);
         }
-        
+
+        int keyBegin = firstSpace + 1;
+        int secondSpace = line.indexOf(' ', keyBegin);
+        final String key;
+        if (secondSpace == -1) {
+            key = line.substring(keyBegin);
+            if (firstSpace == REMOVE.length() && line.startsWith(REMOVE)) {
+                entries.remove(key);
+                return;
+            }
+        } else {
+            key = line.substring(keyBegin, secondSpace);
+        }
+
         Entry entry = entries.get(key);
         if (entry == null) {
-            entry = new Entry(directory, key);
+            entry = new Entry(key);
             entries.put(key, entry);
         }
-        
-        return new Editor(entry);
+        // Replaying the journal in order reproduces the access order of the previous run
+        entry.lastAccess = accessClock.incrementAndGet();
+
+        if (secondSpace != -1 && firstSpace == CLEAN.length() && line.startsWith(CLEAN)) {
+            String[] parts = line.substring(secondSpace + 1).split(" ");
+            entry.readable = true;
+            entry.currentEditor = null;
+            entry.lengths = parseLengths(parts);
+        } else if (secondSpace == -1 && firstSpace == DIRTY.length() && line.startsWith(DIRTY)) {
+            entry.currentEditor = new Editor(entry);
+        } else if (secondSpace == -1 && firstSpace == READ.length() && line.startsWith(READ)) {
+            // Access time was already updated above
+        } else {
+            throw new IOException("Unexpected journal line: " + line);
+        }
     }
-    
-    public InputStream getInputStream(String key, int index) throws IOException {
-        if (closed) {
-            throw new IllegalStateException("Cache is closed");
+
+    /**
+     * Computes the initial size and collects garbage as a part of opening the
+     * cache. Dirty entries are assumed to be inconsistent and will be deleted.
+     */
+    private void processJournal() throws IOException {
+        deleteIfExists(journalFileTmp);
+        long total = 0;
+        for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+            Entry entry = i.next();
+            if (entry.currentEditor == null) {
+                for (int t = 0; t < valueCount; t++) {
+                    total += entry.lengths[t];
+                }
+            } else {
+                entry.currentEditor = null;
+                for (int t = 0; t < valueCount; t++) {
+                    deleteIfExists(entry.getCleanFile(t));
+                    deleteIfExists(entry.getDirtyFile(t));
+                }
+                i.remove();
+            }
+        }
+        size.set(total);
+    }
+
+    /**
+     * Creates a new journal that omits redundant information. This replaces the
+     * current journal if it exists. Must be called with {@link #journalLock} held.
+     */
+    private void rebuildJournal() throws IOException {
+        if (journalWriter != null) {
+            journalWriter.close();
+        }
+
+        // Write entries oldest first so the next open() restores the same LRU order
+        List<Entry> ordered = entriesByAccessOrder();
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(journalFileTmp), StandardCharsets.US_ASCII))) {
+            writer.write(MAGIC);
+            writer.write("\n");
+            writer.write(VERSION_1);
+            writer.write("\n");
+            writer.write(Integer.toString(appVersion));
+            writer.write("\n");
+            writer.write(Integer.toString(valueCount));
+            writer.write("\n");
+            writer.write("\n");
+
+            for (Entry entry : ordered) {
+                if (entry.currentEditor != null) {
+                    writer.write(DIRTY + ' ' + entry.key + '\n');
+                } else if (entry.readable) {
+                    writer.write(CLEAN + ' ' + entry.key + entry.getLengths() + '\n');
+                }
+            }
+        }
+
+        if (journalFile.exists()) {
+            renameTo(journalFile, journalFileBackup, true);
+        }
+        renameTo(journalFileTmp, journalFile, false);
+        journalFileBackup.delete();
+
+        journalWriter = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(journalFile, true), StandardCharsets.US_ASCII));
+        pendingReads.clear();
+        pendingReadCount.set(0);
+        redundantOpCount.set(0);
+    }
+
+    private List<Entry> entriesByAccessOrder() {
+        List<Entry> ordered = new ArrayList<>(entries.values());
+        Collections.sort(ordered, (a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        return ordered;
+    }
+
+    private static void deleteIfExists(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Failed to delete " + file);
+        }
+    }
+
+    private static void renameTo(File from, File to, boolean deleteDestination) throws IOException {
+        if (deleteDestination) {
+            deleteIfExists(to);
+        }
+        if (!from.renameTo(to)) {
+            throw new IOException("Failed to rename " + from + " to " + to);
+        }
+    }
+
+    private Object lockFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return editLocks[h & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Appends a record to the journal. Queued READ records are written first so
+     * the journal keeps the order in which operations became visible.
+     */
+    private void appendJournal(String record, boolean flush) throws IOException {
+        synchronized (journalLock) {
+            checkNotClosed();
+            flushPendingReads();
+            journalWriter.write(record);
+            if (flush) {
+                journalWriter.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes queued READ records to the journal. Must be called with
+     * {@link #journalLock} held.
+     */
+    private void flushPendingReads() throws IOException {
+        String key;
+        while ((key = pendingReads.poll()) != null) {
+            pendingReadCount.decrementAndGet();
+            journalWriter.write(READ + ' ' + key + '\n');
         }
-        
+    }
+
+    private void scheduleCleanupIfNeeded() {
+        boolean needed = size.get() > maxSize
+                || journalRebuildRequired()
+                || pendingReadCount.get() >= READ_RECORD_BATCH_SIZE;
+        if (needed && !closed && cleanupScheduled.compareAndSet(false, true)) {
+            executorService.submit(cleanupCallable);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the entry named {@code key}, or null if it doesn't
+     * exist or is not currently readable. If a value is returned, it is moved to
+     * the head of the LRU queue. This never blocks on other readers or writers.
+     */
+    public Snapshot get(String key) throws IOException {
+        checkNotClosed();
+        validateKey(key);
+
         Entry entry = entries.get(key);
-        if (entry == null) {
+        if (entry == null || !entry.readable) {
             return null;
         }
-        
-        File file = entry.getCleanFile(index);
+
+        // Capture the published state once; a concurrent commit swaps these
+        // fields but the renamed clean files are replaced atomically.
+        long sequenceNumber = entry.sequenceNumber;
+        long[] lengths = entry.lengths;
+
+        // Open all streams eagerly to guarantee that we see a single published
+        // snapshot. If we opened streams lazily then the streams could come
+        // from different edits.
+        InputStream[] ins = new InputStream[valueCount];
         try {
-            return new FileInputStream(file);
+            for (int i = 0; i < valueCount; i++) {
+                ins[i] = new FileInputStream(entry.getCleanFile(i));
+            }
         } catch (FileNotFoundException e) {
+            // The entry was removed concurrently or a file was deleted manually
+            for (int i = 0; i < valueCount; i++) {
+                if (ins[i] != null) {
+                    closeQuietly(ins[i]);
+                } else {
+                    break;
+                }
+            }
             return null;
         }
+
+        entry.lastAccess = accessClock.incrementAndGet();
+        redundantOpCount.incrementAndGet();
+        pendingReads.offer(key);
+        pendingReadCount.incrementAndGet();
+        scheduleCleanupIfNeeded();
+
+        return new Snapshot(key, sequenceNumber, ins, lengths.clone());
     }
-    
-    public boolean remove(String key) {
-        if (closed) {
-            throw new IllegalStateException("Cache is closed");
-        }
-        
-        Entry entry = entries.remove(key);
-        if (entry == null) {
-            return false;
+
+    /**
+     * Returns an unbuffered stream for the value at {@code index} of the entry
+     * named {@code key}, or null if it doesn't exist or is not readable.
+     */
+    public InputStream getInputStream(String key, int index) throws IOException {
+        Snapshot snapshot = get(key);
+        if (snapshot == null) {
+            return null;
         }
-        
         for (int i = 0; i < valueCount; i++) {
-            File file = entry.getCleanFile(i);
-            size -= file.length();
-            file.delete();
+            if (i != index) {
+                closeQuietly(snapshot.getInputStream(i));
+            }
         }
-        
-        return true;
+        return snapshot.getInputStream(index);
     }
-    
-    public void close() throws IOException {
-        if (closed) {
-            return;
+
+    /**
+     * Returns an editor for the entry named {@code key}, or null if another
+     * edit is in progress.
+     */
+    public Editor edit(String key) throws IOException {
+        return edit(key, ANY_SEQUENCE_NUMBER);
+    }
+
+    public Editor edit(String key, long expectedSequenceNumber) throws IOException {
+        checkNotClosed();
+        validateKey(key);
+
+        synchronized (lockFor(key)) {
+            Entry entry = entries.get(key);
+            if (expectedSequenceNumber != ANY_SEQUENCE_NUMBER
+                    && (entry == null || entry.sequenceNumber != expectedSequenceNumber)) {
+                return null; // Snapshot is stale.
+            }
+            if (entry == null) {
+                entry = new Entry(key);
+                entries.put(key, entry);
+            } else if (entry.currentEditor != null) {
+                return null; // Another edit is in progress.
+            }
+
+            Editor editor = new Editor(entry);
+            entry.currentEditor = editor;
+
+            // Flush the journal before creating files to prevent file leaks
+            appendJournal(DIRTY + ' ' + key + '\n', true);
+            return editor;
         }
-        closed = true;
     }
-    
-    public void flush() throws IOException {
-        if (closed) {
-            throw new IllegalStateException("Cache is closed");
+
+    /**
+     * Returns a snapshot of the keys of all readable entries. Entries added or
+     * removed after this call are not reflected in the returned list.
+     */
+    public List<String> keys() {
+        checkNotClosed();
+        List<String> keys = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            if (entry.readable) {
+                keys.add(entry.key);
+            }
         }
+        return keys;
     }
-    
-    public boolean isClosed() {
-        return closed;
+
+    /**
+     * Returns the directory where this cache stores its data.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum number of bytes that this cache should use to store
+     * its data.
+     */
+    public long getMaxSize() {
+        return maxSize;
     }
-    
+
+    /**
+     * Returns the number of bytes currently being used to store the values in
+     * this cache. This may be greater than the max size if a background
+     * eviction is pending.
+     */
     public long size() {
-        return size;
+        return size.get();
     }
-    
-    public Snapshot get(String key) throws IOException {
-        if (closed) {
-            throw new IllegalStateException("Cache is closed");
+
+    void completeEdit(Editor editor, boolean success) throws IOException {
+        Entry entry = editor.entry;
+        synchronized (lockFor(entry.key)) {
+            if (entry.currentEditor != editor) {
+                throw new IllegalStateException();
+            }
+
+            // If this edit is creating the entry for the first time, every index must have a value
+            if (success && !entry.readable) {
+                for (int i = 0; i < valueCount; i++) {
+                    if (!editor.written[i]) {
+                        editor.abort();
+                        throw new IllegalStateException("Newly created entry didn't create value for index " + i);
+                    }
+                    if (!entry.getDirtyFile(i).exists()) {
+                        editor.abort();
+                        return;
+                    }
+                }
+            }
+
+            long[] newLengths = entry.lengths.clone();
+            for (int i = 0; i < valueCount; i++) {
+                File dirty = entry.getDirtyFile(i);
+                if (success) {
+                    if (dirty.exists()) {
+                        File clean = entry.getCleanFile(i);
+                        dirty.renameTo(clean);
+                        long oldLength = newLengths[i];
+                        long newLength = clean.length();
+                        newLengths[i] = newLength;
+                        size.addAndGet(newLength - oldLength);
+                    }
+                } else {
+                    deleteIfExists(dirty);
+                }
+            }
+
+            redundantOpCount.incrementAndGet();
+            entry.currentEditor = null;
+            if (entry.readable | success) {
+                entry.lengths = newLengths;
+                if (success) {
+                    entry.sequenceNumber = nextSequenceNumber.getAndIncrement();
+                    entry.lastAccess = accessClock.incrementAndGet();
+                }
+                entry.readable = true;
+                appendJournal(CLEAN + ' ' + entry.key + entry.getLengths() + '\n', true);
+            } else {
+                entries.remove(entry.key, entry);
+                appendJournal(REMOVE + ' ' + entry.key + '\n', true);
+            }
+        }
+
+        scheduleCleanupIfNeeded();
+    }
+
+    /**
+     * We only rebuild the journal when it will halve the size of the journal
+     * and eliminate at least 2000 ops.
+     */
+    private boolean journalRebuildRequired() {
+        int redundant = redundantOpCount.get();
+        return redundant >= REDUNDANT_OP_COMPACT_THRESHOLD
+                && redundant >= entries.size();
+    }
+
+    /**
+     * Drops the entry for {@code key} if it exists and can be removed. Entries
+     * actively being edited cannot be removed.
+     * @return true if an entry was removed
+     */
+    public boolean remove(String key) throws IOException {
+        checkNotClosed();
+        validateKey(key);
+
+        synchronized (lockFor(key)) {
+            if (!removeLocked(key)) {
+                return false;
+            }
         }
-        
+
+        scheduleCleanupIfNeeded();
+        return true;
+    }
+
+    /**
+     * Removes {@code key}. Must be called with the key's stripe lock held.
+     */
+    private boolean removeLocked(String key) throws IOException {
         Entry entry = entries.get(key);
-        if (entry == null) {
-            return null;
+        if (entry == null || entry.currentEditor != null) {
+            return false;
         }
-        
-        InputStream[] ins = new InputStream[valueCount];
+
+        long[] lengths = entry.lengths;
         for (int i = 0; i < valueCount; i++) {
-            ins[i] = new FileInputStream(entry.getCleanFile(i));
+            File file = entry.getCleanFile(i);
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Failed to delete " + file);
+            }
+            size.addAndGet(-lengths[i]);
         }
-        
-        return new Snapshot(key, 0, ins, new long[valueCount]);
+        entry.lengths = new long[valueCount];
+        entry.readable = false;
+
+        redundantOpCount.incrementAndGet();
+        entries.remove(key, entry);
+        appendJournal(REMOVE + ' ' + key + '\n', false);
+        return true;
+    }
+
+    /**
+     * Returns true if this cache has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
     }
-    
-    public Editor edit(String key, long sequenceNumber) throws IOException {
+
+    private void checkNotClosed() {
         if (closed) {
             throw new IllegalStateException("Cache is closed");
         }
-        
-        Entry entry = entries.get(key);
-        if (entry == null) {
-            entry = new Entry(directory, key);
-            entries.put(key, entry);
+    }
+
+    /**
+     * Force buffered operations to the filesystem.
+     */
+    public void flush() throws IOException {
+        checkNotClosed();
+        trimToSize();
+        synchronized (journalLock) {
+            checkNotClosed();
+            flushPendingReads();
+            journalWriter.flush();
         }
-        
-        return new Editor(entry);
     }
-    
-    public void completeEdit(Editor editor, boolean success) throws IOException {
-        Entry entry = editor.entry;
-        if (success) {
-            for (int i = 0; i < valueCount; i++) {
-                File dirty = entry.getDirtyFile(i);
-                File clean = entry.getCleanFile(i);
-                
-                if (dirty.exists()) {
-                    if (clean.exists()) {
-                        size -= clean.length();
+
+    /**
+     * Closes this cache. Stored values will remain on the filesystem.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (journalLock) {
+            if (closed || journalWriter == null) {
+                closed = true;
+                return; // Already closed.
+            }
+        }
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            Editor editor = entry.currentEditor;
+            if (editor != null) {
+                editor.abortUnlessCommitted();
+            }
+        }
+        trimToSize();
+        synchronized (journalLock) {
+            if (journalWriter == null) {
+                return;
+            }
+            flushPendingReads();
+            journalWriter.close();
+            journalWriter = null;
+            closed = true;
+        }
+        executorService.shutdown();
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits in {@code maxSize}.
+     * Entries that are being edited are skipped and retried on the next trim.
+     */
+    private void trimToSize() throws IOException {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        synchronized (trimLock) {
+            for (Entry entry : entriesByAccessOrder()) {
+                if (size.get() <= maxSize) {
+                    break;
+                }
+                synchronized (lockFor(entry.key)) {
+                    if (entries.get(entry.key) == entry) {
+                        removeLocked(entry.key);
                     }
-                    size += dirty.length();
-                    dirty.renameTo(clean);
                 }
             }
-        } else {
-            // Remove dirty files
-            for (int i = 0; i < valueCount; i++) {
-                File dirty = entry.getDirtyFile(i);
-                dirty.delete();
+        }
+    }
+
+    /**
+     * Closes the cache and deletes all of its stored values. This will delete
+     * all files in the cache directory including files that weren't created by
+     * the cache.
+     */
+    public void delete() throws IOException {
+        close();
+        deleteContents(directory);
+    }
+
+    private static void deleteContents(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
             }
+            if (!file.delete()) {
+                throw new IOException("Failed to delete file: " + file);
+            }
+        }
+    }
+
+    private void validateKey(String key) {
+        if (key == null || !LEGAL_KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Keys must match regex [a-zA-Z0-9_-]{1,120}: \"" + key + "\"");
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Convert InputStream to String
+     */
+    private static String inputStreamToString(InputStream in) throws IOException {
+        try (BufferedInputStream bufferedInputStream = new BufferedInputStream(in)) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int length;
+            while ((length = bufferedInputStream.read(buffer)) != -1) {
+                result.write(buffer, 0, length);
+            }
+            return result.toString("UTF-8");
+        }
+    }
+
+    /**
+     * Parses lengths written as decimal numbers like "10123".
+     */
+    private long[] parseLengths(String[] strings) throws IOException {
+        if (strings.length != valueCount) {
+            throw new IOException("Unexpected journal lengths: " + Arrays.toString(strings));
+        }
+        long[] lengths = new long[valueCount];
+        try {
+            for (int i = 0; i < strings.length; i++) {
+                lengths[i] = Long.parseLong(strings[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected journal lengths: " + Arrays.toString(strings));
         }
+        return lengths;
     }
-    
+
     /**
-     * Represents a cached entry on disk
+     * Represents a cached entry on disk. Fields read by {@link #get} are volatile
+     * so lookups can run without the entry's stripe lock.
      */
-    static class Entry {
-        private final File directory;
+    private final class Entry {
         private final String key;
-        private final File[] cleanFiles;
-        private final File[] dirtyFiles;
-        private boolean readable = true;
-        private Editor currentEditor;
-        
-        private Entry(File directory, String key) {
-            this.directory = directory;
+
+        // Lengths of this entry's files; replaced, never mutated, once published
+        private volatile long[] lengths;
+
+        // True if this entry has ever been published
+        private volatile boolean readable;
+
+        // The ongoing edit or null if this entry is not being edited
+        private volatile Editor currentEditor;
+
+        // The sequence number of the most recently committed edit to this entry
+        private volatile long sequenceNumber;
+
+        // Value of accessClock when this entry was last read or written
+        private volatile long lastAccess;
+
+        private Entry(String key) {
             this.key = key;
-            this.cleanFiles = new File[1]; // We're using just one value
-            this.dirtyFiles = new File[1];
-            
-            cleanFiles[0] = new File(directory, key + ".0");
-            dirtyFiles[0] = new File(directory, key + ".0.tmp");
+            this.lengths = new long[valueCount];
+        }
+
+        public String getLengths() {
+            StringBuilder result = new StringBuilder();
+            for (long size : lengths) {
+                result.append(' ').append(size);
+            }
+            return result.toString();
         }
-        
+
         public File getCleanFile(int index) {
-            return cleanFiles[index];
+            return new File(directory, key + "." + index);
         }
-        
+
         public File getDirtyFile(int index) {
-            return dirtyFiles[index];
+            return new File(directory, key + "." + index + ".tmp");
         }
     }
-    
+
+
     /**
      * A snapshot of the values for an entry.
      */
@@ -230,14 +887,14 @@ public class DiskLruCache {
         private final long sequenceNumber;
         private final InputStream[] ins;
         private final long[] lengths;
-        
+
         private Snapshot(String key, long sequenceNumber, InputStream[] ins, long[] lengths) {
             this.key = key;
             this.sequenceNumber = sequenceNumber;
             this.ins = ins;
             this.lengths = lengths;
         }
-        
+
         /**
          * Returns an editor for this snapshot's entry, or null if either the
          * entry has changed since this snapshot was created or if another edit
@@ -246,14 +903,14 @@ public class DiskLruCache {
         public Editor edit() throws IOException {
             return DiskLruCache.this.edit(key, sequenceNumber);
         }
-        
+
         /**
          * Returns the unbuffered stream with the value for {@code index}.
          */
         public InputStream getInputStream(int index) {
             return ins[index];
         }
-        
+
         /**
          * Returns the string value for {@code index}.
          */
@@ -264,42 +921,22 @@ public class DiskLruCache {
             }
             return inputStreamToString(in);
         }
-        
-        /**
-         * Convert InputStream to String
-         */
-        private String inputStreamToString(InputStream in) throws IOException {
-            BufferedInputStream bufferedInputStream = new BufferedInputStream(in);
-            ByteArrayOutputStream result = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = bufferedInputStream.read(buffer)) != -1) {
-                result.write(buffer, 0, length);
-            }
-            return result.toString("UTF-8");
-        }
-        
+
         /**
          * Returns the byte length of the value for {@code index}.
          */
         public long getLength(int index) {
             return lengths[index];
         }
-        
+
         @Override
         public void close() {
             for (InputStream in : ins) {
-                try {
-                    if (in != null) {
-                        in.close();
-                    }
-                } catch (IOException e) {
-                    // Ignore
-                }
+                closeQuietly(in);
             }
         }
     }
-    
+
     /**
      * Edits the values for an entry.
      */
@@ -308,18 +945,18 @@ public class DiskLruCache {
         private final boolean[] written;
         private boolean hasErrors;
         private boolean committed;
-        
+
         private Editor(Entry entry) {
             this.entry = entry;
             this.written = (entry.readable) ? null : new boolean[valueCount];
         }
-        
+
         /**
          * Returns an unbuffered input stream to read the last committed value,
          * or null if no value has been committed.
          */
         public InputStream newInputStream(int index) throws IOException {
-            synchronized (DiskLruCache.this) {
+            synchronized (lockFor(entry.key)) {
                 if (entry.currentEditor != this) {
                     throw new IllegalStateException();
                 }
@@ -333,7 +970,7 @@ public class DiskLruCache {
                 }
             }
         }
-        
+
         /**
          * Returns the last committed value as a string, or null if no value
          * has been committed.
@@ -345,21 +982,7 @@ public class DiskLruCache {
             }
             return null;
         }
-        
-        /**
-         * Convert InputStream to String
-         */
-        private String inputStreamToString(InputStream in) throws IOException {
-            BufferedInputStream bufferedInputStream = new BufferedInputStream(in);
-            ByteArrayOutputStream result = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = bufferedInputStream.read(buffer)) != -1) {
-                result.write(buffer, 0, length);
-            }
-            return result.toString("UTF-8");
-        }
-        
+
         /**
          * Returns a new unbuffered output stream to write the value at
          * {@code index}. If the underlying output stream encounters errors
@@ -373,7 +996,7 @@ public class DiskLruCache {
                         + "be greater than 0 and less than the maximum value count "
                         + "of " + valueCount);
             }
-            synchronized (DiskLruCache.this) {
+            synchronized (lockFor(entry.key)) {
                 if (entry.currentEditor != this) {
                     throw new IllegalStateException();
                 }
@@ -397,7 +1020,7 @@ public class DiskLruCache {
                 return new FaultHidingOutputStream(outputStream);
             }
         }
-        
+
         /**
          * Sets the value at {@code index} to {@code value}.
          */
@@ -405,11 +1028,11 @@ public class DiskLruCache {
             if (value == null) {
                 throw new IllegalArgumentException("value == null");
             }
-            OutputStream outputStream = newOutputStream(index);
-            outputStream.write(value.getBytes("UTF-8"));
-            outputStream.close();
+            try (OutputStream outputStream = newOutputStream(index)) {
+                outputStream.write(value.getBytes(StandardCharsets.UTF_8));
+            }
         }
-        
+
         /**
          * Commits this edit so it is visible to readers.  This releases the
          * edit lock so another edit may be started on the same key.
@@ -423,7 +1046,7 @@ public class DiskLruCache {
             }
             committed = true;
         }
-        
+
         /**
          * Aborts this edit. This releases the edit lock so another edit may be
          * started on the same key.
@@ -431,7 +1054,7 @@ public class DiskLruCache {
         public void abort() throws IOException {
             completeEdit(this, false);
         }
-        
+
         public void abortUnlessCommitted() {
             if (!committed) {
                 try {
@@ -441,12 +1064,12 @@ public class DiskLruCache {
                 }
             }
         }
-        
+
         private class FaultHidingOutputStream extends FilterOutputStream {
             private FaultHidingOutputStream(OutputStream out) {
                 super(out);
             }
-            
+
             @Override
             public void write(int oneByte) {
                 try {
@@ -455,7 +1078,7 @@ public class DiskLruCache {
                     hasErrors = true;
                 }
             }
-            
+
             @Override
             public void write(byte[] buffer, int offset, int length) {
                 try {
@@ -464,7 +1087,7 @@ public class DiskLruCache {
                     hasErrors = true;
                 }
             }
-            
+
             @Override
             public void close() {
                 try {
@@ -473,7 +1096,7 @@ public class DiskLruCache {
                     hasErrors = true;
                 }
             }
-            
+
             @Override
             public void flush() {
                 try {
@@ -484,4 +1107,4 @@ public class DiskLruCache {
             }
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.ds.eventwish.data.cache;
+
+import androidx.annotation.NonNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+
+/**
+ * Estimates the heap retained by a parsed Gson tree, so that JSON held in the
+ * memory tier is charged for what it really costs rather than for the length
+ * of its text.
+ *
+ * <p>Sizes follow ART's object layout: an 8-byte header, 4-byte references
+ * and 8-byte alignment. Strings are counted at two bytes per char, which
+ * over-estimates ASCII text that ART stores compressed; erring high keeps the
+ * budget honest on devices without string compression.
+ */
+final class JsonWeigher {
+
+    private static final int OBJECT_HEADER = 8;
+    private static final int REFERENCE = 4;
+
+    // ART strings hold their chars inline after the count and hash fields
+    private static final int STRING_HEADER = OBJECT_HEADER + 4 + 4;
+    private static final int ARRAY_HEADER = OBJECT_HEADER + 4;
+
+    // JsonPrimitive: header and value reference
+    private static final int PRIMITIVE_SHALLOW = align(OBJECT_HEADER + REFERENCE);
+
+    // Gson's LazilyParsedNumber wraps the number's text
+    private static final int NUMBER_SHALLOW = align(OBJECT_HEADER + REFERENCE);
+
+    // JsonObject and its LinkedTreeMap, including the map's header node
+    private static final int OBJECT_SHALLOW = align(OBJECT_HEADER + REFERENCE) + 48 + 48;
+
+    // LinkedTreeMap.Node: seven references, height and a flag
+    private static final int MEMBER_NODE = align(OBJECT_HEADER + 7 * REFERENCE + 4 + 1);
+
+    // JsonArray and its ArrayList
+    private static final int ARRAY_SHALLOW = align(OBJECT_HEADER + REFERENCE) + align(OBJECT_HEADER + REFERENCE + 4 + 4);
+
+    private JsonWeigher() {
+        // Utility class
+    }
+
+    /**
+     * Estimate the bytes retained by a JSON tree
+     * @param root Root of the tree
+     * @return Estimated size in bytes, saturated at {@link Integer#MAX_VALUE}
+     */
+    static int weigh(@NonNull JsonElement root) {
+        long total = 0;
+        // Walk iteratively; cached templates can nest deeply
+        ArrayDeque<JsonElement> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            JsonElement element = pending.pop();
+            if (element.isJsonObject()) {
+                JsonObject object = element.getAsJsonObject();
+                total += OBJECT_SHALLOW;
+                for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+                    total += MEMBER_NODE + weighString(member.getKey());
+                    pending.push(member.getValue());
+                }
+            } else if (element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                // ArrayList grows by half, so its backing array is usually partly empty
+                int capacity = array.size() + (array.size() >> 1);
+                total += ARRAY_SHALLOW + align(ARRAY_HEADER + (long) capacity * REFERENCE);
+                for (JsonElement item : array) {
+                    pending.push(item);
+                }
+            } else if (element.isJsonPrimitive()) {
+                total += weighPrimitive(element.getAsJsonPrimitive());
+            }
+            // JsonNull is a shared singleton
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    private static long weighPrimitive(JsonPrimitive primitive) {
+        if (primitive.isBoolean()) {
+            return PRIMITIVE_SHALLOW; // Boolean.TRUE and FALSE are shared
+        }
+        if (primitive.isNumber()) {
+            // Parsed numbers keep their text; numbers added in code are boxed
+            return PRIMITIVE_SHALLOW + NUMBER_SHALLOW + weighString(primitive.getAsString());
+        }
+        return PRIMITIVE_SHALLOW + weighString(primitive.getAsString());
+    }
+
+    private static long weighString(String value) {
+        return align(STRING_HEADER + 2L * value.length());
+    }
+
+    private static int align(long size) {
+        return (int) ((size + 7) & ~7L);
+    }
+}
@@ -1,71 +1,38 @@
 package com.ds.eventwish.data.cache;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Log;
-import android.util.LruCache;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.ds.eventwish.utils.AppExecutors;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
-
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FilterOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+
 import java.util.concurrent.TimeUnit;
 
 /**
- * Cache for resources with memory and disk caching
+ * Cache for JSON resources, backed by the shared {@link TieredCache} so that
+ * its entries count against the app-wide memory and disk budgets
  */
 public class ResourceCache {
     private static final String TAG = "ResourceCache";
-    
-    // Cache sizes
-    private static final int MEMORY_CACHE_SIZE = 4 * 1024 * 1024; // 4MB
-    private static final int DISK_CACHE_SIZE = 20 * 1024 * 1024; // 20MB
-    
-    // Cache directories
-    private static final String DISK_CACHE_DIR = "resource_cache";
-    
+
+    // Namespace of this cache's keys in the shared cache
+    private static final String NAMESPACE = "resource:";
+
     // Default expiration time
     private static final long DEFAULT_EXPIRATION = TimeUnit.HOURS.toMillis(1); // 1 hour
-    
+
+    // How long an expired value may still be served while it is refreshed
+    private static final long STALE_WINDOW = TimeUnit.DAYS.toMillis(7);
+
     // Singleton instance
     private static volatile ResourceCache instance;
-    
-    // Memory cache
-    private final LruCache<String, CacheEntry<JsonObject>> memoryCache;
-    
+
     // Dependencies
-    private final Context context;
-    private final AppExecutors executors;
+    private final TieredCache cache;
     private final Gson gson;
-    
-    // Expiration times
-    private final Map<String, Long> expirationTimes = new HashMap<>();
-    
+
     /**
      * Get the singleton instance of ResourceCache
      * @param context Application context
@@ -81,80 +48,17 @@ public class ResourceCache {
         }
         return instance;
     }
-    
+
     /**
-     * Private constructor to initialize caches
+     * Private constructor
      * @param context Application context
      */
     private ResourceCache(Context context) {
-        this.context = context;
-        this.executors = AppExecutors.getInstance();
+        this.cache = TieredCache.getInstance(context);
         this.gson = new Gson();
-        
-        // Initialize memory cache
-        memoryCache = new LruCache<String, CacheEntry<JsonObject>>(MEMORY_CACHE_SIZE) {
-            @Override
-            protected int sizeOf(String key, CacheEntry<JsonObject> value) {
-                // Rough estimate of size in bytes
-                return value.toString().length() * 2;
-            }
-        };
-        
-        // Initialize disk cache
-        File cacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
-        if (!cacheDir.exists()) {
-            cacheDir.mkdirs();
-        }
-        
         Log.d(TAG, "ResourceCache initialized");
-        
-        // Start cleanup task
-        startCleanupTask();
-    }
-    
-    /**
-     * Start a periodic task to clean up expired cache entries
-     */
-    private void startCleanupTask() {
-        executors.diskIO().execute(() -> {
-            try {
-                // Clean up expired entries
-                cleanupExpiredEntries();
-                
-                // Schedule next cleanup
-                executors.mainThread().execute(() -> {
-                    android.os.Handler handler = new android.os.Handler();
-                    handler.postDelayed(() -> startCleanupTask(), TimeUnit.HOURS.toMillis(1));
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Error during cache cleanup", e);
-            }
-        });
-    }
-    
-    /**
-     * Clean up expired cache entries
-     */
-    private void cleanupExpiredEntries() {
-        long now = System.currentTimeMillis();
-        
-        // Clean up memory cache
-        List<String> keysToRemove = new ArrayList<>();
-        synchronized (memoryCache) {
-            for (Map.Entry<String, Long> entry : expirationTimes.entrySet()) {
-                if (entry.getValue() < now) {
-                    keysToRemove.add(entry.getKey());
-                }
-            }
-            
-            for (String key : keysToRemove) {
-                memoryCache.remove(key);
-                expirationTimes.remove(key);
-                Log.d(TAG, "Removed expired entry from memory cache: " + key);
-            }
-        }
     }
-    
+
     /**
      * Put a value in the cache
      * @param key Cache key
@@ -166,23 +70,18 @@ public class ResourceCache {
         if (key == null || value == null) {
             return;
         }
-        
+
         JsonObject jsonObject;
         if (value instanceof JsonObject) {
             jsonObject = (JsonObject) value;
         } else {
             jsonObject = gson.toJsonTree(value).getAsJsonObject();
         }
-        
-        // Add to memory cache
-        long expiration = System.currentTimeMillis() + expirationTime;
-        CacheEntry<JsonObject> entry = new CacheEntry<>(jsonObject, expiration);
-        synchronized (memoryCache) {
-            memoryCache.put(key, entry);
-            expirationTimes.put(key, expiration);
-        }
+
+        cache.put(NAMESPACE + key, jsonObject, CacheCodecs.JSON_OBJECT,
+                CachePolicy.ttl(expirationTime).withStaleWhileRevalidate(STALE_WINDOW));
     }
-    
+
     /**
      * Put a value in the cache with default expiration time
      * @param key Cache key
@@ -192,7 +91,7 @@ public class ResourceCache {
     public <T> void put(String key, T value) {
         put(key, value, DEFAULT_EXPIRATION);
     }
-    
+
     /**
      * Get a value from the cache
      * @param key Cache key
@@ -205,32 +104,46 @@ public class ResourceCache {
         if (key == null) {
             return null;
         }
-        
-        // Try memory cache first
-        CacheEntry<JsonObject> entry;
-        synchronized (memoryCache) {
-            entry = memoryCache.get(key);
+
+        JsonObject value = cache.get(NAMESPACE + key, CacheCodecs.JSON_OBJECT);
+        if (value == null) {
+            Log.d(TAG, "Cache miss: " + key);
+            return null;
         }
-        
-        if (entry != null) {
-            if (entry.isExpired()) {
-                // Remove expired entry
-                synchronized (memoryCache) {
-                    memoryCache.remove(key);
-                    expirationTimes.remove(key);
-                }
-                Log.d(TAG, "Memory cache entry expired: " + key);
-                return null;
-            }
-            
-            Log.d(TAG, "Cache hit (memory): " + key);
-            return (T) entry.getValue();
+
+        Log.d(TAG, "Cache hit: " + key);
+        return (T) value;
+    }
+
+    /**
+     * Get a fresh value from memory only. Unlike {@link #get}, this never reads
+     * the disk, so it is safe on the main thread.
+     * @param key Cache key
+     * @return Cached value or null if not in memory or expired
+     */
+    @Nullable
+    public JsonObject getIfPresentInMemory(String key) {
+        if (key == null) {
+            return null;
         }
-        
-        Log.d(TAG, "Cache miss: " + key);
-        return null;
+
+        return cache.getIfPresentInMemory(NAMESPACE + key);
     }
-    
+
+    /**
+     * Get a value that may have expired but is still within its stale window
+     * @param key Cache key
+     * @return Value with its freshness, or null if not found
+     */
+    @Nullable
+    public TieredCache.CacheResult<JsonObject> getEntry(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        return cache.getEntry(NAMESPACE + key, CacheCodecs.JSON_OBJECT);
+    }
+
     /**
      * Remove a value from the cache
      * @param key Cache key
@@ -239,16 +152,11 @@ public class ResourceCache {
         if (key == null) {
             return;
         }
-        
-        // Remove from memory cache
-        synchronized (memoryCache) {
-            memoryCache.remove(key);
-            expirationTimes.remove(key);
-        }
-        
+
+        cache.remove(NAMESPACE + key);
         Log.d(TAG, "Removed from cache: " + key);
     }
-    
+
     /**
      * Remove all values with a specific prefix
      * @param prefix Key prefix
@@ -257,38 +165,18 @@ public class ResourceCache {
         if (prefix == null) {
             return;
         }
-        
-        // Remove from memory cache
-        List<String> keysToRemove = new ArrayList<>();
-        synchronized (memoryCache) {
-            for (Map.Entry<String, Long> entry : expirationTimes.entrySet()) {
-                if (entry.getKey().startsWith(prefix)) {
-                    keysToRemove.add(entry.getKey());
-                }
-            }
-            
-            for (String key : keysToRemove) {
-                memoryCache.remove(key);
-                expirationTimes.remove(key);
-            }
-        }
-        
-        Log.d(TAG, "Removed " + keysToRemove.size() + " entries with prefix: " + prefix);
+
+        cache.removeByPrefix(NAMESPACE + prefix);
     }
-    
+
     /**
      * Clear the entire cache
      */
     public void clear() {
-        // Clear memory cache
-        synchronized (memoryCache) {
-            memoryCache.evictAll();
-            expirationTimes.clear();
-        }
-        
+        cache.removeByPrefix(NAMESPACE);
         Log.d(TAG, "Cache cleared");
     }
-    
+
     /**
      * Check if a key exists in the cache
      * @param key Cache key
@@ -298,69 +186,31 @@ public class ResourceCache {
         if (key == null) {
             return false;
         }
-        
-        // Check memory cache first
-        CacheEntry<JsonObject> entry;
-        synchronized (memoryCache) {
-            entry = memoryCache.get(key);
-        }
-        
-        if (entry != null) {
-            if (entry.isExpired()) {
-                // Remove expired entry
-                synchronized (memoryCache) {
-                    memoryCache.remove(key);
-                    expirationTimes.remove(key);
-                }
-                return false;
-            }
-            return true;
-        }
-        
-        return false;
+
+        return cache.contains(NAMESPACE + key);
     }
-    
+
     /**
-     * Get the size of the memory cache
+     * Get the size of the shared memory cache
      * @return Size in bytes
      */
     public int getMemoryCacheSize() {
-        synchronized (memoryCache) {
-            return memoryCache.size();
-        }
+        return cache.getMemoryCacheSize();
     }
-    
+
     /**
-     * Get the size of the disk cache
-     * @return Size in bytes
+     * Get hit, miss and eviction counters of the shared cache
+     * @return Snapshot of the counters
      */
-    public long getDiskCacheSize() {
-        return 0; // Disk cache is now managed by a separate file
+    public CacheStats getStats() {
+        return cache.getStats();
     }
-    
+
     /**
-     * Cache entry with expiration time
-     * @param <T> Type of value
+     * Get the size of the shared disk cache
+     * @return Size in bytes
      */
-    private static class CacheEntry<T> {
-        private final T value;
-        private final long expiration;
-        
-        public CacheEntry(T value, long expiration) {
-            this.value = value;
-            this.expiration = expiration;
-        }
-        
-        public T getValue() {
-            return value;
-        }
-        
-        public long getExpiration() {
-            return expiration;
-        }
-        
-        public boolean isExpired() {
-            return System.currentTimeMillis() > expiration;
-        }
+    public long getDiskCacheSize() {
+        return cache.getDiskCacheSize();
     }
-} 
\ No newline at end of file
+}
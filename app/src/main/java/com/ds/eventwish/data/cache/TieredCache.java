@@ -0,0 +1,821 @@
+package com.ds.eventwish.data.cache;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ds.eventwish.utils.AppExecutors;
+import com.ds.eventwish.utils.ExpiryScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide two-tier cache shared by every cache entry point in the app.
+ *
+ * <p>All values share one memory budget (an {@link LruCache} weighed in bytes)
+ * and one disk budget (a {@link DiskLruCache}). Values are converted to bytes
+ * for the disk tier by a {@link CacheCodec} and written in the binary
+ * {@link CacheEntryFormat}. Each entry carries its own
+ * {@link CachePolicy}, which controls its time to live, how long it may be
+ * served stale while it is revalidated, and which tiers hold it.
+ *
+ * <p>Callers namespace their keys (for example {@code "resource:"}) so that
+ * they can clear their own entries with {@link #removeByPrefix}.
+ */
+public class TieredCache {
+    private static final String TAG = "TieredCache";
+
+    // Cache sizes
+    private static final int MAX_MEMORY_CACHE_SIZE = 16 * 1024 * 1024; // 16MB
+    private static final int MEMORY_CACHE_HEAP_DIVISOR = 8; // An eighth of the heap
+    private static final int LOW_RAM_MEMORY_CACHE_HEAP_DIVISOR = 16;
+
+    // Values larger than this share of the memory budget are only kept on disk
+    private static final int MAX_MEMORY_ENTRY_DIVISOR = 8;
+    private static final long DISK_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+
+    // Cache directories
+    private static final String DISK_CACHE_DIR = "tiered_cache";
+    // Bumped whenever the entry format changes so that old entries are discarded on open
+    private static final int DISK_CACHE_VERSION = 2;
+
+    // Directories and preferences used by the caches this one replaced
+    private static final String[] LEGACY_CACHE_DIRS = {"resource_cache", "disk_cache"};
+    private static final String LEGACY_PREFS_NAME = "eventwish_cache";
+
+    // Minimum spacing of the sweeps that drop expired entries from memory, so
+    // that entries expiring close together are swept in one go
+    private static final long MIN_SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+    // Singleton instance
+    private static volatile TieredCache instance;
+
+    // Memory tier
+    private final LruCache<String, MemoryEntry> memoryCache;
+    private final int maxMemoryEntrySize;
+
+    // Disk tier, null if it could not be opened
+    @Nullable
+    private final DiskLruCache diskCache;
+
+    // Dependencies
+    private final Context context;
+    private final AppExecutors executors;
+
+    // Records queued for the disk tier; readers see them before they land and removals cancel them
+    private final Map<String, DiskRecord> pendingWrites = new ConcurrentHashMap<>();
+
+    // Keys with a stale-while-revalidate refresh in flight
+    private final Map<String, Boolean> revalidating = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final AtomicLong rejectedBytes = new AtomicLong();
+
+    // Next memory sweep registered with the shared scheduler; guarded by sweepLock
+    private final Object sweepLock = new Object();
+    @Nullable
+    private ExpiryScheduler.Timeout sweepTimeout;
+    private long sweepAt = Long.MAX_VALUE;
+    private long lastSweepAt;
+
+    /**
+     * Loads a fresh value for a stale entry
+     * @param <T> Type of value
+     */
+    public interface Revalidator<T> {
+        /**
+         * Load a fresh value. Called on a background thread.
+         * @return Fresh value, or null to keep serving the stale one
+         * @throws Exception If loading fails
+         */
+        @Nullable
+        T load() throws Exception;
+    }
+
+    /**
+     * A value read from the cache together with its freshness
+     * @param <T> Type of value
+     */
+    public static final class CacheResult<T> {
+        private final T value;
+        private final boolean stale;
+
+        CacheResult(T value, boolean stale) {
+            this.value = value;
+            this.stale = stale;
+        }
+
+        @NonNull
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return True if the entry has outlived its time to live but is still
+         * inside its stale-while-revalidate window
+         */
+        public boolean isStale() {
+            return stale;
+        }
+    }
+
+    /**
+     * Get the singleton instance of TieredCache
+     * @param context Application context
+     * @return TieredCache instance
+     */
+    public static TieredCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TieredCache.class) {
+                if (instance == null) {
+                    instance = new TieredCache(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Private constructor to initialize both tiers
+     * @param context Application context
+     */
+    private TieredCache(Context context) {
+        this.context = context;
+        this.executors = AppExecutors.getInstance();
+
+        int memoryCacheSize = computeMemoryCacheSize(context);
+        maxMemoryEntrySize = memoryCacheSize / MAX_MEMORY_ENTRY_DIVISOR;
+        memoryCache = new LruCache<String, MemoryEntry>(memoryCacheSize) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull MemoryEntry value) {
+                return value.weight;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, @NonNull String key,
+                                        @NonNull MemoryEntry oldValue, @Nullable MemoryEntry newValue) {
+                if (evicted) {
+                    evictions.incrementAndGet();
+                    evictedBytes.addAndGet(oldValue.weight);
+                }
+            }
+        };
+        context.registerComponentCallbacks(new MemoryPressureCallbacks());
+
+        DiskLruCache disk = null;
+        try {
+            File cacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+            disk = DiskLruCache.open(cacheDir, DISK_CACHE_VERSION, 1, DISK_CACHE_SIZE);
+            Log.d(TAG, "Disk cache opened at " + cacheDir.getAbsolutePath() + " with " + disk.size() + " bytes");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open disk cache, continuing memory-only", e);
+        }
+        diskCache = disk;
+
+        Log.d(TAG, "TieredCache initialized with memory budget " + memoryCacheSize
+                + " bytes and disk budget " + DISK_CACHE_SIZE + " bytes");
+
+        executors.diskIO().execute(this::deleteLegacyCaches);
+    }
+
+    /**
+     * Size the memory tier against the heap the system grants this app, which
+     * is smaller than the VM's maximum on most devices and much smaller on
+     * low-RAM ones
+     * @param context Application context
+     * @return Memory budget in bytes
+     */
+    private static int computeMemoryCacheSize(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null) {
+            return (int) Math.min(Runtime.getRuntime().maxMemory() / MEMORY_CACHE_HEAP_DIVISOR, MAX_MEMORY_CACHE_SIZE);
+        }
+        long heapSize = activityManager.getMemoryClass() * 1024L * 1024L;
+        int divisor = activityManager.isLowRamDevice()
+                ? LOW_RAM_MEMORY_CACHE_HEAP_DIVISOR : MEMORY_CACHE_HEAP_DIVISOR;
+        return (int) Math.min(heapSize / divisor, MAX_MEMORY_CACHE_SIZE);
+    }
+
+    /**
+     * Make sure a memory sweep is registered no later than {@code deadline}.
+     * Disk entries are checked when they are read and otherwise age out
+     * through LRU eviction, so only the memory tier is swept.
+     * @param deadline Wall-clock time at which an entry leaves its stale window
+     */
+    private void scheduleSweep(long deadline) {
+        if (deadline - System.currentTimeMillis() >= CachePolicy.NO_EXPIRY) {
+            return; // Never expires
+        }
+        synchronized (sweepLock) {
+            long at = Math.max(deadline, lastSweepAt + MIN_SWEEP_INTERVAL);
+            if (at >= sweepAt) {
+                return; // An earlier sweep will pick this entry up
+            }
+            if (sweepTimeout != null) {
+                sweepTimeout.cancel();
+            }
+            sweepAt = at;
+            long delay = at - System.currentTimeMillis();
+            sweepTimeout = ExpiryScheduler.getInstance().schedule(delay, executors.diskIO(), this::sweep);
+        }
+    }
+
+    private void sweep() {
+        synchronized (sweepLock) {
+            sweepTimeout = null;
+            sweepAt = Long.MAX_VALUE;
+            lastSweepAt = System.currentTimeMillis();
+        }
+        try {
+            clearExpired();
+        } catch (Exception e) {
+            Log.e(TAG, "Error during cache cleanup", e);
+        }
+    }
+
+    /**
+     * Put a value in both tiers allowed by {@code policy}
+     * @param key Cache key, including the caller's namespace
+     * @param value Value to cache
+     * @param codec Codec used for the disk tier and for weighing
+     * @param policy Expiry and tier policy
+     * @param <T> Type of value
+     */
+    public <T> void put(@NonNull final String key, @NonNull final T value,
+                        @NonNull final CacheCodec<T> codec, @NonNull final CachePolicy policy) {
+        final long now = System.currentTimeMillis();
+        final long expiresAt = policy.expiresAt(now);
+        final long staleUntil = policy.staleUntil(now);
+
+        final byte[] payload;
+        if (policy.isDisk()) {
+            try {
+                payload = codec.encode(value);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to encode value for key: " + key, e);
+                return;
+            }
+        } else {
+            payload = null;
+        }
+
+        if (policy.isMemory()) {
+            int weight = codec.weigh(value, payload != null ? payload.length : -1);
+            putInMemoryTier(key, new MemoryEntry(value, expiresAt, staleUntil, weight));
+        } else {
+            memoryCache.remove(key);
+        }
+
+        if (payload != null && diskCache != null) {
+            final DiskRecord record = new DiskRecord(new CacheEntryFormat.Header(
+                    key, codec.typeTag(), policy.isMemory(), expiresAt, staleUntil, payload.length), payload);
+            pendingWrites.put(key, record);
+            executors.diskIO().execute(() -> {
+                if (pendingWrites.get(key) != record) {
+                    return; // Superseded by a newer write or removed
+                }
+                writeToDisk(record);
+                if (!pendingWrites.remove(key, record) && !pendingWrites.containsKey(key)) {
+                    // Removed while the write was in flight
+                    removeFromDisk(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Put a value that has no disk representation, such as a bitmap, in memory
+     * @param key Cache key, including the caller's namespace
+     * @param value Value to cache
+     * @param weight Size of the value in bytes
+     * @param policy Expiry policy; its tier flags are ignored
+     */
+    public void putInMemory(@NonNull String key, @NonNull Object value, int weight, @NonNull CachePolicy policy) {
+        long now = System.currentTimeMillis();
+        putInMemoryTier(key, new MemoryEntry(value, policy.expiresAt(now), policy.staleUntil(now), Math.max(weight, 1)));
+    }
+
+    /**
+     * Get a fresh value
+     * @param key Cache key
+     * @param codec Codec used if the value has to be read from disk
+     * @param <T> Type of value
+     * @return Value, or null if missing or expired
+     */
+    @Nullable
+    public <T> T get(@NonNull String key, @NonNull CacheCodec<T> codec) {
+        CacheResult<T> result = getEntry(key, codec);
+        return result != null && !result.isStale() ? result.getValue() : null;
+    }
+
+    /**
+     * Get a value that may be stale
+     * @param key Cache key
+     * @param codec Codec used if the value has to be read from disk
+     * @param <T> Type of value
+     * @return Value with its freshness, or null if missing or past its stale window
+     */
+    @Nullable
+    public <T> CacheResult<T> getEntry(@NonNull String key, @NonNull CacheCodec<T> codec) {
+        long now = System.currentTimeMillis();
+
+        // Try memory cache first
+        MemoryEntry memoryEntry = memoryCache.get(key);
+        if (memoryEntry != null) {
+            if (now < memoryEntry.staleUntil) {
+                memoryHits.incrementAndGet();
+                return new CacheResult<>(unchecked(memoryEntry.value), now >= memoryEntry.expiresAt);
+            }
+            memoryCache.remove(key);
+        }
+
+        // Try disk cache
+        CacheResult<T> result = getFromDisk(key, codec, now);
+        if (result != null) {
+            diskHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Stale-while-revalidate read. A fresh value is returned as is. A stale
+     * value is returned immediately and a single background refresh is started
+     * for the key, however many callers ask for it in the meantime.
+     * @param key Cache key
+     * @param codec Codec used for the disk tier
+     * @param policy Policy applied to the refreshed value
+     * @param revalidator Loads a fresh value
+     * @param <T> Type of value
+     * @return Cached value, or null if there is nothing usable and the caller must load it
+     */
+    @Nullable
+    public <T> T getOrRevalidate(@NonNull final String key, @NonNull final CacheCodec<T> codec,
+                                 @NonNull final CachePolicy policy, @NonNull final Revalidator<T> revalidator) {
+        CacheResult<T> result = getEntry(key, codec);
+        if (result == null) {
+            return null;
+        }
+        if (result.isStale() && revalidating.putIfAbsent(key, Boolean.TRUE) == null) {
+            Log.d(TAG, "Serving stale value and revalidating: " + key);
+            executors.networkIO().execute(() -> {
+                try {
+                    T fresh = revalidator.load();
+                    if (fresh != null) {
+                        put(key, fresh, codec, policy);
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "Revalidation failed for key: " + key, e);
+                } finally {
+                    revalidating.remove(key);
+                }
+            });
+        }
+        return result.getValue();
+    }
+
+    /**
+     * Get a value stored with {@link #putInMemory}
+     * @param key Cache key
+     * @param <T> Type of value
+     * @return Value, or null if missing or expired
+     */
+    @Nullable
+    public <T> T getFromMemory(@NonNull String key) {
+        MemoryEntry entry = memoryCache.get(key);
+        if (entry != null && System.currentTimeMillis() >= entry.expiresAt) {
+            memoryCache.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        memoryHits.incrementAndGet();
+        return unchecked(entry.value);
+    }
+
+    /**
+     * Get a fresh value from the memory tier without reading the disk, so it
+     * may be called on the main thread. A miss is not counted, since the
+     * caller goes on to read the disk tier with {@link #get} or {@link #getEntry}.
+     * @param key Cache key
+     * @param <T> Type of value
+     * @return Value, or null if not in memory or expired
+     */
+    @Nullable
+    public <T> T getIfPresentInMemory(@NonNull String key) {
+        MemoryEntry entry = memoryCache.get(key);
+        if (entry == null || System.currentTimeMillis() >= entry.expiresAt) {
+            return null;
+        }
+        memoryHits.incrementAndGet();
+        return unchecked(entry.value);
+    }
+
+    /**
+     * Check whether a key holds a fresh value in either tier
+     * @param key Cache key
+     * @return True if the key exists and has not expired
+     */
+    public boolean contains(@NonNull String key) {
+        long now = System.currentTimeMillis();
+        MemoryEntry entry = memoryCache.get(key);
+        if (entry != null) {
+            return now < entry.expiresAt;
+        }
+        CacheEntryFormat.Header header = readHeader(key);
+        return header != null && now < header.expiresAt;
+    }
+
+    /**
+     * Remove a key from both tiers
+     * @param key Cache key
+     */
+    public void remove(@NonNull String key) {
+        memoryCache.remove(key);
+        pendingWrites.remove(key);
+        removeFromDisk(key);
+    }
+
+    /**
+     * Remove every key that starts with {@code prefix} from both tiers
+     * @param prefix Key prefix, usually a namespace
+     * @return Number of disk entries removed
+     */
+    public int removeByPrefix(@NonNull String prefix) {
+        clearMemory(prefix);
+        for (String key : new ArrayList<>(pendingWrites.keySet())) {
+            if (key.startsWith(prefix)) {
+                pendingWrites.remove(key);
+            }
+        }
+
+        // Disk keys are hashed, so match against the original key stored in each entry
+        int removed = 0;
+        if (diskCache != null) {
+            for (String diskKey : diskCache.keys()) {
+                CacheEntryFormat.Header header = readHeaderAt(diskKey);
+                if (header != null && header.key.startsWith(prefix)) {
+                    try {
+                        if (diskCache.remove(diskKey)) {
+                            removed++;
+                        }
+                    } catch (IOException e) {
+                        Log.e(TAG, "Failed to remove disk entry for key: " + header.key, e);
+                    }
+                }
+            }
+        }
+        Log.d(TAG, "Removed entries with prefix " + prefix + " (" + removed + " on disk)");
+        return removed;
+    }
+
+    /**
+     * Drop entries from memory that are past their stale window, and register
+     * a sweep for the next entry due to leave it
+     */
+    public void clearExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        long nextDeadline = Long.MAX_VALUE;
+        for (Map.Entry<String, MemoryEntry> entry : memoryCache.snapshot().entrySet()) {
+            if (now >= entry.getValue().staleUntil) {
+                memoryCache.remove(entry.getKey());
+                removed++;
+            } else {
+                nextDeadline = Math.min(nextDeadline, entry.getValue().staleUntil);
+            }
+        }
+        if (nextDeadline != Long.MAX_VALUE) {
+            scheduleSweep(nextDeadline);
+        }
+        if (removed > 0) {
+            Log.d(TAG, "Removed " + removed + " expired entries from memory cache");
+        }
+        Log.d(TAG, getStats().toString());
+    }
+
+    /**
+     * Drop entries held in memory whose key starts with {@code prefix}. Disk
+     * entries are kept.
+     * @param prefix Key prefix, usually a namespace
+     */
+    public void clearMemory(@NonNull String prefix) {
+        for (String key : memoryCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                memoryCache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get hit, miss and eviction counters along with current sizes
+     * @return Snapshot of the counters
+     */
+    @NonNull
+    public CacheStats getStats() {
+        return new CacheStats(memoryHits.get(), diskHits.get(), misses.get(), evictions.get(),
+                evictedBytes.get(), rejectedBytes.get(), memoryCache.size(), memoryCache.maxSize(),
+                getDiskCacheSize());
+    }
+
+    /**
+     * Get the bytes charged against the shared memory budget
+     * @return Size in bytes
+     */
+    public int getMemoryCacheSize() {
+        return memoryCache.size();
+    }
+
+    /**
+     * Get the bytes used by the shared disk tier
+     * @return Size in bytes
+     */
+    public long getDiskCacheSize() {
+        return diskCache != null ? diskCache.size() : 0;
+    }
+
+    /**
+     * Put an entry in memory unless it would crowd out most of the tier
+     */
+    private void putInMemoryTier(String key, MemoryEntry entry) {
+        if (entry.weight > maxMemoryEntrySize) {
+            memoryCache.remove(key);
+            rejectedBytes.addAndGet(entry.weight);
+            Log.d(TAG, "Value too large for memory cache (" + entry.weight + " bytes): " + key);
+            return;
+        }
+        memoryCache.put(key, entry);
+        scheduleSweep(entry.staleUntil);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unchecked(Object value) {
+        return (T) value;
+    }
+
+    private void writeToDisk(DiskRecord record) {
+        if (diskCache == null) {
+            return;
+        }
+        DiskLruCache.Editor editor = null;
+        try {
+            editor = diskCache.edit(hashKey(record.header.key));
+            if (editor == null) {
+                return; // Another write to the same key is in progress
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(editor.newOutputStream(0)))) {
+                CacheEntryFormat.write(out, record.header, record.payload);
+            }
+            editor.commit();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write disk entry for key: " + record.header.key, e);
+            if (editor != null) {
+                editor.abortUnlessCommitted();
+            }
+        }
+    }
+
+    /**
+     * Read a value from the disk tier, or from a write still queued for it.
+     * The header is checked before any of the payload is read, and the payload
+     * is decoded straight from the entry's stream.
+     */
+    @Nullable
+    private <T> CacheResult<T> getFromDisk(String key, CacheCodec<T> codec, long now) {
+        if (diskCache == null) {
+            return null;
+        }
+        CacheEntryFormat.Header header;
+        T value = null;
+        DiskRecord pending = pendingWrites.get(key);
+        try {
+            if (pending != null) {
+                header = pending.header;
+                if (isReadable(header, codec, now)) {
+                    value = codec.decode(new ByteArrayInputStream(pending.payload), header.payloadLength);
+                }
+            } else {
+                try (DiskLruCache.Snapshot snapshot = diskCache.get(hashKey(key))) {
+                    if (snapshot == null) {
+                        return null;
+                    }
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(snapshot.getInputStream(0)));
+                    header = CacheEntryFormat.readHeader(in);
+                    if (!header.key.equals(key)) {
+                        return null; // Hash collision
+                    }
+                    if (isReadable(header, codec, now)) {
+                        InputStream payload = CacheEntryFormat.payloadStream(in, header);
+                        value = codec.decode(payload, header.payloadLength);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read disk entry, dropping it: " + key, e);
+            removeFromDisk(key);
+            return null;
+        }
+
+        if (value == null) {
+            // Entries written by another codec are left for their owner
+            if (pending == null && now >= header.staleUntil) {
+                removeFromDisk(key);
+            }
+            return null;
+        }
+
+        // Put back in memory cache
+        if (header.inMemory) {
+            int weight = codec.weigh(value, header.payloadLength);
+            putInMemoryTier(key, new MemoryEntry(value, header.expiresAt, header.staleUntil, weight));
+        }
+        return new CacheResult<>(value, now >= header.expiresAt);
+    }
+
+    private static boolean isReadable(CacheEntryFormat.Header header, CacheCodec<?> codec, long now) {
+        if (header.typeTag != codec.typeTag()) {
+            Log.w(TAG, "Disk entry " + header.key + " has type " + header.typeTag
+                    + ", expected " + codec.typeTag());
+            return false;
+        }
+        return now < header.staleUntil;
+    }
+
+    /**
+     * Read only the header of a key's disk entry
+     */
+    @Nullable
+    private CacheEntryFormat.Header readHeader(String key) {
+        if (diskCache == null) {
+            return null;
+        }
+        DiskRecord pending = pendingWrites.get(key);
+        if (pending != null) {
+            return pending.header;
+        }
+        CacheEntryFormat.Header header = readHeaderAt(hashKey(key));
+        if (header != null && !header.key.equals(key)) {
+            return null; // Hash collision
+        }
+        return header;
+    }
+
+    @Nullable
+    private CacheEntryFormat.Header readHeaderAt(String diskKey) {
+        try (DiskLruCache.Snapshot snapshot = diskCache.get(diskKey)) {
+            if (snapshot == null) {
+                return null;
+            }
+            return CacheEntryFormat.readHeader(
+                    new DataInputStream(new BufferedInputStream(snapshot.getInputStream(0))));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read disk entry " + diskKey, e);
+            return null;
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        if (diskCache == null) {
+            return;
+        }
+        try {
+            diskCache.remove(hashKey(key));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to remove disk entry for key: " + key, e);
+        }
+    }
+
+    /**
+     * Delete the storage of the caches this one replaced
+     */
+    private void deleteLegacyCaches() {
+        for (String name : LEGACY_CACHE_DIRS) {
+            File dir = new File(context.getCacheDir(), name);
+            if (dir.exists() && deleteRecursively(dir)) {
+                Log.d(TAG, "Deleted legacy cache directory: " + name);
+            }
+        }
+        if (context.deleteSharedPreferences(LEGACY_PREFS_NAME)) {
+            Log.d(TAG, "Deleted legacy cache preferences");
+        }
+    }
+
+    private static boolean deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        return file.delete();
+    }
+
+    /**
+     * Hash a key to make it suitable for the disk cache
+     * @param key Original key
+     * @return Hex MD5 of the key
+     */
+    @NonNull
+    private static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Fallback to a simple hash if MD5 is not available
+            return "h" + Integer.toHexString(key.hashCode());
+        }
+    }
+
+    /**
+     * Shrinks the memory tier when the system runs low on memory
+     */
+    private final class MemoryPressureCallbacks implements ComponentCallbacks2 {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                memoryCache.evictAll();
+            } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+                memoryCache.trimToSize(memoryCache.maxSize() / 2);
+            } else {
+                return;
+            }
+            Log.d(TAG, "Trimmed memory cache for level " + level + ": " + getStats());
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            // Not affected
+        }
+
+        @Override
+        public void onLowMemory() {
+            memoryCache.evictAll();
+        }
+    }
+
+    /**
+     * Entry held in the memory tier
+     */
+    private static final class MemoryEntry {
+        final Object value;
+        final long expiresAt;
+        final long staleUntil;
+        final int weight;
+
+        MemoryEntry(Object value, long expiresAt, long staleUntil, int weight) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.staleUntil = staleUntil;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Entry queued for the disk tier
+     */
+    private static final class DiskRecord {
+        final CacheEntryFormat.Header header;
+        final byte[] payload;
+
+        DiskRecord(CacheEntryFormat.Header header, byte[] payload) {
+            this.header = header;
+            this.payload = payload;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.ds.eventwish.data.converter.CategoryIconConverter;
@@ -16,6 +17,7 @@ import com.ds.eventwish.data.model.Category;
 import com.ds.eventwish.data.model.SharedWish;
 import com.ds.eventwish.data.model.Template;
 import com.ds.eventwish.data.local.entity.AdUnitEntity;
+import com.ds.eventwish.data.local.entity.TemplateSyncStateEntity;
 import com.ds.eventwish.data.local.dao.AdUnitDao;
 
 /**
@@ -27,9 +29,10 @@ import com.ds.eventwish.data.local.dao.AdUnitDao;
         Template.class,
         SharedWish.class,
         Category.class,
-        AdUnitEntity.class
+        AdUnitEntity.class,
+        TemplateSyncStateEntity.class
     },
-    version = 1,
+    version = 3,
     exportSchema = true
 )
 @TypeConverters({
@@ -48,6 +51,63 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract SharedWishDao sharedWishDao();
     public abstract CategoryDao categoryDao();
     public abstract AdUnitDao adUnitDao();
+
+    /**
+     * Migration from version 1 to 2: the template table becomes the offline
+     * catalog. Its foreign key to category is dropped, since categories are
+     * not stored here, and it gains a (category, created_at) index for
+     * category pages. Adds the template_sync_state table.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 1 to 2");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `template_new` (`id` TEXT NOT NULL, " +
+                "`title` TEXT, `description` TEXT, `content` TEXT, `category_id` TEXT, `tags` TEXT, " +
+                "`created_at` INTEGER, `updated_at` INTEGER, `is_featured` INTEGER NOT NULL DEFAULT 0, " +
+                "`is_visible` INTEGER NOT NULL DEFAULT 1, `view_count` INTEGER NOT NULL DEFAULT 0, " +
+                "`share_count` INTEGER NOT NULL DEFAULT 0, `like_count` INTEGER NOT NULL DEFAULT 0, " +
+                "`category` TEXT, `recipient_name` TEXT, `sender_name` TEXT, `short_code` TEXT, " +
+                "`html_content` TEXT, `css_content` TEXT, `js_content` TEXT, `preview_url` TEXT, " +
+                "`thumbnail_url` TEXT, `status` INTEGER NOT NULL, `category_icon` TEXT, " +
+                "`type` TEXT DEFAULT 'html', `recommended` INTEGER NOT NULL DEFAULT 0, PRIMARY KEY(`id`))");
+            database.execSQL("INSERT INTO `template_new` SELECT * FROM `template`");
+            database.execSQL("DROP TABLE `template`");
+            database.execSQL("ALTER TABLE `template_new` RENAME TO `template`");
+
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_category_id` ON `template` (`category_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_created_at` ON `template` (`created_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_category_created_at` ON `template` (`category`, `created_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_updated_at` ON `template` (`updated_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_is_featured` ON `template` (`is_featured`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_is_visible` ON `template` (`is_visible`)");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `template_sync_state` (" +
+                "`query_key` TEXT NOT NULL, `next_page` INTEGER NOT NULL, " +
+                "`end_reached` INTEGER NOT NULL, `last_refreshed_at` INTEGER NOT NULL, " +
+                "PRIMARY KEY(`query_key`))");
+        }
+    };
+
+    /**
+     * Migration from version 2 to 3: adds the trending_score column and
+     * indexes for the most used and trending sorts. Sync states are now
+     * keyed by category, sort and time window, so the old ones are dropped.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 2 to 3");
+
+            database.execSQL("ALTER TABLE `template` ADD COLUMN `trending_score` REAL NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_share_count_created_at` ON `template` (`share_count`, `created_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_category_share_count_created_at` ON `template` (`category`, `share_count`, `created_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_trending_score_created_at` ON `template` (`trending_score`, `created_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_template_category_trending_score_created_at` ON `template` (`category`, `trending_score`, `created_at`)");
+            database.execSQL("DELETE FROM `template_sync_state`");
+        }
+    };
     
     /**
      * Get the singleton database instance
@@ -78,7 +138,7 @@ public abstract class AppDatabase extends RoomDatabase {
                     Log.d(TAG, "Database opened");
                 }
             })
-            .addMigrations() // Will add migrations as needed
+            .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
             .fallbackToDestructiveMigration() // Only during development
             .build();
     }
@@ -8,10 +8,18 @@ import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
+import com.ds.eventwish.data.local.entity.TemplateSyncStateEntity;
 import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.data.model.TemplateQuery;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Data Access Object for Template entity
@@ -72,4 +80,183 @@ public interface TemplateDao {
     @Transaction
     @Query("SELECT DISTINCT category FROM template")
     LiveData<List<String>> getAllCategories();
+
+    /**
+     * Load a page of the local catalog for a query. Each sort order and
+     * category filter reads its own index, so a page only scans the rows
+     * it returns. Without a time window, templates the server sent without
+     * a creation time are listed too.
+     * @param query Category, sort order and time window
+     * @param since Earliest creation time in the window, from {@link TemplateQuery.TimeRange#getStart}
+     * @param limit Page size
+     * @param offset Number of templates before the page
+     * @return Templates of the page
+     */
+    default List<Template> loadPage(TemplateQuery query, long since, int limit, int offset) {
+        String category = query.getCategory();
+        Long start = since == Long.MIN_VALUE ? null : since;
+        switch (query.getSort()) {
+            case OLDEST:
+                return category == null ? loadOldest(start, limit, offset)
+                    : loadOldestInCategory(category, start, limit, offset);
+            case MOST_USED:
+                return category == null ? loadMostUsed(start, limit, offset)
+                    : loadMostUsedInCategory(category, start, limit, offset);
+            case TRENDING:
+                return category == null ? loadTrending(start, limit, offset)
+                    : loadTrendingInCategory(category, start, limit, offset);
+            case NEWEST:
+            default:
+                return category == null ? loadNewest(start, limit, offset)
+                    : loadNewestInCategory(category, start, limit, offset);
+        }
+    }
+
+    @Query("SELECT * FROM template WHERE (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+    List<Template> loadNewest(Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE category = :category AND (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+    List<Template> loadNewestInCategory(String category, Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    List<Template> loadOldest(Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE category = :category AND (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    List<Template> loadOldestInCategory(String category, Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY share_count DESC, created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+    List<Template> loadMostUsed(Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE category = :category AND (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY share_count DESC, created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+    List<Template> loadMostUsedInCategory(String category, Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY trending_score DESC, created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+    List<Template> loadTrending(Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE category = :category AND (:since IS NULL OR created_at >= :since) " +
+           "ORDER BY trending_score DESC, created_at DESC, id DESC LIMIT :limit OFFSET :offset")
+    List<Template> loadTrendingInCategory(String category, Long since, int limit, int offset);
+
+    @Query("SELECT * FROM template WHERE id IN (:ids)")
+    List<Template> getTemplatesByIds(List<String> ids);
+
+    @Upsert
+    void upsertAll(List<Template> templates);
+
+    @Query("DELETE FROM template WHERE created_at < :newerThan AND created_at > :olderThan AND id NOT IN (:ids)")
+    int deleteUnlisted(long newerThan, long olderThan, List<String> ids);
+
+    @Query("DELETE FROM template WHERE category = :category AND created_at < :newerThan AND created_at > :olderThan AND id NOT IN (:ids)")
+    int deleteUnlistedInCategory(String category, long newerThan, long olderThan, List<String> ids);
+
+    @Query("SELECT * FROM template_sync_state WHERE query_key = :queryKey")
+    TemplateSyncStateEntity getSyncState(String queryKey);
+
+    @Upsert
+    void upsertSyncState(TemplateSyncStateEntity state);
+
+    @Query("DELETE FROM template_sync_state")
+    void deleteSyncStates();
+
+    /**
+     * Merge a page of the server catalog into the local catalog and advance
+     * the sync state of its query.
+     *
+     * When the server lists templates newest first, stored templates created
+     * between the first and last template of the page that the page no
+     * longer lists have been removed from the server, and are deleted. Other
+     * sort orders do not cover a contiguous time range, so their pages are
+     * only upserted. Upserts leave the rest of the catalog, and shared
+     * wishes referencing templates, untouched.
+     * @param query Query the page was fetched for
+     * @param createdAfter Start of the time window the page was fetched for,
+     *                     or {@link Long#MIN_VALUE} when it was not filtered by time
+     * @param page Server page number, from 1
+     * @param templates Templates of the page, in server order
+     * @param hasMore Whether the server has pages after this one
+     * @return Number of templates that were new or changed since they were stored
+     */
+    @Transaction
+    default int mergePage(TemplateQuery query, long createdAfter, int page, List<Template> templates, boolean hasMore) {
+        List<Template> listed = new ArrayList<>(templates.size());
+        List<String> ids = new ArrayList<>(templates.size());
+        for (Template template : templates) {
+            if (template != null && template.getId() != null) {
+                listed.add(template);
+                ids.add(template.getId());
+            }
+        }
+
+        int changed = 0;
+        if (!listed.isEmpty()) {
+            Map<String, Date> storedVersions = new HashMap<>();
+            for (Template stored : getTemplatesByIds(ids)) {
+                storedVersions.put(stored.getId(), stored.getUpdatedAt());
+            }
+            for (Template template : listed) {
+                if (!storedVersions.containsKey(template.getId()) ||
+                        !Objects.equals(storedVersions.get(template.getId()), template.getUpdatedAt())) {
+                    changed++;
+                }
+            }
+            upsertAll(listed);
+
+            if (query.getSort() == TemplateQuery.Sort.NEWEST && isNewestFirst(listed)) {
+                long newerThan = page == 1 ? Long.MAX_VALUE : listed.get(0).getCreatedAt().getTime();
+                long olderThan;
+                if (hasMore) {
+                    olderThan = listed.get(listed.size() - 1).getCreatedAt().getTime();
+                } else {
+                    // The last page ends at the time window, not at the end of the catalog
+                    olderThan = createdAfter == Long.MIN_VALUE ? Long.MIN_VALUE : createdAfter - 1;
+                }
+                if (query.getCategory() == null) {
+                    deleteUnlisted(newerThan, olderThan, ids);
+                } else {
+                    deleteUnlistedInCategory(query.getCategory(), newerThan, olderThan, ids);
+                }
+            }
+        }
+
+        String queryKey = query.getKey();
+        TemplateSyncStateEntity state = getSyncState(queryKey);
+        if (state == null) {
+            state = new TemplateSyncStateEntity(queryKey);
+        }
+        if (!hasMore) {
+            state.setNextPage(page + 1);
+            state.setEndReached(true);
+        } else if (page >= state.getNextPage()) {
+            state.setNextPage(page + 1);
+            state.setEndReached(false);
+        }
+        if (page == 1) {
+            state.setLastRefreshedAt(System.currentTimeMillis());
+        }
+        upsertSyncState(state);
+        return changed;
+    }
+
+    /**
+     * Check that every template has a creation time and that they are
+     * ordered newest first, so that a page covers a contiguous time range
+     */
+    private static boolean isNewestFirst(List<Template> templates) {
+        Date previous = null;
+        for (Template template : templates) {
+            Date createdAt = template.getCreatedAt();
+            if (createdAt == null || (previous != null && createdAt.after(previous))) {
+                return false;
+            }
+            previous = createdAt;
+        }
+        return true;
+    }
 } 
\ No newline at end of file
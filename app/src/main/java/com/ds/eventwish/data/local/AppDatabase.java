@@ -16,16 +16,23 @@ import com.ds.eventwish.data.local.converters.TemplateListConverter;
 import com.ds.eventwish.data.local.converter.JsonObjectTypeConverter;
 import com.ds.eventwish.data.local.converter.MapTypeConverter;
 import com.ds.eventwish.data.local.converter.ObjectTypeConverter;
+import com.ds.eventwish.data.local.dao.AdEventDao;
 import com.ds.eventwish.data.local.dao.AdUnitDao;
 import com.ds.eventwish.data.local.dao.CategoryClickDao;
 import com.ds.eventwish.data.local.dao.EngagementDataDao;
 import com.ds.eventwish.data.local.dao.FestivalDao;
 import com.ds.eventwish.data.local.dao.ResourceDao;
+import com.ds.eventwish.data.local.dao.SearchDao;
 import com.ds.eventwish.data.local.dao.SponsoredAdDao;
 import com.ds.eventwish.data.local.dao.UserDao;
+import com.ds.eventwish.data.local.entity.AdEventBatchEntity;
+import com.ds.eventwish.data.local.entity.AdEventEntity;
 import com.ds.eventwish.data.local.entity.AdUnitEntity;
+import com.ds.eventwish.data.local.entity.CategoryAffinityEntity;
 import com.ds.eventwish.data.local.entity.CategoryClickEntity;
 import com.ds.eventwish.data.local.entity.ResourceEntity;
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
+import com.ds.eventwish.data.local.entity.SearchIndexEntity;
 import com.ds.eventwish.data.local.entity.SponsoredAdEntity;
 import com.ds.eventwish.data.local.entity.UserEntity;
 import com.ds.eventwish.data.model.EngagementData;
@@ -39,9 +46,14 @@ import com.ds.eventwish.data.model.Festival;
         EngagementData.class,
         AdUnitEntity.class,
         CategoryClickEntity.class,
-        SponsoredAdEntity.class
+        SponsoredAdEntity.class,
+        AdEventEntity.class,
+        AdEventBatchEntity.class,
+        CategoryAffinityEntity.class,
+        SearchDocumentEntity.class,
+        SearchIndexEntity.class
     },
-    version = 7,
+    version = 15,
     exportSchema = false
 )
 @TypeConverters({
@@ -65,6 +77,8 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract AdUnitDao adUnitDao();
     public abstract CategoryClickDao categoryClickDao();
     public abstract SponsoredAdDao sponsoredAdDao();
+    public abstract AdEventDao adEventDao();
+    public abstract SearchDao searchDao();
     
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
@@ -93,7 +107,15 @@ public abstract class AppDatabase extends RoomDatabase {
                 Migrations.MIGRATION_3_4,
                 Migrations.MIGRATION_4_5,
                 Migrations.MIGRATION_5_6,
-                Migrations.MIGRATION_6_7
+                Migrations.MIGRATION_6_7,
+                Migrations.MIGRATION_7_8,
+                Migrations.MIGRATION_8_9,
+                Migrations.MIGRATION_9_10,
+                Migrations.MIGRATION_10_11,
+                Migrations.MIGRATION_11_12,
+                Migrations.MIGRATION_12_13,
+                Migrations.MIGRATION_13_14,
+                Migrations.MIGRATION_14_15
             )
             .fallbackToDestructiveMigration()
             .build();
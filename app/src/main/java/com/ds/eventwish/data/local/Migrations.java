@@ -1,11 +1,20 @@
 package com.ds.eventwish.data.local;
 
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.ds.eventwish.data.local.entity.CategoryAffinityEntity;
+import com.ds.eventwish.data.model.EngagementData;
+
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Database migrations for Room database version changes
  */
@@ -208,6 +217,248 @@ public class Migrations {
         }
     };
     
+    /**
+     * Migration from version 7 to 8
+     * - Stores resources.data as a UTF-8 JSON blob instead of converter text
+     */
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 7 to 8 (resource data as blob)");
+            migrateResourceDataToBlob(database);
+            Log.d(TAG, "Migration from version 7 to 8 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 8 to 9
+     * - Adds batch_id to engagement_data for idempotent batch uploads
+     */
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 8 to 9 (engagement batch IDs)");
+            database.execSQL("ALTER TABLE `engagement_data` ADD COLUMN `batch_id` TEXT");
+            Log.d(TAG, "Migration from version 8 to 9 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 9 to 10
+     * - Adds the ad_events ring buffer for batched impression/click reporting
+     */
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 9 to 10 (ad event queue)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `ad_events` (" +
+                    "`slot` INTEGER NOT NULL, " +
+                    "`seq` INTEGER NOT NULL, " +
+                    "`type` INTEGER NOT NULL, " +
+                    "`ad_id` TEXT NOT NULL, " +
+                    "`session_id` TEXT NOT NULL, " +
+                    "`timestamp` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`slot`))");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_ad_events_seq` ON `ad_events` (`seq`)");
+            Log.d(TAG, "Migration from version 9 to 10 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 10 to 11
+     * - Adds category_affinity table, filled from the existing engagement history
+     */
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 10 to 11 (category affinity)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `category_affinity` (" +
+                    "`category` TEXT NOT NULL, " +
+                    "`score` REAL NOT NULL, " +
+                    "`engagement_count` INTEGER NOT NULL, " +
+                    "`last_engaged_at` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`category`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_category_affinity_score` ON `category_affinity` (`score`)");
+            backfillCategoryAffinity(database);
+            Log.d(TAG, "Migration from version 10 to 11 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 11 to 12
+     * - Adds the search_document table and its search_index FTS4 index,
+     *   with the triggers that keep them in sync. The sync paths fill the
+     *   index as they store templates and festivals.
+     */
+    public static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 11 to 12 (search index)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `search_document` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`type` TEXT NOT NULL, " +
+                    "`doc_id` TEXT NOT NULL, " +
+                    "`title` TEXT, " +
+                    "`body` TEXT, " +
+                    "`weight` REAL NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_search_document_type_doc_id` " +
+                    "ON `search_document` (`type`, `doc_id`)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `search_index` USING FTS4(" +
+                    "`title` TEXT, `body` TEXT, tokenize=unicode61, content=`search_document`, prefix=`2,3`, order=DESC)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_search_index_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON `search_document` BEGIN DELETE FROM `search_index` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_search_index_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `search_document` BEGIN DELETE FROM `search_index` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_search_index_AFTER_UPDATE " +
+                    "AFTER UPDATE ON `search_document` BEGIN INSERT INTO `search_index`(`docid`, `title`, `body`) " +
+                    "VALUES (NEW.`rowid`, NEW.`title`, NEW.`body`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_search_index_AFTER_INSERT " +
+                    "AFTER INSERT ON `search_document` BEGIN INSERT INTO `search_index`(`docid`, `title`, `body`) " +
+                    "VALUES (NEW.`rowid`, NEW.`title`, NEW.`body`); END");
+            Log.d(TAG, "Migration from version 11 to 12 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 12 to 13
+     * - Adds ad_event_batch, which holds a claimed ad event batch until the
+     *   server confirms it
+     */
+    public static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 12 to 13 (ad event batches)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `ad_event_batch` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`batch_id` TEXT NOT NULL, " +
+                    "`type` INTEGER NOT NULL, " +
+                    "`ad_id` TEXT NOT NULL, " +
+                    "`session_id` TEXT NOT NULL, " +
+                    "`count` INTEGER NOT NULL, " +
+                    "`first_seen` INTEGER NOT NULL, " +
+                    "`last_seen` INTEGER NOT NULL, " +
+                    "`first_seq` INTEGER NOT NULL, " +
+                    "`last_seq` INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_ad_event_batch_batch_id` ON `ad_event_batch` (`batch_id`)");
+            Log.d(TAG, "Migration from version 12 to 13 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 13 to 14
+     * - Indexes search documents by popularity, so broad searches walk the
+     *   most popular documents instead of ranking every match
+     */
+    public static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 13 to 14 (search ranking)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_search_document_weight` " +
+                    "ON `search_document` (`weight`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_search_document_type_weight` " +
+                    "ON `search_document` (`type`, `weight`)");
+            Log.d(TAG, "Migration from version 13 to 14 completed successfully");
+        }
+    };
+    
+    /**
+     * Migration from version 14 to 15
+     * - Keeps the retry count of ad events across requeues and counts the
+     *   error responses to a claimed ad event batch
+     */
+    public static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating database from version 14 to 15 (ad event retries)");
+            database.execSQL("ALTER TABLE `ad_events` ADD COLUMN `retry_count` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `ad_event_batch` ADD COLUMN `retry_count` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `ad_event_batch` ADD COLUMN `send_failures` INTEGER NOT NULL DEFAULT 0");
+            Log.d(TAG, "Migration from version 14 to 15 completed successfully");
+        }
+    };
+    
+    /**
+     * Sum the existing engagement records into category_affinity
+     */
+    private static void backfillCategoryAffinity(SupportSQLiteDatabase database) {
+        Map<String, CategoryAffinityEntity> affinities = new HashMap<>();
+        try (Cursor cursor = database.query(
+                "SELECT category, type, engagement_score, source, timestamp FROM engagement_data " +
+                "WHERE category IS NOT NULL")) {
+            EngagementData engagement = new EngagementData();
+            while (cursor.moveToNext()) {
+                engagement.setCategory(cursor.getString(0));
+                engagement.setType(cursor.getInt(1));
+                engagement.setEngagementScore(cursor.getInt(2));
+                engagement.setSource(cursor.isNull(3) ? null : cursor.getString(3));
+                engagement.setTimestamp(cursor.getLong(4));
+                
+                CategoryAffinityEntity affinity = affinities.get(engagement.getCategory());
+                if (affinity == null) {
+                    affinity = new CategoryAffinityEntity(engagement.getCategory());
+                    affinities.put(engagement.getCategory(), affinity);
+                }
+                affinity.setScore(affinity.getScore() + CategoryAffinityEntity.contribution(engagement));
+                affinity.setEngagementCount(affinity.getEngagementCount() + 1);
+                affinity.setLastEngagedAt(Math.max(affinity.getLastEngagedAt(), engagement.getTimestamp()));
+            }
+        }
+        
+        for (CategoryAffinityEntity affinity : affinities.values()) {
+            ContentValues values = new ContentValues();
+            values.put("category", affinity.getCategory());
+            values.put("score", affinity.getScore());
+            values.put("engagement_count", affinity.getEngagementCount());
+            values.put("last_engaged_at", affinity.getLastEngagedAt());
+            database.insert("category_affinity", SQLiteDatabase.CONFLICT_REPLACE, values);
+        }
+        Log.d(TAG, "Backfilled affinity for " + affinities.size() + " categories");
+    }
+    
+    /**
+     * Migration of ResourceDatabase from version 1 to 2
+     * - Stores resources.data as a UTF-8 JSON blob instead of converter text
+     */
+    public static final Migration RESOURCE_MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            Log.d(TAG, "Migrating resource database from version 1 to 2 (resource data as blob)");
+            migrateResourceDataToBlob(database);
+            Log.d(TAG, "Migration of resource database from version 1 to 2 completed successfully");
+        }
+    };
+    
+    /**
+     * Rebuild the resources table with a BLOB data column. The stored JSON
+     * text is already UTF-8, so casting keeps its bytes as they are.
+     */
+    private static void migrateResourceDataToBlob(SupportSQLiteDatabase database) {
+        database.execSQL(
+            "CREATE TABLE IF NOT EXISTS `resources_new` (" +
+            "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "`resource_type` TEXT NOT NULL, " +
+            "`resource_key` TEXT NOT NULL, " +
+            "`data` BLOB, " +
+            "`metadata` TEXT, " +
+            "`last_updated` INTEGER NOT NULL, " +
+            "`expiration_time` INTEGER, " +
+            "`is_stale` INTEGER NOT NULL DEFAULT 0, " +
+            "`etag` TEXT)"
+        );
+        database.execSQL(
+            "INSERT INTO `resources_new` (`id`, `resource_type`, `resource_key`, `data`, `metadata`, " +
+            "`last_updated`, `expiration_time`, `is_stale`, `etag`) " +
+            "SELECT `id`, `resource_type`, `resource_key`, CAST(`data` AS BLOB), `metadata`, " +
+            "`last_updated`, `expiration_time`, `is_stale`, `etag` FROM `resources`"
+        );
+        database.execSQL("DROP TABLE `resources`");
+        database.execSQL("ALTER TABLE `resources_new` RENAME TO `resources`");
+        database.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS `index_resources_resource_type_resource_key` " +
+            "ON `resources` (`resource_type`, `resource_key`)"
+        );
+    }
+    
     /**
      * Keep a reference to the expected schema for engagement_data
      * This aids in debugging migration issues
@@ -19,7 +19,7 @@ import com.ds.eventwish.utils.AppExecutors;
 /**
  * Room database for storing resources for offline access
  */
-@Database(entities = {ResourceEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {ResourceEntity.class}, version = 2, exportSchema = false)
 @TypeConverters({DateConverter.class, JsonConverter.class})
 public abstract class ResourceDatabase extends RoomDatabase {
     private static final String TAG = "ResourceDatabase";
@@ -41,6 +41,7 @@ public abstract class ResourceDatabase extends RoomDatabase {
                             context.getApplicationContext(),
                             ResourceDatabase.class,
                             DATABASE_NAME)
+                            .addMigrations(Migrations.RESOURCE_MIGRATION_1_2)
                             .fallbackToDestructiveMigration()
                             .addCallback(new RoomDatabase.Callback() {
                                 @Override
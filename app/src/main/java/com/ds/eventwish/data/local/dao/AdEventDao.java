@@ -0,0 +1,208 @@
+package com.ds.eventwish.data.local.dao;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.ds.eventwish.data.local.entity.AdEventBatchEntity;
+import com.ds.eventwish.data.local.entity.AdEventEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for the ad_events ring buffer and the claimed batch
+ * waiting for confirmation
+ */
+@Dao
+public interface AdEventDao {
+
+    /**
+     * Write an event into its slot, replacing whatever the slot held
+     * @param event Event with slot and sequence assigned
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(AdEventEntity event);
+
+    /**
+     * Get the sequence number of the newest event
+     * @return Sequence number, or null if the queue is empty
+     */
+    @Query("SELECT MAX(seq) FROM ad_events")
+    Long getMaxSeq();
+
+    /**
+     * Count queued events
+     * @return Number of events
+     */
+    @Query("SELECT COUNT(*) FROM ad_events")
+    int count();
+
+    /**
+     * Append an event to the ring buffer. When all slots are taken the
+     * oldest event is overwritten.
+     * @param event Event to append
+     * @param capacity Number of slots
+     */
+    @Transaction
+    default void append(AdEventEntity event, int capacity) {
+        Long maxSeq = getMaxSeq();
+        // An empty queue restarts from the clock so that sequence numbers,
+        // and the batch keys derived from them, are not reused
+        long seq = maxSeq != null ? maxSeq + 1 : System.currentTimeMillis() * 1000;
+        event.setSeq(seq);
+        event.setSlot((int) (seq % capacity));
+        insert(event);
+    }
+
+    /**
+     * Collapse the oldest events into one row per (type, ad, session). Events
+     * that were already retried are kept apart from new ones, so each row
+     * carries a single retry count.
+     * @param limit Maximum number of events to read
+     * @return Aggregated events, each with the range of sequence numbers it covers
+     */
+    @Query("SELECT type, ad_id, session_id, COUNT(*) AS count, " +
+           "MIN(timestamp) AS first_seen, MAX(timestamp) AS last_seen, " +
+           "MIN(seq) AS first_seq, MAX(seq) AS last_seq, retry_count " +
+           "FROM (SELECT * FROM ad_events ORDER BY seq ASC LIMIT :limit) " +
+           "GROUP BY type, ad_id, session_id, retry_count ORDER BY last_seq ASC")
+    List<AggregatedAdEvent> getAggregated(int limit);
+
+    /**
+     * Remove events up to and including a sequence number
+     * @param seq Last sequence number to remove
+     * @return Number of events removed
+     */
+    @Query("DELETE FROM ad_events WHERE seq <= :seq")
+    int deleteThrough(long seq);
+
+    /**
+     * Store the rows of a claimed batch
+     * @param rows Aggregated rows, all with the same batch ID
+     */
+    @Insert
+    void insertBatch(List<AdEventBatchEntity> rows);
+
+    /**
+     * Get the ID of the batch that was claimed but not confirmed
+     * @return Batch ID, or null if there is none
+     */
+    @Query("SELECT batch_id FROM ad_event_batch LIMIT 1")
+    String getPendingBatchId();
+
+    /**
+     * Get the rows of a claimed batch
+     * @param batchId Batch ID
+     * @return Aggregated events of the batch
+     */
+    @Query("SELECT type, ad_id, session_id, count, first_seen, last_seen, first_seq, last_seq, retry_count " +
+           "FROM ad_event_batch WHERE batch_id = :batchId ORDER BY last_seq ASC")
+    List<AggregatedAdEvent> getBatch(String batchId);
+
+    @Query("UPDATE ad_event_batch SET send_failures = send_failures + 1 WHERE batch_id = :batchId")
+    int incrementSendFailures(String batchId);
+
+    @Query("SELECT MAX(send_failures) FROM ad_event_batch WHERE batch_id = :batchId")
+    int getSendFailures(String batchId);
+
+    /**
+     * Count an error response to a claimed batch
+     * @param batchId Batch ID
+     * @return Number of error responses to the batch so far
+     */
+    @Transaction
+    default int recordSendFailure(String batchId) {
+        incrementSendFailures(batchId);
+        return getSendFailures(batchId);
+    }
+
+    /**
+     * Remove a claimed batch once the server has it
+     * @param batchId Batch ID
+     * @return Number of rows removed
+     */
+    @Query("DELETE FROM ad_event_batch WHERE batch_id = :batchId")
+    int deleteBatch(String batchId);
+
+    /**
+     * Get the batch to report next. A batch that was claimed but not
+     * confirmed is returned again unchanged; otherwise the oldest events are
+     * aggregated into a new batch and moved out of the ring, so that later
+     * appends cannot overwrite them and change what a retry sends.
+     * @param limit Maximum number of events in a new batch
+     * @return Batch ID, or null if nothing is queued
+     */
+    @Transaction
+    default String claimBatch(int limit) {
+        String pending = getPendingBatchId();
+        if (pending != null) {
+            return pending;
+        }
+
+        List<AggregatedAdEvent> events = getAggregated(limit);
+        if (events.isEmpty()) {
+            return null;
+        }
+
+        long firstSeq = Long.MAX_VALUE;
+        long lastSeq = Long.MIN_VALUE;
+        for (AggregatedAdEvent event : events) {
+            firstSeq = Math.min(firstSeq, event.firstSeq);
+            lastSeq = Math.max(lastSeq, event.lastSeq);
+        }
+        String batchId = "ad-events-" + firstSeq + "-" + lastSeq;
+
+        List<AdEventBatchEntity> rows = new ArrayList<>(events.size());
+        for (AggregatedAdEvent event : events) {
+            AdEventBatchEntity row = new AdEventBatchEntity();
+            row.setBatchId(batchId);
+            row.setType(event.type);
+            row.setAdId(event.adId);
+            row.setSessionId(event.sessionId);
+            row.setCount(event.count);
+            row.setFirstSeen(event.firstSeen);
+            row.setLastSeen(event.lastSeen);
+            row.setFirstSeq(event.firstSeq);
+            row.setLastSeq(event.lastSeq);
+            row.setRetryCount(event.retryCount);
+            rows.add(row);
+        }
+        insertBatch(rows);
+        deleteThrough(lastSeq);
+        return batchId;
+    }
+
+    /**
+     * Remove events older than a timestamp
+     * @param cutoffTime Timestamp before which events are removed
+     * @return Number of events removed
+     */
+    @Query("DELETE FROM ad_events WHERE timestamp < :cutoffTime")
+    int deleteOlderThan(long cutoffTime);
+
+    /**
+     * Events of one type for one ad in one session
+     */
+    class AggregatedAdEvent {
+        public int type;
+        @ColumnInfo(name = "ad_id")
+        public String adId;
+        @ColumnInfo(name = "session_id")
+        public String sessionId;
+        public int count;
+        @ColumnInfo(name = "first_seen")
+        public long firstSeen;
+        @ColumnInfo(name = "last_seen")
+        public long lastSeen;
+        @ColumnInfo(name = "first_seq")
+        public long firstSeq;
+        @ColumnInfo(name = "last_seq")
+        public long lastSeq;
+        @ColumnInfo(name = "retry_count")
+        public int retryCount;
+    }
+}
@@ -6,11 +6,14 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import com.ds.eventwish.data.local.entity.CategoryAffinityEntity;
 import com.ds.eventwish.data.model.EngagementData;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Data Access Object for engagement_data table
@@ -19,34 +22,76 @@ import java.util.List;
 public interface EngagementDataDao {
     
     /**
-     * Insert an engagement record
+     * Insert an engagement record and add it to its category's affinity
      * @param engagementData The engagement data to insert
      * @return The inserted row ID
      */
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    long insert(EngagementData engagementData);
+    @Transaction
+    default long insert(EngagementData engagementData) {
+        // A replaced record no longer counts
+        EngagementData existing = getById(engagementData.getId());
+        if (existing != null) {
+            applyToAffinity(existing, -1);
+        }
+        long rowId = insertRecord(engagementData);
+        applyToAffinity(engagementData, 1);
+        return rowId;
+    }
     
     /**
-     * Insert multiple engagement records
+     * Insert multiple engagement records and add them to their categories'
+     * affinities
      * @param engagementData List of engagement data to insert
      * @return Array of inserted row IDs
      */
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    long[] insertAll(List<EngagementData> engagementData);
+    @Transaction
+    default long[] insertAll(List<EngagementData> engagementData) {
+        long[] rowIds = new long[engagementData.size()];
+        for (int i = 0; i < rowIds.length; i++) {
+            rowIds[i] = insert(engagementData.get(i));
+        }
+        return rowIds;
+    }
     
     /**
-     * Update an engagement record
+     * Update an engagement record and move its score between affinities
      * @param engagementData The engagement data to update
      */
-    @Update
-    void update(EngagementData engagementData);
+    @Transaction
+    default void update(EngagementData engagementData) {
+        EngagementData existing = getById(engagementData.getId());
+        if (existing == null) {
+            return;
+        }
+        applyToAffinity(existing, -1);
+        updateRecord(engagementData);
+        applyToAffinity(engagementData, 1);
+        deleteEmptyAffinities();
+    }
     
     /**
-     * Delete an engagement record
+     * Delete an engagement record and remove it from its category's affinity
      * @param engagementData The engagement data to delete
      */
+    @Transaction
+    default void delete(EngagementData engagementData) {
+        EngagementData existing = getById(engagementData.getId());
+        if (existing == null) {
+            return;
+        }
+        applyToAffinity(existing, -1);
+        deleteRecord(existing);
+        deleteEmptyAffinities();
+    }
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long insertRecord(EngagementData engagementData);
+    
+    @Update
+    void updateRecord(EngagementData engagementData);
+    
     @Delete
-    void delete(EngagementData engagementData);
+    void deleteRecord(EngagementData engagementData);
     
     /**
      * Get all engagement data
@@ -146,12 +191,142 @@ public interface EngagementDataDao {
     void markAsSynced(List<String> ids);
     
     /**
-     * Delete engagement data older than a certain time
+     * Mark every unsynced record as synced in one statement
+     * @return Number of rows updated
+     */
+    @Query("UPDATE engagement_data SET synced = 1 WHERE synced = 0")
+    int markAllSynced();
+    
+    /**
+     * Count records waiting to be uploaded
+     * @return Number of unsynced records
+     */
+    @Query("SELECT COUNT(*) FROM engagement_data WHERE synced = 0")
+    int getUnsyncedCount();
+    
+    /**
+     * Get the ID of a batch that was claimed but not confirmed by the server
+     * @return Batch ID, or null if there is none
+     */
+    @Query("SELECT batch_id FROM engagement_data WHERE synced = 0 AND batch_id IS NOT NULL " +
+           "ORDER BY timestamp ASC LIMIT 1")
+    String getPendingBatchId();
+    
+    /**
+     * Assign the oldest unbatched records to a batch
+     * @param batchId Batch ID
+     * @param limit Maximum number of records in the batch
+     * @return Number of records assigned
+     */
+    @Query("UPDATE engagement_data SET batch_id = :batchId WHERE id IN (" +
+           "SELECT id FROM engagement_data WHERE synced = 0 AND batch_id IS NULL " +
+           "ORDER BY timestamp ASC LIMIT :limit)")
+    int assignBatch(String batchId, int limit);
+    
+    /**
+     * Get the records of a batch
+     * @param batchId Batch ID
+     * @return Records in the batch, oldest first
+     */
+    @Query("SELECT * FROM engagement_data WHERE batch_id = :batchId ORDER BY timestamp ASC")
+    List<EngagementData> getBatch(String batchId);
+    
+    /**
+     * Mark every record of a batch as synced in one statement
+     * @param batchId Batch ID
+     * @return Number of rows updated
+     */
+    @Query("UPDATE engagement_data SET synced = 1 WHERE batch_id = :batchId")
+    int markBatchSynced(String batchId);
+    
+    /**
+     * Give up uploading a batch the server keeps rejecting. Its records stay
+     * for local use but are no longer uploaded.
+     * @param batchId Batch ID
+     * @return Number of rows updated
+     */
+    @Query("UPDATE engagement_data SET synced = 1, batch_id = NULL WHERE batch_id = :batchId")
+    int dropBatch(String batchId);
+    
+    /**
+     * Get the batch to upload next. A batch that was sent but not confirmed
+     * is returned again with the same ID, so a retry cannot double count;
+     * otherwise the oldest unsynced records form a new batch.
+     * @param limit Maximum number of records in a new batch
+     * @return Batch ID, or null if nothing is waiting
+     */
+    @Transaction
+    default String claimBatch(int limit) {
+        String pending = getPendingBatchId();
+        if (pending != null) {
+            return pending;
+        }
+        String batchId = UUID.randomUUID().toString();
+        return assignBatch(batchId, limit) > 0 ? batchId : null;
+    }
+    
+    /**
+     * Delete engagement data older than a certain time and remove it from
+     * the category affinities
      * @param cutoffTime Timestamp before which to delete data
      * @return Number of rows deleted
      */
+    @Transaction
+    default int deleteOlderThan(long cutoffTime) {
+        for (EngagementData engagement : getOlderThan(cutoffTime)) {
+            applyToAffinity(engagement, -1);
+        }
+        int deleted = deleteRecordsOlderThan(cutoffTime);
+        deleteEmptyAffinities();
+        return deleted;
+    }
+    
+    @Query("SELECT * FROM engagement_data WHERE timestamp < :cutoffTime")
+    List<EngagementData> getOlderThan(long cutoffTime);
+    
     @Query("DELETE FROM engagement_data WHERE timestamp < :cutoffTime")
-    int deleteOlderThan(long cutoffTime);
+    int deleteRecordsOlderThan(long cutoffTime);
+    
+    /**
+     * Get every category's affinity, highest score first. Scores are
+     * comparable across categories; see {@link CategoryAffinityEntity}.
+     * @return Category affinities
+     */
+    @Query("SELECT * FROM category_affinity ORDER BY score DESC")
+    List<CategoryAffinityEntity> getCategoryAffinities();
+    
+    /**
+     * Add a record's score to its category's affinity, or take it away
+     * @param engagement Engagement record
+     * @param sign 1 to add, -1 to remove
+     */
+    default void applyToAffinity(EngagementData engagement, int sign) {
+        String category = engagement.getCategory();
+        if (category == null) {
+            return;
+        }
+        double score = sign * CategoryAffinityEntity.contribution(engagement);
+        long lastEngagedAt = sign > 0 ? engagement.getTimestamp() : 0;
+        if (adjustAffinity(category, score, sign, lastEngagedAt) == 0 && sign > 0) {
+            CategoryAffinityEntity affinity = new CategoryAffinityEntity(category);
+            affinity.setScore(score);
+            affinity.setEngagementCount(1);
+            affinity.setLastEngagedAt(lastEngagedAt);
+            insertAffinity(affinity);
+        }
+    }
+    
+    @Query("UPDATE category_affinity SET score = score + :score, " +
+           "engagement_count = engagement_count + :count, " +
+           "last_engaged_at = MAX(last_engaged_at, :lastEngagedAt) " +
+           "WHERE category = :category")
+    int adjustAffinity(String category, double score, int count, long lastEngagedAt);
+    
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertAffinity(CategoryAffinityEntity affinity);
+    
+    @Query("DELETE FROM category_affinity WHERE engagement_count <= 0")
+    int deleteEmptyAffinities();
     
     /**
      * Helper class for category count results
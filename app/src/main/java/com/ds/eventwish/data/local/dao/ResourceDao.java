@@ -6,12 +6,15 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.ds.eventwish.data.local.entity.ResourceEntity;
+import com.google.gson.JsonObject;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Data Access Object for ResourceEntity
@@ -140,6 +143,59 @@ public interface ResourceDao {
     @Query("SELECT EXISTS(SELECT 1 FROM resources WHERE resource_type = :resourceType AND resource_key = :resourceKey LIMIT 1)")
     boolean resourceExists(String resourceType, String resourceKey);
 
+    /**
+     * Get the ETag of a resource without loading its data
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @return ETag, or null if the resource or its ETag is missing
+     */
+    @Query("SELECT etag FROM resources WHERE resource_type = :resourceType AND resource_key = :resourceKey")
+    String getEtag(String resourceType, String resourceKey);
+    
+    /**
+     * Get the row ID of a resource without loading its data
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @return Row ID, or null if not found
+     */
+    @Query("SELECT id FROM resources WHERE resource_type = :resourceType AND resource_key = :resourceKey")
+    Long getResourceId(String resourceType, String resourceKey);
+    
+    /**
+     * Record that the server confirmed a resource as current, leaving its data as it is
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @param lastUpdated Time of the confirmation
+     * @param expirationTime New expiration time
+     * @return Number of rows updated
+     */
+    @Query("UPDATE resources SET last_updated = :lastUpdated, expiration_time = :expirationTime, is_stale = 0 " +
+           "WHERE resource_type = :resourceType AND resource_key = :resourceKey")
+    int touchResource(String resourceType, String resourceKey, Date lastUpdated, Date expirationTime);
+    
+    /**
+     * Insert or update a resource, writing its data and ETag together so
+     * that a stored ETag always describes the stored data
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @param data Resource data
+     * @param metadata Additional metadata
+     * @param etag ETag for HTTP caching
+     * @param expirationTime Expiration time
+     */
+    @Transaction
+    default void upsert(String resourceType, String resourceKey, JsonObject data,
+                        Map<String, String> metadata, String etag, Date expirationTime) {
+        ResourceEntity resource = new ResourceEntity(resourceType, resourceKey, data, metadata, expirationTime, etag);
+        Long id = getResourceId(resourceType, resourceKey);
+        if (id != null) {
+            resource.setId(id);
+            update(resource);
+        } else {
+            insert(resource);
+        }
+    }
+
     @Query("DELETE FROM resources WHERE resource_type = :resourceType AND resource_key = :resourceKey")
     void delete(String resourceType, String resourceKey);
 
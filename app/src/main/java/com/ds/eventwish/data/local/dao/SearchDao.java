@@ -0,0 +1,119 @@
+package com.ds.eventwish.data.local.dao;
+
+import androidx.annotation.Nullable;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Access Object for the local search index
+ */
+@Dao
+public interface SearchDao {
+
+    // Bound variables per statement stay under SQLite's limit of 999
+    int MAX_IDS_PER_QUERY = 500;
+
+    /**
+     * Find documents matching a full-text query, most popular first, ranking
+     * every match.
+     *
+     * Up to {@code sortLimit} matches are read and sorted. Broader queries,
+     * such as a two-letter prefix, instead walk the documents from the most
+     * popular down and keep those that match; with that many matches, a
+     * page of results turns up early in the walk.
+     * @param match FTS4 match expression
+     * @param type Document type, or null for all types
+     * @param sortLimit Largest number of matches to read and sort
+     * @param limit Maximum number of documents
+     * @return Matching documents
+     */
+    default List<SearchDocumentEntity> search(String match, @Nullable String type, int sortLimit, int limit) {
+        if (countMatches(match) <= sortLimit) {
+            return type != null ? sortMatchesOfType(match, type, limit) : sortMatches(match, limit);
+        }
+        return type != null ? walkMatchesOfType(match, type, limit) : walkMatches(match, limit);
+    }
+
+    @Query("SELECT COUNT(*) FROM search_index WHERE search_index MATCH :match")
+    int countMatches(String match);
+
+    @Query("SELECT d.* FROM search_index CROSS JOIN search_document d ON d.id = search_index.docid " +
+           "WHERE search_index MATCH :match ORDER BY d.weight DESC, d.id DESC LIMIT :limit")
+    List<SearchDocumentEntity> sortMatches(String match, int limit);
+
+    @Query("SELECT d.* FROM search_index CROSS JOIN search_document d ON d.id = search_index.docid " +
+           "WHERE search_index MATCH :match AND d.type = :type ORDER BY d.weight DESC, d.id DESC LIMIT :limit")
+    List<SearchDocumentEntity> sortMatchesOfType(String match, String type, int limit);
+
+    @Query("SELECT * FROM search_document INDEXED BY index_search_document_weight " +
+           "WHERE id IN (SELECT docid FROM search_index WHERE search_index MATCH :match) " +
+           "ORDER BY weight DESC, id DESC LIMIT :limit")
+    List<SearchDocumentEntity> walkMatches(String match, int limit);
+
+    @Query("SELECT * FROM search_document INDEXED BY index_search_document_type_weight " +
+           "WHERE type = :type AND id IN (SELECT docid FROM search_index WHERE search_index MATCH :match) " +
+           "ORDER BY weight DESC, id DESC LIMIT :limit")
+    List<SearchDocumentEntity> walkMatchesOfType(String match, String type, int limit);
+
+    @Insert
+    void insertAll(List<SearchDocumentEntity> documents);
+
+    @Query("DELETE FROM search_document WHERE type = :type AND doc_id IN (:docIds)")
+    int deleteDocuments(String type, List<String> docIds);
+
+    @Query("DELETE FROM search_document WHERE type = :type")
+    int deleteType(String type);
+
+    @Query("SELECT COUNT(*) FROM search_document WHERE type = :type")
+    int getDocumentCount(String type);
+
+    /**
+     * Add documents of one type, replacing stored documents with the same ids
+     * @param type Document type
+     * @param documents Documents of that type
+     */
+    @Transaction
+    default void upsertDocuments(String type, List<SearchDocumentEntity> documents) {
+        for (int start = 0; start < documents.size(); start += MAX_IDS_PER_QUERY) {
+            List<SearchDocumentEntity> chunk =
+                documents.subList(start, Math.min(start + MAX_IDS_PER_QUERY, documents.size()));
+            List<String> docIds = new ArrayList<>(chunk.size());
+            for (SearchDocumentEntity document : chunk) {
+                docIds.add(document.getDocId());
+            }
+            // Delete and insert rather than REPLACE, which would skip the index's delete trigger
+            deleteDocuments(type, docIds);
+            insertAll(chunk);
+        }
+    }
+
+    /**
+     * Replace all documents of one type
+     * @param type Document type
+     * @param documents New documents of that type
+     */
+    @Transaction
+    default void replaceType(String type, List<SearchDocumentEntity> documents) {
+        deleteType(type);
+        insertAll(documents);
+    }
+
+    /**
+     * Remove documents of one type
+     * @param type Document type
+     * @param docIds Ids of the indexed items
+     */
+    @Transaction
+    default void removeDocuments(String type, List<String> docIds) {
+        for (int start = 0; start < docIds.size(); start += MAX_IDS_PER_QUERY) {
+            deleteDocuments(type, docIds.subList(start, Math.min(start + MAX_IDS_PER_QUERY, docIds.size())));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.ds.eventwish.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class for one aggregated row of a sponsored ad event batch that
+ * has been sent, or is about to be sent, but is not yet confirmed.
+ *
+ * A batch is moved out of the ad_events ring when it is claimed, so new
+ * events overwriting old slots cannot change it. Every retry sends exactly
+ * these rows under the same batch ID.
+ */
+@Entity(
+    tableName = "ad_event_batch",
+    indices = {
+        @Index(value = {"batch_id"})
+    }
+)
+public class AdEventBatchEntity {
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    private long id;
+
+    @NonNull
+    @ColumnInfo(name = "batch_id")
+    private String batchId;
+
+    @ColumnInfo(name = "type")
+    private int type;
+
+    @NonNull
+    @ColumnInfo(name = "ad_id")
+    private String adId;
+
+    @NonNull
+    @ColumnInfo(name = "session_id")
+    private String sessionId;
+
+    @ColumnInfo(name = "count")
+    private int count;
+
+    @ColumnInfo(name = "first_seen")
+    private long firstSeen;
+
+    @ColumnInfo(name = "last_seen")
+    private long lastSeen;
+
+    @ColumnInfo(name = "first_seq")
+    private long firstSeq;
+
+    @ColumnInfo(name = "last_seq")
+    private long lastSeq;
+
+    @ColumnInfo(name = "retry_count", defaultValue = "0")
+    private int retryCount;
+
+    // Error responses to this batch; the same on every row of the batch
+    @ColumnInfo(name = "send_failures", defaultValue = "0")
+    private int sendFailures;
+
+    /**
+     * Default constructor required by Room
+     */
+    public AdEventBatchEntity() {
+        this.batchId = "";
+        this.adId = "";
+        this.sessionId = "";
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(@NonNull String batchId) {
+        this.batchId = batchId;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    @NonNull
+    public String getAdId() {
+        return adId;
+    }
+
+    public void setAdId(@NonNull String adId) {
+        this.adId = adId;
+    }
+
+    @NonNull
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(@NonNull String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    public void setFirstSeen(long firstSeen) {
+        this.firstSeen = firstSeen;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public void setLastSeen(long lastSeen) {
+        this.lastSeen = lastSeen;
+    }
+
+    public long getFirstSeq() {
+        return firstSeq;
+    }
+
+    public void setFirstSeq(long firstSeq) {
+        this.firstSeq = firstSeq;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+
+    public int getSendFailures() {
+        return sendFailures;
+    }
+
+    public void setSendFailures(int sendFailures) {
+        this.sendFailures = sendFailures;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ds.eventwish.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class for a sponsored ad impression or click waiting to be
+ * reported. Rows live in a fixed number of slots: an event takes slot
+ * {@code seq % capacity}, so once the queue is full a new event replaces
+ * the oldest one instead of growing the table.
+ */
+@Entity(
+    tableName = "ad_events",
+    indices = {
+        @Index(value = {"seq"}, unique = true)
+    }
+)
+public class AdEventEntity {
+
+    public static final int TYPE_IMPRESSION = 1;
+    public static final int TYPE_CLICK = 2;
+
+    @PrimaryKey
+    @ColumnInfo(name = "slot")
+    private int slot;
+
+    @ColumnInfo(name = "seq")
+    private long seq;
+
+    @ColumnInfo(name = "type")
+    private int type;
+
+    @NonNull
+    @ColumnInfo(name = "ad_id")
+    private String adId;
+
+    @NonNull
+    @ColumnInfo(name = "session_id")
+    private String sessionId;
+
+    @ColumnInfo(name = "timestamp")
+    private long timestamp;
+
+    // Times the event was sent through the single-event endpoints and failed
+    @ColumnInfo(name = "retry_count", defaultValue = "0")
+    private int retryCount;
+
+    /**
+     * Default constructor required by Room
+     */
+    public AdEventEntity() {
+        this.adId = "";
+        this.sessionId = "";
+    }
+
+    /**
+     * Create an event that happened now. Slot and sequence are assigned
+     * when it is appended to the queue.
+     * @param type TYPE_IMPRESSION or TYPE_CLICK
+     * @param adId Ad ID
+     * @param sessionId Session the event belongs to
+     */
+    @Ignore
+    public AdEventEntity(int type, @NonNull String adId, @NonNull String sessionId) {
+        this.type = type;
+        this.adId = adId;
+        this.sessionId = sessionId;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    @NonNull
+    public String getAdId() {
+        return adId;
+    }
+
+    public void setAdId(@NonNull String adId) {
+        this.adId = adId;
+    }
+
+    @NonNull
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(@NonNull String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        this.retryCount = retryCount;
+    }
+}
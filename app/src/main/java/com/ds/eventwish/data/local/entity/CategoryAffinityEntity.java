@@ -0,0 +1,185 @@
+package com.ds.eventwish.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.ds.eventwish.data.model.EngagementData;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity class for the running engagement score of a category, kept up to
+ * date as engagement records are inserted and deleted.
+ *
+ * Scores decay exponentially with age. Each record adds
+ * {@code base * 2^((timestamp - EPOCH) / HALF_LIFE)} to its category: the
+ * weight grows with the record's timestamp instead of shrinking with its
+ * age, so stored scores never need rewriting as time passes. Every category
+ * shares the same decay factor at read time, so ranking and normalized
+ * weights can be taken from the stored scores directly.
+ */
+@Entity(
+    tableName = "category_affinity",
+    indices = {
+        @Index(value = {"score"})
+    }
+)
+public class CategoryAffinityEntity {
+
+    // Time for an engagement's weight to halve
+    public static final long HALF_LIFE_MS = TimeUnit.DAYS.toMillis(21);
+    // Reference time for growth factors (2025-01-01 UTC); doubles overflow about 58 years later
+    private static final long EPOCH_MS = 1735689600000L;
+
+    // Scoring weights
+    private static final float WEIGHT_CATEGORY_VISIT = 0.7f;
+    private static final float WEIGHT_TEMPLATE_VIEW = 1.0f;
+    private static final float WEIGHT_TEMPLATE_USE = 1.5f;
+    private static final float WEIGHT_EXPLICIT_LIKE = 2.0f;
+    private static final float WEIGHT_EXPLICIT_DISLIKE = -1.0f;
+
+    // Engagement source factors
+    private static final float SOURCE_DIRECT = 1.0f;
+    private static final float SOURCE_RECOMMENDATION = 1.2f;  // Boost recommendations that worked
+    private static final float SOURCE_SEARCH = 0.9f;
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "category")
+    private String category;
+
+    @ColumnInfo(name = "score")
+    private double score;
+
+    @ColumnInfo(name = "engagement_count")
+    private int engagementCount;
+
+    @ColumnInfo(name = "last_engaged_at")
+    private long lastEngagedAt;
+
+    /**
+     * Default constructor required by Room
+     */
+    public CategoryAffinityEntity() {
+        this.category = "";
+    }
+
+    /**
+     * Create a category with no engagements yet
+     * @param category Category name
+     */
+    @Ignore
+    public CategoryAffinityEntity(@NonNull String category) {
+        this.category = category;
+    }
+
+    /**
+     * Score an engagement record adds to its category
+     * @param engagement Engagement record
+     * @return Score, scaled by the record's growth factor
+     */
+    public static double contribution(@NonNull EngagementData engagement) {
+        return baseScore(engagement) * growthFactor(engagement.getTimestamp());
+    }
+
+    /**
+     * Growth factor of a timestamp. Dividing by the growth factor of now
+     * gives the decay factor of a record's age.
+     * @param timestamp Time in milliseconds
+     * @return 2 raised to the number of half-lives since the epoch
+     */
+    public static double growthFactor(long timestamp) {
+        return Math.pow(2, (timestamp - EPOCH_MS) / (double) HALF_LIFE_MS);
+    }
+
+    /**
+     * Score of an engagement record before time decay
+     * @param engagement Engagement record
+     * @return Type weight times engagement and source factors
+     */
+    public static float baseScore(@NonNull EngagementData engagement) {
+        // Base score based on engagement type
+        float typeWeight;
+        switch (engagement.getType()) {
+            case EngagementData.TYPE_CATEGORY_VISIT:
+                typeWeight = WEIGHT_CATEGORY_VISIT;
+                break;
+            case EngagementData.TYPE_TEMPLATE_VIEW:
+                typeWeight = WEIGHT_TEMPLATE_VIEW;
+                break;
+            case EngagementData.TYPE_TEMPLATE_USE:
+                typeWeight = WEIGHT_TEMPLATE_USE;
+                break;
+            case EngagementData.TYPE_EXPLICIT_LIKE:
+                typeWeight = WEIGHT_EXPLICIT_LIKE;
+                break;
+            case EngagementData.TYPE_EXPLICIT_DISLIKE:
+                typeWeight = WEIGHT_EXPLICIT_DISLIKE;
+                break;
+            default:
+                typeWeight = 1.0f;
+                break;
+        }
+
+        // Engagement score factor (1-5 scale)
+        float engagementFactor = engagement.getEngagementScore() / 3.0f; // Normalize around 3
+
+        // Source factor
+        float sourceFactor = 1.0f;
+        if (engagement.getSource() != null) {
+            switch (engagement.getSource()) {
+                case EngagementData.SOURCE_DIRECT:
+                    sourceFactor = SOURCE_DIRECT;
+                    break;
+                case EngagementData.SOURCE_RECOMMENDATION:
+                    sourceFactor = SOURCE_RECOMMENDATION;
+                    break;
+                case EngagementData.SOURCE_SEARCH:
+                    sourceFactor = SOURCE_SEARCH;
+                    break;
+                default:
+                    sourceFactor = 1.0f;
+                    break;
+            }
+        }
+
+        return typeWeight * engagementFactor * sourceFactor;
+    }
+
+    @NonNull
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(@NonNull String category) {
+        this.category = category;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public int getEngagementCount() {
+        return engagementCount;
+    }
+
+    public void setEngagementCount(int engagementCount) {
+        this.engagementCount = engagementCount;
+    }
+
+    public long getLastEngagedAt() {
+        return lastEngagedAt;
+    }
+
+    public void setLastEngagedAt(long lastEngagedAt) {
+        this.lastEngagedAt = lastEngagedAt;
+    }
+}
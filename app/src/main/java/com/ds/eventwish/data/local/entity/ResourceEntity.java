@@ -6,20 +6,20 @@ import androidx.room.Entity;
 import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
-import androidx.room.TypeConverters;
 
-import com.google.gson.JsonObject;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import android.util.Log;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
 
-import com.ds.eventwish.data.local.converter.ObjectTypeConverter;
-
 /**
  * Entity class for storing resources in the Room database
  */
@@ -30,6 +30,8 @@ import com.ds.eventwish.data.local.converter.ObjectTypeConverter;
     }
 )
 public class ResourceEntity {
+    private static final String TAG = "ResourceEntity";
+    
     /**
      * Primary key for the resource
      */
@@ -52,11 +54,18 @@ public class ResourceEntity {
     private String resourceKey;
     
     /**
-     * Data for the resource as JSON
+     * Data for the resource as UTF-8 JSON, stored as read from the network
+     * and parsed only when it is first asked for
      */
-    @ColumnInfo(name = "data")
-    @TypeConverters(ObjectTypeConverter.class)
-    private Object data;
+    @ColumnInfo(name = "data", typeAffinity = ColumnInfo.BLOB)
+    private byte[] rawData;
+    
+    // Parsed forms of rawData, built on first access. Parsing twice on a
+    // race is harmless, so the memos are not locked.
+    @Ignore
+    private volatile JsonObject parsedData;
+    @Ignore
+    private volatile Object typedData;
     
     /**
      * Additional metadata for the resource
@@ -104,11 +113,11 @@ public class ResourceEntity {
      * @param data Data for the resource
      */
     @Ignore
-    public ResourceEntity(@NonNull String resourceType, @NonNull String resourceKey, Object data) {
+    public ResourceEntity(@NonNull String resourceType, @NonNull String resourceKey, JsonObject data) {
         this();
         this.resourceType = resourceType;
         this.resourceKey = resourceKey;
-        this.data = data;
+        setData(data);
     }
     
     /**
@@ -124,7 +133,7 @@ public class ResourceEntity {
     public ResourceEntity(
             @NonNull String resourceType,
             @NonNull String resourceKey,
-            Object data,
+            JsonObject data,
             Map<String, String> metadata,
             Date expirationTime,
             String etag) {
@@ -163,10 +172,34 @@ public class ResourceEntity {
     }
     
     /**
-     * Get the data for this resource
-     * @return The data as an Object (may be JsonObject or LinkedTreeMap)
+     * Get the stored JSON bytes. Used by Room.
+     * @return UTF-8 JSON, or null if there is no data
      */
-    public Object getData() {
+    public byte[] getRawData() {
+        return rawData;
+    }
+    
+    /**
+     * Set the stored JSON bytes. Used by Room.
+     * @param rawData UTF-8 JSON
+     */
+    public void setRawData(byte[] rawData) {
+        this.rawData = rawData;
+        this.parsedData = null;
+        this.typedData = null;
+    }
+    
+    /**
+     * Get the data for this resource, parsing it on the first call.
+     * Avoid calling this on the main thread before the data has been parsed.
+     * @return The data, or null if there is none or it is not valid JSON
+     */
+    public JsonObject getData() {
+        JsonObject data = parsedData;
+        if (data == null && rawData != null) {
+            data = parse(rawData);
+            parsedData = data;
+        }
         return data;
     }
     
@@ -174,8 +207,41 @@ public class ResourceEntity {
      * Set the data for this resource
      * @param data The data to set
      */
-    public void setData(Object data) {
-        this.data = data;
+    public void setData(JsonObject data) {
+        this.rawData = data != null ? data.toString().getBytes(StandardCharsets.UTF_8) : null;
+        this.parsedData = data;
+        this.typedData = null;
+    }
+    
+    /**
+     * Get the data as a string without parsing it
+     * @return The JSON text, or null if there is no data
+     */
+    public String getDataAsString() {
+        return rawData != null ? new String(rawData, StandardCharsets.UTF_8) : null;
+    }
+    
+    /**
+     * Get the data bound to a model class. The result is kept, so later
+     * calls for the same class return the same instance.
+     * @param gson Gson used for binding
+     * @param type Model class
+     * @param <T> Model type
+     * @return The bound model, or null if there is no data
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getDataAs(Gson gson, Class<T> type) {
+        Object typed = typedData;
+        if (type.isInstance(typed)) {
+            return (T) typed;
+        }
+        if (rawData == null) {
+            return null;
+        }
+        // Bind straight from the bytes rather than through the JSON tree
+        T value = gson.fromJson(reader(rawData), type);
+        typedData = value;
+        return value;
     }
     
     public Map<String, String> getMetadata() {
@@ -241,8 +307,8 @@ public class ResourceEntity {
      * @param etag New ETag
      * @param expirationTime New expiration time
      */
-    public void update(Object data, String etag, Date expirationTime) {
-        this.data = data;
+    public void update(JsonObject data, String etag, Date expirationTime) {
+        setData(data);
         this.etag = etag;
         this.expirationTime = expirationTime;
         this.isStale = false;
@@ -257,6 +323,30 @@ public class ResourceEntity {
         return resourceType + ":" + resourceKey;
     }
     
+    private static JsonObject parse(byte[] json) {
+        try {
+            JsonElement element = JsonParser.parseReader(reader(json));
+            if (element.isJsonObject()) {
+                return element.getAsJsonObject();
+            }
+            // Wrap other values the way rows written by ObjectTypeConverter were read back
+            JsonObject wrapper = new JsonObject();
+            if (element.isJsonArray()) {
+                wrapper.add("array", element);
+            } else if (!element.isJsonNull()) {
+                wrapper.add("value", element);
+            }
+            return wrapper;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Stored resource data is not valid JSON", e);
+            return null;
+        }
+    }
+    
+    private static Reader reader(byte[] json) {
+        return new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8);
+    }
+    
     @Override
     public String toString() {
         return "ResourceEntity{" +
@@ -0,0 +1,132 @@
+package com.ds.eventwish.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class for a document of the local search index: a template, a
+ * festival or a category.
+ *
+ * This is the content table of {@link SearchIndexEntity}. Room keeps the
+ * full-text index in sync with it through triggers, so documents are only
+ * ever written here.
+ */
+@Entity(
+    tableName = "search_document",
+    indices = {
+        @Index(value = {"type", "doc_id"}, unique = true),
+        @Index(value = {"weight"}),
+        @Index(value = {"type", "weight"})
+    }
+)
+public class SearchDocumentEntity {
+
+    // Document types
+    public static final String TYPE_TEMPLATE = "template";
+    public static final String TYPE_FESTIVAL = "festival";
+    public static final String TYPE_CATEGORY = "category";
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    private long id;
+
+    @NonNull
+    @ColumnInfo(name = "type")
+    private String type;
+
+    // Id of the template or festival, or the category name
+    @NonNull
+    @ColumnInfo(name = "doc_id")
+    private String docId;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    // Secondary text: category, tags, description
+    @ColumnInfo(name = "body")
+    private String body;
+
+    // Popularity, log-scaled so that weights of different types are comparable
+    @ColumnInfo(name = "weight")
+    private double weight;
+
+    /**
+     * Default constructor required by Room
+     */
+    public SearchDocumentEntity() {
+        this.type = TYPE_TEMPLATE;
+        this.docId = "";
+    }
+
+    /**
+     * Create a document
+     * @param type Document type, one of the TYPE_ constants
+     * @param docId Id of the indexed item
+     * @param title Title, matched before the body
+     * @param body Secondary text
+     * @param popularity Popularity count, e.g. shares or templates; log-scaled into the weight
+     */
+    @Ignore
+    public SearchDocumentEntity(@NonNull String type, @NonNull String docId, String title, String body,
+                                double popularity) {
+        this.type = type;
+        this.docId = docId;
+        this.title = title;
+        this.body = body;
+        this.weight = Math.log1p(Math.max(0, popularity));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    @NonNull
+    public String getType() {
+        return type;
+    }
+
+    public void setType(@NonNull String type) {
+        this.type = type;
+    }
+
+    @NonNull
+    public String getDocId() {
+        return docId;
+    }
+
+    public void setDocId(@NonNull String docId) {
+        this.docId = docId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+}
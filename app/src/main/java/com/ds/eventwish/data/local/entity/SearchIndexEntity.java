@@ -0,0 +1,59 @@
+package com.ds.eventwish.data.local.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over the titles and bodies of {@link SearchDocumentEntity}.
+ *
+ * An external content FTS4 table: it stores only the index, and its rowid
+ * is the id of the document. The unicode61 tokenizer folds case and
+ * diacritics, and the 2 and 3 character prefix indexes keep the short
+ * prefix queries of search-as-you-type from scanning the term list.
+ */
+@Fts4(
+    contentEntity = SearchDocumentEntity.class,
+    tokenizer = FtsOptions.TOKENIZER_UNICODE61,
+    prefix = {2, 3},
+    order = FtsOptions.Order.DESC
+)
+@Entity(tableName = "search_index")
+public class SearchIndexEntity {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private long rowId;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    @ColumnInfo(name = "body")
+    private String body;
+
+    public long getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(long rowId) {
+        this.rowId = rowId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+}
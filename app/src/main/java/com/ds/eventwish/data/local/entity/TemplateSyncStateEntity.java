@@ -0,0 +1,85 @@
+package com.ds.eventwish.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class for how far the local template catalog has been synced with
+ * the server, per catalog query: category, sort order and time window,
+ * keyed by {@link com.ds.eventwish.data.model.TemplateQuery#getKey()}.
+ *
+ * {@code nextPage} is the next server page to append when scrolling reaches
+ * the end of the stored rows. Refreshes only re-fetch the head of the list,
+ * so this survives them and process death.
+ */
+@Entity(tableName = "template_sync_state")
+public class TemplateSyncStateEntity {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "query_key")
+    private String queryKey;
+
+    @ColumnInfo(name = "next_page")
+    private int nextPage;
+
+    @ColumnInfo(name = "end_reached")
+    private boolean endReached;
+
+    @ColumnInfo(name = "last_refreshed_at")
+    private long lastRefreshedAt;
+
+    /**
+     * Default constructor required by Room
+     */
+    public TemplateSyncStateEntity() {
+        this.queryKey = "";
+        this.nextPage = 1;
+    }
+
+    /**
+     * Create the state of a query that has not been synced yet
+     * @param queryKey Query key
+     */
+    @Ignore
+    public TemplateSyncStateEntity(@NonNull String queryKey) {
+        this.queryKey = queryKey;
+        this.nextPage = 1;
+    }
+
+    @NonNull
+    public String getQueryKey() {
+        return queryKey;
+    }
+
+    public void setQueryKey(@NonNull String queryKey) {
+        this.queryKey = queryKey;
+    }
+
+    public int getNextPage() {
+        return nextPage;
+    }
+
+    public void setNextPage(int nextPage) {
+        this.nextPage = nextPage;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    public void setEndReached(boolean endReached) {
+        this.endReached = endReached;
+    }
+
+    public long getLastRefreshedAt() {
+        return lastRefreshedAt;
+    }
+
+    public void setLastRefreshedAt(long lastRefreshedAt) {
+        this.lastRefreshedAt = lastRefreshedAt;
+    }
+}
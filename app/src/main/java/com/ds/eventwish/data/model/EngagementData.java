@@ -57,6 +57,10 @@ public class EngagementData {
     @ColumnInfo(name = "synced")
     private boolean synced;
     
+    // Upload batch this record was assigned to; kept across retries so the server can deduplicate
+    @ColumnInfo(name = "batch_id")
+    private String batchId;
+    
     /**
      * Default constructor required by Room
      */
@@ -199,6 +203,14 @@ public class EngagementData {
         this.synced = synced;
     }
     
+    public String getBatchId() {
+        return batchId;
+    }
+    
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+    
     /**
      * Get relative weight of this engagement for recommendations
      * Factors in recency, type, and explicit engagement score
@@ -5,7 +5,6 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
-import androidx.room.ForeignKey;
 import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
@@ -21,17 +20,14 @@ import java.util.List;
 
 @Entity(
     tableName = "template",
-    foreignKeys = {
-        @ForeignKey(
-            entity = Category.class,
-            parentColumns = "id",
-            childColumns = "category_id",
-            onDelete = ForeignKey.SET_NULL
-        )
-    },
     indices = {
         @Index(value = {"category_id"}),
         @Index(value = {"created_at"}),
+        @Index(value = {"category", "created_at"}),
+        @Index(value = {"share_count", "created_at"}),
+        @Index(value = {"category", "share_count", "created_at"}),
+        @Index(value = {"trending_score", "created_at"}),
+        @Index(value = {"category", "trending_score", "created_at"}),
         @Index(value = {"updated_at"}),
         @Index(value = {"is_featured"}),
         @Index(value = {"is_visible"})
@@ -91,6 +87,11 @@ public class Template {
     @SerializedName("shareCount")
     private int shareCount;
 
+    // Time-decayed share count kept by the server, for the trending sort
+    @ColumnInfo(name = "trending_score", defaultValue = "0")
+    @SerializedName("trendingScore")
+    private double trendingScore;
+
     @ColumnInfo(name = "like_count", defaultValue = "0")
     @SerializedName("likeCount")
     private int likeCount;
@@ -248,6 +249,7 @@ public class Template {
     public boolean isVisible() { return isVisible; }
     public int getViewCount() { return viewCount; }
     public int getShareCount() { return shareCount; }
+    public double getTrendingScore() { return trendingScore; }
     public int getLikeCount() { return likeCount; }
 
     // Setters
@@ -270,5 +272,6 @@ public class Template {
     public void setVisible(boolean visible) { this.isVisible = visible; }
     public void setViewCount(int viewCount) { this.viewCount = viewCount; }
     public void setShareCount(int shareCount) { this.shareCount = shareCount; }
+    public void setTrendingScore(double trendingScore) { this.trendingScore = trendingScore; }
     public void setLikeCount(int likeCount) { this.likeCount = likeCount; }
 }
@@ -0,0 +1,149 @@
+package com.ds.eventwish.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Calendar;
+import java.util.Objects;
+
+/**
+ * A query over the template catalog: category filter, sort order and
+ * creation time window.
+ *
+ * The same query is sent to the server, read from the local catalog, and
+ * keys the sync state of the catalog, so each combination of filters is
+ * paged and cached on its own.
+ */
+public final class TemplateQuery {
+
+    /**
+     * Sort order of the catalog
+     */
+    public enum Sort {
+        NEWEST("newest"),
+        OLDEST("oldest"),
+        MOST_USED("most_used"),
+        TRENDING("trending");
+
+        private final String apiValue;
+
+        Sort(String apiValue) {
+            this.apiValue = apiValue;
+        }
+
+        /**
+         * @return Value of the {@code sort} query parameter
+         */
+        public String getApiValue() {
+            return apiValue;
+        }
+    }
+
+    /**
+     * Window of creation times, ending now
+     */
+    public enum TimeRange {
+        ALL(0),
+        TODAY(0),
+        WEEK(7),
+        MONTH(30),
+        YEAR(365);
+
+        private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+        private final int days;
+
+        TimeRange(int days) {
+            this.days = days;
+        }
+
+        /**
+         * Get the earliest creation time in the window
+         * @param now Current time in milliseconds
+         * @return Start of the window in milliseconds, or {@link Long#MIN_VALUE} for {@link #ALL}
+         */
+        public long getStart(long now) {
+            switch (this) {
+                case ALL:
+                    return Long.MIN_VALUE;
+                case TODAY:
+                    Calendar calendar = Calendar.getInstance();
+                    calendar.setTimeInMillis(now);
+                    calendar.set(Calendar.HOUR_OF_DAY, 0);
+                    calendar.set(Calendar.MINUTE, 0);
+                    calendar.set(Calendar.SECOND, 0);
+                    calendar.set(Calendar.MILLISECOND, 0);
+                    return calendar.getTimeInMillis();
+                default:
+                    return now - days * DAY_MILLIS;
+            }
+        }
+    }
+
+    private final String category;
+    private final Sort sort;
+    private final TimeRange timeRange;
+
+    /**
+     * @param category Category, or null for all templates
+     * @param sort Sort order
+     * @param timeRange Creation time window
+     */
+    public TemplateQuery(@Nullable String category, @NonNull Sort sort, @NonNull TimeRange timeRange) {
+        this.category = category;
+        this.sort = sort;
+        this.timeRange = timeRange;
+    }
+
+    /**
+     * @return Query of all templates, newest first
+     */
+    @NonNull
+    public static TemplateQuery all() {
+        return new TemplateQuery(null, Sort.NEWEST, TimeRange.ALL);
+    }
+
+    @Nullable
+    public String getCategory() {
+        return category;
+    }
+
+    @NonNull
+    public Sort getSort() {
+        return sort;
+    }
+
+    @NonNull
+    public TimeRange getTimeRange() {
+        return timeRange;
+    }
+
+    /**
+     * Get the key that identifies this query in the local catalog
+     * @return Query key, e.g. {@code "Birthday|TRENDING|WEEK"}
+     */
+    @NonNull
+    public String getKey() {
+        return (category != null ? category : "") + "|" + sort.name() + "|" + timeRange.name();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TemplateQuery that = (TemplateQuery) o;
+        return Objects.equals(category, that.category) && sort == that.sort && timeRange == that.timeRange;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, sort, timeRange);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TemplateQuery{category=" + (category != null ? category : "All") +
+            ", sort=" + sort + ", timeRange=" + timeRange + "}";
+    }
+}
@@ -53,8 +53,21 @@ public class ApiClient {
     // API service
     private static ApiService apiService;
     
-    // Retrofit instance
+    // Retrofit instance shared by all services
     private static Retrofit retrofit;
+
+    // Process-wide OkHttp client
+    private static volatile OkHttpClient httpClient;
+
+    // HTTP response cache
+    private static final String HTTP_CACHE_DIR = "http_cache";
+    private static final long HTTP_CACHE_SIZE = 20 * 1024 * 1024; // 20 MB
+
+    // Connection reuse; idle connections are kept long enough to skip repeat TLS handshakes
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 16;
     
     // Context
     private static Context context;
@@ -116,60 +129,87 @@ public class ApiClient {
      * @return API service
      */
     private static ApiService createApiService() {
-        // Get API key from BuildConfig or secure storage
-        String apiKey = getApiKey();
-        Log.d(TAG, "Creating API service with API key: " + (apiKey != null ? "valid key" : "null key"));
+        Log.d(TAG, "Creating API service");
+        return getRetrofit().create(ApiService.class);
+    }
+
+    /**
+     * Create an implementation of any API interface on the shared Retrofit
+     * instance, so that every service uses the same client and connections
+     * @param service Retrofit interface
+     * @return Service implementation
+     */
+    public static <T> T createService(Class<T> service) {
+        if (context == null) {
+            throw new IllegalStateException("ApiClient not initialized. Call ApiClient.init() first");
+        }
+        return getRetrofit().create(service);
+    }
 
-        // Create Gson converter that properly handles empty arrays
-        Gson gson = new GsonBuilder()
-            .registerTypeAdapter(List.class, new EmptyListDeserializer())
-            .create();
+    private static synchronized Retrofit getRetrofit() {
+        if (retrofit == null) {
+            // Create Gson converter that properly handles empty arrays
+            Gson gson = new GsonBuilder()
+                .registerTypeAdapter(List.class, new EmptyListDeserializer())
+                .create();
 
-        // Create OkHttp client with interceptors
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+            // Create Retrofit with Gson converter; template pages are streamed without their content.
+            // Calls go through RetryingCallFactory so that retries wait on a timer, not a dispatcher thread
+            retrofit = new Retrofit.Builder()
+                .baseUrl(BASE_URL)
+                .callFactory(RetryingCallFactory.create(getHttpClient()))
+                .addConverterFactory(TemplateListConverterFactory.create(gson))
+                .addConverterFactory(GsonConverterFactory.create(gson))
+                .build();
+        }
+        return retrofit;
+    }
+
+    /**
+     * Get the process-wide OkHttp client. Every API service shares its
+     * connection pool, dispatcher and HTTP cache.
+     * @return OkHttp client
+     */
+    public static OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            synchronized (ApiClient.class) {
+                if (httpClient == null) {
+                    if (context == null) {
+                        throw new IllegalStateException("ApiClient not initialized. Call ApiClient.init() first");
+                    }
+                    httpClient = buildHttpClient();
+                }
+            }
+        }
+        return httpClient;
+    }
+
+    private static OkHttpClient buildHttpClient() {
+        ApiCredentials credentials = ApiCredentials.getInstance(context);
+
+        // Every service talks to the same host, which multiplexes requests over HTTP/2
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        Cache cache = new Cache(new File(context.getCacheDir(), HTTP_CACHE_DIR), HTTP_CACHE_SIZE);
+
+        return new OkHttpClient.Builder()
             .connectTimeout(30, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
             .retryOnConnectionFailure(true)
-            .connectionPool(new ConnectionPool(5, 30, TimeUnit.SECONDS))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .cache(cache)
             .addInterceptor(chain -> {
                 okhttp3.Request original = chain.request();
-                
-                // Build new request with API key
-                okhttp3.Request.Builder requestBuilder = original.newBuilder()
-                    .header("Content-Type", "application/json")
-                    .method(original.method(), original.body());
 
-                // Add API key and device ID if available
-                if (apiKey != null && !apiKey.isEmpty()) {
-                    requestBuilder.header("x-api-key", apiKey);
-                }
-                
-                // Add device ID for tracking and authentication
-                String deviceId = DeviceUtils.getDeviceId(context);
-                if (deviceId != null && !deviceId.isEmpty()) {
-                    requestBuilder.header("x-device-id", deviceId);
-                }
-                
-                // Add authentication token if available
-                // Safely check if SecureTokenManager is initialized
-                String authToken = null;
-                try {
-                    SecureTokenManager tokenManager = SecureTokenManager.getInstance();
-                    if (tokenManager != null) {
-                        authToken = tokenManager.getAccessToken();
-                    }
-                } catch (IllegalStateException e) {
-                    // SecureTokenManager not initialized yet
-                    Log.w(TAG, "SecureTokenManager not initialized yet: " + e.getMessage());
-                    // Continue without auth token
-                }
-                
-                if (authToken != null && !authToken.isEmpty()) {
-                    requestBuilder.header("Authorization", "Bearer " + authToken);
-                }
-                
-                okhttp3.Request request = requestBuilder.build();
+                // Credentials are decrypted once and kept as a ready-made header block
+                okhttp3.Request request = original.newBuilder()
+                    .headers(ApiCredentials.merge(original.headers(), credentials.getHeaders()))
+                    .build();
                 
                 // Offline mode handling - serve cached responses if available
                 if (!NetworkUtils.isNetworkAvailable(context)) {
@@ -187,166 +227,37 @@ public class ApiClient {
                 
                 // Log request details in debug mode
                 if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "API Request: " + request.url() +
-                          "\nAPI Key: " + (apiKey != null ? apiKey.substring(0, 10) + "..." : "null") +
-                          "\nHeaders: " + request.headers());
+                    Log.d(TAG, "API Request: " + request.url() + "\nHeaders: " + request.headers());
                 }
                 
+                // Rate limiting, server errors and network failures are retried by
+                // RetryingCallFactory, which waits without holding this thread
+                okhttp3.Response response;
                 try {
-                    // Attempt the request
-                    okhttp3.Response response = chain.proceed(request);
-                    
-                    // Handle rate limiting or server errors
-                    if (response.code() == 429) {
-                        Log.w(TAG, "Rate limited by API, waiting before retry");
-                        try {
-                            Thread.sleep(2000); // Wait 2 seconds
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            // Don't throw exception on interruption - just continue
-                            Log.w(TAG, "Thread interrupted during rate limit wait", ie);
-                        }
-                        return chain.proceed(request); // Retry once
-                    } else if (response.code() >= 500) {
-                        Log.w(TAG, "Server error " + response.code() + ", attempting retry");
-                        response.close();
-                        try {
-                            Thread.sleep(1000); // Wait 1 second
-                        } catch (InterruptedException ie2) {
-                            Thread.currentThread().interrupt();
-                            // Don't throw exception on interruption - just continue
-                            Log.w(TAG, "Thread interrupted during server error wait", ie2);
-                        }
-                        return chain.proceed(request); // Retry once
-                    }
-                    
-                    // Check for empty responses
-                    if (response.code() == 200 && response.body() != null) {
-                        String contentType = response.header("Content-Type");
-                        if (contentType != null && contentType.contains("application/json")) {
-                            // If this is a GET request for templates, check if it's empty
-                            if (request.url().toString().contains("/templates") && "GET".equals(request.method())) {
-                                try {
-                                    // Peek at the response body without consuming it
-                                    String responseBody = response.peekBody(Long.MAX_VALUE).string();
-                                    if (responseBody.contains("\"data\":[]") || responseBody.contains("\"templates\":[]")) {
-                                        Log.d(TAG, "Empty templates response detected: " + responseBody);
-                                        // This is a valid empty response, not an error
-                                    }
-                                } catch (Exception e) {
-                                    Log.w(TAG, "Error peeking at response body", e);
-                                }
-                            }
-                        }
-                    }
-                    
-                    return response;
+                    response = chain.proceed(request);
                 } catch (IOException e) {
-                    // Handle canceled requests gracefully
-                    if (e.getMessage() != null && (e.getMessage().contains("Canceled") || 
-                        e.getMessage().contains("Socket closed") || 
-                        e.getMessage().contains("Connection reset") ||
-                        "canceled".equalsIgnoreCase(e.getMessage()))) {
-                        
-                        Log.d(TAG, "Request was intentionally canceled: " + request.url());
-                        
-                        // For canceled GET requests, try to return cached data
-                        if (request.method().equals("GET")) {
-                            try {
-                                okhttp3.Request cachedRequest = request.newBuilder()
-                                    .cacheControl(CacheControl.FORCE_CACHE)
-                                    .build();
-                                return chain.proceed(cachedRequest);
-                            } catch (Exception cacheEx) {
-                                Log.w(TAG, "Failed to get cached data after cancellation: " + cacheEx.getMessage());
-                                // Fall through to throw the original exception
-                            }
-                        }
-                        
-                        // Rethrow with a more descriptive message
-                        throw new IOException("Request canceled: " + request.url(), e);
+                    if (chain.call().isCanceled() || NetworkUtils.isNetworkAvailable(context)) {
+                        throw e;
                     }
-                    
-                    if (NetworkUtils.isNetworkAvailable(context)) {
-                        Log.e(TAG, "Network error despite having connection: " + e.getMessage(), e);
-                        // Try once more after a short delay
-                        try {
-                            Thread.sleep(1000);
-                            return chain.proceed(request);
-                        } catch (InterruptedException ie3) {
-                            Thread.currentThread().interrupt();
-                            // Don't throw exception on interruption - just continue
-                            Log.w(TAG, "Thread interrupted during retry", ie3);
-                            
-                            // Try to proceed anyway
-                            try {
-                                return chain.proceed(request);
-                            } catch (Exception proceedEx) {
-                                // If that fails, try cached data for GET requests
-                                if (request.method().equals("GET")) {
-                                    try {
-                                        okhttp3.Request cachedRequest = request.newBuilder()
-                                            .cacheControl(CacheControl.FORCE_CACHE)
-                                            .build();
-                                        return chain.proceed(cachedRequest);
-                                    } catch (Exception cacheEx) {
-                                        Log.w(TAG, "Failed to get cached data: " + cacheEx.getMessage());
-                                    }
-                                }
-                                throw new IOException("Failed to proceed with request after interruption", proceedEx);
-                            }
-                        } catch (Exception retryException) {
-                            Log.e(TAG, "Retry failed: " + retryException.getMessage(), retryException);
-                            
-                            // If retry fails, try cached data for GET requests
-                            if (request.method().equals("GET")) {
-                                try {
-                                    okhttp3.Request cachedRequest = request.newBuilder()
-                                        .cacheControl(CacheControl.FORCE_CACHE)
-                                        .build();
-                                    return chain.proceed(cachedRequest);
-                                } catch (Exception cacheEx) {
-                                    Log.w(TAG, "Failed to get cached data after retry failure: " + cacheEx.getMessage());
-                                }
-                            }
-                            
-                            throw new IOException("Retry failed", retryException);
-                        }
-                    } else {
-                        Log.w(TAG, "Network unavailable, using cached data if available");
-                        okhttp3.Request offlineRequest = request.newBuilder()
-                            .header("Cache-Control", "public, only-if-cached, max-stale=86400")
-                            .build();
-                        try {
-                            return chain.proceed(offlineRequest);
-                        } catch (Exception cacheException) {
-                            // If cache retrieval fails, throw the original exception
-                            throw new IOException("Cache retrieval failed", e);
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error during API request: " + e.getMessage(), e);
-                    throw new IOException("Error during API request", e);
+                    Log.w(TAG, "Network lost during request, using cached data if available");
+                    okhttp3.Request offlineRequest = request.newBuilder()
+                        .header("Cache-Control", "public, only-if-cached, max-stale=86400")
+                        .build();
+                    return chain.proceed(offlineRequest);
                 }
+
+                return response;
             })
+            .addNetworkInterceptor(new EndpointCacheInterceptor())
             .addInterceptor(getLoggingInterceptor())
             .build();
-
-        // Create Retrofit with Gson converter
-        retrofit = new Retrofit.Builder()
-            .baseUrl(BASE_URL)
-            .client(okHttpClient)
-            .addConverterFactory(GsonConverterFactory.create(gson))
-            .build();
-
-        return retrofit.create(ApiService.class);
     }
 
     /**
      * Get API key from the most reliable source
      * @return API key
      */
-    private static String getApiKey() {
+    static String getApiKey() {
         // First try to get from SecureTokenManager if available
         try {
             if (context != null) {
@@ -403,11 +314,10 @@ public class ApiClient {
             Log.e(TAG, "Error saving API key to SecureTokenManager", e);
         }
         
-        // Recreate API service with new key
-        apiService = null;
-        getClient(); // This will recreate the service with the new key
+        // Requests read the key from the credential headers, which are rebuilt on next use
+        ApiCredentials.getInstance(context).invalidate();
         
-        Log.d(TAG, "API service recreated with updated API key");
+        Log.d(TAG, "API key updated");
     }
 
     /**
@@ -438,255 +348,11 @@ public class ApiClient {
     /**
      * Clean up resources
      */
-    public static void cleanup() {
+    public static synchronized void cleanup() {
         apiService = null;
         retrofit = null;
     }
 
-    /**
-     * Get the HTTP client
-     * @return OkHttp client
-     */
-    private OkHttpClient getHttpClient() {
-        // Cache configuration
-        File cacheDir = new File(context.getCacheDir(), "http_cache");
-        int cacheSize = 10 * 1024 * 1024; // 10 MB
-        Cache cache = new Cache(cacheDir, cacheSize);
-
-        // Debug interceptor for logging request/response times
-        HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
-        if (BuildConfig.DEBUG) {
-            loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
-        } else {
-            loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
-        }
-
-        // Create OkHttpClient with API key and logging interceptors
-        OkHttpClient.Builder httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .connectionPool(new ConnectionPool(5, 30, TimeUnit.SECONDS))
-                .cache(cache);
-        
-        // Add retry mechanism for server errors and rate limiting
-        addRetryInterceptor(httpClient);
-                
-        httpClient.addInterceptor(new Interceptor() {
-            @Override
-            public okhttp3.Response intercept(Chain chain) throws IOException {
-                long requestStartTime = System.currentTimeMillis();
-                okhttp3.Request original = chain.request();
-                
-                // Build new request with API key
-                okhttp3.Request.Builder requestBuilder = original.newBuilder()
-                    .header("Content-Type", "application/json")
-                    .method(original.method(), original.body());
-
-                // Add API key and device ID if available
-                String apiKey = getApiKey();
-                if (apiKey != null && !apiKey.isEmpty()) {
-                    requestBuilder.header("x-api-key", apiKey);
-                }
-                
-                // Add device ID for tracking and authentication
-                String deviceId = DeviceUtils.getDeviceId(context);
-                if (deviceId != null && !deviceId.isEmpty()) {
-                    requestBuilder.header("x-device-id", deviceId);
-                }
-                
-                // Add authentication token if available
-                String authToken = null;
-                try {
-                    SecureTokenManager tokenManager = SecureTokenManager.getInstance();
-                    if (tokenManager != null) {
-                        authToken = tokenManager.getAccessToken();
-                    }
-                } catch (IllegalStateException e) {
-                    // SecureTokenManager not initialized yet
-                    Log.w(TAG, "SecureTokenManager not initialized yet: " + e.getMessage());
-                    // Continue without auth token
-                }
-                
-                if (authToken != null && !authToken.isEmpty()) {
-                    requestBuilder.header("Authorization", "Bearer " + authToken);
-                }
-                
-                okhttp3.Request request = requestBuilder.build();
-                
-                // Offline mode handling - serve cached responses if available
-                if (!NetworkUtils.isNetworkAvailable(context)) {
-                    Log.d(TAG, "Device is offline, trying to serve from cache: " + request.url());
-                    CacheControl cacheControl = new CacheControl.Builder()
-                        .maxStale(7, TimeUnit.DAYS)
-                        .build();
-                    
-                    okhttp3.Request cachedRequest = request.newBuilder()
-                        .cacheControl(cacheControl)
-                        .build();
-                        
-                    return chain.proceed(cachedRequest);
-                }
-                
-                // Log request details
-                Log.d(TAG, String.format("Sending request to: %s (%s)", 
-                        request.url(), request.method()));
-                
-                try {
-                    okhttp3.Response response = chain.proceed(request);
-                    long requestEndTime = System.currentTimeMillis();
-                    long duration = requestEndTime - requestStartTime;
-                    
-                    // Log response details
-                    int code = response.code();
-                    String message = response.message();
-                    Log.d(TAG, String.format("Received response from %s: %d %s in %dms", 
-                            request.url(), code, message, duration));
-                    
-                    // Debug headers
-                    if (BuildConfig.DEBUG) {
-                        Log.v(TAG, "Response headers: " + response.headers());
-                    }
-                    
-                    return response;
-                } catch (IOException e) {
-                    long requestEndTime = System.currentTimeMillis();
-                    long duration = requestEndTime - requestStartTime;
-                    Log.e(TAG, String.format("Network error requesting %s after %dms: %s", 
-                            request.url(), duration, e.getMessage()), e);
-                    throw e;
-                }
-            }
-        })
-        .addNetworkInterceptor(new Interceptor() {
-            @Override
-            public okhttp3.Response intercept(Chain chain) throws IOException {
-                okhttp3.Request request = chain.request();
-                NetworkUtils networkUtils = NetworkUtils.getInstance(context);
-                
-                // Add cache control based on network state
-                if (request.method().equalsIgnoreCase("GET")) {
-                    okhttp3.Request.Builder builder = request.newBuilder();
-                    
-                    if (networkUtils.isNetworkAvailable()) {
-                        // Online - use network but cache for a short period
-                        builder.header("Cache-Control", "public, max-age=60"); // 1 minute
-                    } else {
-                        // Offline - use cache if available, for a longer time
-                        builder.header("Cache-Control", "public, only-if-cached, max-stale=86400"); // 1 day
-                        Log.d(TAG, "Offline mode: using cached response for: " + request.url());
-                    }
-                    
-                    request = builder.build();
-                }
-                
-                return chain.proceed(request);
-            }
-        })
-        .addInterceptor(loggingInterceptor);
-
-        return httpClient.build();
-    }
-
-    /**
-     * Add a retry interceptor to handle rate limiting and server errors
-     * @param builder OkHttpClient builder to add the interceptor to
-     */
-    private void addRetryInterceptor(OkHttpClient.Builder builder) {
-        builder.addInterceptor(new Interceptor() {
-            @Override
-            public okhttp3.Response intercept(Chain chain) throws IOException {
-                okhttp3.Request request = chain.request();
-                int maxRetries = 3;
-                int retryCount = 0;
-                                
-                okhttp3.Response response = null;
-                IOException exception = null;
-                
-                while (retryCount < maxRetries) {
-                    try {
-                        if (retryCount > 0) {
-                            // Exponential backoff - wait longer between each retry
-                            long waitTime = (long) Math.pow(2, retryCount) * 1000;
-                            Log.d(TAG, String.format("Retry attempt %d for %s, waiting %dms", 
-                                    retryCount, request.url(), waitTime));
-                            try {
-                                Thread.sleep(waitTime);
-                            } catch (InterruptedException ie) {
-                                Thread.currentThread().interrupt();
-                                throw new IOException("Retry interrupted", ie);
-                            }
-                        }
-                        
-                        // Make the request
-                        response = chain.proceed(request);
-                        
-                        // Check if we should retry based on response code
-                        int responseCode = response.code();
-                        if (responseCode == 429) { // Too Many Requests
-                            Log.w(TAG, "Rate limited (429) by API for " + request.url());
-                            
-                            // Extract retry-after header if available
-                            String retryAfter = response.header("Retry-After");
-                            if (retryAfter != null) {
-                                try {
-                                    long retryAfterSeconds = Long.parseLong(retryAfter);
-                                    long waitTime = retryAfterSeconds * 1000;
-                                    Log.d(TAG, "Waiting " + waitTime + "ms as specified by Retry-After header");
-                                    try {
-                                        Thread.sleep(waitTime);
-                                    } catch (InterruptedException ie) {
-                                        Thread.currentThread().interrupt();
-                                        throw new IOException("Retry interrupted", ie);
-                                    }
-                                } catch (NumberFormatException e) {
-                                    Log.w(TAG, "Invalid Retry-After header: " + retryAfter);
-                                }
-                            }
-                            
-                            // Close response and retry
-                            response.close();
-                            retryCount++;
-                            continue;
-                        } else if (responseCode >= 500) { // Server errors
-                            Log.w(TAG, "Server error (" + responseCode + ") for " + request.url());
-                            // Close response and retry
-                            response.close();
-                            retryCount++;
-                            continue;
-                        }
-                        
-                        // No need to retry for 2xx, 3xx, or 4xx (except 429)
-                        return response;
-                        
-                    } catch (IOException e) {
-                        // Network issue occurred
-                        exception = e;
-                        Log.w(TAG, "Network error during API call to " + request.url() + 
-                                ": " + e.getMessage() + ", retry: " + retryCount);
-                        retryCount++;
-                        
-                        // If it's the last retry, throw the exception
-                        if (retryCount >= maxRetries) {
-                            throw exception;
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error during API request: " + e.getMessage(), e);
-                        throw new IOException("Error during API request", e);
-                    }
-                }
-                
-                // This should only happen if we've exhausted retries on a response with status 429 or 5xx
-                if (response != null) {
-                    return response;
-                }
-                
-                // This should only happen if we've exhausted retries with an IOException
-                throw exception != null ? exception : new IOException("Unknown error after retries");
-            }
-        });
-    }
-
     /**
      * Custom deserializer for handling empty array responses
      * This avoids "Expected BEGIN_ARRAY but was BEGIN_OBJECT" errors
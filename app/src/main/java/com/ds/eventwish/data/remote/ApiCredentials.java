@@ -0,0 +1,133 @@
+package com.ds.eventwish.data.remote;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.ds.eventwish.util.SecureTokenManager;
+import com.ds.eventwish.utils.DeviceUtils;
+
+import okhttp3.Headers;
+
+/**
+ * In-memory holder of the headers that authenticate API requests. The API
+ * key and access token are decrypted and the device ID is derived once, and
+ * the result is kept as an immutable {@link Headers} block that interceptors
+ * merge into each request. The block is rebuilt after
+ * {@link SecureTokenManager} reports a change to any stored credential, or
+ * after {@link #invalidate()}.
+ */
+final class ApiCredentials implements SecureTokenManager.CredentialChangeListener {
+    private static final String TAG = "ApiCredentials";
+
+    // Singleton instance
+    private static volatile ApiCredentials instance;
+
+    private final Context context;
+
+    // Null until built and after invalidation; written under this
+    private volatile Headers headers;
+    private boolean listening;
+
+    /**
+     * Get the singleton instance of ApiCredentials
+     * @param context Context
+     * @return ApiCredentials instance
+     */
+    static ApiCredentials getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ApiCredentials.class) {
+                if (instance == null) {
+                    instance = new ApiCredentials(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ApiCredentials(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Get the credential headers, building them if needed
+     * @return Content-Type, x-api-key, x-device-id and Authorization headers
+     */
+    @NonNull
+    Headers getHeaders() {
+        Headers current = headers;
+        return current != null ? current : build();
+    }
+
+    /**
+     * Drop the cached headers so that the next request reads the credentials again
+     */
+    synchronized void invalidate() {
+        headers = null;
+    }
+
+    @Override
+    public void onCredentialsChanged() {
+        Log.d(TAG, "Credentials changed, rebuilding request headers");
+        invalidate();
+    }
+
+    /**
+     * Merge the credential headers into the headers of a request. Credentials
+     * replace request headers of the same name.
+     * @param requestHeaders Headers the request already has
+     * @param credentials Credential headers
+     * @return Merged headers
+     */
+    @NonNull
+    static Headers merge(@NonNull Headers requestHeaders, @NonNull Headers credentials) {
+        // Most requests have no headers of their own and take the block as it is
+        if (requestHeaders.size() == 0) {
+            return credentials;
+        }
+        Headers.Builder builder = requestHeaders.newBuilder();
+        for (int i = 0; i < credentials.size(); i++) {
+            builder.set(credentials.name(i), credentials.value(i));
+        }
+        return builder.build();
+    }
+
+    private synchronized Headers build() {
+        if (headers != null) {
+            return headers;
+        }
+        SecureTokenManager tokenManager = null;
+        try {
+            tokenManager = SecureTokenManager.getInstance();
+            if (!listening) {
+                tokenManager.addCredentialChangeListener(this);
+                listening = true;
+            }
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "SecureTokenManager not initialized yet: " + e.getMessage());
+        }
+
+        Headers.Builder builder = new Headers.Builder()
+                .add("Content-Type", "application/json");
+        String apiKey = ApiClient.getApiKey();
+        if (apiKey != null && !apiKey.isEmpty()) {
+            builder.add("x-api-key", apiKey);
+        }
+        String deviceId = DeviceUtils.getDeviceId(context);
+        if (deviceId != null && !deviceId.isEmpty()) {
+            builder.add("x-device-id", deviceId);
+        }
+        String authToken = tokenManager != null ? tokenManager.getAccessToken() : null;
+        if (authToken != null && !authToken.isEmpty()) {
+            builder.add("Authorization", "Bearer " + authToken);
+        }
+        Headers built = builder.build();
+
+        // Without change events the headers could go stale, so only keep them once listening
+        if (listening) {
+            headers = built;
+        }
+        return built;
+    }
+}
@@ -19,7 +19,9 @@ import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.HeaderMap;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
@@ -28,20 +30,27 @@ import retrofit2.http.QueryMap;
 
 import com.google.gson.JsonObject;
 import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
 
 public interface ApiService {
     // Template endpoints
+    // sort is a TemplateQuery.Sort API value and createdAfter a time in
+    // milliseconds; null leaves either to the server default (newest, all time)
     @GET("templates")
     Call<TemplateResponse> getTemplates(
         @Query("page") int page,
-        @Query("limit") int limit
+        @Query("limit") int limit,
+        @Query("sort") String sort,
+        @Query("createdAfter") Long createdAfter
     );
 
     @GET("templates/category/{category}")
     Call<TemplateResponse> getTemplatesByCategory(
         @Path("category") String category,
         @Query("page") int page,
-        @Query("limit") int limit
+        @Query("limit") int limit,
+        @Query("sort") String sort,
+        @Query("createdAfter") Long createdAfter
     );
 
     @GET("templates/{id}")
@@ -173,9 +182,11 @@ public interface ApiService {
 
     /**
      * Get the OkHttpClient for this service
-     * @return OkHttpClient instance
+     * @return The process-wide OkHttpClient instance
      */
-    OkHttpClient getClient();
+    default OkHttpClient getClient() {
+        return ApiClient.getHttpClient();
+    }
 
     // SMS verification endpoints
     /**
@@ -306,6 +317,16 @@ public interface ApiService {
     @POST("users/engagement/sync")
     Call<JsonObject> syncEngagementData(@Body JsonObject body);
     
+    /**
+     * Upload a batch of engagement records as gzip-compressed JSON
+     * @param batchId Batch ID; a retried batch keeps its ID so the server can ignore duplicates
+     * @param body Gzipped JSON object with the batch ID and its engagement records
+     * @return Response
+     */
+    @Headers("Content-Encoding: gzip")
+    @POST("users/engagement/sync")
+    Call<JsonObject> syncEngagementBatch(@Header("Idempotency-Key") String batchId, @Body RequestBody body);
+    
     /**
      * Get personalized recommendations with detailed parameters
      * @param body Request containing deviceId and filtering options
@@ -436,4 +457,49 @@ public interface ApiService {
         @Path("id") String id,
         @retrofit2.http.Header("x-device-id") String deviceId
     );
+    
+    /**
+     * Record repeated impressions of a sponsored ad in one request
+     * @param id The ID of the sponsored ad
+     * @param deviceId The device ID for tracking
+     * @param count Number of impressions
+     * @return Response indicating success or failure
+     */
+    @POST("sponsored-ads/viewed/{id}")
+    Call<JsonObject> recordSponsoredAdImpression(
+        @Path("id") String id,
+        @retrofit2.http.Header("x-device-id") String deviceId,
+        @Query("count") int count
+    );
+    
+    /**
+     * Record repeated clicks on a sponsored ad in one request
+     * @param id The ID of the sponsored ad
+     * @param deviceId The device ID for tracking
+     * @param count Number of clicks
+     * @return Response indicating success or failure
+     */
+    @POST("sponsored-ads/clicked/{id}")
+    Call<JsonObject> recordSponsoredAdClick(
+        @Path("id") String id,
+        @retrofit2.http.Header("x-device-id") String deviceId,
+        @Query("count") int count
+    );
+    
+    /**
+     * Record a batch of sponsored ad impressions and clicks. Each event in
+     * the body carries adId, type ("impression" or "click"), sessionId,
+     * count, firstSeen and lastSeen; repeated events for the same ad and
+     * session are sent once with their count.
+     * @param batchId Batch ID, so that a retried batch is only counted once
+     * @param deviceId The device ID for tracking
+     * @param body Object with deviceId and an events array
+     * @return Response indicating success or failure
+     */
+    @POST("sponsored-ads/events/batch")
+    Call<JsonObject> recordSponsoredAdEvents(
+        @retrofit2.http.Header("Idempotency-Key") String batchId,
+        @retrofit2.http.Header("x-device-id") String deviceId,
+        @Body JsonObject body
+    );
 }
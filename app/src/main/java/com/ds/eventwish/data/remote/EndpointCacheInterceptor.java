@@ -0,0 +1,70 @@
+package com.ds.eventwish.data.remote;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Network interceptor that gives GET responses of the cacheable endpoint
+ * families a default {@code Cache-Control} when the server sends none, so
+ * that the shared HTTP cache can store them. Headers sent by the server are
+ * left alone.
+ */
+final class EndpointCacheInterceptor implements Interceptor {
+
+    // Default max-age in seconds by the first path segment after /api/
+    private static final Map<String, Integer> MAX_AGE_BY_FAMILY = new HashMap<>();
+
+    static {
+        // Templates and categories change when content is published
+        MAX_AGE_BY_FAMILY.put("templates", 5 * 60);
+        MAX_AGE_BY_FAMILY.put("categories", 5 * 60);
+        // Icons are static assets
+        MAX_AGE_BY_FAMILY.put("icons", 24 * 60 * 60);
+        MAX_AGE_BY_FAMILY.put("categoryIcons", 24 * 60 * 60);
+        // Festival dates are fixed well in advance
+        MAX_AGE_BY_FAMILY.put("festivals", 60 * 60);
+        // Ads rotate, so they are only reused for a short while
+        MAX_AGE_BY_FAMILY.put("sponsored-ads", 60);
+        MAX_AGE_BY_FAMILY.put("admob", 60);
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+
+        if (!"GET".equals(request.method()) || !response.isSuccessful()
+                || response.header("Cache-Control") != null) {
+            return response;
+        }
+        Integer maxAge = maxAgeFor(request.url().pathSegments());
+        if (maxAge == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "public, max-age=" + maxAge)
+                .build();
+    }
+
+    /**
+     * Find the default max-age of an endpoint
+     * @param segments Path segments of the request URL
+     * @return Max-age in seconds, or null if the endpoint is not cached by default
+     */
+    @Nullable
+    static Integer maxAgeFor(List<String> segments) {
+        int family = !segments.isEmpty() && "api".equals(segments.get(0)) ? 1 : 0;
+        return segments.size() > family ? MAX_AGE_BY_FAMILY.get(segments.get(family)) : null;
+    }
+}
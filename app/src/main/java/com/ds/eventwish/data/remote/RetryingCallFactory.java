@@ -0,0 +1,485 @@
+package com.ds.eventwish.data.remote;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+/**
+ * {@link Call.Factory} that retries rate-limited and failed requests without
+ * holding a thread while it waits. An enqueued call that needs another
+ * attempt gives its dispatcher thread back and is enqueued again by a timer,
+ * so one slow host cannot starve the dispatcher for every other request.
+ *
+ * <p>Attempts are spaced by exponential backoff with full jitter, or by the
+ * server's {@code Retry-After} when it sends one. Each host has a retry
+ * budget: every retry costs a token, every success earns back a tenth of
+ * one, and retries stop while half the tokens or fewer are left, so a failing
+ * host sees at most about one retry per ten successful requests. A circuit
+ * breaker per host, shared by all calls, opens after consecutive failures;
+ * while it is open GET requests are answered from the HTTP cache, or with a
+ * 504 if nothing is cached, and other requests fail at once. After a cool-down
+ * one request is let through to probe the host.
+ */
+public final class RetryingCallFactory implements Call.Factory {
+    private static final String TAG = "RetryingCallFactory";
+
+    // Retry policy
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_DELAY_MS = 500;
+    private static final long MAX_DELAY_MS = 8_000;
+    // Responses asking for a longer wait are returned rather than retried
+    private static final long MAX_RETRY_AFTER_MS = 30_000;
+
+    // Retry budget per host
+    private static final double BUDGET_MAX_TOKENS = 10;
+    private static final double BUDGET_SUCCESS_REFILL = 0.1;
+
+    // Circuit breaker per host
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_OPEN_MS = 30_000;
+
+    private static final long NO_RETRY = -1;
+
+    // Host state is shared by every factory so that recreated clients keep it
+    private static final Map<String, HostState> HOSTS = new ConcurrentHashMap<>();
+
+    private static volatile ScheduledExecutorService sharedTimer;
+
+    private final Call.Factory delegate;
+    private final ScheduledExecutorService timer;
+    private final Random random;
+
+    /**
+     * Create a factory that retries on the shared timer thread
+     * @param delegate Factory that makes the actual calls, usually an OkHttpClient
+     * @return Retrying call factory
+     */
+    public static RetryingCallFactory create(@NonNull Call.Factory delegate) {
+        if (sharedTimer == null) {
+            synchronized (RetryingCallFactory.class) {
+                if (sharedTimer == null) {
+                    sharedTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, TAG);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return new RetryingCallFactory(delegate, sharedTimer, new Random());
+    }
+
+    RetryingCallFactory(Call.Factory delegate, ScheduledExecutorService timer, Random random) {
+        this.delegate = delegate;
+        this.timer = timer;
+        this.random = random;
+    }
+
+    @NonNull
+    @Override
+    public Call newCall(@NonNull Request request) {
+        return new RetryingCall(request);
+    }
+
+    /**
+     * Forget the breaker and budget state of every host
+     */
+    static void resetHosts() {
+        HOSTS.clear();
+    }
+
+    private static HostState hostFor(HttpUrl url) {
+        String key = url.host() + ":" + url.port();
+        HostState state = HOSTS.get(key);
+        if (state == null) {
+            HostState created = new HostState(key);
+            state = HOSTS.putIfAbsent(key, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Retry budget and circuit breaker of one host
+     */
+    private static final class HostState {
+        private final String name;
+        private double tokens = BUDGET_MAX_TOKENS;
+        private int consecutiveFailures;
+        // Zero while closed; otherwise when the breaker may let a probe through
+        private long openUntil;
+        private boolean probeInFlight;
+
+        HostState(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return Whether a request may go to the network now
+         */
+        synchronized boolean allowRequest() {
+            if (openUntil == 0) {
+                return true;
+            }
+            if (SystemClock.elapsedRealtime() < openUntil || probeInFlight) {
+                return false;
+            }
+            Log.d(TAG, "Circuit half-open, probing " + name);
+            probeInFlight = true;
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            if (openUntil != 0) {
+                Log.i(TAG, "Circuit closed for " + name);
+            }
+            consecutiveFailures = 0;
+            openUntil = 0;
+            probeInFlight = false;
+            tokens = Math.min(BUDGET_MAX_TOKENS, tokens + BUDGET_SUCCESS_REFILL);
+        }
+
+        /**
+         * Record a failure
+         * @param unhealthy Whether it counts against the breaker; rate limiting does not
+         */
+        synchronized void onFailure(boolean unhealthy) {
+            tokens = Math.max(0, tokens - 1);
+            if (!unhealthy) {
+                probeInFlight = false;
+                return;
+            }
+            consecutiveFailures++;
+            if (probeInFlight || (openUntil == 0 && consecutiveFailures >= BREAKER_FAILURE_THRESHOLD)) {
+                Log.w(TAG, "Circuit open for " + name + " after " + consecutiveFailures + " failures");
+                openUntil = SystemClock.elapsedRealtime() + BREAKER_OPEN_MS;
+            }
+            probeInFlight = false;
+        }
+
+        /**
+         * Record an attempt that ended without an outcome, such as a cancellation
+         */
+        synchronized void onAbandoned() {
+            probeInFlight = false;
+        }
+
+        synchronized boolean canRetry() {
+            return tokens > BUDGET_MAX_TOKENS / 2;
+        }
+    }
+
+    /**
+     * A call that makes up to {@link #MAX_ATTEMPTS} attempts
+     */
+    private final class RetryingCall implements Call {
+        private final Request request;
+        private final HostState host;
+
+        // Guarded by this
+        private boolean executed;
+        private boolean canceled;
+        private Call current;
+        private ScheduledFuture<?> pendingRetry;
+        private Callback callback;
+
+        // Touched by one attempt at a time
+        private int attempt;
+        private boolean fromCache;
+
+        RetryingCall(Request request) {
+            this.request = request;
+            this.host = hostFor(request.url());
+        }
+
+        @NonNull
+        @Override
+        public Request request() {
+            return request;
+        }
+
+        /**
+         * Run the call on the calling thread, which waits between attempts.
+         * Dispatcher threads are never used.
+         */
+        @NonNull
+        @Override
+        public Response execute() throws IOException {
+            markExecuted();
+            while (true) {
+                Call call = nextAttempt();
+                long delay;
+                try {
+                    Response response = call.execute();
+                    delay = retryDelay(response);
+                    if (delay == NO_RETRY) {
+                        return response;
+                    }
+                    response.close();
+                } catch (IOException e) {
+                    delay = retryDelay(e);
+                    if (delay == NO_RETRY) {
+                        throw e;
+                    }
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Retry interrupted", e);
+                }
+            }
+        }
+
+        @Override
+        public void enqueue(@NonNull Callback responseCallback) {
+            markExecuted();
+            synchronized (this) {
+                callback = responseCallback;
+            }
+            startAttempt();
+        }
+
+        private void startAttempt() {
+            Call call;
+            try {
+                call = nextAttempt();
+            } catch (IOException e) {
+                callback.onFailure(this, e);
+                return;
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onResponse(@NonNull Call attemptCall, @NonNull Response response) throws IOException {
+                    long delay = retryDelay(response);
+                    if (delay == NO_RETRY) {
+                        callback.onResponse(RetryingCall.this, response);
+                    } else {
+                        response.close();
+                        scheduleRetry(delay);
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Call attemptCall, @NonNull IOException e) {
+                    long delay = retryDelay(e);
+                    if (delay == NO_RETRY) {
+                        callback.onFailure(RetryingCall.this, e);
+                    } else {
+                        scheduleRetry(delay);
+                    }
+                }
+            });
+        }
+
+        private void scheduleRetry(long delayMs) {
+            synchronized (this) {
+                if (!canceled) {
+                    pendingRetry = timer.schedule(this::startAttempt, delayMs, TimeUnit.MILLISECONDS);
+                    return;
+                }
+            }
+            callback.onFailure(this, new IOException("Canceled"));
+        }
+
+        /**
+         * Make the call for the next attempt, reading from the cache instead
+         * while the host's circuit is open
+         */
+        private Call nextAttempt() throws IOException {
+            synchronized (this) {
+                if (canceled) {
+                    throw new IOException("Canceled");
+                }
+                pendingRetry = null;
+                attempt++;
+                Request next = request;
+                fromCache = !host.allowRequest();
+                if (fromCache) {
+                    if (!"GET".equals(request.method())) {
+                        throw new IOException("Circuit open for " + request.url().host());
+                    }
+                    Log.d(TAG, "Circuit open, answering from cache: " + request.url());
+                    next = request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build();
+                }
+                current = delegate.newCall(next);
+                return current;
+            }
+        }
+
+        /**
+         * Record a response and decide whether to try again
+         * @return Delay before the next attempt, or NO_RETRY
+         */
+        private long retryDelay(Response response) {
+            if (fromCache) {
+                return NO_RETRY;
+            }
+            int code = response.code();
+            boolean retryable = code == 429 || (code >= 500 && code != 501 && code != 505);
+            if (!retryable) {
+                host.onSuccess();
+                return NO_RETRY;
+            }
+            host.onFailure(code != 429);
+
+            // A rate-limited request was not processed, so any method may be sent again
+            if (code != 429 && !isIdempotent()) {
+                return NO_RETRY;
+            }
+            long retryAfter = parseRetryAfter(response.header("Retry-After"));
+            if (retryAfter > MAX_RETRY_AFTER_MS) {
+                Log.w(TAG, "Retry-After of " + retryAfter + "ms is too long, giving up: " + request.url());
+                return NO_RETRY;
+            }
+            return nextDelay(retryAfter, "HTTP " + code);
+        }
+
+        private long retryDelay(IOException e) {
+            if (isCanceled() || fromCache) {
+                host.onAbandoned();
+                return NO_RETRY;
+            }
+            host.onFailure(true);
+            // The server may have acted on a request that failed midway
+            if (!isIdempotent()) {
+                return NO_RETRY;
+            }
+            return nextDelay(NO_RETRY, e.toString());
+        }
+
+        private long nextDelay(long retryAfter, String reason) {
+            if (attempt >= MAX_ATTEMPTS) {
+                return NO_RETRY;
+            }
+            if (!host.canRetry()) {
+                Log.w(TAG, "Retry budget exhausted for " + host.name + ", not retrying: " + request.url());
+                return NO_RETRY;
+            }
+            long delay;
+            if (retryAfter != NO_RETRY) {
+                // Spread clients told the same time over a short window
+                delay = retryAfter + (long) (random.nextDouble() * Math.min(retryAfter / 10 + 1, 1000));
+            } else {
+                long ceiling = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << (attempt - 1));
+                delay = (long) (random.nextDouble() * ceiling);
+            }
+            Log.d(TAG, String.format(Locale.US, "%s for %s, attempt %d in %dms",
+                    reason, request.url(), attempt + 1, delay));
+            return delay;
+        }
+
+        private boolean isIdempotent() {
+            switch (request.method()) {
+                case "GET":
+                case "HEAD":
+                case "PUT":
+                case "DELETE":
+                case "OPTIONS":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private synchronized void markExecuted() {
+            if (executed) {
+                throw new IllegalStateException("Already Executed");
+            }
+            executed = true;
+        }
+
+        @Override
+        public void cancel() {
+            boolean retryCanceled;
+            synchronized (this) {
+                if (canceled) {
+                    return;
+                }
+                canceled = true;
+                if (current != null) {
+                    current.cancel();
+                }
+                retryCanceled = pendingRetry != null && pendingRetry.cancel(false);
+            }
+            if (retryCanceled) {
+                // No attempt is running to report the cancellation
+                host.onAbandoned();
+                callback.onFailure(this, new IOException("Canceled"));
+            }
+        }
+
+        @Override
+        public synchronized boolean isExecuted() {
+            return executed;
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return canceled;
+        }
+
+        @NonNull
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @NonNull
+        @Override
+        public Call clone() {
+            return new RetryingCall(request);
+        }
+    }
+
+    /**
+     * Parse a Retry-After header given in seconds or as an HTTP date
+     * @param value Header value
+     * @return Delay in milliseconds, or NO_RETRY if absent or malformed
+     */
+    static long parseRetryAfter(@Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            return NO_RETRY;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            // Not a number, so it should be a date
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(value.trim());
+            return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : NO_RETRY;
+        } catch (ParseException e) {
+            Log.w(TAG, "Invalid Retry-After header: " + value);
+            return NO_RETRY;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ds.eventwish.data.remote;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.data.model.response.TemplateResponse;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Converter for {@link TemplateResponse} pages. The body is read as a stream
+ * while it arrives, and only the fields the template list shows are bound.
+ * The HTML, CSS and JS of each template are skipped in the reader without
+ * ever being built into strings; screens that render a template load it by
+ * ID. Other types fall through to the next converter.
+ */
+public final class TemplateListConverterFactory extends Converter.Factory {
+
+    // Template fields that only the detail screens need
+    private static final Set<String> CONTENT_FIELDS =
+            new HashSet<>(Arrays.asList("htmlContent", "cssContent", "jsContent"));
+
+    private final Gson gson;
+    private final TypeAdapter<TemplateResponse> adapter;
+
+    /**
+     * Create a factory that reads pages with the adapters of a Gson instance
+     * @param gson Gson configured for the API
+     * @return Converter factory
+     */
+    public static TemplateListConverterFactory create(@NonNull Gson gson) {
+        return new TemplateListConverterFactory(gson);
+    }
+
+    private TemplateListConverterFactory(Gson gson) {
+        this.gson = gson;
+        Gson listGson = gson.newBuilder()
+                .addDeserializationExclusionStrategy(new ExclusionStrategy() {
+                    @Override
+                    public boolean shouldSkipField(FieldAttributes field) {
+                        return field.getDeclaringClass() == Template.class
+                                && CONTENT_FIELDS.contains(field.getName());
+                    }
+
+                    @Override
+                    public boolean shouldSkipClass(Class<?> clazz) {
+                        return false;
+                    }
+                })
+                .create();
+        this.adapter = listGson.getAdapter(TemplateResponse.class);
+    }
+
+    @Nullable
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(@NonNull Type type, @NonNull Annotation[] annotations,
+                                                            @NonNull Retrofit retrofit) {
+        if (type != TemplateResponse.class) {
+            return null;
+        }
+        return (Converter<ResponseBody, TemplateResponse>) body -> {
+            try (JsonReader reader = gson.newJsonReader(body.charStream())) {
+                TemplateResponse response = adapter.read(reader);
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new JsonIOException("JSON document was not fully consumed.");
+                }
+                return response;
+            } finally {
+                body.close();
+            }
+        };
+    }
+}
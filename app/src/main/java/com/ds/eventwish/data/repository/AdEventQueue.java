@@ -0,0 +1,259 @@
+package com.ds.eventwish.data.repository;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ds.eventwish.data.local.dao.AdEventDao;
+import com.ds.eventwish.data.local.dao.AdEventDao.AggregatedAdEvent;
+import com.ds.eventwish.data.local.entity.AdEventEntity;
+import com.ds.eventwish.data.remote.ApiService;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Persistent queue of sponsored ad impressions and clicks. Events are kept
+ * in a fixed-size ring in the ad_events table and reported through the bulk
+ * {@code sponsored-ads/events/batch} endpoint, with repeated events for the
+ * same ad and session sent once with their count. Each batch is claimed into
+ * the ad_event_batch table before it is first sent and deleted when the
+ * server confirms it, or dropped once the server has answered it with an
+ * error too many times.
+ */
+class AdEventQueue {
+    private static final String TAG = "AdEventQueue";
+
+    static final String TYPE_IMPRESSION = "impression";
+    static final String TYPE_CLICK = "click";
+
+    private final AdEventDao adEventDao;
+    private final ApiService apiService;
+    private final Executor diskIO;
+    private final int capacity;
+    private final int batchSize;
+    private final int maxSendFailures;
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    // Set once the server answers 404, so later flushes go straight to the fallback
+    private volatile boolean bulkEndpointMissing = false;
+
+    /**
+     * Callback for a flush
+     */
+    interface FlushCallback {
+        /**
+         * Called when the queue has been emptied
+         * @param events Number of events reported through the bulk endpoint
+         */
+        void onFlushed(int events);
+
+        /**
+         * Called for each batch when the server has no bulk endpoint. The
+         * events have been removed from the queue and must be reported some
+         * other way. Runs on the disk thread.
+         * @param events Aggregated events that were not reported
+         */
+        void onBulkEndpointMissing(@NonNull List<AggregatedAdEvent> events);
+
+        /**
+         * Called when a batch could not be reported. Its events stay queued.
+         * @param response Error response, or null on a network error
+         * @param t Network error, or null if the server responded
+         */
+        void onFailure(@Nullable Response<JsonObject> response, @Nullable Throwable t);
+    }
+
+    /**
+     * Callback for the queue size
+     */
+    interface SizeCallback {
+        void onSize(int size);
+    }
+
+    /**
+     * Create a queue
+     * @param adEventDao DAO of the ad_events table
+     * @param apiService API service used to report events
+     * @param diskIO Executor for database work
+     * @param capacity Number of events kept before the oldest are overwritten
+     * @param batchSize Maximum number of events per request
+     * @param maxSendFailures Number of error responses after which a batch is dropped
+     */
+    AdEventQueue(AdEventDao adEventDao, ApiService apiService, Executor diskIO, int capacity, int batchSize,
+                 int maxSendFailures) {
+        this.adEventDao = adEventDao;
+        this.apiService = apiService;
+        this.diskIO = diskIO;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxSendFailures = maxSendFailures;
+    }
+
+    /**
+     * Queue an event
+     * @param event Event to queue
+     * @param onQueued Called on the disk thread with the queue size, may be null
+     */
+    void append(@NonNull AdEventEntity event, @Nullable SizeCallback onQueued) {
+        diskIO.execute(() -> {
+            try {
+                adEventDao.append(event, capacity);
+                if (onQueued != null) {
+                    onQueued.onSize(adEventDao.count());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error queueing ad event for ad: " + event.getAdId(), e);
+            }
+        });
+    }
+
+    /**
+     * Drop events older than a timestamp. Runs on the disk thread.
+     * @param cutoffTime Timestamp before which events are dropped
+     */
+    void deleteOlderThan(long cutoffTime) {
+        diskIO.execute(() -> {
+            int deleted = adEventDao.deleteOlderThan(cutoffTime);
+            if (deleted > 0) {
+                Log.d(TAG, "Dropped " + deleted + " stale ad events");
+            }
+        });
+    }
+
+    /**
+     * Report all queued events, one batch at a time. Does nothing if a
+     * flush is already running.
+     * @param deviceId Device ID sent with each batch
+     * @param callback Callback for the result
+     */
+    void flush(@Nullable String deviceId, @NonNull FlushCallback callback) {
+        if (!flushing.compareAndSet(false, true)) {
+            Log.d(TAG, "Flush already in progress");
+            return;
+        }
+        diskIO.execute(() -> sendNextBatch(deviceId, callback, 0));
+    }
+
+    /**
+     * Send the claimed batch, or claim the oldest events as a new one, and
+     * continue with the next once the server confirms it. Runs on the disk
+     * thread while {@link #flushing} is set.
+     */
+    private void sendNextBatch(@Nullable String deviceId, @NonNull FlushCallback callback, int reported) {
+        final String batchId;
+        final List<AggregatedAdEvent> events;
+        try {
+            // The batch keeps its rows and ID until the server confirms it,
+            // so a retry resends exactly what the first attempt sent
+            batchId = adEventDao.claimBatch(batchSize);
+            events = batchId != null ? adEventDao.getBatch(batchId) : null;
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading ad event queue", e);
+            flushing.set(false);
+            callback.onFailure(null, e);
+            return;
+        }
+        if (events == null || events.isEmpty()) {
+            flushing.set(false);
+            callback.onFlushed(reported);
+            return;
+        }
+
+        int count = 0;
+        for (AggregatedAdEvent event : events) {
+            count += event.count;
+        }
+        final int batchCount = count;
+
+        if (bulkEndpointMissing) {
+            adEventDao.deleteBatch(batchId);
+            callback.onBulkEndpointMissing(events);
+            sendNextBatch(deviceId, callback, reported);
+            return;
+        }
+
+        Log.d(TAG, "Reporting " + batchCount + " ad events as " + events.size() + " aggregates in " + batchId);
+
+        apiService.recordSponsoredAdEvents(batchId, deviceId, createBatchBody(deviceId, events))
+            .enqueue(new Callback<JsonObject>() {
+                @Override
+                public void onResponse(@NonNull Call<JsonObject> call,
+                                       @NonNull Response<JsonObject> response) {
+                    if (response.isSuccessful()) {
+                        diskIO.execute(() -> {
+                            adEventDao.deleteBatch(batchId);
+                            sendNextBatch(deviceId, callback, reported + batchCount);
+                        });
+                    } else if (response.code() == 404) {
+                        Log.w(TAG, "Bulk ad event endpoint not available, falling back to single events");
+                        bulkEndpointMissing = true;
+                        diskIO.execute(() -> {
+                            adEventDao.deleteBatch(batchId);
+                            callback.onBulkEndpointMissing(events);
+                            sendNextBatch(deviceId, callback, reported);
+                        });
+                    } else if (response.code() == 429) {
+                        // Rate limiting says nothing about the batch itself
+                        Log.e(TAG, "Rate limited while reporting ad events");
+                        flushing.set(false);
+                        callback.onFailure(response, null);
+                    } else {
+                        Log.e(TAG, "Failed to report ad events: " + response.code());
+                        diskIO.execute(() -> {
+                            // After a few error responses the batch is dropped, so that
+                            // later events are not held up behind it forever
+                            if (adEventDao.recordSendFailure(batchId) >= maxSendFailures) {
+                                adEventDao.deleteBatch(batchId);
+                                Log.w(TAG, "Dropped " + batchCount + " ad events of failing batch " + batchId);
+                            }
+                            flushing.set(false);
+                            callback.onFailure(response, null);
+                        });
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<JsonObject> call, @NonNull Throwable t) {
+                    Log.e(TAG, "Error reporting ad events", t);
+                    flushing.set(false);
+                    callback.onFailure(null, t);
+                }
+            });
+    }
+
+    /**
+     * Build the request body of a batch
+     * @param deviceId Device ID, may be null
+     * @param events Aggregated events
+     * @return Request body
+     */
+    static JsonObject createBatchBody(@Nullable String deviceId, List<AggregatedAdEvent> events) {
+        JsonArray array = new JsonArray();
+        for (AggregatedAdEvent event : events) {
+            JsonObject item = new JsonObject();
+            item.addProperty("adId", event.adId);
+            item.addProperty("type", event.type == AdEventEntity.TYPE_CLICK ? TYPE_CLICK : TYPE_IMPRESSION);
+            item.addProperty("sessionId", event.sessionId);
+            item.addProperty("count", event.count);
+            item.addProperty("firstSeen", event.firstSeen);
+            item.addProperty("lastSeen", event.lastSeen);
+            array.add(item);
+        }
+
+        JsonObject body = new JsonObject();
+        if (deviceId != null) {
+            body.addProperty("deviceId", deviceId);
+        }
+        body.add("events", array);
+        return body;
+    }
+}
@@ -0,0 +1,268 @@
+package com.ds.eventwish.data.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ds.eventwish.data.local.entity.SponsoredAdEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * In-memory index of rotation candidates per location. Each location keeps
+ * the weights of its ads and a Walker alias table over them, so that a
+ * weighted pick takes constant time. A change to one ad updates its weight
+ * in place and the table is rebuilt on the next pick.
+ */
+class AdSelectionIndex {
+
+    // Above this share of excluded weight, a linear scan beats rejection sampling
+    private static final double MAX_REJECTION_SHARE = 0.5;
+    private static final int MAX_REJECTION_ATTEMPTS = 8;
+
+    private final Map<String, LocationCandidates> locations = new HashMap<>();
+    private final Random random;
+
+    AdSelectionIndex() {
+        this(new Random());
+    }
+
+    /**
+     * @param random Source of randomness, seeded in tests
+     */
+    AdSelectionIndex(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Weight of an ad: higher priority and fewer impressions give a higher weight
+     * @param priority Ad priority
+     * @param impressionCount Impressions so far
+     * @return Weight, never negative
+     */
+    static double weightOf(int priority, int impressionCount) {
+        // Formula: weight = priority * (1 / (1 + log(1 + impression_count)))
+        double impressionFactor = 1.0 / (1 + Math.log(1 + Math.max(0, impressionCount)));
+        return Math.max(0, priority) * impressionFactor;
+    }
+
+    /**
+     * Check whether a location is indexed and none of its ads has expired
+     * @param location Location
+     * @param currentTime Current timestamp in milliseconds
+     * @return true if {@link #select} can be used without reloading
+     */
+    synchronized boolean isLoaded(String location, long currentTime) {
+        LocationCandidates candidates = locations.get(location);
+        return candidates != null && currentTime < candidates.validUntil;
+    }
+
+    /**
+     * Replace the candidates of a location
+     * @param location Location
+     * @param entities Active ads of the location
+     */
+    synchronized void load(String location, @NonNull List<SponsoredAdEntity> entities) {
+        locations.put(location, new LocationCandidates(entities));
+    }
+
+    /**
+     * Forget all locations, e.g. after new ads were cached
+     */
+    synchronized void clear() {
+        locations.clear();
+    }
+
+    /**
+     * Update the weight of an ad after its impressions or priority changed
+     * @param entity Updated ad
+     */
+    synchronized void update(@NonNull SponsoredAdEntity entity) {
+        LocationCandidates candidates = locations.get(entity.getLocation());
+        if (candidates != null) {
+            candidates.update(entity);
+        }
+    }
+
+    /**
+     * Pick an ad of a location with probability proportional to its weight
+     * @param location Location
+     * @param excludeIds Ad IDs not to pick, may be null
+     * @return Selected ad, or null if the location has no eligible ads
+     */
+    @Nullable
+    synchronized SponsoredAdEntity select(String location, @Nullable Set<String> excludeIds) {
+        LocationCandidates candidates = locations.get(location);
+        if (candidates == null || candidates.size() == 0) {
+            return null;
+        }
+        return candidates.select(random, excludeIds);
+    }
+
+    /**
+     * Candidates of one location with their alias table
+     */
+    private static final class LocationCandidates {
+        final List<SponsoredAdEntity> entities;
+        final Map<String, Integer> positions = new HashMap<>();
+        final double[] weights;
+        final long validUntil;
+        double totalWeight;
+
+        // Alias table, rebuilt lazily after a weight changes
+        double[] probability;
+        int[] alias;
+        boolean dirty = true;
+
+        LocationCandidates(List<SponsoredAdEntity> entities) {
+            this.entities = new ArrayList<>(entities);
+            this.weights = new double[entities.size()];
+            long earliestExpiry = Long.MAX_VALUE;
+            for (int i = 0; i < this.entities.size(); i++) {
+                SponsoredAdEntity entity = this.entities.get(i);
+                positions.put(entity.getId(), i);
+                weights[i] = weightOf(entity.getPriority(), entity.getImpressionCount());
+                totalWeight += weights[i];
+                earliestExpiry = Math.min(earliestExpiry, entity.getExpiresAt());
+            }
+            this.validUntil = earliestExpiry;
+        }
+
+        int size() {
+            return entities.size();
+        }
+
+        void update(SponsoredAdEntity entity) {
+            Integer position = positions.get(entity.getId());
+            if (position == null) {
+                return;
+            }
+            double weight = weightOf(entity.getPriority(), entity.getImpressionCount());
+            totalWeight += weight - weights[position];
+            weights[position] = weight;
+            entities.set(position, entity);
+            dirty = true;
+        }
+
+        SponsoredAdEntity select(Random random, @Nullable Set<String> excludeIds) {
+            if (totalWeight <= 0) {
+                return selectUniform(random, excludeIds);
+            }
+            if (excludeIds == null || excludeIds.isEmpty()) {
+                return entities.get(sampleAlias(random));
+            }
+
+            double excludedWeight = 0;
+            int excludedCount = 0;
+            for (String id : excludeIds) {
+                Integer position = positions.get(id);
+                if (position != null) {
+                    excludedWeight += weights[position];
+                    excludedCount++;
+                }
+            }
+            if (excludedCount == entities.size()) {
+                return null;
+            }
+            if (excludedWeight / totalWeight <= MAX_REJECTION_SHARE) {
+                for (int attempt = 0; attempt < MAX_REJECTION_ATTEMPTS; attempt++) {
+                    SponsoredAdEntity entity = entities.get(sampleAlias(random));
+                    if (!excludeIds.contains(entity.getId())) {
+                        return entity;
+                    }
+                }
+            }
+            return selectLinear(random, excludeIds, totalWeight - excludedWeight);
+        }
+
+        /**
+         * Draw from the alias table: pick a column uniformly, then keep it
+         * or take its alias
+         */
+        private int sampleAlias(Random random) {
+            if (dirty) {
+                buildAliasTable();
+            }
+            int column = random.nextInt(weights.length);
+            return random.nextDouble() < probability[column] ? column : alias[column];
+        }
+
+        /**
+         * Build the alias table with Vose's method
+         */
+        private void buildAliasTable() {
+            int n = weights.length;
+            probability = new double[n];
+            alias = new int[n];
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / totalWeight;
+                if (scaled[i] < 1.0) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+            // Whatever is left is 1 up to rounding error
+            while (largeCount > 0) {
+                probability[large[--largeCount]] = 1.0;
+            }
+            while (smallCount > 0) {
+                probability[small[--smallCount]] = 1.0;
+            }
+            dirty = false;
+        }
+
+        private SponsoredAdEntity selectLinear(Random random, Set<String> excludeIds, double eligibleWeight) {
+            if (eligibleWeight <= 0) {
+                return selectUniform(random, excludeIds);
+            }
+            double target = random.nextDouble() * eligibleWeight;
+            SponsoredAdEntity last = null;
+            for (int i = 0; i < entities.size(); i++) {
+                SponsoredAdEntity entity = entities.get(i);
+                if (excludeIds.contains(entity.getId())) {
+                    continue;
+                }
+                last = entity;
+                target -= weights[i];
+                if (target < 0) {
+                    return entity;
+                }
+            }
+            // Rounding error: fall back to the last eligible ad
+            return last;
+        }
+
+        private SponsoredAdEntity selectUniform(Random random, @Nullable Set<String> excludeIds) {
+            List<SponsoredAdEntity> eligible = new ArrayList<>();
+            for (SponsoredAdEntity entity : entities) {
+                if (excludeIds == null || !excludeIds.contains(entity.getId())) {
+                    eligible.add(entity);
+                }
+            }
+            return eligible.isEmpty() ? null : eligible.get(random.nextInt(eligible.size()));
+        }
+    }
+}
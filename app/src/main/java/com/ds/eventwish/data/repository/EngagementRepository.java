@@ -12,10 +12,17 @@ import com.ds.eventwish.data.model.EngagementData;
 import com.ds.eventwish.data.remote.ApiClient;
 import com.ds.eventwish.data.remote.ApiService;
 import com.ds.eventwish.utils.AppExecutors;
+import com.ds.eventwish.utils.ExpiryScheduler;
 import com.ds.eventwish.utils.NetworkUtils;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -23,7 +30,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
 
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -35,7 +46,10 @@ public class EngagementRepository {
     private static final String TAG = "EngagementRepository";
     
     // Constants
-    private static final int MAX_SYNC_BATCH_SIZE = 50;
+    // Records per upload; a full batch is sent at once, anything less waits for the interval
+    private static final int MAX_SYNC_BATCH_SIZE = 100;
+    private static final long FLUSH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
     private static final long MAX_ENGAGEMENT_AGE_DAYS = 90;
     
     // Singleton instance
@@ -50,6 +64,11 @@ public class EngagementRepository {
     private final UserRepository userRepository;
     private final Gson gson;
     
+    // Set while batches are being uploaded, so that only one is in flight
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    // Pending time-bounded flush; guarded by this
+    private ExpiryScheduler.Timeout scheduledFlush;
+    
     /**
      * Get singleton instance of EngagementRepository
      * @param context Application context
@@ -112,10 +131,8 @@ public class EngagementRepository {
             engagementDataDao.insert(data);
             Log.d(TAG, "Saved template engagement locally: " + templateId + ", category: " + category);
             
-            // Also try to sync to server if online
-            if (networkUtils.isNetworkAvailable()) {
-                syncEngagement(data);
-            }
+            // Uploaded with the next batch
+            onEngagementRecorded();
         });
         
         // Also track with UserRepository for backward compatibility
@@ -151,10 +168,8 @@ public class EngagementRepository {
             engagementDataDao.insert(data);
             Log.d(TAG, "Saved category visit locally: " + category);
             
-            // Also try to sync to server if online
-            if (networkUtils.isNetworkAvailable()) {
-                syncEngagement(data);
-            }
+            // Uploaded with the next batch
+            onEngagementRecorded();
         });
         
         // Also track with UserRepository for backward compatibility
@@ -185,10 +200,8 @@ public class EngagementRepository {
             engagementDataDao.insert(data);
             Log.d(TAG, "Saved template usage locally: " + templateId);
             
-            // Also try to sync to server if online
-            if (networkUtils.isNetworkAvailable()) {
-                syncEngagement(data);
-            }
+            // Uploaded with the next batch
+            onEngagementRecorded();
         });
     }
     
@@ -220,10 +233,8 @@ public class EngagementRepository {
             Log.d(TAG, "Saved explicit " + (isLike ? "like" : "dislike") + 
                   " for template: " + templateId);
             
-            // Also try to sync to server if online
-            if (networkUtils.isNetworkAvailable()) {
-                syncEngagement(data);
-            }
+            // Uploaded with the next batch
+            onEngagementRecorded();
         });
     }
     
@@ -297,7 +308,8 @@ public class EngagementRepository {
     }
     
     /**
-     * Sync all unsynced engagement data to server
+     * Sync all unsynced engagement data to server now, without waiting for
+     * a batch to fill up
      */
     public void syncUnsynced() {
         if (!networkUtils.isNetworkAvailable()) {
@@ -314,178 +326,162 @@ public class EngagementRepository {
         if (shouldSkipServerSync()) {
             Log.d(TAG, "Skipping batch sync due to previous failures - will mark as synced locally");
             executors.diskIO().execute(() -> {
-                List<EngagementData> unsynced = engagementDataDao.getUnsynced();
-                if (!unsynced.isEmpty()) {
-                    List<String> allIds = new ArrayList<>();
-                    for (EngagementData data : unsynced) {
-                        allIds.add(data.getId());
-                    }
-                    engagementDataDao.markAsSynced(allIds);
-                    Log.d(TAG, "Marked " + allIds.size() + " engagement records as locally synced (server sync skipped)");
+                int marked = engagementDataDao.markAllSynced();
+                if (marked > 0) {
+                    Log.d(TAG, "Marked " + marked + " engagement records as locally synced (server sync skipped)");
                 }
             });
             return;
         }
         
-        executors.diskIO().execute(() -> {
-            List<EngagementData> unsynced = engagementDataDao.getUnsynced();
-            
-            if (unsynced.isEmpty()) {
-                Log.d(TAG, "No unsynced engagement data to sync");
-                return;
-            }
-            
-            Log.d(TAG, "Syncing " + unsynced.size() + " unsynced engagement records");
-            
-            // Process in batches to avoid overloading the server
-            int total = unsynced.size();
-            int processed = 0;
-            
-            while (processed < total) {
-                int batchSize = Math.min(MAX_SYNC_BATCH_SIZE, total - processed);
-                List<EngagementData> batch = unsynced.subList(processed, processed + batchSize);
-                
-                // Convert to JSON array
-                JsonObject requestBody = new JsonObject();
-                requestBody.add("engagements", gson.toJsonTree(batch));
-                
-                // Add device ID
-                String deviceId = userRepository.getDeviceId();
-                if (deviceId != null) {
-                    requestBody.addProperty("deviceId", deviceId);
-                }
-                
-                // Create a list of IDs for this batch for marking as synced
-                List<String> batchIds = new ArrayList<>();
-                for (EngagementData data : batch) {
-                    batchIds.add(data.getId());
-                }
-                
-                // Send to server
-                apiService.syncEngagementData(requestBody).enqueue(new Callback<JsonObject>() {
-                    @Override
-                    public void onResponse(@NonNull Call<JsonObject> call, 
-                                           @NonNull Response<JsonObject> response) {
-                        if (response.isSuccessful()) {
-                            // Mark as synced
-                            executors.diskIO().execute(() -> {
-                                engagementDataDao.markAsSynced(batchIds);
-                                Log.d(TAG, "Marked " + batchIds.size() + " engagement records as synced");
-                            });
-                            // Reset failure counter on success
-                            resetFailureCounter();
-                        } else {
-                            // Still mark as synced locally if we get a 404
-                            if (response.code() == 404) {
-                                handleApiEndpointMissing();
-                                executors.diskIO().execute(() -> {
-                                    engagementDataDao.markAsSynced(batchIds);
-                                    Log.d(TAG, "Endpoint missing, marking batch as completed locally");
-                                });
-                            } else {
-                                incrementFailureCounter();
-                                Log.e(TAG, "Failed to sync engagement data: " + response.code());
-                            }
-                        }
-                    }
-                    
-                    @Override
-                    public void onFailure(@NonNull Call<JsonObject> call, @NonNull Throwable t) {
-                        incrementFailureCounter();
-                        Log.e(TAG, "Error syncing engagement data", t);
-                    }
-                });
-                
-                processed += batchSize;
-            }
-        });
+        if (!flushing.compareAndSet(false, true)) {
+            Log.d(TAG, "Engagement upload already in progress");
+            return;
+        }
+        executors.diskIO().execute(this::uploadNextBatch);
     }
     
     /**
-     * Sync a single engagement data record to server
-     * @param data Engagement data to sync
+     * Flush at once when a full batch is waiting, otherwise make sure a
+     * flush is scheduled. Runs on the disk thread after a record is saved.
      */
-    private void syncEngagement(EngagementData data) {
-        if (!networkUtils.isNetworkAvailable() || !userRepository.isUserRegistered()) {
+    private void onEngagementRecorded() {
+        if (engagementDataDao.getUnsyncedCount() >= MAX_SYNC_BATCH_SIZE) {
+            syncUnsynced();
             return;
         }
-        
-        // Check if we've reached the retry limit for this session
-        if (shouldSkipServerSync()) {
-            Log.d(TAG, "Skipping server sync due to previous failures - storing locally only");
-            // Still mark as synced locally to avoid repeated attempts
-            executors.diskIO().execute(() -> {
-                data.setSynced(true);
-                engagementDataDao.update(data);
-            });
-            return;
-        }
-        
-        // Create request body
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("deviceId", userRepository.getDeviceId());
-        requestBody.put("type", data.getType());
-        
-        if (data.getTemplateId() != null) {
-            requestBody.put("templateId", data.getTemplateId());
-        }
-        
-        if (data.getCategory() != null) {
-            requestBody.put("category", data.getCategory());
+        synchronized (this) {
+            if (scheduledFlush == null || scheduledFlush.isCancelled()) {
+                scheduledFlush = ExpiryScheduler.getInstance().schedule(
+                    FLUSH_INTERVAL_MS, executors.diskIO(), () -> {
+                        synchronized (this) {
+                            scheduledFlush = null;
+                        }
+                        syncUnsynced();
+                    });
+            }
         }
-        
-        requestBody.put("timestamp", data.getTimestamp());
-        requestBody.put("durationMs", data.getDurationMs());
-        requestBody.put("engagementScore", data.getEngagementScore());
-        
-        if (data.getSource() != null) {
-            requestBody.put("source", data.getSource());
+    }
+    
+    /**
+     * Upload one batch and continue with the next once the server confirms
+     * it. Runs on the disk thread while {@link #flushing} is set.
+     */
+    private void uploadNextBatch() {
+        final String batchId;
+        final RequestBody body;
+        try {
+            batchId = engagementDataDao.claimBatch(MAX_SYNC_BATCH_SIZE);
+            if (batchId == null) {
+                Log.d(TAG, "No unsynced engagement data to sync");
+                flushing.set(false);
+                return;
+            }
+            List<EngagementData> batch = engagementDataDao.getBatch(batchId);
+            body = createBatchBody(batchId, batch);
+            Log.d(TAG, "Uploading engagement batch " + batchId + " with " + batch.size() + " records");
+        } catch (Exception e) {
+            Log.e(TAG, "Error preparing engagement batch", e);
+            flushing.set(false);
+            return;
         }
         
-        // Send to server
-        apiService.recordEngagement(requestBody).enqueue(new Callback<JsonObject>() {
+        apiService.syncEngagementBatch(batchId, body).enqueue(new Callback<JsonObject>() {
             @Override
             public void onResponse(@NonNull Call<JsonObject> call, 
                                    @NonNull Response<JsonObject> response) {
-                if (response.isSuccessful()) {
-                    // Mark as synced
+                if (response.isSuccessful() || response.code() == 404) {
+                    if (response.isSuccessful()) {
+                        // Reset failure counters on success
+                        resetFailureCounter();
+                        clearBatchRejections();
+                    } else {
+                        // Still mark as synced locally if the endpoint doesn't exist on server
+                        handleApiEndpointMissing();
+                    }
                     executors.diskIO().execute(() -> {
-                        data.setSynced(true);
-                        engagementDataDao.update(data);
-                        Log.d(TAG, "Engagement synced to server: " + data.getId());
+                        int marked = engagementDataDao.markBatchSynced(batchId);
+                        Log.d(TAG, "Marked " + marked + " engagement records as synced");
+                        if (response.isSuccessful()) {
+                            uploadNextBatch();
+                        } else {
+                            flushing.set(false);
+                        }
                     });
-                    // Reset failure counter on success
-                    resetFailureCounter();
-                } else {
-                    // Still mark as synced locally if we get a 404
-                    // (indicates the endpoint doesn't exist on server)
-                    if (response.code() == 404) {
-                        handleApiEndpointMissing();
-                        executors.diskIO().execute(() -> {
-                            data.setSynced(true);
-                            engagementDataDao.update(data);
-                            Log.d(TAG, "Endpoint missing, marking sync as completed locally");
-                        });
-                    } else {
-                        incrementFailureCounter();
-                        Log.e(TAG, "Failed to sync engagement: " + response.code());
+                } else if (isBatchRejected(response.code())) {
+                    // The server refuses this batch itself, so sending it again as is
+                    // cannot succeed; after a few tries it is dropped so that later
+                    // records are not held up behind it forever
+                    Log.e(TAG, "Engagement batch " + batchId + " rejected: " + response.code());
+                    if (recordBatchRejection(batchId) < MAX_BATCH_REJECTIONS) {
+                        flushing.set(false);
+                        return;
                     }
+                    executors.diskIO().execute(() -> {
+                        int dropped = engagementDataDao.dropBatch(batchId);
+                        clearBatchRejections();
+                        Log.w(TAG, "Dropped " + dropped + " engagement records of rejected batch " + batchId);
+                        uploadNextBatch();
+                    });
+                } else {
+                    // The batch keeps its ID and is sent again on the next flush
+                    incrementFailureCounter();
+                    flushing.set(false);
+                    Log.e(TAG, "Failed to sync engagement batch: " + response.code());
                 }
             }
             
             @Override
             public void onFailure(@NonNull Call<JsonObject> call, @NonNull Throwable t) {
                 incrementFailureCounter();
-                Log.e(TAG, "Error syncing engagement", t);
+                flushing.set(false);
+                Log.e(TAG, "Error syncing engagement batch", t);
             }
         });
     }
     
+    /**
+     * Build the gzipped request body of a batch
+     * @param batchId Batch ID
+     * @param batch Records in the batch
+     * @return Request body
+     */
+    private RequestBody createBatchBody(String batchId, List<EngagementData> batch) throws IOException {
+        JsonArray engagements = new JsonArray();
+        for (EngagementData data : batch) {
+            JsonObject record = gson.toJsonTree(data).getAsJsonObject();
+            record.remove("synced");
+            record.remove("batchId");
+            engagements.add(record);
+        }
+        
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("batchId", batchId);
+        requestBody.add("engagements", engagements);
+        
+        // Add device ID
+        String deviceId = userRepository.getDeviceId();
+        if (deviceId != null) {
+            requestBody.addProperty("deviceId", deviceId);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            gson.toJson(requestBody, writer);
+        }
+        return RequestBody.create(bytes.toByteArray(), JSON);
+    }
+    
     // Track API failures to avoid repeated attempts
     private static final String PREF_ENGAGEMENT_FAILURES = "engagement_sync_failures";
     private static final String PREF_ENDPOINT_MISSING = "engagement_endpoint_missing";
     private static final int MAX_FAILURES_BEFORE_SKIP = 5;
     
+    // Track rejections of the pending batch, so that a batch the server refuses is dropped
+    private static final String PREF_REJECTED_BATCH_ID = "engagement_rejected_batch_id";
+    private static final String PREF_REJECTED_BATCH_COUNT = "engagement_rejected_batch_count";
+    private static final int MAX_BATCH_REJECTIONS = 3;
+    
     private void incrementFailureCounter() {
         android.content.SharedPreferences prefs = context.getSharedPreferences("engagement_prefs", Context.MODE_PRIVATE);
         int failures = prefs.getInt(PREF_ENGAGEMENT_FAILURES, 0);
@@ -503,6 +499,38 @@ public class EngagementRepository {
         Log.w(TAG, "Engagement tracking API endpoint not found on server, will store locally only");
     }
     
+    /**
+     * Whether a response refuses the batch itself, as opposed to a missing
+     * endpoint, missing credentials or a transient condition
+     * @param code HTTP status code
+     * @return True for client errors that resending the same batch cannot fix
+     */
+    private static boolean isBatchRejected(int code) {
+        return code >= 400 && code < 500
+            && code != 401 && code != 403 && code != 404 && code != 408 && code != 429;
+    }
+    
+    /**
+     * Count a rejection of a batch
+     * @param batchId Batch ID
+     * @return Number of times this batch has been rejected
+     */
+    private int recordBatchRejection(String batchId) {
+        android.content.SharedPreferences prefs = context.getSharedPreferences("engagement_prefs", Context.MODE_PRIVATE);
+        int rejections = batchId.equals(prefs.getString(PREF_REJECTED_BATCH_ID, null))
+            ? prefs.getInt(PREF_REJECTED_BATCH_COUNT, 0) + 1 : 1;
+        prefs.edit()
+            .putString(PREF_REJECTED_BATCH_ID, batchId)
+            .putInt(PREF_REJECTED_BATCH_COUNT, rejections)
+            .apply();
+        return rejections;
+    }
+    
+    private void clearBatchRejections() {
+        android.content.SharedPreferences prefs = context.getSharedPreferences("engagement_prefs", Context.MODE_PRIVATE);
+        prefs.edit().remove(PREF_REJECTED_BATCH_ID).remove(PREF_REJECTED_BATCH_COUNT).apply();
+    }
+    
     private boolean shouldSkipServerSync() {
         android.content.SharedPreferences prefs = context.getSharedPreferences("engagement_prefs", Context.MODE_PRIVATE);
         // Skip if endpoint has been confirmed missing or if we've had too many failures
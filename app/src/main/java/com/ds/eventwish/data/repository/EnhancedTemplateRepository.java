@@ -330,9 +330,9 @@ public class EnhancedTemplateRepository {
     private void loadTemplatesFromNetwork(boolean forceRefresh) {
         Call<TemplateResponse> call;
         if (currentCategory != null) {
-            call = apiService.getTemplatesByCategory(currentCategory, currentPage, PAGE_SIZE);
+            call = apiService.getTemplatesByCategory(currentCategory, currentPage, PAGE_SIZE, null, null);
         } else {
-            call = apiService.getTemplates(currentPage, PAGE_SIZE);
+            call = apiService.getTemplates(currentPage, PAGE_SIZE, null, null);
         }
 
         setCurrentCall(call);
@@ -409,9 +409,9 @@ public class EnhancedTemplateRepository {
     private void refreshTemplatesInBackground() {
         Call<TemplateResponse> call;
         if (currentCategory != null) {
-            call = apiService.getTemplatesByCategory(currentCategory, currentPage, PAGE_SIZE);
+            call = apiService.getTemplatesByCategory(currentCategory, currentPage, PAGE_SIZE, null, null);
         } else {
-            call = apiService.getTemplates(currentPage, PAGE_SIZE);
+            call = apiService.getTemplates(currentPage, PAGE_SIZE, null, null);
         }
 
         call.enqueue(new Callback<TemplateResponse>() {
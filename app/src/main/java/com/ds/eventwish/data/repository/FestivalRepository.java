@@ -17,6 +17,7 @@ import com.ds.eventwish.data.model.ServerTimeResponse;
 import com.ds.eventwish.data.remote.ApiClient;
 import com.ds.eventwish.data.remote.ApiService;
 import com.ds.eventwish.utils.CacheManager;
+import com.ds.eventwish.utils.ExpiryScheduler;
 import com.google.gson.reflect.TypeToken;
 import com.ds.eventwish.utils.TimeUtils;
 
@@ -28,7 +29,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.TimeZone;
@@ -48,12 +48,12 @@ public class FestivalRepository {
     private final FestivalDao festivalDao;
     private final ApiService apiService;
     private final Executor executor;
-    private final ScheduledExecutorService scheduledExecutor;
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<Integer> unreadCount = new MutableLiveData<>(0);
     private final MutableLiveData<Boolean> isFromCache = new MutableLiveData<>(false);
     private final CacheManager cacheManager;
+    private final SearchRepository searchRepository;
     private final Context context;
 
     private FestivalRepository(Context context) {
@@ -62,8 +62,8 @@ public class FestivalRepository {
         festivalDao = database.festivalDao();
         apiService = ApiClient.getClient();
         executor = Executors.newFixedThreadPool(4);
-        scheduledExecutor = Executors.newScheduledThreadPool(1);
         cacheManager = CacheManager.getInstance(context);
+        searchRepository = SearchRepository.getInstance(context);
         
         // Initialize the unread count on a background thread
         executor.execute(this::refreshUnreadCount);
@@ -247,6 +247,7 @@ public class FestivalRepository {
                     
                     // Update database
                     festivalDao.insertAll(festivals);
+                    searchRepository.indexFestivals(festivals, false);
                     
                     // Update cache timestamp
                     updateCacheTimestamp();
@@ -296,6 +297,7 @@ public class FestivalRepository {
             Log.d(TAG, "Using cached festivals: " + cachedFestivals.size() + " festivals");
             executor.execute(() -> {
                 festivalDao.insertAllFestivals(cachedFestivals);
+                searchRepository.indexFestivals(cachedFestivals, false);
                 isLoading.postValue(false);
                 isFromCache.postValue(true);
             });
@@ -325,6 +327,8 @@ public class FestivalRepository {
             executor.execute(() -> {
                 festivalDao.deleteFestivalsByCategory(category);
                 festivalDao.insertAllFestivals(cachedFestivals);
+                // Re-index everything stored, so the category's deleted festivals leave the index
+                searchRepository.indexFestivals(festivalDao.getAllFestivals(), true);
                 isLoading.postValue(false);
                 isFromCache.postValue(true);
             });
@@ -352,6 +356,7 @@ public class FestivalRepository {
                             
                             // Insert new festivals
                             festivalDao.insertAllFestivals(festivals);
+                            searchRepository.indexFestivals(festivals, true);
                             
                             // Update unread count
                             refreshUnreadCount();
@@ -402,6 +407,8 @@ public class FestivalRepository {
                             
                             // Insert new festivals
                             festivalDao.insertAllFestivals(festivals);
+                            // Re-index everything stored, so the category's deleted festivals leave the index
+                            searchRepository.indexFestivals(festivalDao.getAllFestivals(), true);
                             
                             // Update unread count
                             refreshUnreadCount();
@@ -491,46 +498,35 @@ public class FestivalRepository {
     }
     
     /**
-     * Start background check for database changes
+     * Start background check for database changes. The shared scheduler
+     * pauses while the app is in the background, so the check only runs
+     * while the app is in use.
      */
     private void startBackgroundDatabaseCheck() {
-        scheduledExecutor.scheduleAtFixedRate(() -> {
-            if (isAppInForeground()) {
-                Log.d(TAG, "Performing background check for database changes");
-                checkForDatabaseChanges();
-            }
-        }, BACKGROUND_CHECK_INTERVAL, BACKGROUND_CHECK_INTERVAL, TimeUnit.MINUTES);
-    }
-    
-    /**
-     * Check if the app is in the foreground
-     * @return true if the app is in the foreground
-     */
-    private boolean isAppInForeground() {
-        // This is a simplified check - in a real app, you would use ProcessLifecycleOwner
-        // or a similar mechanism to determine if the app is in the foreground
-        return true;
+        ExpiryScheduler.getInstance().scheduleRepeating(
+                TimeUnit.MINUTES.toMillis(BACKGROUND_CHECK_INTERVAL), executor, () -> {
+            Log.d(TAG, "Performing background check for database changes");
+            checkForDatabaseChanges();
+        });
     }
     
     /**
-     * Check for database changes
+     * Check for database changes. Runs on the repository's executor.
      */
     private void checkForDatabaseChanges() {
-        executor.execute(() -> {
-            try {
-                // Check for new unnotified festivals
-                List<Festival> unnotifiedFestivals = getUnnotifiedUpcomingFestivals();
-                if (unnotifiedFestivals != null && !unnotifiedFestivals.isEmpty()) {
-                    Log.d(TAG, "Found " + unnotifiedFestivals.size() + " unnotified festivals during background check");
-                    // You could trigger notifications here if needed
-                }
-                
-                // Refresh unread count
-                refreshUnreadCount();
-            } catch (Exception e) {
-                Log.e(TAG, "Error checking for database changes", e);
+        try {
+            // Check for new unnotified festivals
+            List<Festival> unnotifiedFestivals = getUnnotifiedUpcomingFestivals();
+            if (unnotifiedFestivals != null && !unnotifiedFestivals.isEmpty()) {
+                Log.d(TAG, "Found " + unnotifiedFestivals.size() + " unnotified festivals during background check");
+                // You could trigger notifications here if needed
             }
-        });
+            
+            // Refresh unread count
+            refreshUnreadCount();
+        } catch (Exception e) {
+            Log.e(TAG, "Error checking for database changes", e);
+        }
     }
     
     /**
@@ -0,0 +1,135 @@
+package com.ds.eventwish.data.repository;
+
+import com.ds.eventwish.data.model.Template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Picks the top recommendations from scored templates in one pass.
+ *
+ * Each category keeps only its best {@code limit} templates in a bounded
+ * min-heap, which is all that round-robin interleaving can ever take from
+ * it, so offering n templates costs O(n log limit) and memory is bounded by
+ * categories times limit. {@link #select()} then orders categories by their
+ * best template and takes one template from each in turn. The result is the
+ * same as sorting every candidate and interleaving the full list.
+ *
+ * Not thread-safe; use one selector per recommendation run.
+ */
+class RecommendationSelector {
+
+    // Worst first: lowest score, then the one offered last
+    private static final Comparator<ScoredTemplate> WORST_FIRST = new Comparator<ScoredTemplate>() {
+        @Override
+        public int compare(ScoredTemplate t1, ScoredTemplate t2) {
+            int byScore = Float.compare(t1.getScore(), t2.getScore());
+            return byScore != 0 ? byScore : Integer.compare(t2.order, t1.order);
+        }
+    };
+
+    private static final Comparator<ScoredTemplate> BEST_FIRST = Collections.reverseOrder(WORST_FIRST);
+
+    private final int limit;
+    private final Map<String, PriorityQueue<ScoredTemplate>> byCategory = new HashMap<>();
+    private int offered = 0;
+
+    /**
+     * @param limit Maximum number of templates to select
+     */
+    RecommendationSelector(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Offer a scored template
+     * @param template Template
+     * @param score Score, higher is better
+     */
+    void offer(Template template, float score) {
+        if (limit <= 0) {
+            return;
+        }
+        ScoredTemplate scored = new ScoredTemplate(template, score, offered++);
+        PriorityQueue<ScoredTemplate> heap = byCategory.get(template.getCategory());
+        if (heap == null) {
+            heap = new PriorityQueue<>(Math.min(limit, 16), WORST_FIRST);
+            byCategory.put(template.getCategory(), heap);
+        }
+        if (heap.size() < limit) {
+            heap.add(scored);
+        } else if (WORST_FIRST.compare(scored, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(scored);
+        }
+    }
+
+    /**
+     * Get the selected templates, interleaved by category
+     * @return Up to limit templates, best category first
+     */
+    List<ScoredTemplate> select() {
+        // Each category's kept templates, best first
+        List<List<ScoredTemplate>> categories = new ArrayList<>(byCategory.size());
+        for (PriorityQueue<ScoredTemplate> heap : byCategory.values()) {
+            List<ScoredTemplate> templates = new ArrayList<>(heap);
+            Collections.sort(templates, BEST_FIRST);
+            categories.add(templates);
+        }
+
+        // Categories in order of their best template
+        Collections.sort(categories, new Comparator<List<ScoredTemplate>>() {
+            @Override
+            public int compare(List<ScoredTemplate> c1, List<ScoredTemplate> c2) {
+                return BEST_FIRST.compare(c1.get(0), c2.get(0));
+            }
+        });
+
+        // Take templates from each category in rotation
+        List<ScoredTemplate> result = new ArrayList<>(limit);
+        for (int round = 0; result.size() < limit; round++) {
+            boolean tookAny = false;
+            for (List<ScoredTemplate> templates : categories) {
+                if (round < templates.size()) {
+                    result.add(templates.get(round));
+                    tookAny = true;
+                    if (result.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            if (!tookAny) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper class to associate templates with scores
+     */
+    static class ScoredTemplate {
+        private final Template template;
+        private final float score;
+        private final int order;
+
+        ScoredTemplate(Template template, float score, int order) {
+            this.template = template;
+            this.score = score;
+            this.order = order;
+        }
+
+        Template getTemplate() {
+            return template;
+        }
+
+        float getScore() {
+            return score;
+        }
+    }
+}
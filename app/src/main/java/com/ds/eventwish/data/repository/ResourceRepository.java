@@ -22,18 +22,20 @@ import com.ds.eventwish.utils.ErrorHandler;
 import com.ds.eventwish.utils.NetworkErrorHandler;
 import com.ds.eventwish.utils.NetworkUtils;
 import com.ds.eventwish.data.cache.ResourceCache;
-import com.google.gson.Gson;
+import com.ds.eventwish.data.cache.TieredCache;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.internal.LinkedTreeMap;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import okhttp3.Headers;
 import retrofit2.Call;
@@ -50,10 +52,16 @@ public class ResourceRepository {
     private static final long DEFAULT_CACHE_EXPIRATION = TimeUnit.HOURS.toMillis(1); // 1 hour
     private static final long LONG_CACHE_EXPIRATION = TimeUnit.DAYS.toMillis(1); // 1 day
     
+    // Expired rows are kept this long so their ETags can still be revalidated
+    private static final long EXPIRED_RETENTION = TimeUnit.DAYS.toMillis(7);
+    
     // ETag header
     private static final String HEADER_ETAG = "ETag";
     private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
     
+    // Marks a resource known to have no ETag, so the database is not asked again
+    private static final String NO_ETAG = "";
+    
     // Resource types
     public static final String RESOURCE_TYPE_TEMPLATE = "template";
     public static final String RESOURCE_TYPE_CATEGORY = "category";
@@ -69,12 +77,72 @@ public class ResourceRepository {
     private final AppExecutors appExecutors;
     private final NetworkUtils networkUtils;
     private final ResourceCache resourceCache;
-    private final Gson gson;
     private final ErrorHandler errorHandler;
     private final Context context;
     
-    // ETag cache
-    private final Map<String, String> etagCache = new HashMap<>();
+    // ETags by cache key, loaded lazily from the database
+    private final Map<String, String> etagCache = new ConcurrentHashMap<>();
+    
+    // Network loads in progress, by cache key; guarded by itself
+    private final Map<String, InFlightLoad> inFlightLoads = new HashMap<>();
+    
+    // Load counters
+    private final AtomicLong loadRequests = new AtomicLong();
+    private final AtomicLong networkLoads = new AtomicLong();
+    private final AtomicLong coalescedLoads = new AtomicLong();
+    
+    /**
+     * A network load together with every caller waiting on it
+     */
+    private static final class InFlightLoad {
+        // Callers with nothing to show yet
+        final List<MutableLiveData<Resource<JsonObject>>> waiting = new ArrayList<>();
+        // Callers already showing cached data
+        final List<MutableLiveData<Resource<JsonObject>>> revalidating = new ArrayList<>();
+    }
+    
+    /**
+     * Point-in-time counters of {@link #loadResource} calls
+     */
+    public static final class LoadStats {
+        private final long requests;
+        private final long networkLoads;
+        private final long coalesced;
+        
+        LoadStats(long requests, long networkLoads, long coalesced) {
+            this.requests = requests;
+            this.networkLoads = networkLoads;
+            this.coalesced = coalesced;
+        }
+        
+        /**
+         * @return Calls to loadResource
+         */
+        public long getRequests() {
+            return requests;
+        }
+        
+        /**
+         * @return Network calls started
+         */
+        public long getNetworkLoads() {
+            return networkLoads;
+        }
+        
+        /**
+         * @return Requests that joined a network call already running
+         */
+        public long getCoalesced() {
+            return coalesced;
+        }
+        
+        @NonNull
+        @Override
+        public String toString() {
+            return "LoadStats{requests=" + requests + ", networkLoads=" + networkLoads
+                    + ", coalesced=" + coalesced + "}";
+        }
+    }
     
     /**
      * Get the singleton instance of ResourceRepository
@@ -123,7 +191,6 @@ public class ResourceRepository {
         appExecutors = AppExecutors.getInstance();
         networkUtils = NetworkUtils.getInstance(context);
         resourceCache = ResourceCache.getInstance(context);
-        gson = new Gson();
         errorHandler = ErrorHandler.getInstance(context);
         
         // Clean up expired resources periodically
@@ -133,7 +200,9 @@ public class ResourceRepository {
     }
     
     /**
-     * Load a resource with caching and offline support
+     * Load a resource with caching and offline support. A cached value is
+     * returned straight away, even if it has expired, while a single network
+     * revalidation runs behind it.
      * @param type Resource type
      * @param id Resource ID
      * @param forceRefresh Whether to force a refresh from network
@@ -142,39 +211,34 @@ public class ResourceRepository {
     public LiveData<Resource<JsonObject>> loadResource(ResourceType type, String id, boolean forceRefresh) {
         MutableLiveData<Resource<JsonObject>> result = new MutableLiveData<>();
         result.postValue(Resource.loading(null));
+        loadRequests.incrementAndGet();
         
         String cacheKey = getCacheKey(type, id);
         
         // First try to get from cache
         appExecutors.diskIO().execute(() -> {
-            JsonObject cachedData = resourceCache.get(cacheKey);
+            TieredCache.CacheResult<JsonObject> cached = resourceCache.getEntry(cacheKey);
             
-            if (cachedData != null && !forceRefresh) {
-                Log.d(TAG, "Loaded resource from cache: " + cacheKey);
-                result.postValue(Resource.success(cachedData));
+            if (cached != null && !forceRefresh) {
+                Log.d(TAG, "Loaded resource from cache: " + cacheKey + (cached.isStale() ? " (stale)" : ""));
+                result.postValue(Resource.success(cached.getValue(), cached.isStale()));
                 
-                // If network is available and not metered, check for updates in background
-                if (networkUtils.isConnected() && !networkUtils.isConnectionMetered()) {
-                    refreshResourceInBackground(type, id, result);
+                // Stale data is revalidated on any network, fresh data only when it is not metered
+                if (networkUtils.isConnected() && (cached.isStale() || !networkUtils.isConnectionMetered())) {
+                    loadResourceFromNetwork(type, id, result, true);
                 }
+            } else if (networkUtils.isConnected()) {
+                loadResourceFromNetwork(type, id, result, false);
+            } else if (cached != null) {
+                Log.d(TAG, "Offline, using cached data: " + cacheKey);
+                result.postValue(Resource.success(cached.getValue(), true));
             } else {
-                // If not in cache or force refresh, load from network
-                if (networkUtils.isConnected()) {
-                    loadResourceFromNetwork(type, id, result);
-                } else {
-                    // If offline and no cache, return error
-                    if (cachedData != null) {
-                        Log.d(TAG, "Offline, using stale cached data: " + cacheKey);
-                        result.postValue(Resource.success(cachedData, true));
-                    } else {
-                        Log.e(TAG, "Offline and no cached data available: " + cacheKey);
-                        result.postValue(Resource.error("No internet connection and no cached data available.", null));
-                        errorHandler.handleError(
-                                ErrorHandler.ErrorType.OFFLINE,
-                                "No internet connection and no cached data available for " + type.getKey() + " " + id,
-                                ErrorHandler.ErrorSeverity.MEDIUM);
-                    }
-                }
+                Log.e(TAG, "Offline and no cached data available: " + cacheKey);
+                result.postValue(Resource.error("No internet connection and no cached data available.", null));
+                errorHandler.handleError(
+                        ErrorHandler.ErrorType.OFFLINE,
+                        "No internet connection and no cached data available for " + type.getKey() + " " + id,
+                        ErrorHandler.ErrorSeverity.MEDIUM);
             }
         });
         
@@ -182,17 +246,38 @@ public class ResourceRepository {
     }
     
     /**
-     * Load a resource from network
+     * Load a resource from network. A caller asking for a resource that is
+     * already being loaded joins the running call instead of starting another,
+     * and the response is written to the cache once for all of them.
      * @param type Resource type
      * @param id Resource ID
      * @param result LiveData to update with the result
+     * @param revalidate Whether result already shows cached data, in which case
+     *                   it is only updated with newer data
      */
-    private void loadResourceFromNetwork(ResourceType type, String id, MutableLiveData<Resource<JsonObject>> result) {
+    private void loadResourceFromNetwork(ResourceType type, String id,
+                                         MutableLiveData<Resource<JsonObject>> result, boolean revalidate) {
         String cacheKey = getCacheKey(type, id);
-        String etag = etagCache.get(cacheKey);
+        
+        synchronized (inFlightLoads) {
+            InFlightLoad load = inFlightLoads.get(cacheKey);
+            boolean running = load != null;
+            if (!running) {
+                load = new InFlightLoad();
+                inFlightLoads.put(cacheKey, load);
+            }
+            (revalidate ? load.revalidating : load.waiting).add(result);
+            if (running) {
+                coalescedLoads.incrementAndGet();
+                Log.d(TAG, "Joined in-flight load: " + cacheKey);
+                return;
+            }
+        }
+        networkLoads.incrementAndGet();
         
         // Build headers with ETag if available
         Map<String, String> headers = new HashMap<>();
+        String etag = getEtag(type.getKey(), id);
         if (etag != null) {
             headers.put(HEADER_IF_NONE_MATCH, etag);
         }
@@ -203,36 +288,62 @@ public class ResourceRepository {
             public void onResponse(@NonNull Call<JsonObject> call, @NonNull Response<JsonObject> response) {
                 if (response.isSuccessful() && response.body() != null) {
                     JsonObject data = response.body();
+                    String newEtag = response.headers().get(HEADER_ETAG);
                     
-                    // Cache the response
+                    // Cache the response and store it with its ETag. The load stays
+                    // in flight until then, so callers arriving meanwhile join it
+                    // rather than miss the cache and start another.
                     appExecutors.diskIO().execute(() -> {
-                        resourceCache.put(cacheKey, data, getCacheExpiration(type));
-                        
-                        // Save ETag if available
-                        Headers responseHeaders = response.headers();
-                        String newEtag = responseHeaders.get(HEADER_ETAG);
-                        if (newEtag != null) {
-                            etagCache.put(cacheKey, newEtag);
+                        try {
+                            long expiration = getCacheExpiration(type);
+                            resourceCache.put(cacheKey, data, expiration);
+                            storeResource(type.getKey(), id, data, null, newEtag,
+                                    new Date(System.currentTimeMillis() + expiration));
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error storing resource: " + cacheKey, e);
+                        } finally {
+                            InFlightLoad load = finishLoad(cacheKey);
+                            postAll(load.waiting, Resource.success(data));
+                            postAll(load.revalidating, Resource.success(data));
                         }
                     });
-                    
-                    result.postValue(Resource.success(data));
                 } else if (response.code() == 304) {
                     // Not modified, use cached data
                     Log.d(TAG, "Resource not modified (304): " + cacheKey);
                     appExecutors.diskIO().execute(() -> {
-                        JsonObject cachedData = resourceCache.get(cacheKey);
-                        if (cachedData != null) {
-                            // Cast the data to JsonObject if needed
-                            Object data = cachedData;
-                            JsonObject jsonData = (data instanceof JsonObject) ? (JsonObject) data : null;
-                            result.postValue(Resource.success(jsonData));
+                        JsonObject data = null;
+                        boolean refreshed = false;
+                        try {
+                            // The stored body is current, so only its timestamps move
+                            long now = System.currentTimeMillis();
+                            long expiration = getCacheExpiration(type);
+                            resourceDao.touchResource(type.getKey(), id, new Date(now), new Date(now + expiration));
+                            
+                            TieredCache.CacheResult<JsonObject> cached = resourceCache.getEntry(cacheKey);
+                            data = cached != null ? cached.getValue() : getStoredData(type.getKey(), id);
+                            if (data != null && (cached == null || cached.isStale())) {
+                                resourceCache.put(cacheKey, data, expiration);
+                                refreshed = true;
+                            }
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error refreshing resource: " + cacheKey, e);
+                        }
+                        
+                        // Finished only once the cache holds the fresh entry
+                        InFlightLoad load = finishLoad(cacheKey);
+                        if (data != null) {
+                            if (refreshed) {
+                                postAll(load.revalidating, Resource.success(data));
+                            }
+                            postAll(load.waiting, Resource.success(data));
                         } else {
                             // This shouldn't happen, but just in case
-                            result.postValue(Resource.error("Resource not modified but not in cache", null));
+                            etagCache.put(cacheKey, NO_ETAG);
+                            postAll(load.waiting, Resource.error("Resource not modified but not in cache", null));
                         }
                     });
                 } else {
+                    InFlightLoad load = finishLoad(cacheKey);
                     String errorMsg = "Failed to load resource";
                     try {
                         if (response.errorBody() != null) {
@@ -242,103 +353,126 @@ public class ResourceRepository {
                         Log.e(TAG, "Error reading error body", e);
                     }
                     
-                    // Try to get from cache as fallback
                     final String finalErrorMsg = errorMsg;
-                    appExecutors.diskIO().execute(() -> {
-                        JsonObject cachedData = resourceCache.get(cacheKey);
-                        if (cachedData != null) {
-                            Log.d(TAG, "API error, using cache: " + cacheKey);
-                            // Cast the data to JsonObject if needed
-                            Object data = cachedData;
-                            JsonObject jsonData = (data instanceof JsonObject) ? (JsonObject) data : null;
-                            result.postValue(Resource.success(jsonData, true));
-                        } else {
-                            result.postValue(Resource.error(finalErrorMsg, null));
-                            errorHandler.handleError(
-                                    ErrorHandler.ErrorType.SERVER_ERROR,
-                                    finalErrorMsg,
-                                    ErrorHandler.ErrorSeverity.MEDIUM);
-                        }
-                    });
+                    deliverLoadFailure(cacheKey, load, finalErrorMsg, () -> errorHandler.handleError(
+                            ErrorHandler.ErrorType.SERVER_ERROR,
+                            finalErrorMsg,
+                            ErrorHandler.ErrorSeverity.MEDIUM));
                 }
             }
 
             @Override
             public void onFailure(@NonNull Call<JsonObject> call, @NonNull Throwable t) {
-                // Try to get from cache as fallback
-                appExecutors.diskIO().execute(() -> {
-                    JsonObject cachedData = resourceCache.get(cacheKey);
-                    if (cachedData != null) {
-                        Log.d(TAG, "Network request failed, using cache: " + cacheKey);
-                        // Cast the data to JsonObject if needed
-                        Object data = cachedData;
-                        JsonObject jsonData = (data instanceof JsonObject) ? (JsonObject) data : null;
-                        result.postValue(Resource.success(jsonData, true));
-                    } else {
-                        String errorMsg = NetworkErrorHandler.getErrorMessage(context, t);
-                        result.postValue(Resource.error(errorMsg, null));
-                        NetworkErrorHandler.handleNetworkError(context, t, errorHandler);
-                    }
-                });
+                InFlightLoad load = finishLoad(cacheKey);
+                String errorMsg = NetworkErrorHandler.getErrorMessage(context, t);
+                deliverLoadFailure(cacheKey, load, errorMsg,
+                        () -> NetworkErrorHandler.handleNetworkError(context, t, errorHandler));
             }
         });
     }
     
     /**
-     * Refresh a resource in background without updating loading state
-     * @param type Resource type
-     * @param id Resource ID
-     * @param result LiveData to update with the result
+     * Remove a finished load so that the next caller starts a new one
+     * @param cacheKey Cache key of the load
+     * @return The finished load with every caller that joined it
      */
-    private void refreshResourceInBackground(ResourceType type, String id, MutableLiveData<Resource<JsonObject>> result) {
-        String cacheKey = getCacheKey(type, id);
-        String etag = etagCache.get(cacheKey);
-        
-        // Build headers with ETag if available
-        Map<String, String> headers = new HashMap<>();
-        if (etag != null) {
-            headers.put(HEADER_IF_NONE_MATCH, etag);
+    private InFlightLoad finishLoad(String cacheKey) {
+        synchronized (inFlightLoads) {
+            return inFlightLoads.remove(cacheKey);
+        }
+    }
+    
+    /**
+     * Answer the callers of a failed load, from the cache where possible.
+     * Callers that already show cached data are left as they are.
+     * @param cacheKey Cache key of the load
+     * @param load The failed load
+     * @param errorMsg Error message for callers with nothing to show
+     * @param reportError Reports the error once for the whole load
+     */
+    private void deliverLoadFailure(String cacheKey, InFlightLoad load, String errorMsg, Runnable reportError) {
+        if (load.waiting.isEmpty()) {
+            Log.e(TAG, "Background refresh failed for " + cacheKey + ": " + errorMsg);
+            return;
         }
         
-        Call<JsonObject> call = apiService.getResource(type.getApiPath(), id, headers);
-        call.enqueue(new Callback<JsonObject>() {
-            @Override
-            public void onResponse(@NonNull Call<JsonObject> call, @NonNull Response<JsonObject> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    JsonObject data = response.body();
-                    
-                    // Cache the response
-                    appExecutors.diskIO().execute(() -> {
-                        resourceCache.put(cacheKey, data, getCacheExpiration(type));
-                        
-                        // Save ETag if available
-                        Headers responseHeaders = response.headers();
-                        String newEtag = responseHeaders.get(HEADER_ETAG);
-                        if (newEtag != null) {
-                            etagCache.put(cacheKey, newEtag);
-                        }
-                        
-                        // Only update LiveData if it's not in loading state
-                        if (result.getValue() != null && !result.getValue().isLoading()) {
-                            // Cast the data to JsonObject if needed
-                            Object dataToPost = data;
-                            JsonObject jsonData = (dataToPost instanceof JsonObject) ? (JsonObject) dataToPost : null;
-                            result.postValue(Resource.success(jsonData));
-                        }
-                    });
-                } else if (response.code() != 304) {
-                    // Only log errors, don't update LiveData
-                    Log.e(TAG, "Background refresh failed: " + response.code());
-                }
-            }
-
-            @Override
-            public void onFailure(@NonNull Call<JsonObject> call, @NonNull Throwable t) {
-                Log.e(TAG, "Background refresh failed", t);
+        appExecutors.diskIO().execute(() -> {
+            TieredCache.CacheResult<JsonObject> cached = resourceCache.getEntry(cacheKey);
+            if (cached != null) {
+                Log.d(TAG, "Network load failed, using cache: " + cacheKey);
+                postAll(load.waiting, Resource.success(cached.getValue(), true));
+            } else {
+                postAll(load.waiting, Resource.error(errorMsg, null));
+                reportError.run();
             }
         });
     }
     
+    private static void postAll(List<MutableLiveData<Resource<JsonObject>>> results, Resource<JsonObject> value) {
+        for (MutableLiveData<Resource<JsonObject>> result : results) {
+            result.postValue(value);
+        }
+    }
+    
+    /**
+     * Get counters for {@link #loadResource}
+     * @return Requests made, network calls started and requests that joined a running call
+     */
+    public LoadStats getLoadStats() {
+        return new LoadStats(loadRequests.get(), networkLoads.get(), coalescedLoads.get());
+    }
+    
+    /**
+     * Get the ETag of a stored resource, reading it from the database on
+     * first use. Must be called on a background thread.
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @return ETag, or null if there is none
+     */
+    @Nullable
+    private String getEtag(String resourceType, String resourceKey) {
+        String cacheKey = getCacheKey(resourceType, resourceKey);
+        String etag = etagCache.get(cacheKey);
+        if (etag == null) {
+            etag = resourceDao.getEtag(resourceType, resourceKey);
+            String previous = etagCache.putIfAbsent(cacheKey, etag != null ? etag : NO_ETAG);
+            if (previous != null) {
+                // A response stored a newer one meanwhile
+                etag = previous;
+            }
+        }
+        return etag == null || etag.equals(NO_ETAG) ? null : etag;
+    }
+    
+    /**
+     * Write a resource and its ETag to the database in one transaction.
+     * Must be called on a background thread.
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @param data Resource data
+     * @param metadata Additional metadata
+     * @param etag ETag for HTTP caching
+     * @param expirationTime Expiration time
+     */
+    private void storeResource(String resourceType, String resourceKey, JsonObject data,
+                               Map<String, String> metadata, String etag, Date expirationTime) {
+        resourceDao.upsert(resourceType, resourceKey, data, metadata, etag, expirationTime);
+        etagCache.put(getCacheKey(resourceType, resourceKey), etag != null ? etag : NO_ETAG);
+    }
+    
+    /**
+     * Read the stored data of a resource from the database. Must be called
+     * on a background thread.
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @return Stored data, or null if not found
+     */
+    @Nullable
+    private JsonObject getStoredData(String resourceType, String resourceKey) {
+        ResourceEntity entity = resourceDao.getResource(resourceType, resourceKey);
+        return entity != null ? entity.getData() : null;
+    }
+    
     /**
      * Get cache key for a resource
      * @param type Resource type
@@ -397,10 +531,8 @@ public class ResourceRepository {
             resourceCache.removeByPrefix(type.getCachePrefix());
             
             // Remove ETags for this type
-            synchronized (etagCache) {
-                String prefix = type.getCachePrefix();
-                etagCache.entrySet().removeIf(entry -> entry.getKey().startsWith(prefix));
-            }
+            String prefix = type.getCachePrefix();
+            etagCache.keySet().removeIf(key -> key.startsWith(prefix));
         });
     }
     
@@ -432,137 +564,29 @@ public class ResourceRepository {
         final String cacheKey = getCacheKey(resourceType, resourceKey);
         
         try {
-            // Check memory cache first
-            JsonObject cachedData = null;
-            Object cachedObject = resourceCache.get(cacheKey);
-            
-            if (cachedObject != null) {
-                try {
-                    if (cachedObject instanceof JsonObject) {
-                        cachedData = (JsonObject) cachedObject;
-                        Log.d(TAG, "Found JsonObject in memory cache for: " + cacheKey);
-                    } else if (cachedObject instanceof LinkedTreeMap) {
-                        // Convert LinkedTreeMap to JsonObject
-                        Log.d(TAG, "Converting LinkedTreeMap to JsonObject in memory cache for: " + cacheKey);
-                        @SuppressWarnings("unchecked")
-                        LinkedTreeMap<String, Object> map = (LinkedTreeMap<String, Object>) cachedObject;
-                        cachedData = convertMapToJsonObject(map);
-                        // Update cache with converted object for future use
-                        resourceCache.put(cacheKey, cachedData, getCacheExpiration(ResourceType.fromString(resourceType)));
-                    } else if (cachedObject instanceof String) {
-                        // Try to parse string as JSON
-                        Log.d(TAG, "Converting String to JsonObject in memory cache for: " + cacheKey);
-                        String jsonString = (String) cachedObject;
-                        cachedData = JsonParser.parseString(jsonString).getAsJsonObject();
-                        // Update cache with converted object for future use
-                        resourceCache.put(cacheKey, cachedData, getCacheExpiration(ResourceType.fromString(resourceType)));
-                    } else {
-                        // For other types, try to convert via Gson
-                        Log.d(TAG, "Converting unknown type to JsonObject in memory cache for: " + cacheKey + ", type: " + cachedObject.getClass().getName());
-                        String json = gson.toJson(cachedObject);
-                        cachedData = JsonParser.parseString(json).getAsJsonObject();
-                        // Update cache with converted object for future use
-                        resourceCache.put(cacheKey, cachedData, getCacheExpiration(ResourceType.fromString(resourceType)));
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error converting cached object to JsonObject: " + e.getMessage(), e);
-                    // Continue with database lookup
-                }
+            if (forceRefresh) {
+                observeDatabase(resourceType, resourceKey, true, result);
+                return result;
             }
             
-            if (cachedData != null && !forceRefresh) {
+            // Check memory cache first
+            JsonObject cachedData = resourceCache.getIfPresentInMemory(cacheKey);
+            if (cachedData != null) {
                 result.setValue(Resource.success(cachedData));
                 Log.d(TAG, "Resource found in memory cache: " + cacheKey);
                 return result;
             }
             
-            // Observe database for changes
-            final LiveData<ResourceEntity> dbSource = resourceDao.getResourceLiveData(resourceType, resourceKey);
-            result.addSource(dbSource, resourceEntity -> {
-                if (resourceEntity != null && !forceRefresh && !resourceEntity.isStale() && !resourceEntity.isExpired()) {
-                    try {
-                        // Handle potential LinkedTreeMap to JsonObject conversion
-                        Object rawData = resourceEntity.getData();
-                        JsonObject data = null;
-                        
-                        if (rawData == null) {
-                            Log.e(TAG, "Error: Data is null for resource: " + cacheKey);
-                            result.setValue(Resource.error("Error loading resource data: Data is null", null));
-                            fetchFromNetwork(resourceType, resourceKey, result, dbSource);
-                            return;
-                        }
-                        
-                        try {
-                            if (rawData instanceof JsonObject) {
-                                // If it's already a JsonObject, use it directly
-                                data = (JsonObject) rawData;
-                                Log.d(TAG, "Found JsonObject in database for: " + cacheKey);
-                            } else if (rawData instanceof LinkedTreeMap) {
-                                // If it's a LinkedTreeMap, convert it to JsonObject
-                                Log.d(TAG, "Converting LinkedTreeMap to JsonObject in database for: " + cacheKey);
-                                @SuppressWarnings("unchecked")
-                                LinkedTreeMap<String, Object> map = (LinkedTreeMap<String, Object>) rawData;
-                                data = convertMapToJsonObject(map);
-                                
-                                // Update the entity with the converted JsonObject for future use
-                                resourceEntity.setData(data);
-                                appExecutors.diskIO().execute(() -> {
-                                    resourceDao.update(resourceEntity);
-                                });
-                            } else if (rawData instanceof String) {
-                                // Try to parse string as JSON
-                                Log.d(TAG, "Converting String to JsonObject in database for: " + cacheKey);
-                                String jsonString = (String) rawData;
-                                data = JsonParser.parseString(jsonString).getAsJsonObject();
-                                
-                                // Update the entity with the converted JsonObject for future use
-                                resourceEntity.setData(data);
-                                appExecutors.diskIO().execute(() -> {
-                                    resourceDao.update(resourceEntity);
-                                });
-                            } else {
-                                // For other types, try to convert via Gson
-                                Log.d(TAG, "Converting unknown type to JsonObject in database for: " + cacheKey + ", type: " + rawData.getClass().getName());
-                                String json = gson.toJson(rawData);
-                                data = JsonParser.parseString(json).getAsJsonObject();
-                                
-                                // Update the entity with the converted JsonObject for future use
-                                resourceEntity.setData(data);
-                                appExecutors.diskIO().execute(() -> {
-                                    resourceDao.update(resourceEntity);
-                                });
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error converting database object to JsonObject: " + e.getMessage(), e);
-                            result.setValue(Resource.error("Error processing resource data: " + e.getMessage(), null));
-                            fetchFromNetwork(resourceType, resourceKey, result, dbSource);
-                            return;
-                        }
-                        
-                        if (data != null) {
-                            result.setValue(Resource.success(data));
-                            Log.d(TAG, "Resource found in database: " + cacheKey);
-                            
-                            // Cache in memory
-                            resourceCache.put(cacheKey, data, getCacheExpiration(ResourceType.fromString(resourceType)));
-                            
-                            // If we don't need to force refresh, we're done
-                            if (!forceRefresh) {
-                                return;
-                            }
-                        } else {
-                            // If data is null, it might be due to a conversion issue
-                            Log.e(TAG, "Error: Data is null or could not be converted for resource: " + cacheKey);
-                            result.setValue(Resource.error("Error loading resource data", null));
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error processing resource data: " + e.getMessage(), e);
-                        result.setValue(Resource.error("Error processing resource data: " + e.getMessage(), null));
-                    }
+            // Then the disk cache, off the main thread
+            appExecutors.diskIO().execute(() -> {
+                JsonObject diskData = resourceCache.get(cacheKey);
+                if (diskData != null) {
+                    Log.d(TAG, "Resource found in disk cache: " + cacheKey);
+                    result.postValue(Resource.success(diskData));
+                } else {
+                    appExecutors.mainThread().execute(() ->
+                            observeDatabase(resourceType, resourceKey, false, result));
                 }
-                
-                // If we got here, we need to fetch from network
-                fetchFromNetwork(resourceType, resourceKey, result, dbSource);
             });
         } catch (Exception e) {
             Log.e(TAG, "Unexpected error in getResource: " + e.getMessage(), e);
@@ -573,137 +597,48 @@ public class ResourceRepository {
     }
     
     /**
-     * Convert a LinkedTreeMap to JsonObject
-     * @param map LinkedTreeMap to convert
-     * @return Converted JsonObject
+     * Serve a resource from the database, fetching it from network when it is
+     * missing or out of date. Must be called on the main thread.
+     * @param resourceType Resource type
+     * @param resourceKey Resource key
+     * @param forceRefresh Whether to force a refresh from network
+     * @param result MediatorLiveData to update with the result
      */
-    private JsonObject convertMapToJsonObject(LinkedTreeMap<String, Object> map) {
-        if (map == null) {
-            Log.e(TAG, "Cannot convert null map to JsonObject");
-            return new JsonObject();
-        }
+    private void observeDatabase(
+            final String resourceType,
+            final String resourceKey,
+            final boolean forceRefresh,
+            final MediatorLiveData<Resource<JsonObject>> result) {
         
-        JsonObject jsonObject = new JsonObject();
+        final String cacheKey = getCacheKey(resourceType, resourceKey);
         
         try {
-            for (Map.Entry<String, Object> entry : map.entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                
-                if (key == null) {
-                    Log.w(TAG, "Skipping null key in map conversion");
-                    continue;
+            // Observe database for changes
+            final LiveData<ResourceEntity> dbSource = resourceDao.getResourceLiveData(resourceType, resourceKey);
+            result.addSource(dbSource, resourceEntity -> {
+                if (resourceEntity == null || forceRefresh || resourceEntity.isStale() || resourceEntity.isExpired()) {
+                    fetchFromNetwork(resourceType, resourceKey, result, dbSource);
+                    return;
                 }
                 
-                try {
-                    if (value == null) {
-                        jsonObject.add(key, null);
-                    } else if (value instanceof String) {
-                        jsonObject.addProperty(key, (String) value);
-                    } else if (value instanceof Number) {
-                        jsonObject.addProperty(key, (Number) value);
-                    } else if (value instanceof Boolean) {
-                        jsonObject.addProperty(key, (Boolean) value);
-                    } else if (value instanceof LinkedTreeMap) {
-                        // Recursively convert nested maps
-                        @SuppressWarnings("unchecked")
-                        LinkedTreeMap<String, Object> nestedMap = (LinkedTreeMap<String, Object>) value;
-                        jsonObject.add(key, convertMapToJsonObject(nestedMap));
-                    } else if (value instanceof List) {
-                        // Convert list to JsonArray
-                        jsonObject.add(key, convertListToJsonArray((List<?>) value));
-                    } else {
-                        // For other types, try to convert via Gson
-                        try {
-                            String json = gson.toJson(value);
-                            if (json.startsWith("{") && json.endsWith("}")) {
-                                jsonObject.add(key, JsonParser.parseString(json).getAsJsonObject());
-                            } else if (json.startsWith("[") && json.endsWith("]")) {
-                                jsonObject.add(key, JsonParser.parseString(json).getAsJsonArray());
-                            } else {
-                                // For simple values, convert to string
-                                jsonObject.addProperty(key, json);
-                            }
-                        } catch (Exception e) {
-                            // If all else fails, use toString
-                            Log.w(TAG, "Using toString() for complex value in key: " + key + ", type: " + value.getClass().getName());
-                            jsonObject.addProperty(key, value.toString());
-                        }
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error converting value for key: " + key + ", error: " + e.getMessage(), e);
-                    // Skip this entry but continue with others
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error in convertMapToJsonObject: " + e.getMessage(), e);
-            // Return whatever we've built so far
-        }
-        
-        return jsonObject;
-    }
-    
-    /**
-     * Convert a List to JsonArray
-     * @param list List to convert
-     * @return Converted JsonArray
-     */
-    private com.google.gson.JsonArray convertListToJsonArray(List<?> list) {
-        if (list == null) {
-            Log.e(TAG, "Cannot convert null list to JsonArray");
-            return new com.google.gson.JsonArray();
-        }
-        
-        com.google.gson.JsonArray jsonArray = new com.google.gson.JsonArray();
-        
-        try {
-            for (Object item : list) {
-                try {
-                    if (item == null) {
-                        jsonArray.add((String) null);
-                    } else if (item instanceof String) {
-                        jsonArray.add((String) item);
-                    } else if (item instanceof Number) {
-                        jsonArray.add((Number) item);
-                    } else if (item instanceof Boolean) {
-                        jsonArray.add((Boolean) item);
-                    } else if (item instanceof LinkedTreeMap) {
-                        // Recursively convert nested maps
-                        @SuppressWarnings("unchecked")
-                        LinkedTreeMap<String, Object> map = (LinkedTreeMap<String, Object>) item;
-                        jsonArray.add(convertMapToJsonObject(map));
-                    } else if (item instanceof List) {
-                        // Recursively convert nested lists
-                        jsonArray.add(convertListToJsonArray((List<?>) item));
+                // The entity holds raw JSON, so parse it once off the main thread
+                appExecutors.diskIO().execute(() -> {
+                    JsonObject data = resourceEntity.getData();
+                    if (data != null) {
+                        Log.d(TAG, "Resource found in database: " + cacheKey);
+                        resourceCache.put(cacheKey, data, getCacheExpiration(ResourceType.fromString(resourceType)));
+                        result.postValue(Resource.success(data));
                     } else {
-                        // For other types, try to convert via Gson
-                        try {
-                            String json = gson.toJson(item);
-                            if (json.startsWith("{") && json.endsWith("}")) {
-                                jsonArray.add(JsonParser.parseString(json).getAsJsonObject());
-                            } else if (json.startsWith("[") && json.endsWith("]")) {
-                                jsonArray.add(JsonParser.parseString(json).getAsJsonArray());
-                            } else {
-                                // For simple values, convert to string
-                                jsonArray.add(json);
-                            }
-                        } catch (Exception e) {
-                            // If all else fails, use toString
-                            Log.w(TAG, "Using toString() for complex value in array, type: " + item.getClass().getName());
-                            jsonArray.add(item.toString());
-                        }
+                        Log.e(TAG, "Error: Data is missing or malformed for resource: " + cacheKey);
+                        appExecutors.mainThread().execute(() ->
+                                fetchFromNetwork(resourceType, resourceKey, result, dbSource));
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error converting list item: " + e.getMessage(), e);
-                    // Skip this item but continue with others
-                }
-            }
+                });
+            });
         } catch (Exception e) {
-            Log.e(TAG, "Error in convertListToJsonArray: " + e.getMessage(), e);
-            // Return whatever we've built so far
+            Log.e(TAG, "Unexpected error in getResource: " + e.getMessage(), e);
+            result.setValue(Resource.error("Unexpected error: " + e.getMessage(), null));
         }
-        
-        return jsonArray;
     }
     
     /**
@@ -758,28 +693,8 @@ public class ResourceRepository {
         
         appExecutors.diskIO().execute(() -> {
             try {
-                // Create or update resource entity
-                ResourceEntity existingResource = resourceDao.getResource(resourceType, resourceKey);
-                
-                if (existingResource != null) {
-                    // Update existing resource
-                    existingResource.update(data, etag, expirationTime);
-                    existingResource.setMetadata(metadata);
-                    resourceDao.update(existingResource);
-                    Log.d(TAG, "Resource updated in database: " + resourceType + ":" + resourceKey);
-                } else {
-                    // Create new resource
-                    ResourceEntity newResource = new ResourceEntity(
-                            resourceType,
-                            resourceKey,
-                            data,
-                            metadata,
-                            expirationTime,
-                            etag
-                    );
-                    resourceDao.insert(newResource);
-                    Log.d(TAG, "Resource inserted in database: " + resourceType + ":" + resourceKey);
-                }
+                storeResource(resourceType, resourceKey, data, metadata, etag, expirationTime);
+                Log.d(TAG, "Resource saved in database: " + resourceType + ":" + resourceKey);
                 
                 // Cache in memory
                 final String cacheKey = getCacheKey(resourceType, resourceKey);
@@ -814,6 +729,8 @@ public class ResourceRepository {
         appExecutors.diskIO().execute(() -> {
             try {
                 int count = resourceDao.deleteResourcesByType(resourceType);
+                String prefix = getCacheKey(resourceType, "");
+                etagCache.keySet().removeIf(key -> key.startsWith(prefix));
                 Log.d(TAG, "Deleted " + count + " resources: " + resourceType);
             } catch (Exception e) {
                 Log.e(TAG, "Error deleting resources: " + resourceType, e);
@@ -822,12 +739,13 @@ public class ResourceRepository {
     }
     
     /**
-     * Clean up expired resources
+     * Clean up resources that expired longer ago than the retention period
      */
     private void cleanupExpiredResources() {
         appExecutors.diskIO().execute(() -> {
             try {
-                int count = resourceDao.deleteExpiredResources(new Date());
+                int count = resourceDao.deleteExpiredResources(
+                        new Date(System.currentTimeMillis() - EXPIRED_RETENTION));
                 Log.d(TAG, "Cleaned up " + count + " expired resources");
             } catch (Exception e) {
                 Log.e(TAG, "Error cleaning up expired resources", e);
@@ -848,10 +766,9 @@ public class ResourceRepository {
             final MediatorLiveData<Resource<JsonObject>> result,
             final LiveData<ResourceEntity> dbSource) {
         
-        // Get existing resource for ETag
+        // Get the stored ETag without loading the stored data
         appExecutors.diskIO().execute(() -> {
-            ResourceEntity existingResource = resourceDao.getResource(resourceType, resourceKey);
-            String etag = existingResource != null ? existingResource.getEtag() : null;
+            String etag = getEtag(resourceType, resourceKey);
             
             // Build headers
             Map<String, String> headers = new HashMap<>();
@@ -865,11 +782,15 @@ public class ResourceRepository {
             // Make API call
             Call<JsonObject> call = getApiCall(resourceType, resourceKey, headers);
             if (call == null) {
-                result.removeSource(dbSource);
-                result.setValue(Resource.error("Unsupported resource type: " + resourceType, null));
+                // LiveData sources can only be changed on the main thread
+                appExecutors.mainThread().execute(() -> {
+                    result.removeSource(dbSource);
+                    result.setValue(Resource.error("Unsupported resource type: " + resourceType, null));
+                });
                 return;
             }
             
+            // Retrofit delivers the callbacks on the main thread
             call.enqueue(new Callback<JsonObject>() {
                 @Override
                 public void onResponse(@NonNull Call<JsonObject> call, @NonNull Response<JsonObject> response) {
@@ -880,19 +801,7 @@ public class ResourceRepository {
                         Headers responseHeaders = response.headers();
                         String newEtag = responseHeaders.get("ETag");
                         
-                        // Calculate expiration time
-                        long expirationMillis = DEFAULT_CACHE_EXPIRATION;
-                        String cacheControl = responseHeaders.get("Cache-Control");
-                        if (cacheControl != null && cacheControl.contains("max-age=")) {
-                            try {
-                                String maxAge = cacheControl.split("max-age=")[1].split(",")[0];
-                                expirationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(maxAge));
-                            } catch (Exception e) {
-                                Log.e(TAG, "Error parsing Cache-Control header", e);
-                            }
-                        }
-                        
-                        Date expirationTime = new Date(System.currentTimeMillis() + expirationMillis);
+                        Date expirationTime = new Date(System.currentTimeMillis() + getMaxAge(responseHeaders));
                         
                         // Save to database
                         if (body != null) {
@@ -904,22 +813,21 @@ public class ResourceRepository {
                             Log.e(TAG, "Empty response body for resource: " + resourceType + ":" + resourceKey);
                         }
                     } else if (response.code() == 304) {
-                        // Not modified, use cached data
-                        if (existingResource != null) {
-                            // Update last updated time
-                            existingResource.setLastUpdated(new Date());
-                            existingResource.setStale(false);
-                            appExecutors.diskIO().execute(() -> resourceDao.update(existingResource));
-                            
-                            // Cast the data to JsonObject if needed
-                            Object data = existingResource.getData();
-                            JsonObject jsonData = (data instanceof JsonObject) ? (JsonObject) data : null;
-                            result.setValue(Resource.success(jsonData));
-                            Log.d(TAG, "Resource not modified (304): " + resourceType + ":" + resourceKey);
-                        } else {
-                            result.setValue(Resource.error("Resource not found in cache", null));
-                            Log.e(TAG, "Resource not found in cache after 304: " + resourceType + ":" + resourceKey);
-                        }
+                        // Not modified, so only the timestamps of the stored resource change
+                        Date now = new Date();
+                        Date expirationTime = new Date(now.getTime() + getMaxAge(response.headers()));
+                        appExecutors.diskIO().execute(() -> {
+                            int updated = resourceDao.touchResource(resourceType, resourceKey, now, expirationTime);
+                            JsonObject data = updated > 0 ? getStoredData(resourceType, resourceKey) : null;
+                            if (data != null) {
+                                result.postValue(Resource.success(data));
+                                Log.d(TAG, "Resource not modified (304): " + resourceType + ":" + resourceKey);
+                            } else {
+                                etagCache.put(getCacheKey(resourceType, resourceKey), NO_ETAG);
+                                result.postValue(Resource.error("Resource not found in cache", null));
+                                Log.e(TAG, "Resource not found in cache after 304: " + resourceType + ":" + resourceKey);
+                            }
+                        });
                     } else {
                         // Error response
                         ApiResponse<JsonObject> apiResponse = new ApiResponse<>(response);
@@ -933,21 +841,38 @@ public class ResourceRepository {
                     result.removeSource(dbSource);
                     
                     // If we have cached data, use it
-                    if (existingResource != null) {
-                        // Cast the data to JsonObject if needed
-                        Object data = existingResource.getData();
-                        JsonObject jsonData = (data instanceof JsonObject) ? (JsonObject) data : null;
-                        result.setValue(Resource.error("Network error: " + t.getMessage(), jsonData));
-                        Log.e(TAG, "Network error, using cached data: " + resourceType + ":" + resourceKey, t);
-                    } else {
-                        result.setValue(Resource.error("Network error: " + t.getMessage(), null));
-                        Log.e(TAG, "Network error, no cached data: " + resourceType + ":" + resourceKey, t);
-                    }
+                    appExecutors.diskIO().execute(() -> {
+                        JsonObject data = getStoredData(resourceType, resourceKey);
+                        result.postValue(Resource.error("Network error: " + t.getMessage(), data));
+                        if (data != null) {
+                            Log.e(TAG, "Network error, using cached data: " + resourceType + ":" + resourceKey, t);
+                        } else {
+                            Log.e(TAG, "Network error, no cached data: " + resourceType + ":" + resourceKey, t);
+                        }
+                    });
                 }
             });
         });
     }
     
+    /**
+     * Get how long a response may be cached for
+     * @param headers Response headers
+     * @return max-age from Cache-Control in milliseconds, or the default expiration
+     */
+    private long getMaxAge(Headers headers) {
+        String cacheControl = headers.get("Cache-Control");
+        if (cacheControl != null && cacheControl.contains("max-age=")) {
+            try {
+                String maxAge = cacheControl.split("max-age=")[1].split(",")[0];
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(maxAge.trim()));
+            } catch (Exception e) {
+                Log.e(TAG, "Error parsing Cache-Control header", e);
+            }
+        }
+        return DEFAULT_CACHE_EXPIRATION;
+    }
+    
     /**
      * Fetch all resources of a type from network
      * @param resourceType Resource type
@@ -980,22 +905,8 @@ public class ResourceRepository {
                 
                 if (response.isSuccessful()) {
                     List<JsonObject> body = response.body();
-                    Headers responseHeaders = response.headers();
-                    String newEtag = responseHeaders.get("ETag");
-                    
-                    // Calculate expiration time
-                    long expirationMillis = DEFAULT_CACHE_EXPIRATION;
-                    String cacheControl = responseHeaders.get("Cache-Control");
-                    if (cacheControl != null && cacheControl.contains("max-age=")) {
-                        try {
-                            String maxAge = cacheControl.split("max-age=")[1].split(",")[0];
-                            expirationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(maxAge));
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error parsing Cache-Control header", e);
-                        }
-                    }
                     
-                    Date expirationTime = new Date(System.currentTimeMillis() + expirationMillis);
+                    Date expirationTime = new Date(System.currentTimeMillis() + getMaxAge(response.headers()));
                     
                     // Save to database
                     if (body != null && !body.isEmpty()) {
@@ -1008,7 +919,8 @@ public class ResourceRepository {
                                 for (JsonObject item : body) {
                                     String resourceKey = getResourceKeyFromItem(resourceType, item);
                                     if (resourceKey != null) {
-                                        saveResource(resourceType, resourceKey, item, null, newEtag, expirationTime);
+                                        // The list's ETag does not validate a single item
+                                        saveResource(resourceType, resourceKey, item, null, null, expirationTime);
                                     }
                                 }
                                 
@@ -1124,15 +1036,16 @@ public class ResourceRepository {
     }
     
     /**
-     * Get a resource synchronously from the cache
-     * This method is for internal use only and should be used sparingly
+     * Get a resource synchronously from the memory cache
+     * This method is for internal use only and should be used sparingly.
+     * It never reads the disk, so it may be called on the main thread.
      * @param resourceType The resource type
      * @param resourceKey The resource key
-     * @return The resource data as JsonObject, or null if not found
+     * @return The resource data as JsonObject, or null if not in memory
      */
     public JsonObject getResourceSync(String resourceType, String resourceKey) {
         String cacheKey = getCacheKey(resourceType, resourceKey);
-        return resourceCache.get(cacheKey);
+        return resourceCache.getIfPresentInMemory(cacheKey);
     }
     
     /**
@@ -1144,8 +1057,9 @@ public class ResourceRepository {
     public Resource<String> getResource(String key) {
         try {
             ResourceEntity entity = resourceDao.getResource(RESOURCE_TYPE_CATEGORY_ICON, key);
-            if (entity != null && entity.getData() != null) {
-                return Resource.success(entity.getData().toString());
+            String data = entity != null ? entity.getDataAsString() : null;
+            if (data != null) {
+                return Resource.success(data);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error getting resource with key: " + key, e);
@@ -1178,6 +1092,7 @@ public class ResourceRepository {
                 ResourceEntity resource = resourceDao.getResource(RESOURCE_TYPE_CATEGORY_ICON, key);
                 if (resource != null) {
                     resourceDao.delete(resource);
+                    etagCache.remove(getCacheKey(RESOURCE_TYPE_CATEGORY_ICON, key));
                     Log.d(TAG, "Deleted resource with key: " + key);
                 }
             } catch (Exception e) {
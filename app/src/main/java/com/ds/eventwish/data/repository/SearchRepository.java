@@ -0,0 +1,322 @@
+package com.ds.eventwish.data.repository;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ds.eventwish.data.local.AppDatabase;
+import com.ds.eventwish.data.local.dao.SearchDao;
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
+import com.ds.eventwish.data.model.Festival;
+import com.ds.eventwish.data.model.Template;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Repository for the local full-text search index over templates,
+ * festivals and categories.
+ *
+ * The template and festival sync paths add what they store, so search works
+ * offline over everything that was synced. Every query term is matched as a
+ * prefix. Documents matching all terms in their title rank before those
+ * matching elsewhere; within each tier, titles starting with the first term
+ * come first, then more popular documents.
+ *
+ * Writes run on one thread and queries on another; Room's write-ahead log
+ * lets queries read while a sync is writing.
+ */
+public class SearchRepository {
+    private static final String TAG = "SearchRepository";
+    private static SearchRepository instance;
+
+    // Shorter terms match too much to narrow a search
+    static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERMS = 8;
+    // Matches sorted per query; broader queries walk the documents by popularity instead
+    static final int MAX_SORTED_MATCHES = 1000;
+
+    private final SearchDao searchDao;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Callback for search results. Called on the search thread.
+     */
+    public interface SearchCallback {
+        void onResults(@NonNull String query, @NonNull List<SearchDocumentEntity> results);
+    }
+
+    SearchRepository(@NonNull SearchDao searchDao) {
+        this.searchDao = searchDao;
+    }
+
+    public static synchronized SearchRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new SearchRepository(AppDatabase.getInstance(context.getApplicationContext()).searchDao());
+        }
+        return instance;
+    }
+
+    /**
+     * Add or update templates in the index
+     * @param templates Templates as stored in the catalog
+     */
+    public void indexTemplates(@Nullable List<Template> templates) {
+        if (templates == null || templates.isEmpty()) {
+            return;
+        }
+        List<SearchDocumentEntity> documents = templateDocuments(templates);
+        writeExecutor.execute(() -> write(() ->
+            searchDao.upsertDocuments(SearchDocumentEntity.TYPE_TEMPLATE, documents)));
+    }
+
+    /**
+     * Remove templates that are no longer in the catalog
+     * @param templateIds Template ids
+     */
+    public void removeTemplates(@Nullable List<String> templateIds) {
+        if (templateIds == null || templateIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(templateIds);
+        writeExecutor.execute(() -> write(() ->
+            searchDao.removeDocuments(SearchDocumentEntity.TYPE_TEMPLATE, ids)));
+    }
+
+    /**
+     * Add festivals to the index
+     * @param festivals Festivals as stored
+     * @param complete Whether these are all stored festivals, so any others are removed
+     */
+    public void indexFestivals(@Nullable List<Festival> festivals, boolean complete) {
+        if (festivals == null || (festivals.isEmpty() && !complete)) {
+            return;
+        }
+        List<SearchDocumentEntity> documents = new ArrayList<>(festivals.size());
+        for (Festival festival : festivals) {
+            if (festival != null && festival.getId() != null) {
+                int templateCount = festival.getTemplates() != null ? festival.getTemplates().size() : 0;
+                documents.add(new SearchDocumentEntity(SearchDocumentEntity.TYPE_FESTIVAL, festival.getId(),
+                    festival.getName(), join(festival.getCategory(), festival.getDescription()), templateCount));
+            }
+        }
+        List<SearchDocumentEntity> unique = dedupe(documents);
+        writeExecutor.execute(() -> write(() -> {
+            if (complete) {
+                searchDao.replaceType(SearchDocumentEntity.TYPE_FESTIVAL, unique);
+            } else {
+                searchDao.upsertDocuments(SearchDocumentEntity.TYPE_FESTIVAL, unique);
+            }
+        }));
+    }
+
+    /**
+     * Replace the indexed categories
+     * @param categories Category names with their template counts
+     */
+    public void indexCategories(@Nullable Map<String, Integer> categories) {
+        if (categories == null || categories.isEmpty()) {
+            return;
+        }
+        List<SearchDocumentEntity> documents = new ArrayList<>(categories.size());
+        for (Map.Entry<String, Integer> entry : categories.entrySet()) {
+            if (!TextUtils.isEmpty(entry.getKey())) {
+                int count = entry.getValue() != null ? entry.getValue() : 0;
+                documents.add(new SearchDocumentEntity(SearchDocumentEntity.TYPE_CATEGORY, entry.getKey(),
+                    entry.getKey(), null, count));
+            }
+        }
+        writeExecutor.execute(() -> write(() ->
+            searchDao.replaceType(SearchDocumentEntity.TYPE_CATEGORY, documents)));
+    }
+
+    /**
+     * Add templates in the calling thread, e.g. to backfill the index from
+     * the stored catalog. Must not be called on the main thread.
+     * @param templates Templates as stored in the catalog
+     */
+    void indexTemplatesSync(@NonNull List<Template> templates) {
+        searchDao.upsertDocuments(SearchDocumentEntity.TYPE_TEMPLATE, templateDocuments(templates));
+    }
+
+    /**
+     * @param type Document type
+     * @return Number of indexed documents of the type. Must not be called on the main thread.
+     */
+    int getDocumentCount(@NonNull String type) {
+        return searchDao.getDocumentCount(type);
+    }
+
+    /**
+     * Search the index on the search thread
+     * @param query Text as typed
+     * @param type Document type, or null for all types
+     * @param limit Maximum number of results
+     * @param callback Receives the ranked results on the search thread
+     */
+    public void search(@Nullable String query, @Nullable String type, int limit, @NonNull SearchCallback callback) {
+        final String text = query != null ? query : "";
+        queryExecutor.execute(() -> {
+            List<SearchDocumentEntity> results;
+            try {
+                results = searchSync(text, type, limit);
+            } catch (Exception e) {
+                Log.e(TAG, "Search failed for \"" + text + "\"", e);
+                results = new ArrayList<>();
+            }
+            callback.onResults(text, results);
+        });
+    }
+
+    /**
+     * Search the index in the calling thread. Must not be called on the main thread.
+     * @param query Text as typed
+     * @param type Document type, or null for all types
+     * @param limit Maximum number of results
+     * @return Ranked results; empty if the query has no term of at least
+     *         {@link #MIN_TERM_LENGTH} characters
+     */
+    @NonNull
+    public List<SearchDocumentEntity> searchSync(@NonNull String query, @Nullable String type, int limit) {
+        List<String> terms = terms(query);
+        List<SearchDocumentEntity> results = new ArrayList<>();
+        if (terms.isEmpty() || limit <= 0) {
+            return results;
+        }
+
+        // Title matches first, with titles starting with the first term ahead of the rest
+        List<SearchDocumentEntity> titleMatches = find(matchExpression(terms, true), type, limit);
+        String first = terms.get(0);
+        for (SearchDocumentEntity document : titleMatches) {
+            if (startsWith(document.getTitle(), first)) {
+                results.add(document);
+            }
+        }
+        for (SearchDocumentEntity document : titleMatches) {
+            if (!startsWith(document.getTitle(), first)) {
+                results.add(document);
+            }
+        }
+
+        // Then matches anywhere else
+        if (results.size() < limit) {
+            Set<Long> found = new HashSet<>();
+            for (SearchDocumentEntity document : results) {
+                found.add(document.getId());
+            }
+            for (SearchDocumentEntity document : find(matchExpression(terms, false), type, limit + results.size())) {
+                if (results.size() >= limit) {
+                    break;
+                }
+                if (found.add(document.getId())) {
+                    results.add(document);
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<SearchDocumentEntity> find(String match, @Nullable String type, int limit) {
+        return searchDao.search(match, type, MAX_SORTED_MATCHES, limit);
+    }
+
+    private void write(Runnable write) {
+        try {
+            write.run();
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to update the search index", e);
+        }
+    }
+
+    /**
+     * Split typed text into lowercase terms of letters and digits. Everything
+     * else, including FTS syntax, is dropped; lowercasing also disarms the
+     * AND, OR, NOT and NEAR operators.
+     * @param query Text as typed
+     * @return Terms of at least {@link #MIN_TERM_LENGTH} characters, at most {@link #MAX_TERMS}
+     */
+    @NonNull
+    static List<String> terms(@NonNull String query) {
+        List<String> terms = new ArrayList<>();
+        for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (term.length() >= MIN_TERM_LENGTH && !terms.contains(term)) {
+                terms.add(term);
+                if (terms.size() == MAX_TERMS) {
+                    break;
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Build an FTS4 match expression requiring every term as a prefix
+     * @param terms Terms from {@link #terms(String)}
+     * @param titleOnly Whether terms must match in the title
+     * @return Match expression, e.g. {@code title:happy* title:bir*}
+     */
+    @NonNull
+    static String matchExpression(@NonNull List<String> terms, boolean titleOnly) {
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            if (titleOnly) {
+                match.append("title:");
+            }
+            match.append(term).append('*');
+        }
+        return match.toString();
+    }
+
+    private static boolean startsWith(@Nullable String title, @NonNull String term) {
+        return title != null && title.toLowerCase(Locale.ROOT).startsWith(term);
+    }
+
+    private static List<SearchDocumentEntity> templateDocuments(List<Template> templates) {
+        List<SearchDocumentEntity> documents = new ArrayList<>(templates.size());
+        for (Template template : templates) {
+            if (template != null && template.getId() != null) {
+                String tags = template.getTags() != null ? TextUtils.join(" ", template.getTags()) : null;
+                documents.add(new SearchDocumentEntity(SearchDocumentEntity.TYPE_TEMPLATE, template.getId(),
+                    template.getTitle(), join(template.getCategory(), tags, template.getDescription()),
+                    template.getShareCount()));
+            }
+        }
+        return dedupe(documents);
+    }
+
+    /**
+     * Keep the last document per id, since a batch is inserted under a unique index
+     */
+    private static List<SearchDocumentEntity> dedupe(List<SearchDocumentEntity> documents) {
+        Map<String, SearchDocumentEntity> unique = new LinkedHashMap<>();
+        for (SearchDocumentEntity document : documents) {
+            unique.put(document.getDocId(), document);
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    private static String join(String... parts) {
+        Collection<String> present = new ArrayList<>(parts.length);
+        for (String part : parts) {
+            if (!TextUtils.isEmpty(part)) {
+                present.add(part);
+            }
+        }
+        return present.isEmpty() ? null : TextUtils.join(" ", present);
+    }
+}
@@ -1,12 +1,7 @@
 package com.ds.eventwish.data.repository;
 
 import android.content.Context;
-<<<<<<< HEAD
 import android.content.SharedPreferences;
-import android.os.Handler;
-import android.os.Looper;
-=======
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -15,7 +10,9 @@ import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.ds.eventwish.data.local.AppDatabase;
+import com.ds.eventwish.data.local.dao.AdEventDao.AggregatedAdEvent;
 import com.ds.eventwish.data.local.dao.SponsoredAdDao;
+import com.ds.eventwish.data.local.entity.AdEventEntity;
 import com.ds.eventwish.data.local.entity.SponsoredAdEntity;
 import com.ds.eventwish.data.model.SponsoredAd;
 import com.ds.eventwish.data.model.response.SponsoredAdResponse;
@@ -24,19 +21,16 @@ import com.ds.eventwish.data.remote.ApiService;
 import com.ds.eventwish.utils.DeviceUtils;
 import com.ds.eventwish.EventWishApplication;
 import com.ds.eventwish.utils.AppExecutors;
+import com.ds.eventwish.utils.ExpiryScheduler;
 import com.ds.eventwish.ui.connectivity.InternetConnectivityChecker;
 import com.google.gson.JsonObject;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-<<<<<<< HEAD
 import java.util.Map;
 import java.util.Set;
-=======
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import retrofit2.Call;
@@ -52,7 +46,9 @@ public class SponsoredAdRepository {
     private static final long MIN_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5); // Minimum 5 minutes between API refreshes
     private static final long IMPRESSION_THROTTLE_MS = TimeUnit.HOURS.toMillis(24); // Throttle impressions to once per day per ad
     private static final long RATE_LIMIT_BACKOFF_MS = TimeUnit.MINUTES.toMillis(60); // Respect server rate limits
-    private static final int MAX_BATCH_SIZE = 10; // Maximum number of tracking events to batch
+    private static final int MAX_BATCH_SIZE = 10; // Queued tracking events that trigger an early flush
+    private static final int EVENT_QUEUE_CAPACITY = 500; // Tracking events kept before the oldest are overwritten
+    private static final int EVENT_BATCH_SIZE = 100; // Maximum number of tracking events per request
     private static final long BATCH_FLUSH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5); // Flush batch every 5 minutes
     private static final long MAX_BATCH_AGE_MS = TimeUnit.HOURS.toMillis(24); // Maximum age for cached events
     private static final int MAX_RETRY_ATTEMPTS = 3; // Maximum number of retry attempts
@@ -63,17 +59,21 @@ public class SponsoredAdRepository {
     private final MutableLiveData<List<SponsoredAd>> sponsoredAdsLiveData = new MutableLiveData<>(new ArrayList<>());
     private final MutableLiveData<Boolean> loadingLiveData = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorLiveData = new MutableLiveData<>();
-<<<<<<< HEAD
     private final InternetConnectivityChecker connectivityChecker;
+    private final String deviceId;
     
     // Track last impression time per ad to prevent duplicate tracking
     private final Map<String, Long> lastImpressionTimes = new HashMap<>();
     
     // Batch processing for tracking events
-    private final List<TrackingEvent> pendingImpressions = Collections.synchronizedList(new ArrayList<>());
-    private final List<TrackingEvent> pendingClicks = Collections.synchronizedList(new ArrayList<>());
-    private final Handler batchHandler = new Handler(Looper.getMainLooper());
+    private final AdEventQueue eventQueue;
+    // Repeated events of one ad are reported once per session with a count
+    private final String sessionId = UUID.randomUUID().toString();
+    
+    // Rotation candidates per location, kept in step with local impression counts
+    private final AdSelectionIndex selectionIndex = new AdSelectionIndex();
     private final Runnable batchProcessingRunnable = this::processPendingEvents;
+    private ExpiryScheduler.Timeout batchFlushTimeout;
     
     // Rate limiting
     private boolean isRateLimited = false;
@@ -91,18 +91,21 @@ public class SponsoredAdRepository {
     private boolean forceRefresh = false;
     
     /**
-     * Class to represent tracking events for batch processing
+     * Class to represent tracking events sent through the single-event endpoints
      */
     private static class TrackingEvent {
         final String adId;
         final String deviceId;
         final long timestamp;
-        int retryCount = 0;
+        final int count;
+        int retryCount;
         
-        TrackingEvent(String adId, String deviceId) {
+        TrackingEvent(String adId, String deviceId, AggregatedAdEvent event) {
             this.adId = adId;
             this.deviceId = deviceId;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = event.lastSeen;
+            this.count = event.count;
+            this.retryCount = event.retryCount;
         }
         
         /**
@@ -119,6 +122,7 @@ public class SponsoredAdRepository {
             return "TrackingEvent{" +
                    "adId='" + adId + '\'' +
                    ", timestamp=" + timestamp +
+                   ", count=" + count +
                    ", retryCount=" + retryCount +
                    '}';
         }
@@ -134,17 +138,6 @@ public class SponsoredAdRepository {
             }
         }
         return instance;
-=======
-    private final String deviceId;
-    
-    // Cache expiration
-    private long lastFetchTime = 0;
-    private static final long CACHE_EXPIRATION_MS = TimeUnit.MINUTES.toMillis(15); // 15 minutes
-    
-    public SponsoredAdRepository() {
-        this.apiService = ApiClient.getClient();
-        this.deviceId = DeviceUtils.getDeviceId(EventWishApplication.getInstance());
-        Log.d(TAG, "Initialized with deviceId: " + (deviceId != null ? deviceId : "null"));
     }
     
     /**
@@ -162,7 +155,6 @@ public class SponsoredAdRepository {
          * @param message Error message
          */
         void onError(@NonNull String message);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
     }
     
     /**
@@ -173,8 +165,11 @@ public class SponsoredAdRepository {
         this.sponsoredAdDao = AppDatabase.getInstance(context).sponsoredAdDao();
         this.executors = AppExecutors.getInstance();
         this.connectivityChecker = InternetConnectivityChecker.getInstance(context);
+        this.deviceId = DeviceUtils.getDeviceId(context);
+        this.eventQueue = new AdEventQueue(AppDatabase.getInstance(context).adEventDao(),
+            apiService, executors.diskIO(), EVENT_QUEUE_CAPACITY, EVENT_BATCH_SIZE, MAX_RETRY_ATTEMPTS);
         
-        Log.d(TAG, "SponsoredAdRepository initialized");
+        Log.d(TAG, "SponsoredAdRepository initialized with deviceId: " + (deviceId != null ? deviceId : "null"));
     }
     
     /**
@@ -201,9 +196,6 @@ public class SponsoredAdRepository {
      * Schedule periodic batch processing with optimized flushing
      */
     private void scheduleBatchProcessing() {
-        // Remove any existing callbacks
-        batchHandler.removeCallbacks(batchProcessingRunnable);
-        
         // Get the last flush time
         SharedPreferences prefs = EventWishApplication.getAppContext()
             .getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
@@ -215,13 +207,30 @@ public class SponsoredAdRepository {
             Log.d(TAG, "Last batch flush was " + 
                   TimeUnit.MILLISECONDS.toMinutes(currentTime - lastFlushTime) + 
                   " minutes ago. Processing immediately.");
-            batchHandler.post(batchProcessingRunnable);
+            scheduleBatchFlush(0);
         } else {
             // Otherwise schedule for regular interval
             long delayMs = BATCH_FLUSH_INTERVAL_MS - (currentTime - lastFlushTime);
             Log.d(TAG, "Scheduling next batch processing in " + 
                   TimeUnit.MILLISECONDS.toMinutes(delayMs) + " minutes");
-            batchHandler.postDelayed(batchProcessingRunnable, delayMs);
+            scheduleBatchFlush(delayMs);
+        }
+    }
+    
+    /**
+     * Replace any pending batch flush with one after {@code delayMs}. Flushes
+     * run on the main thread via the shared {@link ExpiryScheduler}.
+     */
+    private synchronized void scheduleBatchFlush(long delayMs) {
+        cancelBatchFlush();
+        batchFlushTimeout = ExpiryScheduler.getInstance()
+            .schedule(delayMs, executors.mainThread(), batchProcessingRunnable);
+    }
+    
+    private synchronized void cancelBatchFlush() {
+        if (batchFlushTimeout != null) {
+            batchFlushTimeout.cancel();
+            batchFlushTimeout = null;
         }
     }
     
@@ -246,137 +255,60 @@ public class SponsoredAdRepository {
             .getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
         prefs.edit().putLong(KEY_LAST_BATCH_FLUSH, currentTime).apply();
         
-        // Process impressions
-        int impressionsProcessed = processImpressionBatch();
-        
-        // Process clicks
-        int clicksProcessed = processClickBatch();
-        
-        // Log processing statistics
-        if (impressionsProcessed > 0 || clicksProcessed > 0) {
-            Log.d(TAG, "Batch processing completed: " + impressionsProcessed + 
-                  " impressions and " + clicksProcessed + " clicks processed");
-        }
-        
-        // Clean up stale events (older than MAX_BATCH_AGE_MS)
-        cleanupStaleEvents(currentTime);
-        
-        // Reschedule
-        scheduleBatchProcessing();
-    }
-    
-    /**
-     * Clean up stale events that are too old to process
-     */
-    private void cleanupStaleEvents(long currentTime) {
-        int removedImpressions = 0;
-        int removedClicks = 0;
-        
-        synchronized (pendingImpressions) {
-            Iterator<TrackingEvent> iterator = pendingImpressions.iterator();
-            while (iterator.hasNext()) {
-                TrackingEvent event = iterator.next();
-                if (currentTime - event.timestamp > MAX_BATCH_AGE_MS) {
-                    iterator.remove();
-                    removedImpressions++;
+        // Drop events too old to report, then send the rest in batches
+        eventQueue.deleteOlderThan(currentTime - MAX_BATCH_AGE_MS);
+        eventQueue.flush(deviceId, new AdEventQueue.FlushCallback() {
+            @Override
+            public void onFlushed(int events) {
+                if (events > 0) {
+                    Log.d(TAG, "Batch processing completed: " + events + " tracking events reported");
                 }
             }
-        }
-        
-        synchronized (pendingClicks) {
-            Iterator<TrackingEvent> iterator = pendingClicks.iterator();
-            while (iterator.hasNext()) {
-                TrackingEvent event = iterator.next();
-                if (currentTime - event.timestamp > MAX_BATCH_AGE_MS) {
-                    iterator.remove();
-                    removedClicks++;
+            
+            @Override
+            public void onBulkEndpointMissing(@NonNull List<AggregatedAdEvent> events) {
+                for (AggregatedAdEvent event : events) {
+                    recordSingleEvents(event);
                 }
             }
-        }
+            
+            @Override
+            public void onFailure(Response<JsonObject> response, Throwable t) {
+                if (response != null && response.code() == 429) {
+                    handleRateLimiting(response);
+                }
+            }
+        });
         
-        if (removedImpressions > 0 || removedClicks > 0) {
-            Log.d(TAG, "Cleaned up stale events: removed " + removedImpressions + 
-                  " impressions and " + removedClicks + " clicks older than " + 
-                  TimeUnit.MILLISECONDS.toHours(MAX_BATCH_AGE_MS) + " hours");
-        }
+        // Reschedule
+        scheduleBatchProcessing();
     }
     
     /**
-     * Process a batch of impression events
-     * @return number of events processed
+     * Report an aggregated event through the single-event endpoints, for
+     * servers without the bulk endpoint. Its count is sent with one request.
      */
-    private int processImpressionBatch() {
-        List<TrackingEvent> batchToProcess;
-        
-        synchronized (pendingImpressions) {
-            if (pendingImpressions.isEmpty()) {
-                return 0;
-            }
-            
-            // Take up to MAX_BATCH_SIZE events
-            int batchSize = Math.min(pendingImpressions.size(), MAX_BATCH_SIZE);
-            batchToProcess = new ArrayList<>(pendingImpressions.subList(0, batchSize));
-            
-            // Remove processed events from the pending list
-            for (int i = 0; i < batchSize; i++) {
-                pendingImpressions.remove(0);
-            }
-        }
-        
-        if (batchToProcess.isEmpty()) {
-            return 0;
-        }
-        
-        Log.d(TAG, "Processing batch of " + batchToProcess.size() + " impression events");
-        
-        // Process each event
-        int successCount = 0;
-        for (TrackingEvent event : batchToProcess) {
-            if (recordImpressionToServer(event.adId, event.deviceId)) {
-                successCount++;
-            }
+    private void recordSingleEvents(AggregatedAdEvent event) {
+        TrackingEvent trackingEvent = new TrackingEvent(event.adId, deviceId, event);
+        if (event.type == AdEventEntity.TYPE_CLICK) {
+            recordClickToServer(trackingEvent);
+        } else {
+            recordImpressionToServer(trackingEvent);
         }
-        
-        return successCount;
     }
     
     /**
-     * Process a batch of click events
-     * @return number of events processed
+     * Put an event that could not be sent back in the queue. It keeps its
+     * original time, so it is dropped once older than MAX_BATCH_AGE_MS, and
+     * its retry count, so it is given up after MAX_RETRY_ATTEMPTS.
      */
-    private int processClickBatch() {
-        List<TrackingEvent> batchToProcess;
-        
-        synchronized (pendingClicks) {
-            if (pendingClicks.isEmpty()) {
-                return 0;
-            }
-            
-            // Take up to MAX_BATCH_SIZE events
-            int batchSize = Math.min(pendingClicks.size(), MAX_BATCH_SIZE);
-            batchToProcess = new ArrayList<>(pendingClicks.subList(0, batchSize));
-            
-            // Remove processed events from the pending list
-            for (int i = 0; i < batchSize; i++) {
-                pendingClicks.remove(0);
-            }
-        }
-        
-        if (batchToProcess.isEmpty()) {
-            return 0;
-        }
-        
-        Log.d(TAG, "Processing batch of " + batchToProcess.size() + " click events");
-        
-        // Process each event
-        int successCount = 0;
-        for (TrackingEvent event : batchToProcess) {
-            if (recordClickToServer(event.adId, event.deviceId)) {
-                successCount++;
-            }
+    private void requeueEvent(int type, TrackingEvent event) {
+        for (int i = 0; i < event.count; i++) {
+            AdEventEntity entity = new AdEventEntity(type, event.adId, sessionId);
+            entity.setTimestamp(event.timestamp);
+            entity.setRetryCount(event.retryCount);
+            eventQueue.append(entity, null);
         }
-        
-        return successCount;
     }
     
     /**
@@ -384,7 +316,6 @@ public class SponsoredAdRepository {
      * @return LiveData of sponsored ads list
      */
     public LiveData<List<SponsoredAd>> getSponsoredAds() {
-<<<<<<< HEAD
         // Initialize repository if needed
         initialize();
         
@@ -394,8 +325,9 @@ public class SponsoredAdRepository {
             forceRefresh = false;
         } else {
             loadFromCache();
-=======
-        return getSponsoredAdsForLocation(null);
+        }
+        
+        return sponsoredAdsLiveData;
     }
     
     /**
@@ -404,19 +336,10 @@ public class SponsoredAdRepository {
      * @return LiveData of sponsored ads list
      */
     public LiveData<List<SponsoredAd>> getSponsoredAdsForLocation(String location) {
-        // Check if we need to refresh
-        boolean shouldRefresh = System.currentTimeMillis() - lastFetchTime > CACHE_EXPIRATION_MS;
-        
-        if (shouldRefresh || sponsoredAdsLiveData.getValue() == null || sponsoredAdsLiveData.getValue().isEmpty()) {
-            fetchSponsoredAds(location);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
-        }
-        
-        return sponsoredAdsLiveData;
+        return location != null ? getAdsByLocation(location) : getSponsoredAds();
     }
     
     /**
-<<<<<<< HEAD
      * Explicitly force a refresh from the network
      */
     public void refreshAds() {
@@ -518,23 +441,11 @@ public class SponsoredAdRepository {
         }
         
         // Make the API call to get ads
-        apiService.getSponsoredAds().enqueue(new Callback<SponsoredAdResponse>() {
-=======
-     * Fetch sponsored ads from the server
-     * @param location The location filter, or null for all locations
-     */
-    private void fetchSponsoredAds(String location) {
-        loadingLiveData.setValue(true);
-        
-        Log.d(TAG, "Fetching sponsored ads for location: " + (location != null ? location : "all") + 
-              " with deviceId: " + (deviceId != null ? deviceId.substring(0, Math.min(6, deviceId.length())) + "..." : "null"));
-        
-        apiService.getSponsoredAds(location, deviceId).enqueue(new Callback<SponsoredAdResponse>() {
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
+        apiService.getSponsoredAds(null, deviceId).enqueue(new Callback<SponsoredAdResponse>() {
             @Override
             public void onResponse(Call<SponsoredAdResponse> call, Response<SponsoredAdResponse> response) {
                 loadingLiveData.postValue(false);
-                lastFetchTime = System.currentTimeMillis();
+                lastRefreshTime = System.currentTimeMillis();
                 
                 if (response.code() == 429) {
                     // Handle rate limiting
@@ -546,7 +457,6 @@ public class SponsoredAdRepository {
                     SponsoredAdResponse adResponse = response.body();
                     
                     if (adResponse.isSuccess() && adResponse.getAds() != null) {
-<<<<<<< HEAD
                         final List<SponsoredAd> ads = adResponse.getAds();
                         Log.d(TAG, "Loaded " + ads.size() + " sponsored ads from API");
                         
@@ -563,27 +473,9 @@ public class SponsoredAdRepository {
                             
                             // Replace all cached ads with new ones
                             sponsoredAdDao.replaceAll(entities);
+                            selectionIndex.clear();
                             Log.d(TAG, "Cached " + entities.size() + " sponsored ads");
                         });
-=======
-                        sponsoredAdsLiveData.postValue(adResponse.getAds());
-                        Log.d(TAG, "Loaded " + adResponse.getAds().size() + " sponsored ads for location: " + 
-                              (location != null ? location : "all"));
-                        
-                        // Log frequency cap and metrics for each ad
-                        for (SponsoredAd ad : adResponse.getAds()) {
-                            Log.d(TAG, "Ad: " + ad.getId() + ", Title: " + ad.getTitle() +
-                                  ", Frequency Cap: " + ad.getFrequencyCap() +
-                                  ", Daily Frequency Cap: " + ad.getDailyFrequencyCap());
-                            
-                            if (ad.getMetrics() != null) {
-                                Log.d(TAG, "Ad Metrics - Device Impressions: " + ad.getMetrics().getDeviceImpressions() +
-                                      ", Daily Impressions: " + ad.getMetrics().getDeviceDailyImpressions() +
-                                      ", Frequency Capped: " + ad.getMetrics().isFrequencyCapped() +
-                                      ", Daily Frequency Capped: " + ad.getMetrics().isDailyFrequencyCapped());
-                            }
-                        }
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
                     } else {
                         String errorMsg = adResponse.getMessage() != null ? 
                                 adResponse.getMessage() : "No ads available";
@@ -644,7 +536,7 @@ public class SponsoredAdRepository {
             @Override
             public void onResponse(Call<SponsoredAdResponse> call, Response<SponsoredAdResponse> response) {
                 loadingLiveData.postValue(false);
-                lastFetchTime = System.currentTimeMillis();
+                lastRefreshTime = System.currentTimeMillis();
                 
                 if (response.isSuccessful() && response.body() != null) {
                     SponsoredAdResponse adResponse = response.body();
@@ -681,7 +573,6 @@ public class SponsoredAdRepository {
                 Log.e(TAG, errorMsg, t);
             }
         });
-<<<<<<< HEAD
     }
     
     /**
@@ -722,8 +613,6 @@ public class SponsoredAdRepository {
         
         // Load from cache as fallback
         loadFromCache();
-=======
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
     }
     
     /**
@@ -737,7 +626,21 @@ public class SponsoredAdRepository {
             return;
         }
         
-<<<<<<< HEAD
+        recordImpression(adId);
+        callback.onSuccess(new ArrayList<>());
+    }
+    
+    /**
+     * Record ad impression, at most once per ad per day. The impression is
+     * counted locally at once and reported with the next batch.
+     * @param adId The ID of the ad
+     */
+    public void recordImpression(String adId) {
+        if (adId == null || adId.isEmpty()) {
+            Log.e(TAG, "IMPRESSION TRACKING: Cannot record impression - invalid ad ID");
+            return;
+        }
+        
         Log.d(TAG, "IMPRESSION TRACKING: Starting impression recording process for ad: " + adId);
         
         // Check rate limiting for all API calls
@@ -784,52 +687,33 @@ public class SponsoredAdRepository {
         updateLocalImpressionCount(adId);
         Log.d(TAG, "IMPRESSION TRACKING: Updated local impression count in Room database");
         
-        // IMPORTANT CHANGE: Send impression to server immediately if we have network
-        if (connectivityChecker.isNetworkAvailable()) {
-            Log.d(TAG, "IMPRESSION TRACKING: Network available - sending impression directly to server");
-            // Send directly to server
-            boolean success = recordImpressionToServer(adId, deviceId);
-            if (success) {
-                Log.d(TAG, "IMPRESSION TRACKING: Successfully sent impression directly to server for ad: " + adId);
-                // Don't return early - still add to batch queue as fallback in case API call fails
-            }
-        }
-        
-        // Add to pending batch (as fallback)
-        TrackingEvent event = new TrackingEvent(adId, deviceId);
-        synchronized (pendingImpressions) {
-            pendingImpressions.add(event);
-            Log.d(TAG, "IMPRESSION TRACKING: Added impression to batch queue as fallback. Queue size: " + pendingImpressions.size());
-        }
-        
-        // If batch is full or we're online, process immediately
-        if (pendingImpressions.size() >= MAX_BATCH_SIZE && connectivityChecker.isNetworkAvailable()) {
-            Log.d(TAG, "IMPRESSION TRACKING: Processing batch immediately (batch size: " + pendingImpressions.size() + ")");
-            batchHandler.post(batchProcessingRunnable);
-        } else {
-            // Otherwise make sure a batch flush is scheduled
-            Log.d(TAG, "IMPRESSION TRACKING: Scheduling batch processing for later");
-            scheduleBatchProcessing();
-        }
-        
-        // Diagnostic - dump impression queue
-        synchronized (pendingImpressions) {
-            Log.d(TAG, "IMPRESSION TRACKING: Current impression queue:");
-            for (int i = 0; i < pendingImpressions.size(); i++) {
-                TrackingEvent e = pendingImpressions.get(i);
-                Log.d(TAG, "  Queue[" + i + "]: " + e.toString());
+        // Queue the impression; it is reported with the next batch
+        eventQueue.append(new AdEventEntity(AdEventEntity.TYPE_IMPRESSION, adId, sessionId), size -> {
+            Log.d(TAG, "IMPRESSION TRACKING: Added impression to batch queue. Queue size: " + size);
+            
+            // If batch is full and we're online, process immediately
+            if (size >= MAX_BATCH_SIZE && connectivityChecker.isNetworkAvailable()) {
+                Log.d(TAG, "IMPRESSION TRACKING: Processing batch immediately (batch size: " + size + ")");
+                scheduleBatchFlush(0);
+            } else {
+                // Otherwise make sure a batch flush is scheduled
+                Log.d(TAG, "IMPRESSION TRACKING: Scheduling batch processing for later");
+                scheduleBatchProcessing();
             }
-        }
+        });
     }
     
     /**
-     * Record an impression directly to the server
+     * Record impressions directly to the server
+     * @param event Impressions of one ad, with their count and retry count
      * @return true if successful or scheduled for retry, false if failed permanently
      */
-    private boolean recordImpressionToServer(String adId, String deviceId) {
-        Log.d(TAG, "IMPRESSION TRACKING: Recording impression to server for ad: " + adId + " with deviceId: " + deviceId);
+    private boolean recordImpressionToServer(final TrackingEvent event) {
+        final String adId = event.adId;
+        final String deviceId = event.deviceId;
+        Log.d(TAG, "IMPRESSION TRACKING: Recording " + event.count + " impressions to server for ad: " + adId +
+              " with deviceId: " + deviceId);
         
-        final TrackingEvent event = new TrackingEvent(adId, deviceId);
         final boolean[] success = {false}; // Use array to allow modification in callback
         
         // Debug - show network connectivity status
@@ -839,12 +723,8 @@ public class SponsoredAdRepository {
         // Get the API endpoint for impression tracking
         String endpoint = "sponsored-ads/viewed/" + adId;
         Log.d(TAG, "IMPRESSION TRACKING: Using API endpoint: " + endpoint);
-=======
-        Log.d(TAG, "⭐ Recording impression for ad: " + adId + " with deviceId: " + 
-              (deviceId != null ? deviceId.substring(0, Math.min(6, deviceId.length())) + "..." : "null"));
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
         
-        apiService.recordSponsoredAdImpression(adId, deviceId).enqueue(new Callback<JsonObject>() {
+        apiService.recordSponsoredAdImpression(adId, deviceId, event.count).enqueue(new Callback<JsonObject>() {
             @Override
             public void onResponse(Call<JsonObject> call, Response<JsonObject> response) {
                 Log.d(TAG, "IMPRESSION TRACKING: Server responded with code: " + response.code());
@@ -855,20 +735,17 @@ public class SponsoredAdRepository {
                     Log.e(TAG, "IMPRESSION TRACKING: Rate limited by server when recording impression for ad: " + adId);
                     
                     // Add back to queue for future retry
-                    synchronized (pendingImpressions) {
-                        if (event.incrementRetry()) {
-                            pendingImpressions.add(event);
-                            Log.d(TAG, "IMPRESSION TRACKING: Re-queued impression for retry (attempt " + event.retryCount + 
-                                  " of " + MAX_RETRY_ATTEMPTS + ")");
-                        } else {
-                            Log.e(TAG, "IMPRESSION TRACKING: Maximum retry attempts reached for impression: " + event);
-                        }
+                    if (event.incrementRetry()) {
+                        requeueEvent(AdEventEntity.TYPE_IMPRESSION, event);
+                        Log.d(TAG, "IMPRESSION TRACKING: Re-queued impression for retry (attempt " + event.retryCount + 
+                              " of " + MAX_RETRY_ATTEMPTS + ")");
+                    } else {
+                        Log.e(TAG, "IMPRESSION TRACKING: Maximum retry attempts reached for impression: " + event);
                     }
                     return;
                 }
                 
                 if (response.isSuccessful() && response.body() != null) {
-<<<<<<< HEAD
                     Log.d(TAG, "IMPRESSION TRACKING: Successfully recorded impression for ad: " + adId + 
                           ", response: " + response.body().toString());
                     success[0] = true;
@@ -890,125 +767,45 @@ public class SponsoredAdRepository {
                     }
                 } else {
                     String errorMsg = "IMPRESSION TRACKING: Failed to record impression for ad: " + adId + ", code: " + response.code();
-=======
-                    JsonObject responseBody = response.body();
-                    
-                    // Log detailed response information
-                    Log.d(TAG, "✅ Impression recorded successfully for ad: " + adId);
-                    Log.d(TAG, "URL: " + call.request().url());
-                    Log.d(TAG, "Response: " + responseBody);
-                    
-                    try {
-                        // Extract tracking metrics with improved parsing
-                        StringBuilder trackingInfo = new StringBuilder();
-                        trackingInfo.append("📊 Impression Tracking Info for ad ").append(adId).append(":\n");
-                        
-                        // Impression counts (total, device, daily)
-                        int impressionCount = getIntField(responseBody, "impression_count", "impressionCount", 0);
-                        int deviceImpressions = getIntField(responseBody, "device_impressions", "deviceImpressions", 0);
-                        int dailyCount = getIntField(responseBody, "daily_count", "dailyCount", 0);
-                        
-                        trackingInfo.append("  • Total Impressions: ").append(impressionCount).append("\n");
-                        trackingInfo.append("  • Device Impressions: ").append(deviceImpressions).append("\n");
-                        trackingInfo.append("  • Today's Impressions: ").append(dailyCount).append("\n");
-                        
-                        // Was this impression actually counted?
-                        boolean wasCounted = getBooleanField(responseBody, "was_counted", "wasCounted", true);
-                        trackingInfo.append("  • Impression Counted: ").append(wasCounted ? "YES ✓" : "NO ✗").append("\n");
-                        
-                        // Capping information
-                        boolean isCapped = getBooleanField(responseBody, "is_capped", "isCapped", false);
-                        boolean isDailyCapped = getBooleanField(responseBody, "is_daily_capped", "isDailyCapped", false);
-                        int frequencyCap = getIntField(responseBody, "frequency_cap", "frequencyCap", 0);
-                        int dailyFrequencyCap = getIntField(responseBody, "daily_frequency_cap", "dailyFrequencyCap", 0);
-                        
-                        trackingInfo.append("  • Frequency Cap: ").append(frequencyCap > 0 ? frequencyCap : "Unlimited").append("\n");
-                        trackingInfo.append("  • Daily Cap: ").append(dailyFrequencyCap > 0 ? dailyFrequencyCap : "Unlimited").append("\n");
-                        trackingInfo.append("  • Is Capped: ").append(isCapped ? "YES ⚠️" : "NO").append("\n");
-                        trackingInfo.append("  • Is Daily Capped: ").append(isDailyCapped ? "YES ⚠️" : "NO").append("\n");
-                        
-                        // Calculate remaining impressions
-                        if (frequencyCap > 0) {
-                            int remaining = Math.max(0, frequencyCap - deviceImpressions);
-                            trackingInfo.append("  • Remaining Total Impressions: ").append(remaining).append("\n");
-                        }
-                        
-                        if (dailyFrequencyCap > 0) {
-                            int remaining = Math.max(0, dailyFrequencyCap - dailyCount);
-                            trackingInfo.append("  • Remaining Daily Impressions: ").append(remaining).append("\n");
-                        }
-                        
-                        Log.i(TAG, trackingInfo.toString());
-                    } catch (Exception e) {
-                        Log.e(TAG, "❌ Error parsing impression response fields: " + e.getMessage(), e);
-                    }
-                    
-                    callback.onSuccess(new ArrayList<>());
-                } else {
-                    String errorMsg = "Error recording impression: " + response.code();
-                    Log.e(TAG, "❌ " + errorMsg);
-                    Log.e(TAG, "URL: " + call.request().url());
-                    
-                    // Try to extract error details
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
                     try {
                         if (response.errorBody() != null) {
                             String errorBody = response.errorBody().string();
                             Log.e(TAG, "Error response: " + errorBody);
                         }
                     } catch (Exception e) {
-<<<<<<< HEAD
                         Log.e(TAG, "IMPRESSION TRACKING: Error parsing impression error response", e);
                     }
                     Log.e(TAG, errorMsg);
                     
                     // Re-add to queue for server errors only
                     if (response.code() >= 500) {
-                        synchronized (pendingImpressions) {
-                            if (event.incrementRetry()) {
-                                pendingImpressions.add(event);
-                                Log.d(TAG, "IMPRESSION TRACKING: Re-queued impression for retry due to server error (attempt " + 
-                                      event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
-                                success[0] = true; // Consider as success since we're retrying
-                            } else {
-                                Log.e(TAG, "IMPRESSION TRACKING: Maximum retry attempts reached for impression: " + event);
-                            }
+                        if (event.incrementRetry()) {
+                            requeueEvent(AdEventEntity.TYPE_IMPRESSION, event);
+                            Log.d(TAG, "IMPRESSION TRACKING: Re-queued impression for retry due to server error (attempt " + 
+                                  event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
+                            success[0] = true; // Consider as success since we're retrying
+                        } else {
+                            Log.e(TAG, "IMPRESSION TRACKING: Maximum retry attempts reached for impression: " + event);
                         }
                     }
-=======
-                        Log.e(TAG, "Error reading error body: " + e.getMessage());
-                    }
-                    
-                    callback.onError(errorMsg);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
                 }
             }
             
             @Override
             public void onFailure(Call<JsonObject> call, Throwable t) {
-<<<<<<< HEAD
                 Log.e(TAG, "IMPRESSION TRACKING: Network error recording impression for ad: " + adId, t);
                 Log.e(TAG, "IMPRESSION TRACKING: Impression request URL: " + call.request().url());
                 Log.e(TAG, "IMPRESSION TRACKING: Error message: " + t.getMessage());
                 
                 // Add back to the queue for retry
-                synchronized (pendingImpressions) {
-                    if (event.incrementRetry()) {
-                        pendingImpressions.add(event);
-                        Log.d(TAG, "IMPRESSION TRACKING: Re-queued impression for retry due to network error (attempt " + 
-                              event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
-                        success[0] = true; // Consider as success since we're retrying
-                    } else {
-                        Log.e(TAG, "IMPRESSION TRACKING: Maximum retry attempts reached for impression: " + event);
-                    }
+                if (event.incrementRetry()) {
+                    requeueEvent(AdEventEntity.TYPE_IMPRESSION, event);
+                    Log.d(TAG, "IMPRESSION TRACKING: Re-queued impression for retry due to network error (attempt " + 
+                          event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
+                    success[0] = true; // Consider as success since we're retrying
+                } else {
+                    Log.e(TAG, "IMPRESSION TRACKING: Maximum retry attempts reached for impression: " + event);
                 }
-=======
-                String errorMsg = "Network error recording impression: " + t.getMessage();
-                Log.e(TAG, "❌ " + errorMsg);
-                Log.e(TAG, "URL: " + call.request().url());
-                Log.e(TAG, "Error details", t);
-                callback.onError(errorMsg);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
             }
         });
         
@@ -1044,6 +841,7 @@ public class SponsoredAdRepository {
                         
                         // Save to database
                         sponsoredAdDao.update(entity);
+                        selectionIndex.update(entity);
                         
                         Log.d(TAG, "IMPRESSION TRACKING: Updated local database - Ad: " + adId + 
                               ", Old count: " + currentCount + ", New count: " + newCount);
@@ -1070,7 +868,21 @@ public class SponsoredAdRepository {
             return;
         }
         
-<<<<<<< HEAD
+        recordClick(adId);
+        callback.onSuccess(new ArrayList<>());
+    }
+    
+    /**
+     * Record ad click. The click is counted locally at once and reported
+     * with a batch flushed straight away when online.
+     * @param adId The ID of the ad
+     */
+    public void recordClick(String adId) {
+        if (adId == null || adId.isEmpty()) {
+            Log.e(TAG, "Cannot record click - invalid ad ID");
+            return;
+        }
+        
         // Check rate limiting for all API calls
         if (isRateLimited && System.currentTimeMillis() < rateLimitExpiresAt) {
             long remainingMinutes = (rateLimitExpiresAt - System.currentTimeMillis()) / 60000;
@@ -1085,15 +897,11 @@ public class SponsoredAdRepository {
         updateLocalClickCount(adId);
         
         // Add to pending batch
-        TrackingEvent event = new TrackingEvent(adId, deviceId);
-        synchronized (pendingClicks) {
-            pendingClicks.add(event);
-            Log.d(TAG, "Added click to batch queue. Queue size: " + pendingClicks.size());
-        }
+        eventQueue.append(new AdEventEntity(AdEventEntity.TYPE_CLICK, adId, sessionId), null);
         
         // Clicks should be processed immediately if online
         if (connectivityChecker.isNetworkAvailable()) {
-            batchHandler.post(batchProcessingRunnable);
+            scheduleBatchFlush(0);
         } else {
             // Otherwise make sure a batch flush is scheduled
             scheduleBatchProcessing();
@@ -1101,20 +909,18 @@ public class SponsoredAdRepository {
     }
     
     /**
-     * Record a click directly to the server
+     * Record clicks directly to the server
+     * @param event Clicks on one ad, with their count and retry count
      * @return true if successful or scheduled for retry, false if failed permanently
      */
-    private boolean recordClickToServer(String adId, String deviceId) {
-        Log.d(TAG, "Recording click for ad: " + adId + " with deviceId: " + deviceId);
+    private boolean recordClickToServer(final TrackingEvent event) {
+        final String adId = event.adId;
+        final String deviceId = event.deviceId;
+        Log.d(TAG, "Recording " + event.count + " clicks for ad: " + adId + " with deviceId: " + deviceId);
         
-        final TrackingEvent event = new TrackingEvent(adId, deviceId);
         final boolean[] success = {false}; // Use array to allow modification in callback
-=======
-        Log.d(TAG, "⭐ Recording click for ad: " + adId + " with deviceId: " + 
-              (deviceId != null ? deviceId.substring(0, Math.min(6, deviceId.length())) + "..." : "null"));
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
         
-        apiService.recordSponsoredAdClick(adId, deviceId).enqueue(new Callback<JsonObject>() {
+        apiService.recordSponsoredAdClick(adId, deviceId, event.count).enqueue(new Callback<JsonObject>() {
             @Override
             public void onResponse(Call<JsonObject> call, Response<JsonObject> response) {
                 // Check for rate limiting status code (429)
@@ -1123,21 +929,18 @@ public class SponsoredAdRepository {
                     Log.e(TAG, "Rate limited by server when recording click for ad: " + adId);
                     
                     // Add back to queue for retry later
-                    synchronized (pendingClicks) {
-                        if (event.incrementRetry()) {
-                            pendingClicks.add(event);
-                            Log.d(TAG, "Re-queued click for retry (attempt " + event.retryCount + 
-                                  " of " + MAX_RETRY_ATTEMPTS + ")");
-                            success[0] = true; // Consider as success since we're retrying
-                        } else {
-                            Log.e(TAG, "Maximum retry attempts reached for click: " + event);
-                        }
+                    if (event.incrementRetry()) {
+                        requeueEvent(AdEventEntity.TYPE_CLICK, event);
+                        Log.d(TAG, "Re-queued click for retry (attempt " + event.retryCount + 
+                              " of " + MAX_RETRY_ATTEMPTS + ")");
+                        success[0] = true; // Consider as success since we're retrying
+                    } else {
+                        Log.e(TAG, "Maximum retry attempts reached for click: " + event);
                     }
                     return;
                 }
                 
                 if (response.isSuccessful() && response.body() != null) {
-<<<<<<< HEAD
                     Log.d(TAG, "Successfully recorded click for ad: " + adId + 
                           ", response: " + response.body().toString());
                     
@@ -1145,46 +948,6 @@ public class SponsoredAdRepository {
                     // This helps in case the earlier update had issues
                     updateLocalClickCount(adId);
                     success[0] = true;
-=======
-                    JsonObject responseBody = response.body();
-                    
-                    // Log detailed response information
-                    Log.d(TAG, "✅ Click recorded successfully for ad: " + adId);
-                    Log.d(TAG, "URL: " + call.request().url());
-                    Log.d(TAG, "Response: " + responseBody);
-                    
-                    try {
-                        // Extract tracking metrics with improved parsing
-                        StringBuilder trackingInfo = new StringBuilder();
-                        trackingInfo.append("📊 Click Tracking Info for ad ").append(adId).append(":\n");
-                        
-                        // Click counts (total, device)
-                        int clickCount = getIntField(responseBody, "click_count", "clickCount", 0);
-                        int deviceClicks = getIntField(responseBody, "device_clicks", "deviceClicks", 0);
-                        int delta = getIntField(responseBody, "delta", "delta", 1);
-                        
-                        trackingInfo.append("  • Total Clicks: ").append(clickCount).append("\n");
-                        trackingInfo.append("  • Device Clicks: ").append(deviceClicks).append("\n");
-                        trackingInfo.append("  • Change: ").append(delta > 0 ? "+" + delta : delta).append("\n");
-                        
-                        // Reference impression data
-                        int impressionCount = getIntField(responseBody, "impression_count", "impressionCount", 0);
-                        trackingInfo.append("  • Total Impressions: ").append(impressionCount).append("\n");
-                        
-                        // Engagement metrics
-                        float ctr = getFloatField(responseBody, "ctr", "ctr", 0);
-                        float deviceCtr = getFloatField(responseBody, "device_ctr", "deviceCtr", 0);
-                        
-                        trackingInfo.append("  • Overall CTR: ").append(String.format("%.2f%%", ctr)).append("\n");
-                        trackingInfo.append("  • Device CTR: ").append(String.format("%.2f%%", deviceCtr)).append("\n");
-                        
-                        Log.i(TAG, trackingInfo.toString());
-                    } catch (Exception e) {
-                        Log.e(TAG, "❌ Error parsing click response fields: " + e.getMessage(), e);
-                    }
-                    
-                    callback.onSuccess(new ArrayList<>());
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
                 } else {
                     String errorMsg = "Error recording click: " + response.code();
                     Log.e(TAG, "❌ " + errorMsg);
@@ -1199,45 +962,35 @@ public class SponsoredAdRepository {
                     } catch (Exception e) {
                         Log.e(TAG, "Error reading error body: " + e.getMessage());
                     }
-<<<<<<< HEAD
                     Log.e(TAG, errorMsg);
                     
                     // Re-add to queue for later retry
                     if (response.code() >= 500) {
-                        synchronized (pendingClicks) {
-                            if (event.incrementRetry()) {
-                                pendingClicks.add(event);
-                                Log.d(TAG, "Re-queued click for retry due to server error (attempt " + 
-                                      event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
-                                success[0] = true; // Consider as success since we're retrying
-                            } else {
-                                Log.e(TAG, "Maximum retry attempts reached for click: " + event);
-                            }
+                        if (event.incrementRetry()) {
+                            requeueEvent(AdEventEntity.TYPE_CLICK, event);
+                            Log.d(TAG, "Re-queued click for retry due to server error (attempt " + 
+                                  event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
+                            success[0] = true; // Consider as success since we're retrying
+                        } else {
+                            Log.e(TAG, "Maximum retry attempts reached for click: " + event);
                         }
                     }
-=======
-                    
-                    callback.onError(errorMsg);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
                 }
             }
             
             @Override
             public void onFailure(Call<JsonObject> call, Throwable t) {
-<<<<<<< HEAD
                 Log.e(TAG, "Network error recording click for ad: " + adId, t);
                 Log.e(TAG, "Click request URL: " + call.request().url());
                 
                 // Add back to the queue for retry
-                synchronized (pendingClicks) {
-                    if (event.incrementRetry()) {
-                        pendingClicks.add(event);
-                        Log.d(TAG, "Re-queued click for retry due to network error (attempt " + 
-                              event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
-                        success[0] = true; // Consider as success since we're retrying
-                    } else {
-                        Log.e(TAG, "Maximum retry attempts reached for click: " + event);
-                    }
+                if (event.incrementRetry()) {
+                    requeueEvent(AdEventEntity.TYPE_CLICK, event);
+                    Log.d(TAG, "Re-queued click for retry due to network error (attempt " + 
+                          event.retryCount + " of " + MAX_RETRY_ATTEMPTS + ")");
+                    success[0] = true; // Consider as success since we're retrying
+                } else {
+                    Log.e(TAG, "Maximum retry attempts reached for click: " + event);
                 }
             }
         });
@@ -1255,6 +1008,7 @@ public class SponsoredAdRepository {
                 if (adEntity != null) {
                     adEntity.setClickCount(adEntity.getClickCount() + 1);
                     sponsoredAdDao.update(adEntity);
+                    selectionIndex.update(adEntity);
                     Log.d(TAG, "Updated local click count for ad: " + adId + 
                           " to " + adEntity.getClickCount());
                 } else {
@@ -1268,13 +1022,6 @@ public class SponsoredAdRepository {
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error updating local click count for ad: " + adId, e);
-=======
-                String errorMsg = "Network error recording click: " + t.getMessage();
-                Log.e(TAG, "❌ " + errorMsg);
-                Log.e(TAG, "URL: " + call.request().url());
-                Log.e(TAG, "Error details", t);
-                callback.onError(errorMsg);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
             }
         });
     }
@@ -1342,7 +1089,6 @@ public class SponsoredAdRepository {
     public LiveData<String> getError() {
         return errorLiveData;
     }
-<<<<<<< HEAD
     
     /**
      * Get sponsored ads for a specific location with caching
@@ -1468,6 +1214,7 @@ public class SponsoredAdRepository {
     public void clearCache() {
         executors.diskIO().execute(() -> {
             sponsoredAdDao.deleteAll();
+            selectionIndex.clear();
             Log.d(TAG, "Cleared sponsored ads cache");
         });
     }
@@ -1493,8 +1240,8 @@ public class SponsoredAdRepository {
         // Process any pending events before cleanup
         processPendingEvents();
         
-        // Remove callbacks
-        batchHandler.removeCallbacks(batchProcessingRunnable);
+        // Cancel the pending flush
+        cancelBatchFlush();
         
         Log.d(TAG, "Repository cleaned up");
     }
@@ -1508,36 +1255,21 @@ public class SponsoredAdRepository {
               
         MediatorLiveData<SponsoredAd> result = new MediatorLiveData<>();
         
-        // First check cache
+        // First check cache; selection stays on the disk thread
         executors.diskIO().execute(() -> {
             try {
-                List<SponsoredAdEntity> entities;
-                long currentTime = System.currentTimeMillis();
-                
-                if (excludeIds != null && !excludeIds.isEmpty()) {
-                    List<String> excludeList = new ArrayList<>(excludeIds);
-                    entities = sponsoredAdDao.getActiveAdsByLocationExcluding(
-                        location, excludeList, currentTime);
-                } else {
-                    entities = sponsoredAdDao.getActiveAdsByLocation(location, currentTime);
-                }
+                SponsoredAdEntity selectedEntity = selectFromIndex(location, excludeIds);
                 
-                if (entities != null && !entities.isEmpty()) {
-                    Log.d(TAG, "Found " + entities.size() + " cached ads for rotation");
+                if (selectedEntity != null) {
+                    result.postValue(entityToModel(selectedEntity));
                     
-                    // Apply weighted selection on main thread
-                    executors.mainThread().execute(() -> {
-                        SponsoredAdEntity selectedEntity = applyWeightedSelection(entities);
-                        result.setValue(entityToModel(selectedEntity));
-                        
-                        // Refresh cache in background if needed
-                        long cacheAge = System.currentTimeMillis() - selectedEntity.getLastFetchTime();
-                        if (cacheAge > MIN_REFRESH_INTERVAL_MS) {
-                            Log.d(TAG, "Cache is old (" + (cacheAge / 1000) + " seconds), refreshing from network");
-                            refreshRotationAdsFromNetwork(location, excludeIds);
-                        }
-                    });
-            } else {
+                    // Refresh cache in background if needed
+                    long cacheAge = System.currentTimeMillis() - selectedEntity.getLastFetchTime();
+                    if (cacheAge > MIN_REFRESH_INTERVAL_MS) {
+                        Log.d(TAG, "Cache is old (" + (cacheAge / 1000) + " seconds), refreshing from network");
+                        refreshRotationAdsFromNetwork(location, excludeIds);
+                    }
+                } else {
                     Log.d(TAG, "No cached ads for rotation, fetching from network");
                     // Fetch from network
                     fetchRotationAdFromNetwork(location, excludeIds, result);
@@ -1553,45 +1285,20 @@ public class SponsoredAdRepository {
     }
 
     /**
-     * Apply weighted selection based on priority and previous impressions
+     * Pick a cached ad for a location by weight (priority and previous
+     * impressions). Loads the location into the index from Room when it is
+     * missing or one of its ads has expired. Must not run on the main thread.
+     * @return Selected ad, or null if no cached ad is eligible
      */
-    private SponsoredAdEntity applyWeightedSelection(List<SponsoredAdEntity> entities) {
-        if (entities.size() == 1) {
-            return entities.get(0);
-        }
-        
-        // Calculate total weight (priority * inverse of impression count)
-        double totalWeight = 0;
-        double[] weights = new double[entities.size()];
-        
-        for (int i = 0; i < entities.size(); i++) {
-            SponsoredAdEntity entity = entities.get(i);
-            
-            // Higher priority and fewer impressions = higher weight
-            // Formula: weight = priority * (1 / (1 + log(1 + impression_count)))
-            double impressionFactor = 1.0 / (1 + Math.log(1 + entity.getImpressionCount()));
-            weights[i] = entity.getPriority() * impressionFactor;
-            totalWeight += weights[i];
-        }
-        
-        Log.d(TAG, "Total weight: " + totalWeight + " for " + entities.size() + " ads");
-        
-        // Select based on weighted probability
-        double random = Math.random() * totalWeight;
-        double weightSum = 0;
-        
-        for (int i = 0; i < entities.size(); i++) {
-            weightSum += weights[i];
-            if (random <= weightSum) {
-                Log.d(TAG, "Selected ad " + entities.get(i).getId() + " with weight " + 
-                      weights[i] + "/" + totalWeight + " (random=" + random + ")");
-                return entities.get(i);
-            }
+    private SponsoredAdEntity selectFromIndex(String location, Set<String> excludeIds) {
+        long currentTime = System.currentTimeMillis();
+        if (!selectionIndex.isLoaded(location, currentTime)) {
+            List<SponsoredAdEntity> entities = sponsoredAdDao.getActiveAdsByLocation(location, currentTime);
+            selectionIndex.load(location, entities != null ? entities : new ArrayList<>());
+            Log.d(TAG, "Indexed " + (entities != null ? entities.size() : 0) + 
+                  " cached ads for rotation at location: " + location);
         }
-        
-        // Fallback to first ad (should rarely happen)
-        Log.d(TAG, "Fallback to first ad due to weight calculation edge case");
-        return entities.get(0);
+        return selectionIndex.select(location, excludeIds);
     }
 
     /**
@@ -1622,6 +1329,7 @@ public class SponsoredAdRepository {
                 
                 // Insert into database
                 sponsoredAdDao.insertAll(entities);
+                selectionIndex.clear();
                 Log.d(TAG, "Successfully saved " + entities.size() + " ads to database");
             } catch (Exception e) {
                 Log.e(TAG, "Error saving ads to database", e);
@@ -1730,35 +1438,11 @@ public class SponsoredAdRepository {
      */
     public SponsoredAd getNextRotationAdSync(String location, Set<String> excludeIds) {
         Log.d(TAG, "Getting next rotation ad synchronously for location: " + location +
-              ", excluding: " + excludeIds.size() + " ads");
+              ", excluding: " + (excludeIds != null ? excludeIds.size() : 0) + " ads");
         
         try {
-            // Query the database directly on the calling thread
-            List<SponsoredAdEntity> entities = sponsoredAdDao.getAdsByLocationSync(location);
-            
-            if (entities == null || entities.isEmpty()) {
-                Log.d(TAG, "No ads available for rotation at location: " + location);
-                return null;
-            }
-            
-            // Filter out excluded IDs
-            if (excludeIds != null && !excludeIds.isEmpty()) {
-                Iterator<SponsoredAdEntity> iterator = entities.iterator();
-                while (iterator.hasNext()) {
-                    SponsoredAdEntity entity = iterator.next();
-                    if (excludeIds.contains(entity.getId())) {
-                        iterator.remove();
-                    }
-                }
-            }
-            
-            if (entities.isEmpty()) {
-                Log.d(TAG, "No ads available after exclusion filter");
-                return null;
-            }
-            
-            // Apply weighted selection
-            SponsoredAdEntity selected = applyWeightedSelection(entities);
+            // Select on the calling thread from the cached candidates
+            SponsoredAdEntity selected = selectFromIndex(location, excludeIds);
             
             if (selected != null) {
                 Log.d(TAG, "Selected next rotation ad: " + selected.getId() + 
@@ -1790,6 +1474,4 @@ public class SponsoredAdRepository {
         forceRefresh = true;
         refreshFromNetwork();
     }
-=======
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
 } 
\ No newline at end of file
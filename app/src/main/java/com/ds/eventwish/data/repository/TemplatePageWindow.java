@@ -0,0 +1,170 @@
+package com.ds.eventwish.data.repository;
+
+import androidx.annotation.NonNull;
+
+import com.ds.eventwish.data.model.Template;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded window of pages over the local template catalog.
+ *
+ * Pages are read by offset from a {@link PageSource}, the way Room's own
+ * limit/offset paging source reads them. At most {@code maxPages} pages are
+ * held: loading past one end of the window drops pages from the other end,
+ * so memory stays bounded however far the list is scrolled, and scrolling
+ * back re-reads the dropped pages from disk.
+ *
+ * Not thread-safe; confine a window to one thread.
+ */
+class TemplatePageWindow {
+
+    /**
+     * Source of catalog pages, newest first
+     */
+    interface PageSource {
+        /**
+         * @param offset Number of templates before the page
+         * @param limit Page size
+         * @return Templates of the page; fewer than limit at the end of the catalog
+         */
+        List<Template> load(int offset, int limit);
+    }
+
+    private final PageSource source;
+    private final int pageSize;
+    private final int maxPages;
+    private final ArrayDeque<List<Template>> pages = new ArrayDeque<>();
+    private int firstPage = 0;
+
+    /**
+     * @param source Page source
+     * @param pageSize Templates per page
+     * @param maxPages Maximum number of pages held
+     */
+    TemplatePageWindow(@NonNull PageSource source, int pageSize, int maxPages) {
+        this.source = source;
+        this.pageSize = pageSize;
+        this.maxPages = Math.max(2, maxPages);
+    }
+
+    /**
+     * Load the page after the window, dropping pages from the start if the
+     * window is full. A short last page is re-read first, since rows may
+     * have been added after it.
+     * @return Number of templates added at the end; 0 when the stored catalog is exhausted
+     */
+    int loadNext() {
+        int page = firstPage + pages.size();
+        int replaced = 0;
+        if (!pages.isEmpty() && pages.peekLast().size() < pageSize) {
+            replaced = pages.removeLast().size();
+            page--;
+        }
+
+        List<Template> rows = source.load(page * pageSize, pageSize);
+        if (!rows.isEmpty()) {
+            pages.addLast(rows);
+        }
+        while (pages.size() > maxPages) {
+            pages.removeFirst();
+            firstPage++;
+        }
+        return Math.max(0, rows.size() - replaced);
+    }
+
+    /**
+     * Load the page before the window, dropping pages from the end if the
+     * window is full
+     * @return Number of templates added at the start
+     */
+    int loadPrevious() {
+        if (firstPage == 0) {
+            return 0;
+        }
+        firstPage--;
+        List<Template> rows = source.load(firstPage * pageSize, pageSize);
+        pages.addFirst(rows);
+        while (pages.size() > maxPages) {
+            pages.removeLast();
+        }
+        return rows.size();
+    }
+
+    /**
+     * Re-read the pages of the window, e.g. after a sync changed the catalog
+     */
+    void reload() {
+        int count = Math.max(1, pages.size());
+        pages.clear();
+        for (int page = firstPage; page < firstPage + count; page++) {
+            List<Template> rows = source.load(page * pageSize, pageSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            pages.addLast(rows);
+            if (rows.size() < pageSize) {
+                break;
+            }
+        }
+        if (pages.isEmpty() && firstPage > 0) {
+            // The catalog shrank below the window; start over from the top
+            firstPage = 0;
+            loadNext();
+        }
+    }
+
+    /**
+     * @return Templates in the window, in catalog order
+     */
+    @NonNull
+    List<Template> getTemplates() {
+        List<Template> templates = new ArrayList<>(pages.size() * pageSize);
+        for (List<Template> page : pages) {
+            templates.addAll(page);
+        }
+        return templates;
+    }
+
+    /**
+     * @return Templates of the most recently added page, or an empty list
+     */
+    @NonNull
+    List<Template> getLastPage() {
+        return pages.isEmpty() ? new ArrayList<>() : pages.peekLast();
+    }
+
+    /**
+     * @return Position in the catalog of the first template in the window
+     */
+    int getStartOffset() {
+        return firstPage * pageSize;
+    }
+
+    /**
+     * @return Whether pages before the window were dropped
+     */
+    boolean hasPrevious() {
+        return firstPage > 0;
+    }
+
+    /**
+     * @return Whether the last page is full, so more stored templates may follow
+     */
+    boolean mayHaveNext() {
+        return !pages.isEmpty() && pages.peekLast().size() == pageSize;
+    }
+
+    /**
+     * @return Number of templates in the window
+     */
+    int size() {
+        int size = 0;
+        for (List<Template> page : pages) {
+            size += page.size();
+        }
+        return size;
+    }
+}
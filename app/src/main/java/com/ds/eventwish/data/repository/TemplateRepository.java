@@ -2,10 +2,16 @@ package com.ds.eventwish.data.repository;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.ds.eventwish.data.db.AppDatabase;
+import com.ds.eventwish.data.db.TemplateDao;
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
+import com.ds.eventwish.data.local.entity.TemplateSyncStateEntity;
 import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.data.model.TemplateQuery;
 import com.ds.eventwish.data.model.response.TemplateResponse;
 import com.ds.eventwish.data.remote.ApiClient;
 import com.ds.eventwish.data.remote.ApiService;
+import com.ds.eventwish.utils.AppExecutors;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
@@ -21,20 +27,63 @@ import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 
+/**
+ * Repository for the template catalog.
+ *
+ * Templates are stored in a local Room catalog and shown from it: a load
+ * paints the stored templates first, then syncs the head of the list with
+ * the server. Scrolling reads further pages from disk, and fetches the next
+ * server page only when the stored ones run out. Only a bounded window of
+ * pages is held in memory.
+ *
+ * Category, sort order and time window are pushed down to the server and
+ * to indexed queries on the local catalog, and each combination is synced
+ * on its own, so changing a filter only fetches and reads what it shows.
+ *
+ * Synced templates and categories are added to the local search index,
+ * see {@link SearchRepository}.
+ */
 public class TemplateRepository {
     private static final String TAG = "TemplateRepository";
     private static TemplateRepository instance;
     private final ApiService apiService;
+    private final AppExecutors executors = AppExecutors.getInstance();
     private final MutableLiveData<List<Template>> templates = new MutableLiveData<>();
     private final MutableLiveData<Map<String, Integer>> categories = new MutableLiveData<>();
     private final MutableLiveData<String> error = new MutableLiveData<>();
     private final MutableLiveData<Boolean> loading = new MutableLiveData<>(false);
-    private boolean hasMorePages = true;
-    private int currentPage = 1;
+    private final MutableLiveData<List<Template>> searchResults = new MutableLiveData<>();
+    private final MutableLiveData<List<SearchDocumentEntity>> searchShortcuts = new MutableLiveData<>();
+    private volatile boolean hasMorePages = true;
+    private volatile boolean hasPreviousPages = false;
+    private volatile int windowStartOffset = 0;
     private String currentCategory = null;
+    private TemplateQuery.Sort currentSort = TemplateQuery.Sort.NEWEST;
+    private TemplateQuery.TimeRange currentTimeRange = TemplateQuery.TimeRange.ALL;
     private static final int PAGE_SIZE = 20;
+    private static final int MAX_WINDOW_PAGES = 5; // At most 100 templates held in memory
+    private static final int MAX_REFRESH_PAGES = 5; // Head pages a refresh re-fetches while they keep changing
+    private static final int MAX_APPEND_PAGES = 3; // Server pages fetched per scroll while they bring nothing new
     private Call<TemplateResponse> currentCall;
     private Context appContext;
+
+    // Local catalog; the window and its query are confined to the disk executor
+    private TemplateDao catalogDao;
+    private TemplatePageWindow window;
+    private TemplateQuery windowQuery;
+    private long windowSince;
+    // Bumped whenever the window is replaced, so that stale loads are dropped
+    private volatile int catalogGeneration = 0;
+    private volatile boolean windowReady = false;
+    private volatile boolean loadingPrevious = false;
+
+    private static final int SEARCH_LIMIT = 50;
+    // Categories and festivals offered next to the template results, per type
+    private static final int SHORTCUT_LIMIT = 3;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private SearchRepository searchRepository;
+    // Bumped for every search, so that results of superseded queries are dropped
+    private volatile int searchGeneration = 0;
     
     // Add constants for SharedPreferences
     private static final String PREF_NAME = "template_repository_prefs";
@@ -62,6 +111,10 @@ public class TemplateRepository {
     private TemplateRepository(Context context) {
         if (context != null) {
             this.appContext = context.getApplicationContext();
+            this.catalogDao = AppDatabase.getInstance(appContext).templateDao();
+            this.searchRepository = SearchRepository.getInstance(appContext);
+            backfillSearchIndex();
+            rebuildSimilarityIndex();
         }
         apiService = ApiClient.getClient();
         templates.postValue(new ArrayList<>());
@@ -90,6 +143,10 @@ public class TemplateRepository {
         } else if (instance.appContext == null) {
             // If instance exists but has no context, update it
             instance.appContext = context.getApplicationContext();
+            instance.catalogDao = AppDatabase.getInstance(instance.appContext).templateDao();
+            instance.searchRepository = SearchRepository.getInstance(instance.appContext);
+            instance.backfillSearchIndex();
+            instance.rebuildSimilarityIndex();
             instance.loadCategoriesFromPrefs();
         }
         
@@ -203,7 +260,7 @@ public class TemplateRepository {
 
     /**
      * Get templates synchronously without LiveData
-     * @return A list of templates or empty list if none are loaded
+     * @return The templates in the loaded window, or an empty list if none are loaded
      */
     public List<Template> getTemplatesSync() {
         List<Template> templateList = templates.getValue();
@@ -239,10 +296,58 @@ public class TemplateRepository {
         return hasMorePages;
     }
 
+    /**
+     * @return Whether pages above the loaded window were dropped to bound memory
+     */
+    public boolean hasPreviousPages() {
+        return hasPreviousPages;
+    }
+
+    /**
+     * @return Position in the catalog of the first loaded template
+     */
+    public int getWindowStartOffset() {
+        return windowStartOffset;
+    }
+
     public String getCurrentCategory() {
         return currentCategory;
     }
 
+    /**
+     * Get the query the next window is loaded for
+     * @return Current category, sort order and time window
+     */
+    public TemplateQuery getCurrentQuery() {
+        return new TemplateQuery(currentCategory, currentSort, currentTimeRange);
+    }
+
+    /**
+     * Set the sort order. Takes effect on the next load.
+     * @param sort Sort order
+     */
+    public void setSort(TemplateQuery.Sort sort) {
+        if (sort != null && sort != currentSort) {
+            Log.d(TAG, "Changing sort from " + currentSort + " to " + sort);
+            currentSort = sort;
+            hasMorePages = true;
+            windowReady = false;
+        }
+    }
+
+    /**
+     * Set the creation time window. Takes effect on the next load.
+     * @param timeRange Time window
+     */
+    public void setTimeRange(TemplateQuery.TimeRange timeRange) {
+        if (timeRange != null && timeRange != currentTimeRange) {
+            Log.d(TAG, "Changing time range from " + currentTimeRange + " to " + timeRange);
+            currentTimeRange = timeRange;
+            hasMorePages = true;
+            windowReady = false;
+        }
+    }
+
     public void cancelCurrentCall() {
         if (currentCall != null && !currentCall.isCanceled() && !currentCall.isExecuted()) {
             // Only cancel calls that haven't been executed yet or are still in progress
@@ -260,8 +365,7 @@ public class TemplateRepository {
         
         // Debug logging
         Log.d(TAG, "Setting new API call for templates with category: " + 
-            (currentCategory != null ? currentCategory : "All") + 
-            ", page: " + currentPage);
+            (currentCategory != null ? currentCategory : "All"));
     }
 
     /**
@@ -294,8 +398,8 @@ public class TemplateRepository {
         Map<String, Integer> currentCategories = categories.getValue();
         
         currentCategory = category;
-        currentPage = 1;
         hasMorePages = true;
+        windowReady = false;
         
         if (reload) {
             // Don't clear templates immediately to prevent UI flicker
@@ -314,48 +418,130 @@ public class TemplateRepository {
         }
     }
 
+    /**
+     * Load templates for the current query
+     * @param forceRefresh Whether to repaint from the local catalog and sync
+     *                     its head with the server, rather than load the next page
+     */
     public void loadTemplates(boolean forceRefresh) {
-        if (loading.getValue()) {
+        if (catalogDao == null) {
+            Log.e(TAG, "Cannot load templates: repository was not initialized with a context");
+            error.postValue("Failed to load templates");
             return;
         }
-        
-        loading.postValue(true);
-        
-        // If this is a forced refresh, reset pagination
-        if (forceRefresh) {
-            currentPage = 1;
-            hasMorePages = true;
-            
-            // Only clear templates if we're not filtering by category or if this is the initial load
-            if (currentCategory == null || templates.getValue() == null || templates.getValue().isEmpty()) {
-                if (templates.getValue() != null) {
-                    templates.getValue().clear();
-                    // Notify observers of the empty list to clear the UI
-                    templates.postValue(new ArrayList<>());
-                } else {
-                    templates.postValue(new ArrayList<>());
-                }
-            }
+
+        if (forceRefresh || !windowReady) {
+            refreshCatalog();
+        } else if (!isLoading()) {
+            loadNextPage();
         }
-        
-        // If we've already loaded all pages, don't make another request
-        if (!hasMorePages && currentPage > 1) {
-            loading.postValue(false);
-            return;
+    }
+
+    /**
+     * Load the stored page above the window, after pages were dropped from it
+     * @return Whether a load was started
+     */
+    public boolean loadPreviousTemplates() {
+        if (catalogDao == null || !windowReady || !hasPreviousPages || loadingPrevious) {
+            return false;
         }
-        
-        // Log request details
-        Log.d(TAG, "Loading templates - page: " + currentPage + 
-                  ", category: " + (currentCategory != null ? currentCategory : "All") + 
-                  ", forceRefresh: " + forceRefresh);
+        loadingPrevious = true;
+        final int generation = catalogGeneration;
+        executors.diskIO().execute(() -> {
+            if (generation == catalogGeneration) {
+                window.loadPrevious();
+                publishWindow(generation, false);
+            }
+            loadingPrevious = false;
+        });
+        return true;
+    }
+
+    /**
+     * Start a new window on the current query: paint it from disk, then
+     * sync the head of the list with the server. The time window is fixed
+     * when the window starts, so the server and the local catalog page over
+     * the same range.
+     */
+    private void refreshCatalog() {
+        final int generation = ++catalogGeneration;
+        final TemplateQuery query = getCurrentQuery();
+        final long since = query.getTimeRange().getStart(System.currentTimeMillis());
+        windowReady = true;
+        cancelCurrentCall();
+        loading.postValue(true);
+
+        Log.d(TAG, "Refreshing templates - " + query);
+
+        executors.diskIO().execute(() -> {
+            if (generation != catalogGeneration) {
+                return;
+            }
+            window = new TemplatePageWindow(pageSourceFor(query, since), PAGE_SIZE, MAX_WINDOW_PAGES);
+            windowQuery = query;
+            windowSince = since;
+            window.loadNext();
+            if (window.size() > 0) {
+                // Paint stored templates while the server is asked for changes
+                publishWindow(generation, false);
+            }
+        });
+
+        fetchPage(generation, query, since, 1, true, MAX_REFRESH_PAGES);
+    }
+
+    /**
+     * Extend the window with the next stored page. When the stored catalog
+     * runs out, fetch the next server page into it.
+     */
+    private void loadNextPage() {
+        final int generation = catalogGeneration;
+        loading.postValue(true);
+
+        executors.diskIO().execute(() -> {
+            if (generation != catalogGeneration) {
+                return;
+            }
+            int added = window.loadNext();
+            if (window.mayHaveNext()) {
+                publishWindow(generation, true);
+                return;
+            }
+
+            TemplateSyncStateEntity state = catalogDao.getSyncState(windowQuery.getKey());
+            if (state != null && state.isEndReached()) {
+                publishWindow(generation, true);
+                return;
+            }
+            if (added > 0) {
+                publishWindow(generation, false);
+            }
+            fetchPage(generation, windowQuery, windowSince,
+                state != null ? state.getNextPage() : 1, false, MAX_APPEND_PAGES);
+        });
+    }
 
+    /**
+     * Fetch a server page and merge it into the local catalog.
+     *
+     * A refresh starts at the first page and keeps going while whole pages
+     * are new or changed, so a catalog that was synced before only re-fetches
+     * what changed at its head. An append extends the catalog at its end, and
+     * keeps going while pages only bring templates that were already stored.
+     */
+    private void fetchPage(final int generation, final TemplateQuery query, final long since, final int page,
+                           final boolean refresh, final int remainingPages) {
+        String sort = query.getSort().getApiValue();
+        Long createdAfter = since != Long.MIN_VALUE ? since : null;
         Call<TemplateResponse> call;
-        if (currentCategory != null) {
-            call = apiService.getTemplatesByCategory(currentCategory, currentPage, PAGE_SIZE);
+        if (query.getCategory() != null) {
+            call = apiService.getTemplatesByCategory(query.getCategory(), page, PAGE_SIZE, sort, createdAfter);
         } else {
-            call = apiService.getTemplates(currentPage, PAGE_SIZE);
+            call = apiService.getTemplates(page, PAGE_SIZE, sort, createdAfter);
         }
 
+        Log.d(TAG, (refresh ? "Refreshing" : "Appending") + " server page " + page + " - " + query);
+
         setCurrentCall(call);
         call.enqueue(new Callback<TemplateResponse>() {
             @Override
@@ -364,63 +550,62 @@ public class TemplateRepository {
                 if (currentCall != null && currentCall.equals(call)) {
                     currentCall = null;
                 }
-                
-                // Skip processing if call was cancelled
-                if (call.isCanceled()) {
+
+                // Skip processing if call was cancelled or the window was replaced
+                if (call.isCanceled() || generation != catalogGeneration) {
                     Log.d(TAG, "Skipping response handling for cancelled call");
-                    loading.postValue(false);
+                    if (generation == catalogGeneration) {
+                        loading.postValue(false);
+                    }
                     return;
                 }
-                
-                loading.postValue(false);
 
-                if (response.isSuccessful() && response.body() != null) {
-                    TemplateResponse templateResponse = response.body();
-                    List<Template> currentList = templates.getValue();
-                    if (currentList == null) currentList = new ArrayList<>();
-                    
-                    if (forceRefresh) {
-                        currentList = new ArrayList<>(templateResponse.getTemplates());
-                    } else {
-                        currentList.addAll(templateResponse.getTemplates());
+                if (!response.isSuccessful() || response.body() == null) {
+                    onSyncFailed(generation, "Failed to load templates");
+                    return;
+                }
+
+                TemplateResponse templateResponse = response.body();
+                handleCategories(templateResponse.getCategories());
+
+                executors.diskIO().execute(() -> {
+                    if (generation != catalogGeneration) {
+                        return;
                     }
-                    
-                    // Log all template IDs for debugging
-                    for (Template template : templateResponse.getTemplates()) {
-                        Log.d(TAG, "Template: " + template.getTitle() + 
-                                  ", ID: " + template.getId() + 
-                                  ", Created: " + template.getCreatedAt());
+                    String queryKey = query.getKey();
+                    TemplateSyncStateEntity state = catalogDao.getSyncState(queryKey);
+                    boolean synced = state != null && state.getLastRefreshedAt() > 0;
+
+                    int changed = catalogDao.mergePage(query, since, page,
+                        templateResponse.getTemplates(), templateResponse.isHasMore());
+                    Log.d(TAG, "Merged server page " + page + ": " +
+                              templateResponse.getTemplates().size() + " templates, " + changed + " new or changed");
+
+                    if (searchRepository != null) {
+                        searchRepository.indexTemplates(templateResponse.getTemplates());
                     }
-                    
-                    templates.postValue(currentList);
-                    
-                    // Handle categories with persistence
-                    Map<String, Integer> categoryMap = templateResponse.getCategories();
-                    if (categoryMap == null) {
-                        Log.d(TAG, "Categories map is null, using empty map");
-                        categoryMap = new HashMap<>();
-                    } else if (categoryMap.isEmpty()) {
-                        Log.d(TAG, "Categories map is empty from server");
+
+                    boolean more = templateResponse.isHasMore() && remainingPages > 1;
+                    if (refresh) {
+                        window.reload();
+                        if (synced && more && changed >= PAGE_SIZE) {
+                            publishWindow(generation, false);
+                            fetchPage(generation, query, since, page + 1, true, remainingPages - 1);
+                        } else {
+                            publishWindow(generation, true);
+                            rebuildSimilarityIndex();
+                        }
                     } else {
-                        Log.d(TAG, "Categories received from server: " + categoryMap.size());
-                        for (Map.Entry<String, Integer> entry : categoryMap.entrySet()) {
-                            Log.d(TAG, "Category: " + entry.getKey() + ", Count: " + entry.getValue());
+                        int added = window.loadNext();
+                        if (added == 0 && more) {
+                            int nextPage = catalogDao.getSyncState(queryKey).getNextPage();
+                            fetchPage(generation, query, since, nextPage, false, remainingPages - 1);
+                        } else {
+                            publishWindow(generation, true);
+                            rebuildSimilarityIndex();
                         }
-                        
-                        // Save categories to SharedPreferences for persistence
-                        saveCategoriesToPrefs(categoryMap);
                     }
-                    
-                    categories.postValue(categoryMap);
-                    hasMorePages = templateResponse.isHasMore();
-                    currentPage++;
-                } else {
-                    error.postValue("Failed to load templates");
-                    // Only use default categories if we have none
-                    if (categories.getValue() == null || categories.getValue().isEmpty()) {
-                        ensureDefaultCategories(null);
-                    }
-                }
+                });
             }
 
             @Override
@@ -429,39 +614,225 @@ public class TemplateRepository {
                 if (currentCall != null && currentCall.equals(call)) {
                     currentCall = null;
                 }
-                
+
                 // Check if the call was cancelled
                 if (call.isCanceled()) {
                     Log.d(TAG, "API call was cancelled - ignoring failure response");
+                    if (generation == catalogGeneration) {
+                        loading.postValue(false);
+                    }
                 } else {
                     Log.e(TAG, "API call failed: " + t.getMessage(), t);
-                    loading.postValue(false);
-                    error.postValue(t.getMessage());
-                    // Only use default categories if we have none
-                    if (categories.getValue() == null || categories.getValue().isEmpty()) {
-                        ensureDefaultCategories(null);
-                    }
+                    onSyncFailed(generation, t.getMessage());
                 }
             }
         });
     }
 
     /**
-     * Set the current page for pagination
+     * Show what the local catalog has after a failed sync. The error is only
+     * reported when there is nothing stored to show.
      */
-    public void setCurrentPage(int page) {
-        this.currentPage = page;
+    private void onSyncFailed(int generation, String message) {
+        // Only use default categories if we have none
+        if (categories.getValue() == null || categories.getValue().isEmpty()) {
+            ensureDefaultCategories(null);
+        }
+        executors.diskIO().execute(() -> {
+            if (generation != catalogGeneration) {
+                return;
+            }
+            publishWindow(generation, true);
+            if (window.size() == 0) {
+                error.postValue(message);
+            }
+        });
     }
-    
+
+    /**
+     * Post the templates in the window. Runs on the disk executor.
+     * @param generation Generation the caller loaded for
+     * @param done Whether loading has finished
+     */
+    private void publishWindow(int generation, boolean done) {
+        if (generation != catalogGeneration) {
+            return;
+        }
+        TemplateSyncStateEntity state = catalogDao.getSyncState(windowQuery.getKey());
+        hasMorePages = window.mayHaveNext() || state == null || !state.isEndReached();
+        hasPreviousPages = window.hasPrevious();
+        windowStartOffset = window.getStartOffset();
+        templates.postValue(window.getTemplates());
+        if (done) {
+            loading.postValue(false);
+        }
+    }
+
+    /**
+     * Get the page source of the local catalog for a query
+     * @param query Category, sort order and time window
+     * @param since Start of the time window
+     */
+    private TemplatePageWindow.PageSource pageSourceFor(TemplateQuery query, long since) {
+        return (offset, limit) -> catalogDao.loadPage(query, since, limit, offset);
+    }
+
+    /**
+     * Keep the category counts sent with a page of templates
+     */
+    private void handleCategories(Map<String, Integer> categoryMap) {
+        // Handle categories with persistence
+        if (categoryMap == null) {
+            Log.d(TAG, "Categories map is null, using empty map");
+            categoryMap = new HashMap<>();
+        } else if (categoryMap.isEmpty()) {
+            Log.d(TAG, "Categories map is empty from server");
+        } else {
+            Log.d(TAG, "Categories received from server: " + categoryMap.size());
+            for (Map.Entry<String, Integer> entry : categoryMap.entrySet()) {
+                Log.d(TAG, "Category: " + entry.getKey() + ", Count: " + entry.getValue());
+            }
+
+            // Save categories to SharedPreferences for persistence
+            saveCategoriesToPrefs(categoryMap);
+            if (searchRepository != null) {
+                searchRepository.indexCategories(categoryMap);
+            }
+        }
+
+        categories.postValue(categoryMap);
+    }
+
+    /**
+     * Get the results of the latest template search
+     * @return LiveData of matching templates, best match first
+     */
+    public LiveData<List<Template>> getSearchResults() {
+        return searchResults;
+    }
+
+    /**
+     * Get the categories and festivals matching the latest template search
+     * @return LiveData of category and festival documents, categories first
+     */
+    public LiveData<List<SearchDocumentEntity>> getSearchShortcuts() {
+        return searchShortcuts;
+    }
+
+    /**
+     * Search the stored catalog through the local search index. Works
+     * offline; results are posted to {@link #getSearchResults()}, and the
+     * matching categories and festivals to {@link #getSearchShortcuts()}.
+     * @param query Text as typed; blank clears the results
+     */
+    public void searchTemplates(String query) {
+        final int generation = ++searchGeneration;
+        if (query == null || query.trim().isEmpty() || searchRepository == null) {
+            searchResults.postValue(new ArrayList<>());
+            searchShortcuts.postValue(new ArrayList<>());
+            return;
+        }
+
+        searchRepository.search(query, SearchDocumentEntity.TYPE_TEMPLATE, SEARCH_LIMIT, (text, documents) -> {
+            if (generation != searchGeneration) {
+                return;
+            }
+            List<String> ids = new ArrayList<>(documents.size());
+            for (SearchDocumentEntity document : documents) {
+                ids.add(document.getDocId());
+            }
+            Map<String, Template> stored = new HashMap<>();
+            if (!ids.isEmpty()) {
+                for (Template template : catalogDao.getTemplatesByIds(ids)) {
+                    stored.put(template.getId(), template);
+                }
+            }
+
+            // Keep the ranking; drop templates the catalog no longer has from the index
+            List<Template> results = new ArrayList<>(ids.size());
+            List<String> missing = new ArrayList<>();
+            for (String id : ids) {
+                Template template = stored.get(id);
+                if (template != null) {
+                    results.add(template);
+                } else {
+                    missing.add(id);
+                }
+            }
+            searchRepository.removeTemplates(missing);
+
+            if (generation == searchGeneration) {
+                Log.d(TAG, "Search \"" + text + "\": " + results.size() + " templates");
+                searchResults.postValue(results);
+            }
+
+            List<SearchDocumentEntity> shortcuts = new ArrayList<>();
+            try {
+                shortcuts.addAll(searchRepository.searchSync(text, SearchDocumentEntity.TYPE_CATEGORY, SHORTCUT_LIMIT));
+                shortcuts.addAll(searchRepository.searchSync(text, SearchDocumentEntity.TYPE_FESTIVAL, SHORTCUT_LIMIT));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to search categories and festivals for \"" + text + "\"", e);
+            }
+            if (generation == searchGeneration) {
+                searchShortcuts.postValue(shortcuts);
+            }
+        });
+    }
+
+    /**
+     * Index the stored catalog if the search index has no templates yet,
+     * e.g. after the index was added to an installed app
+     */
+    private void backfillSearchIndex() {
+        final SearchRepository search = searchRepository;
+        final TemplateDao dao = catalogDao;
+        executors.diskIO().execute(() -> {
+            try {
+                if (search.getDocumentCount(SearchDocumentEntity.TYPE_TEMPLATE) > 0) {
+                    return;
+                }
+                TemplateQuery all = TemplateQuery.all();
+                int indexed = 0;
+                List<Template> batch;
+                do {
+                    batch = dao.loadPage(all, Long.MIN_VALUE, BACKFILL_BATCH_SIZE, indexed);
+                    search.indexTemplatesSync(batch);
+                    indexed += batch.size();
+                } while (batch.size() == BACKFILL_BATCH_SIZE);
+                Log.d(TAG, "Indexed " + indexed + " stored templates for search");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to index stored templates for search", e);
+            }
+        });
+    }
+
     /**
-     * Get the current page
+     * Rebuild the similarity index from the stored catalog, so that it
+     * covers every synced template and drops those a sync deleted. Runs once
+     * at startup and after each finished sync.
      */
-    public int getCurrentPage() {
-        return currentPage;
+    private void rebuildSimilarityIndex() {
+        final TemplateDao dao = catalogDao;
+        executors.diskIO().execute(() -> {
+            try {
+                TemplateQuery all = TemplateQuery.all();
+                List<Template> catalog = new ArrayList<>();
+                List<Template> batch;
+                do {
+                    batch = dao.loadPage(all, Long.MIN_VALUE, BACKFILL_BATCH_SIZE, catalog.size());
+                    catalog.addAll(batch);
+                } while (batch.size() == BACKFILL_BATCH_SIZE);
+                TemplateSimilarityIndex.getInstance().replaceAll(catalog);
+                Log.d(TAG, "Rebuilt similarity index over " + catalog.size() + " stored templates");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to rebuild the similarity index", e);
+            }
+        });
     }
 
     /**
-     * Clear the template cache and reset pagination
+     * Drop the loaded window and reset pagination. The stored catalog is
+     * kept, so the next load repaints from it while it syncs.
      */
     public void clearCache() {
         Log.d(TAG, "Clearing template cache");
@@ -470,17 +841,10 @@ public class TemplateRepository {
         Map<String, Integer> currentCategories = categories.getValue();
         
         // Reset pagination
-        currentPage = 1;
+        catalogGeneration++;
+        windowReady = false;
         hasMorePages = true;
         
-        // Clear templates
-        if (templates.getValue() != null) {
-            templates.getValue().clear();
-            templates.postValue(new ArrayList<>());
-        } else {
-            templates.postValue(new ArrayList<>());
-        }
-        
         // Cancel any ongoing requests
         cancelCurrentCall();
         
@@ -513,10 +877,10 @@ public class TemplateRepository {
     public LiveData<Template> getTemplateById(String templateId, boolean forceRefresh) {
         MutableLiveData<Template> result = new MutableLiveData<>();
         
-        // First check if we have it cached locally
+        // First check if we have it cached locally; list pages carry no content
         if (!forceRefresh && templates.getValue() != null) {
             for (Template template : templates.getValue()) {
-                if (template.getId().equals(templateId)) {
+                if (template.getId().equals(templateId) && template.getHtmlContent() != null) {
                     result.postValue(template);
                     return result;
                 }
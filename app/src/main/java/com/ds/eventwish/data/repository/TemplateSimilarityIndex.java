@@ -0,0 +1,252 @@
+package com.ds.eventwish.data.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.ds.eventwish.data.model.Template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * On-device index for finding templates similar to a given one.
+ *
+ * The index is rebuilt from the stored catalog after each sync. Each
+ * template is turned into a feature vector of its category, tags and title
+ * words; catalog entries carry no CSS, so style is not a feature. Features
+ * are hashed into a fixed number of dimensions, normalized, and quantized to
+ * one signed byte per dimension in a single flat buffer, so the whole
+ * catalog is one array and a lookup is a scan of integer dot products with
+ * no allocation per template.
+ */
+public class TemplateSimilarityIndex {
+
+    static final int DIMENSIONS = 64;
+    private static final int QUANTIZE_SCALE = 127;
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Feature weights
+    private static final float WEIGHT_CATEGORY = 3.0f;
+    private static final float WEIGHT_TAG = 2.0f;
+    private static final float WEIGHT_TITLE_WORD = 1.0f;
+
+    private static final Pattern WORD_SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "an", "and", "for", "happy", "in", "of", "on", "the", "to", "with", "your"));
+
+    private static volatile TemplateSimilarityIndex instance;
+
+    private final Map<String, Integer> positions = new HashMap<>();
+    private Template[] templates = new Template[INITIAL_CAPACITY];
+    private byte[] vectors = new byte[INITIAL_CAPACITY * DIMENSIONS];
+    private int size = 0;
+
+    /**
+     * Get the shared index
+     * @return Index
+     */
+    public static TemplateSimilarityIndex getInstance() {
+        if (instance == null) {
+            synchronized (TemplateSimilarityIndex.class) {
+                if (instance == null) {
+                    instance = new TemplateSimilarityIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    TemplateSimilarityIndex() {
+    }
+
+    /**
+     * Index a page of catalog templates
+     * @param page Templates
+     */
+    public synchronized void addAll(@Nullable List<Template> page) {
+        if (page == null) {
+            return;
+        }
+        for (Template template : page) {
+            add(template);
+        }
+    }
+
+    /**
+     * Index a template, or refresh its vector
+     * @param template Template
+     */
+    public synchronized void add(@Nullable Template template) {
+        if (template == null || template.getId() == null) {
+            return;
+        }
+        Integer position = positions.get(template.getId());
+        if (position == null) {
+            ensureCapacity(size + 1);
+            position = size++;
+            positions.put(template.getId(), position);
+        }
+        templates[position] = template;
+        quantize(vectorOf(template), vectors, position * DIMENSIONS);
+    }
+
+    /**
+     * Replace the index with a catalog. The new index is built before it is
+     * swapped in, so lookups meanwhile still see the previous catalog.
+     * @param catalog Every stored template
+     */
+    public void replaceAll(@NonNull List<Template> catalog) {
+        TemplateSimilarityIndex built = new TemplateSimilarityIndex();
+        built.ensureCapacity(catalog.size());
+        built.addAll(catalog);
+        synchronized (this) {
+            positions.clear();
+            positions.putAll(built.positions);
+            templates = built.templates;
+            vectors = built.vectors;
+            size = built.size;
+        }
+    }
+
+    /**
+     * Forget every template
+     */
+    public synchronized void clear() {
+        positions.clear();
+        Arrays.fill(templates, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return Number of indexed templates
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Find the templates most similar to an indexed template
+     * @param templateId Template to compare with
+     * @param limit Maximum number of results
+     * @return Similar templates, most similar first; empty if the template is not indexed
+     */
+    @NonNull
+    public synchronized List<Template> findSimilar(@Nullable String templateId, int limit) {
+        Integer position = templateId != null ? positions.get(templateId) : null;
+        if (position == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // Best results so far, kept sorted by descending score
+        int[] bestScores = new int[limit];
+        int[] bestPositions = new int[limit];
+        int found = 0;
+
+        int query = position * DIMENSIONS;
+        for (int candidate = 0; candidate < size; candidate++) {
+            if (candidate == position) {
+                continue;
+            }
+            int score = dot(vectors, query, candidate * DIMENSIONS);
+            if (score <= 0 || (found == limit && score <= bestScores[limit - 1])) {
+                continue;
+            }
+            int i = found < limit ? found++ : limit - 1;
+            while (i > 0 && bestScores[i - 1] < score) {
+                bestScores[i] = bestScores[i - 1];
+                bestPositions[i] = bestPositions[i - 1];
+                i--;
+            }
+            bestScores[i] = score;
+            bestPositions[i] = candidate;
+        }
+
+        List<Template> result = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(templates[bestPositions[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Build the normalized feature vector of a template
+     * @param template Template
+     * @return Vector of length {@link #DIMENSIONS} with unit length, or all zeros
+     */
+    static float[] vectorOf(@NonNull Template template) {
+        float[] vector = new float[DIMENSIONS];
+
+        if (template.getCategory() != null) {
+            addFeature(vector, "c:" + template.getCategory().toLowerCase(Locale.ROOT), WEIGHT_CATEGORY);
+        }
+        if (template.getTags() != null) {
+            for (String tag : template.getTags()) {
+                if (tag != null && !tag.isEmpty()) {
+                    addFeature(vector, "t:" + tag.toLowerCase(Locale.ROOT), WEIGHT_TAG);
+                }
+            }
+        }
+        if (template.getTitle() != null) {
+            for (String word : WORD_SPLIT.split(template.getTitle().toLowerCase(Locale.ROOT))) {
+                if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+                    addFeature(vector, "w:" + word, WEIGHT_TITLE_WORD);
+                }
+            }
+        }
+
+        float norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Add a feature to its hashed dimension, with a sign from the hash so
+     * that collisions cancel out on average
+     */
+    private static void addFeature(float[] vector, String feature, float weight) {
+        int hash = feature.hashCode() * 0x9E3779B9;
+        int dimension = (hash >>> 1) % DIMENSIONS;
+        vector[dimension] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    /**
+     * Quantize a unit vector to signed bytes
+     */
+    static void quantize(float[] vector, byte[] target, int offset) {
+        for (int i = 0; i < DIMENSIONS; i++) {
+            target[offset + i] = (byte) Math.round(vector[i] * QUANTIZE_SCALE);
+        }
+    }
+
+    private static int dot(byte[] vectors, int a, int b) {
+        int sum = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            sum += vectors[a + i] * vectors[b + i];
+        }
+        return sum;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= templates.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, templates.length * 2);
+        templates = Arrays.copyOf(templates, newCapacity);
+        vectors = Arrays.copyOf(vectors, newCapacity * DIMENSIONS);
+    }
+}
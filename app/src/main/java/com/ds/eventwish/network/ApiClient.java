@@ -34,4 +34,16 @@ public class ApiClient {
         // Forward to the correct implementation
         return com.ds.eventwish.data.remote.ApiClient.getClient();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Get the legacy API service interface, backed by the shared client
+     * @return Legacy API service
+     * @deprecated Use {@link com.ds.eventwish.data.remote.ApiClient#getClient()} instead.
+     */
+    @Deprecated
+    public static ApiService getService() {
+        Log.w(TAG, "Using deprecated ApiClient.getService(), please update to com.ds.eventwish.data.remote.ApiClient");
+        // Same Retrofit instance and OkHttp client as the current API service
+        return com.ds.eventwish.data.remote.ApiClient.createService(ApiService.class);
+    }
+}
@@ -2,269 +2,447 @@ package com.ds.eventwish.ui.ads;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.Observer;
+import androidx.lifecycle.ProcessLifecycleOwner;
 
 import com.ds.eventwish.data.model.SponsoredAd;
 import com.ds.eventwish.data.repository.SponsoredAdRepository;
+import com.ds.eventwish.utils.AppExecutors;
+import com.ds.eventwish.utils.ExpiryScheduler;
+import com.ds.eventwish.utils.ImagePrefetcher;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Manages ad rotation logic to ensure fair distribution of sponsored ads
+ * Manages ad rotation logic to ensure fair distribution of sponsored ads.
+ * One rotation clock is shared by every location and view in the process;
+ * each tick hands every active location the next ad from a queue that is
+ * prefetched in the background. Rotation state lives in memory and is
+ * written to preferences when the app pauses.
  */
-public class LocalRotationManager {
+public class LocalRotationManager implements DefaultLifecycleObserver {
     private static final String TAG = "LocalRotationManager";
     private static final String PREF_NAME = "sponsored_ad_rotation";
     private static final String KEY_LAST_ROTATION = "last_rotation_timestamp";
     private static final String KEY_SHOWN_ADS = "shown_ads";
     private static final String KEY_ROTATION_LOCATION = "rotation_location";
     private static final long DEFAULT_ROTATION_INTERVAL_MS = TimeUnit.MINUTES.toMillis(20); // 20 minutes
-    
+    private static final int MAX_SHOWN_ADS = 20; // Shown ads remembered for exclusion
+    private static final int PREFETCH_DEPTH = 3; // Ads queued ahead per location
+
+    private static volatile LocalRotationManager instance;
+
     private final SharedPreferences prefs;
-    private final Handler rotationHandler;
     private final SponsoredAdRepository repository;
+    private final AppExecutors executors;
+    private final ImagePrefetcher imagePrefetcher;
+    private final Map<String, LocationRotation> rotations = new HashMap<>();
     private long rotationIntervalMs;
     private Set<String> shownAdsInSession;
     private String currentLocation;
-    private boolean isRotationActive = false;
-    
+    private long lastRotationTime;
+    private boolean stateDirty = false;
+    private ExpiryScheduler.Timeout clock;
+
+    /**
+     * Rotation state of one location
+     */
+    private static final class LocationRotation {
+        final Set<RotationCallback> callbacks = new CopyOnWriteArraySet<>();
+        final ArrayDeque<SponsoredAd> queue = new ArrayDeque<>();
+        boolean prefetching = false;
+        boolean fetching = false;
+    }
+
+    /**
+     * Get the shared rotation manager
+     * @param context Context
+     * @param repository Repository ads are drawn from
+     * @return Rotation manager
+     */
+    public static LocalRotationManager getInstance(Context context, SponsoredAdRepository repository) {
+        if (instance == null) {
+            synchronized (LocalRotationManager.class) {
+                if (instance == null) {
+                    instance = new LocalRotationManager(context.getApplicationContext(), repository);
+                }
+            }
+        }
+        return instance;
+    }
+
     /**
      * Constructor and initialization
      */
-    public LocalRotationManager(Context context, SponsoredAdRepository repository) {
+    private LocalRotationManager(Context context, SponsoredAdRepository repository) {
         this.prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        this.rotationHandler = new Handler(Looper.getMainLooper());
         this.repository = repository;
+        this.executors = AppExecutors.getInstance();
+        this.imagePrefetcher = ImagePrefetcher.getInstance(context);
         this.rotationIntervalMs = DEFAULT_ROTATION_INTERVAL_MS;
         this.shownAdsInSession = new LinkedHashSet<>();
-        
+
         // Restore persisted state
         restoreState();
+
+        // Lifecycle observers must be added on the main thread
+        executors.mainThread().execute(() ->
+            ProcessLifecycleOwner.get().getLifecycle().addObserver(this));
     }
-    
+
     /**
-     * Start rotation for a specific location
+     * Start rotation for a location. Several callbacks can rotate the same
+     * location; they all receive the same ads on the shared clock.
+     * @param location Location to rotate ads for
+     * @param callback Callback for rotated ads, called on the main thread
      */
-    public void startRotation(String location, RotationCallback callback) {
-        if (isRotationActive) {
-            Log.d(TAG, "Rotation already active for location: " + currentLocation);
-            
-            // If location changed, update and restart
-            if (!location.equals(currentLocation)) {
-                Log.d(TAG, "Changing rotation location from " + currentLocation + " to " + location);
-                stopRotation();
-                this.currentLocation = location;
-                prefs.edit().putString(KEY_ROTATION_LOCATION, location).apply();
-                isRotationActive = true;
-                scheduleNextRotation(callback);
-            }
+    public synchronized void startRotation(String location, RotationCallback callback) {
+        LocationRotation rotation = rotations.get(location);
+        if (rotation == null) {
+            rotation = new LocationRotation();
+            rotations.put(location, rotation);
+        }
+        if (!rotation.callbacks.add(callback)) {
+            Log.d(TAG, "Rotation already active for location: " + location);
             return;
         }
-        
-        Log.d(TAG, "Starting rotation for location: " + location + 
+
+        Log.d(TAG, "Starting rotation for location: " + location +
               " with interval: " + (rotationIntervalMs / 1000) + " seconds");
-        this.currentLocation = location;
-        this.isRotationActive = true;
-        
-        // Save the location
-        prefs.edit().putString(KEY_ROTATION_LOCATION, location).apply();
-        
-        // Schedule first rotation
-        scheduleNextRotation(callback);
+        if (!location.equals(currentLocation)) {
+            currentLocation = location;
+            stateDirty = true;
+        }
+        prefetch(location, rotation);
+        startClock();
+    }
+
+    /**
+     * Stop rotation for one callback. The clock stops once no location
+     * has callbacks left.
+     * @param callback Callback passed to {@link #startRotation}
+     */
+    public synchronized void stopRotation(RotationCallback callback) {
+        Iterator<Map.Entry<String, LocationRotation>> iterator = rotations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, LocationRotation> entry = iterator.next();
+            if (entry.getValue().callbacks.remove(callback) && entry.getValue().callbacks.isEmpty()) {
+                Log.d(TAG, "Stopping rotation for location: " + entry.getKey());
+                iterator.remove();
+            }
+        }
+        if (rotations.isEmpty()) {
+            stopClock();
+        }
     }
-    
+
     /**
-     * Stop ongoing rotation
+     * Stop ongoing rotation for every location
      */
-    public void stopRotation() {
+    public synchronized void stopRotation() {
         Log.d(TAG, "Stopping rotation");
-        isRotationActive = false;
-        rotationHandler.removeCallbacksAndMessages(null);
+        rotations.clear();
+        stopClock();
     }
-    
+
     /**
-     * Schedule the next ad rotation
+     * Start the shared clock if it is not running. The first tick comes
+     * one interval after the last rotation, or at once if that has passed.
      */
-    private void scheduleNextRotation(RotationCallback callback) {
-        if (!isRotationActive) {
-            Log.d(TAG, "Rotation is not active, not scheduling next rotation");
+    private void startClock() {
+        if (clock != null) {
             return;
         }
-        
-        // Calculate time until next rotation
-        long lastRotation = prefs.getLong(KEY_LAST_ROTATION, 0);
-        long now = System.currentTimeMillis();
-        long timeElapsed = now - lastRotation;
-        
-        // If enough time has passed, rotate immediately
-        if (timeElapsed >= rotationIntervalMs || lastRotation == 0) {
-            Log.d(TAG, "Time to rotate: elapsed=" + timeElapsed + "ms, threshold=" + rotationIntervalMs + "ms");
-            rotateAd(callback);
-        } else {
-            // Otherwise, schedule for remaining time
-            long delay = rotationIntervalMs - timeElapsed;
-            Log.d(TAG, "Scheduling next rotation in " + delay + "ms");
-            rotationHandler.postDelayed(() -> rotateAd(callback), delay);
+        long elapsed = System.currentTimeMillis() - lastRotationTime;
+        long delay = lastRotationTime == 0 ? 0 : Math.max(0, rotationIntervalMs - elapsed);
+        Log.d(TAG, "Scheduling next rotation in " + delay + "ms");
+        final ExpiryScheduler.Timeout[] firstTick = new ExpiryScheduler.Timeout[1];
+        firstTick[0] = ExpiryScheduler.getInstance().schedule(delay, executors.mainThread(), () -> {
+            synchronized (this) {
+                // Stopped, or stopped and started again while this tick was
+                // queued; the newer clock schedules its own repeating task
+                if (clock != firstTick[0]) {
+                    return;
+                }
+                clock = ExpiryScheduler.getInstance()
+                    .scheduleRepeating(rotationIntervalMs, executors.mainThread(), this::tick);
+            }
+            tick();
+        });
+        clock = firstTick[0];
+    }
+
+    private void stopClock() {
+        if (clock != null) {
+            clock.cancel();
+            clock = null;
         }
     }
-    
+
     /**
-     * Perform ad rotation
+     * Rotate every active location. Runs on the main thread.
      */
-    private void rotateAd(RotationCallback callback) {
-        if (!isRotationActive) {
-            Log.d(TAG, "Rotation is not active, skipping rotation");
+    private void tick() {
+        Map<LocationRotation, SponsoredAd> rotated = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (this) {
+            if (rotations.isEmpty()) {
+                return;
+            }
+            lastRotationTime = System.currentTimeMillis();
+            stateDirty = true;
+
+            for (Map.Entry<String, LocationRotation> entry : rotations.entrySet()) {
+                LocationRotation rotation = entry.getValue();
+                SponsoredAd ad = rotation.queue.poll();
+                if (ad != null) {
+                    markShown(ad);
+                    rotated.put(rotation, ad);
+                } else {
+                    missing.add(entry.getKey());
+                }
+                prefetch(entry.getKey(), rotation);
+            }
+        }
+
+        for (Map.Entry<LocationRotation, SponsoredAd> entry : rotated.entrySet()) {
+            deliver(entry.getKey(), entry.getValue());
+        }
+        for (String location : missing) {
+            Log.d(TAG, "No prefetched ad for location: " + location + ", fetching one now");
+            fetchNow(location);
+        }
+    }
+
+    /**
+     * Fill the queue of a location in the background
+     */
+    private void prefetch(String location, LocationRotation rotation) {
+        if (rotation.prefetching || rotation.queue.size() >= PREFETCH_DEPTH) {
             return;
         }
-        
-        // Update rotation timestamp
-        long now = System.currentTimeMillis();
-        long lastRotation = prefs.getLong(KEY_LAST_ROTATION, 0);
-        long timeSinceLastRotation = now - lastRotation;
-        
-        prefs.edit().putLong(KEY_LAST_ROTATION, now).apply();
-        
-        Log.d(TAG, "Rotating ad for location: " + currentLocation + 
-              ", excluding " + shownAdsInSession.size() + " ads" +
-              ", time since last rotation: " + (timeSinceLastRotation / 1000) + " seconds");
-        
-        // Get next ad for rotation
-        repository.getNextRotationAd(currentLocation, shownAdsInSession)
-            .observeForever(new Observer<SponsoredAd>() {
-                @Override
-                public void onChanged(SponsoredAd ad) {
-                    repository.getNextRotationAd(currentLocation, shownAdsInSession)
-                        .removeObserver(this);
-                    
-                    if (ad != null) {
-                        Log.d(TAG, "Rotated to new ad: " + ad.getId() + 
-                              " - " + ad.getTitle() + 
-                              ", priority: " + ad.getPriority() + 
-                              ", impressions: " + ad.getImpressionCount());
-                        
-                        // Record this ad as shown
-                        shownAdsInSession.add(ad.getId());
-                        persistShownAds();
-                        
-                        // Notify callback
-                        callback.onAdRotated(ad);
-                        
-                        // Log next rotation time
-                        long nextRotationTime = now + rotationIntervalMs;
-                        Log.d(TAG, "Next rotation scheduled at: " + 
-                              new java.text.SimpleDateFormat("HH:mm:ss", java.util.Locale.US)
-                                  .format(new java.util.Date(nextRotationTime)) +
-                              " (" + (rotationIntervalMs / 1000) + " seconds from now)");
-                    } else {
+        rotation.prefetching = true;
+        final Set<String> excludeIds = new HashSet<>(shownAdsInSession);
+        for (SponsoredAd queued : rotation.queue) {
+            excludeIds.add(queued.getId());
+        }
+        final int wanted = PREFETCH_DEPTH - rotation.queue.size();
+
+        executors.diskIO().execute(() -> {
+            List<SponsoredAd> ads = new ArrayList<>();
+            try {
+                for (int i = 0; i < wanted; i++) {
+                    SponsoredAd ad = repository.getNextRotationAdSync(location, excludeIds);
+                    if (ad == null) {
+                        break;
+                    }
+                    ads.add(ad);
+                    excludeIds.add(ad.getId());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error prefetching rotation ads for location: " + location, e);
+            }
+            synchronized (this) {
+                rotation.prefetching = false;
+                rotation.queue.addAll(ads);
+            }
+            // Warm the image cache for the queued ads
+            for (SponsoredAd ad : ads) {
+                imagePrefetcher.prefetch(ad.getImageUrl());
+            }
+            Log.d(TAG, "Prefetched " + ads.size() + " rotation ads for location: " + location);
+        });
+    }
+
+    /**
+     * Fetch an ad when the queue ran dry, e.g. before the cache was filled
+     */
+    private void fetchNow(String location) {
+        LocationRotation rotation;
+        Set<String> excludeIds;
+        synchronized (this) {
+            rotation = rotations.get(location);
+            if (rotation == null || rotation.fetching) {
+                return;
+            }
+            rotation.fetching = true;
+            excludeIds = new HashSet<>(shownAdsInSession);
+        }
+
+        LiveData<SponsoredAd> result = repository.getNextRotationAd(location, excludeIds);
+        result.observeForever(new Observer<SponsoredAd>() {
+            @Override
+            public void onChanged(SponsoredAd ad) {
+                result.removeObserver(this);
+                synchronized (LocalRotationManager.this) {
+                    rotation.fetching = false;
+                    if (rotations.get(location) != rotation) {
+                        return;
+                    }
+                    if (ad == null) {
                         Log.d(TAG, "No ad available for rotation, will try again later");
-                        
                         // If we run out of ads, clear the shown list to start fresh
                         if (!shownAdsInSession.isEmpty()) {
                             Log.d(TAG, "Clearing shown ads list to get fresh ads");
                             shownAdsInSession.clear();
-                            persistShownAds();
+                            stateDirty = true;
+                            prefetch(location, rotation);
                         }
+                        return;
                     }
-                    
-                    // Schedule next rotation if still active
-                    if (isRotationActive) {
-                        rotationHandler.postDelayed(() -> rotateAd(callback), rotationIntervalMs);
-                    }
+                    markShown(ad);
                 }
-            });
+                deliver(rotation, ad);
+            }
+        });
+    }
+
+    private void deliver(LocationRotation rotation, SponsoredAd ad) {
+        Log.d(TAG, "Rotated to new ad: " + ad.getId() +
+              " - " + ad.getTitle() +
+              ", priority: " + ad.getPriority() +
+              ", impressions: " + ad.getImpressionCount());
+        for (RotationCallback callback : rotation.callbacks) {
+            callback.onAdRotated(ad);
+        }
     }
-    
+
     /**
-     * Save shown ads to preferences
+     * Remember an ad as shown, keeping only the most recent ones
      */
-    private void persistShownAds() {
-        // Keep only the last 20 shown ads
-        List<String> recentAds = new ArrayList<>(shownAdsInSession);
-        if (recentAds.size() > 20) {
-            recentAds = recentAds.subList(recentAds.size() - 20, recentAds.size());
-            shownAdsInSession = new LinkedHashSet<>(recentAds);
+    private void markShown(SponsoredAd ad) {
+        shownAdsInSession.remove(ad.getId());
+        shownAdsInSession.add(ad.getId());
+        if (shownAdsInSession.size() > MAX_SHOWN_ADS) {
+            Iterator<String> oldest = shownAdsInSession.iterator();
+            oldest.next();
+            oldest.remove();
         }
-        
-        // Save to preferences
-        Set<String> adSet = new HashSet<>(shownAdsInSession);
-        prefs.edit().putStringSet(KEY_SHOWN_ADS, adSet).apply();
-        
-        Log.d(TAG, "Persisted " + adSet.size() + " shown ads to preferences");
+        stateDirty = true;
+    }
+
+    /**
+     * Get the ad the next rotation of a location will show, if prefetched
+     * @param location Location
+     * @return Next ad, or null if none is queued yet
+     */
+    @Nullable
+    public synchronized SponsoredAd peekNext(String location) {
+        LocationRotation rotation = rotations.get(location);
+        return rotation != null ? rotation.queue.peek() : null;
     }
-    
+
+    @Override
+    public void onPause(@NonNull LifecycleOwner owner) {
+        persistState();
+    }
+
+    /**
+     * Write rotation state to preferences if it changed
+     */
+    private synchronized void persistState() {
+        if (!stateDirty) {
+            return;
+        }
+        prefs.edit()
+            .putLong(KEY_LAST_ROTATION, lastRotationTime)
+            .putStringSet(KEY_SHOWN_ADS, new HashSet<>(shownAdsInSession))
+            .putString(KEY_ROTATION_LOCATION, currentLocation)
+            .apply();
+        stateDirty = false;
+
+        Log.d(TAG, "Persisted rotation state with " + shownAdsInSession.size() + " shown ads");
+    }
+
     /**
      * Restore state from preferences
      */
     private void restoreState() {
         Set<String> savedAds = prefs.getStringSet(KEY_SHOWN_ADS, null);
         currentLocation = prefs.getString(KEY_ROTATION_LOCATION, null);
-        
+        lastRotationTime = prefs.getLong(KEY_LAST_ROTATION, 0);
+
         if (savedAds != null) {
             shownAdsInSession = new LinkedHashSet<>(savedAds);
             Log.d(TAG, "Restored " + shownAdsInSession.size() + " shown ads from preferences");
         }
-        
+
         if (currentLocation != null) {
             Log.d(TAG, "Restored rotation location: " + currentLocation);
         }
     }
-    
+
     /**
      * Reset rotation state
      */
-    public void resetRotation() {
+    public synchronized void resetRotation() {
         shownAdsInSession.clear();
-        prefs.edit()
-            .remove(KEY_LAST_ROTATION)
-            .remove(KEY_SHOWN_ADS)
-            .apply();
-        
+        lastRotationTime = 0;
+        for (LocationRotation rotation : rotations.values()) {
+            rotation.queue.clear();
+        }
+        stateDirty = true;
+
         Log.d(TAG, "Reset rotation state");
     }
-    
+
     /**
-     * Set custom rotation interval
+     * Set custom rotation interval. A running clock restarts with the new interval.
      */
-    public void setRotationInterval(long intervalMs) {
+    public synchronized void setRotationInterval(long intervalMs) {
+        if (intervalMs == rotationIntervalMs) {
+            return;
+        }
         this.rotationIntervalMs = intervalMs;
         Log.d(TAG, "Set rotation interval to " + intervalMs + "ms");
+        if (clock != null) {
+            stopClock();
+            startClock();
+        }
     }
-    
+
     /**
      * Get the list of shown ads
      */
-    public Set<String> getShownAdsInSession() {
+    public synchronized Set<String> getShownAdsInSession() {
         return new HashSet<>(shownAdsInSession);
     }
-    
+
     /**
      * Get the current rotation interval
      */
-    public long getRotationInterval() {
+    public synchronized long getRotationInterval() {
         return rotationIntervalMs;
     }
-    
+
     /**
-     * Get the current rotation location
+     * Get the most recently started rotation location
      */
-    public String getCurrentLocation() {
+    public synchronized String getCurrentLocation() {
         return currentLocation;
     }
-    
+
     /**
      * Callback for rotation events
      */
     public interface RotationCallback {
         void onAdRotated(SponsoredAd ad);
     }
-} 
\ No newline at end of file
+}
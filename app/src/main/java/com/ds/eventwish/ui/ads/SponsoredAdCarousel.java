@@ -109,7 +109,7 @@ public class SponsoredAdCarousel extends FrameLayout {
             showLoading(true);
             
             // Get repository 
-            repository = new SponsoredAdRepository();
+            repository = SponsoredAdRepository.getInstance(context);
             
             // Setup page change listener to pause auto-scroll during manual scrolling
             viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
@@ -26,15 +26,6 @@ public class SponsoredAdManagerFactory {
     // Use ConcurrentHashMap for thread safety
     private final ConcurrentHashMap<String, WeakReference<View>> adViews = new ConcurrentHashMap<>();
     
-<<<<<<< HEAD
-    private SponsoredAdManagerFactory(Context context) {
-        this.applicationContext = context.getApplicationContext();
-        this.repository = SponsoredAdRepository.getInstance(context);
-        this.adViewsMap = new HashMap<>();
-        
-        // Preload ads from server
-        preloadAds();
-=======
     // Track locations for analytics and debugging
     private final Map<String, Integer> locationImpressionCounts = new HashMap<>();
     private final Map<String, Integer> locationClickCounts = new HashMap<>();
@@ -44,7 +35,6 @@ public class SponsoredAdManagerFactory {
     
     private SponsoredAdManagerFactory() {
         Log.d(TAG, "Initializing SponsoredAdManagerFactory");
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
     }
     
     /**
@@ -1,49 +1,52 @@
 package com.ds.eventwish.ui.ads;
 
+import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.ViewModel;
 
 import com.ds.eventwish.data.model.SponsoredAd;
 import com.ds.eventwish.data.repository.SponsoredAdRepository;
 import com.ds.eventwish.utils.AnalyticsUtils;
 
 import java.util.ArrayList;
-<<<<<<< HEAD
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-=======
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
-import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+
 /**
  * ViewModel for sponsored ads
  */
-public class SponsoredAdViewModel extends ViewModel {
+public class SponsoredAdViewModel extends AndroidViewModel {
     private static final String TAG = "SponsoredAdViewModel";
     
     private final SponsoredAdRepository repository;
     
-<<<<<<< HEAD
     // Rotation support
     private final LocalRotationManager rotationManager;
     private final Map<String, MutableLiveData<SponsoredAd>> rotatingAdsMap = new HashMap<>();
+    private final Map<String, LocalRotationManager.RotationCallback> rotationCallbacks = new HashMap<>();
     private boolean isRotationActive = false;
     
+    // Selected ad for getAdForLocation
+    private final MediatorLiveData<SponsoredAd> selectedAdLiveData = new MediatorLiveData<>();
+    private final MutableLiveData<Boolean> adLoadedLiveData = new MutableLiveData<>(false);
+    
+    // LiveData for loading state and errors
+    private final MutableLiveData<Boolean> loadingState = new MutableLiveData<>(false);
+    private final MutableLiveData<String> error = new MutableLiveData<>("");
+    
     // Track when last refreshed
     private long lastAdRefreshTime = 0;
     private static final long MAX_CACHE_LIFETIME_MS = TimeUnit.MINUTES.toMillis(5); // Refresh every 5 minutes at most
@@ -51,7 +54,7 @@ public class SponsoredAdViewModel extends ViewModel {
     public SponsoredAdViewModel(@NonNull Application application) {
         super(application);
         repository = SponsoredAdRepository.getInstance(application);
-        rotationManager = new LocalRotationManager(application, repository);
+        rotationManager = LocalRotationManager.getInstance(application, repository);
         
         // Initialize ads when ViewModel is created
         forceRefreshAds();
@@ -90,9 +93,11 @@ public class SponsoredAdViewModel extends ViewModel {
         }
         
         LiveData<List<SponsoredAd>> adsForLocation = repository.getAdsByLocation(location);
+        loadingState.setValue(true);
         
         // Add source to mediator LiveData
         selectedAdLiveData.addSource(adsForLocation, ads -> {
+            loadingState.setValue(false);
             if (ads != null && !ads.isEmpty()) {
                 Log.d(TAG, "Found " + ads.size() + " ads for location: " + location);
                 
@@ -169,16 +174,19 @@ public class SponsoredAdViewModel extends ViewModel {
         Log.d(TAG, "Starting ad rotation for location: " + location);
         isRotationActive = true;
         
-        rotationManager.startRotation(location, new LocalRotationManager.RotationCallback() {
-            @Override
-            public void onAdRotated(SponsoredAd ad) {
+        LocalRotationManager.RotationCallback callback = rotationCallbacks.get(location);
+        if (callback == null) {
+            callback = ad -> {
                 Log.d(TAG, "Ad rotated: " + ad.getId() + " for location: " + location);
                 MutableLiveData<SponsoredAd> liveData = rotatingAdsMap.get(location);
                 if (liveData != null) {
-                    liveData.postValue(ad);
+                    liveData.setValue(ad);
                 }
-            }
-        });
+            };
+            rotationCallbacks.put(location, callback);
+        }
+        // The shared clock ignores a callback that is already rotating
+        rotationManager.startRotation(location, callback);
     }
     
     /**
@@ -187,7 +195,9 @@ public class SponsoredAdViewModel extends ViewModel {
     public void stopRotation() {
         if (isRotationActive) {
             Log.d(TAG, "Stopping ad rotation");
-            rotationManager.stopRotation();
+            for (LocalRotationManager.RotationCallback callback : rotationCallbacks.values()) {
+                rotationManager.stopRotation(callback);
+            }
             isRotationActive = false;
         }
     }
@@ -259,131 +269,10 @@ public class SponsoredAdViewModel extends ViewModel {
                 highestPriority = ad.getPriority();
                 bestAd = ad;
                 Log.d(TAG, "New highest priority ad: " + ad.getId() + ", priority: " + ad.getPriority());
-=======
-    // LiveData for different locations
-    private final Map<String, MutableLiveData<SponsoredAd>> adsByLocation = new HashMap<>();
-    
-    // LiveData for loading state and errors
-    private final MutableLiveData<Boolean> loadingState = new MutableLiveData<>(false);
-    private final MutableLiveData<String> error = new MutableLiveData<>("");
-    
-    // Cache for ads by location
-    private final Map<String, SponsoredAd> adCache = new HashMap<>();
-    
-    // Cache expiration
-    private long lastFetchTime = 0;
-    private static final long CACHE_EXPIRATION_MS = TimeUnit.MINUTES.toMillis(30); // 30 minutes
-    
-    // Track failed attempts to avoid excessive retries
-    private int failedAttempts = 0;
-    private static final int MAX_RETRY_ATTEMPTS = 3;
-    private boolean isRetryScheduled = false;
-    
-    public SponsoredAdViewModel() {
-        repository = new SponsoredAdRepository();
-        Log.d(TAG, "SponsoredAdViewModel created");
-        
-        // Initial fetch
-        fetchSponsoredAds();
-    }
-    
-    /**
-     * Get ad for a specific location
-     * @param location The location identifier
-     * @return LiveData with SponsoredAd for the location
-     */
-    public LiveData<SponsoredAd> getAdForLocation(String location) {
-        if (!adsByLocation.containsKey(location)) {
-            MutableLiveData<SponsoredAd> newLiveData = new MutableLiveData<>();
-            adsByLocation.put(location, newLiveData);
-            
-            // Check cache first
-            if (adCache.containsKey(location)) {
-                newLiveData.setValue(adCache.get(location));
-                Log.d(TAG, "Returned cached ad for location: " + location);
-            } else {
-                // Try to find best matching ad based on location pattern
-                findBestMatchingAd(location);
-            }
-            
-            // If cache is expired, fetch fresh data
-            if (System.currentTimeMillis() - lastFetchTime > CACHE_EXPIRATION_MS) {
-                fetchSponsoredAds();
             }
         }
         
-        return adsByLocation.get(location);
-    }
-    
-    /**
-     * Try to find the best matching ad for a location pattern
-     * For example, if we have category_birthday but no exact match,
-     * we might fall back to category_below or home_ad
-     * 
-     * @param location The requested location
-     */
-    private void findBestMatchingAd(String location) {
-        // Early return if we don't have any ads cached
-        if (adCache.isEmpty()) {
-            Log.d(TAG, "No ads in cache to match for location: " + location);
-            return;
-        }
-        
-        // First try exact match
-        if (adCache.containsKey(location)) {
-            adsByLocation.get(location).setValue(adCache.get(location));
-            Log.d(TAG, "Found exact match for location: " + location);
-            return;
-        }
-        
-        // Extract category parts if this is a category-based location
-        String categoryPattern = null;
-        if (location.startsWith("category_")) {
-            categoryPattern = "category_";
-        }
-        
-        // Look for fallback location matches
-        String bestMatch = null;
-        
-        if (categoryPattern != null) {
-            // Try to find any category ad
-            for (String cachedLocation : adCache.keySet()) {
-                if (cachedLocation.startsWith(categoryPattern)) {
-                    bestMatch = cachedLocation;
-                    break;
-                }
-            }
-            
-            // If no category match, try general locations
-            if (bestMatch == null) {
-                if (adCache.containsKey("category_below")) {
-                    bestMatch = "category_below";
-                } else if (adCache.containsKey("home_bottom")) {
-                    bestMatch = "home_bottom";
-                } else if (!adCache.isEmpty()) {
-                    // Just use the first available ad
-                    bestMatch = adCache.keySet().iterator().next();
-                }
-                }
-            } else {
-            // For non-category locations, try some common fallbacks
-            if (adCache.containsKey("home_bottom")) {
-                bestMatch = "home_bottom";
-            } else if (adCache.containsKey("category_below")) {
-                bestMatch = "category_below";
-            } else if (!adCache.isEmpty()) {
-                // Just use the first available ad
-                bestMatch = adCache.keySet().iterator().next();
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
-            }
-        }
-        
-        // If we found a match, use it
-        if (bestMatch != null) {
-            adsByLocation.get(location).setValue(adCache.get(bestMatch));
-            Log.d(TAG, "Using fallback ad from location '" + bestMatch + "' for requested location: " + location);
-        } else {
-<<<<<<< HEAD
+        if (bestAd == null) {
             Log.w(TAG, "No valid ads found among " + ads.size() + " candidates");
         }
         
@@ -433,6 +322,10 @@ public class SponsoredAdViewModel extends ViewModel {
         }
         
         try {
+            // Record click in factory for local stats
+            String location = ad.getLocation() != null ? ad.getLocation() : "unknown";
+            SponsoredAdManagerFactory.getInstance().recordClick(location);
+            
             // Record the click
             repository.recordClick(ad.getId());
             
@@ -456,9 +349,6 @@ public class SponsoredAdViewModel extends ViewModel {
         } catch (Exception e) {
             Log.e(TAG, "Error handling ad click", e);
             return false;
-=======
-            Log.d(TAG, "No suitable ad found for location: " + location);
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
         }
     }
     
@@ -478,224 +368,6 @@ public class SponsoredAdViewModel extends ViewModel {
         return error;
     }
     
-    /**
-     * Fetch sponsored ads from repository
-     */
-    public void fetchSponsoredAds() {
-        // Skip if already loading or too many failed attempts
-        if (loadingState.getValue() != null && loadingState.getValue()) {
-            Log.d(TAG, "Already loading sponsored ads, skipping duplicate request");
-            return;
-        }
-        
-        if (failedAttempts >= MAX_RETRY_ATTEMPTS && isRetryScheduled) {
-            Log.d(TAG, "Too many failed attempts (" + failedAttempts + "), skipping fetch");
-            return;
-        }
-        
-        loadingState.setValue(true);
-        error.setValue("");
-        
-        repository.getSponsoredAdsWithCallback(new SponsoredAdRepository.SponsoredAdCallback() {
-            @Override
-            public void onSuccess(@NonNull List<SponsoredAd> ads) {
-                Log.d(TAG, "Successfully fetched " + ads.size() + " sponsored ads");
-                loadingState.setValue(false);
-                failedAttempts = 0;
-                isRetryScheduled = false;
-                lastFetchTime = System.currentTimeMillis();
-                
-                // Clear old cache
-                adCache.clear();
-                
-                // Process and organize ads
-                processAds(ads);
-            }
-            
-            @Override
-            public void onError(@NonNull String message) {
-                Log.e(TAG, "Error fetching sponsored ads: " + message);
-                loadingState.setValue(false);
-                error.setValue(message);
-                failedAttempts++;
-                
-                // Retry after delay if not too many attempts
-                if (failedAttempts < MAX_RETRY_ATTEMPTS && !isRetryScheduled) {
-                    isRetryScheduled = true;
-                    // Add exponential backoff
-                    long delayMs = (long) Math.pow(2, failedAttempts) * 1000;
-                    
-                    Log.d(TAG, "Scheduling retry in " + (delayMs / 1000) + " seconds (attempt " + failedAttempts + ")");
-                    
-                    // Since we can't use Handler directly in ViewModel, we'll use our own mechanism
-                    new Thread(() -> {
-                        try {
-                            Thread.sleep(delayMs);
-                            isRetryScheduled = false;
-                            fetchSponsoredAds();
-                        } catch (InterruptedException e) {
-                            Log.e(TAG, "Retry thread interrupted", e);
-                        }
-                    }).start();
-                }
-            }
-        });
-    }
-    
-    /**
-     * Process and organize ads by location
-     * @param ads List of sponsored ads from server
-     */
-    private void processAds(List<SponsoredAd> ads) {
-        Map<String, List<SponsoredAd>> adsByLocationTemp = new HashMap<>();
-        
-        // First pass: organize ads by location
-        for (SponsoredAd ad : ads) {
-            String location = ad.getLocation();
-            if (location == null || location.isEmpty()) {
-                // Skip ads without a location
-                continue;
-            }
-            
-            // Skip frequency capped ads
-            if (ad.isFrequencyCapped()) {
-                Log.d(TAG, "Skipping frequency capped ad: " + ad.getId());
-                continue;
-            }
-            
-            // Normalize location
-            location = location.toLowerCase().trim();
-            
-            if (!adsByLocationTemp.containsKey(location)) {
-                adsByLocationTemp.put(location, new ArrayList<>());
-            }
-            adsByLocationTemp.get(location).add(ad);
-        }
-        
-        // Second pass: apply weighted distribution for each location
-        for (Map.Entry<String, List<SponsoredAd>> entry : adsByLocationTemp.entrySet()) {
-            String location = entry.getKey();
-            List<SponsoredAd> locationAds = entry.getValue();
-            
-            if (locationAds.isEmpty()) {
-                continue;
-            }
-            
-            // Use weighted algorithm similar to server implementation
-            if (locationAds.size() > 1) {
-                // Calculate total priority
-                int totalPriority = 0;
-                for (SponsoredAd ad : locationAds) {
-                    totalPriority += ad.getPriority();
-                }
-                
-                // Apply weighted score with randomization factor
-                Random random = new Random();
-                for (SponsoredAd ad : locationAds) {
-                    // Calculate weighted score: 
-                    // - Base priority percentage + randomness factor scaled by priority
-                    float priorityWeight = totalPriority > 0 ? 
-                        (float) ad.getPriority() / totalPriority : 1f;
-                    float randomFactor = random.nextFloat() * 0.4f; // Random factor between 0-0.4
-                    float weightedScore = priorityWeight + 
-                        (randomFactor * (ad.getPriority() / 10f)); // Scale randomness by priority
-                    
-                    ad.setWeightedScore(weightedScore);
-                    
-                    Log.d(TAG, "Ad " + ad.getId() + 
-                          " priority: " + ad.getPriority() + 
-                          " weight: " + priorityWeight + 
-                          " random: " + randomFactor + 
-                          " score: " + weightedScore);
-                }
-                
-                // Sort by weighted score, higher scores first
-                locationAds.sort((a, b) -> Float.compare(b.getWeightedScore(), a.getWeightedScore()));
-                
-                Log.d(TAG, "Sorted " + locationAds.size() + " ads by weighted score for location " + location);
-            } else {
-                // Only one ad available, no need for weighted algorithm
-                locationAds.get(0).setWeightedScore(1.0f);
-            }
-            
-            // Use the top-ranked ad after weighted sort
-            SponsoredAd selectedAd = locationAds.get(0);
-            
-            // Update cache
-            adCache.put(location, selectedAd);
-            
-            // Update LiveData if we have observers
-            if (adsByLocation.containsKey(location)) {
-                adsByLocation.get(location).setValue(selectedAd);
-            }
-            
-            Log.d(TAG, "Selected ad " + 
-                (selectedAd.getId() != null ? selectedAd.getId() : "null") + 
-                " with priority " + selectedAd.getPriority() + 
-                " and weighted score " + selectedAd.getWeightedScore() +
-                " for location " + location);
-        }
-        
-        // Third pass: update all LiveData objects that didn't get a direct match
-        for (String location : adsByLocation.keySet()) {
-            if (!adCache.containsKey(location)) {
-                // Try to find a match
-                findBestMatchingAd(location);
-            }
-        }
-    }
-    
-    /**
-     * Handle ad click
-     * @param ad The ad that was clicked
-     * @param context Context to open URL
-     */
-    public void handleAdClick(SponsoredAd ad, Context context) {
-        if (ad == null || context == null) {
-            Log.e(TAG, "Cannot handle click - ad or context is null");
-            return;
-        }
-        
-        // Get ad location with null check
-        String location = ad.getLocation() != null ? ad.getLocation() : "unknown";
-        
-        // Record click in factory for local stats
-        SponsoredAdManagerFactory.getInstance().recordClick(location);
-        
-        // Get ad ID with null check
-        String adId = ad.getId() != null ? ad.getId() : "unknown";
-        
-        // Send click to server (only if ID is not "unknown")
-        if (!"unknown".equals(adId)) {
-            repository.recordAdClick(adId, new SponsoredAdRepository.SponsoredAdCallback() {
-                @Override
-                public void onSuccess(@NonNull List<SponsoredAd> ads) {
-                    Log.d(TAG, "Successfully recorded click for ad: " + adId);
-                }
-                
-                @Override
-                public void onError(@NonNull String message) {
-                    Log.e(TAG, "Error recording click for ad " + adId + ": " + message);
-                }
-            });
-        } else {
-            Log.w(TAG, "Skipping server click recording for ad with null ID");
-        }
-        
-        // Open URL
-        String redirectUrl = ad.getRedirectUrl();
-        if (redirectUrl != null && !redirectUrl.isEmpty()) {
-            try {
-                Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(redirectUrl));
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                context.startActivity(intent);
-                Log.d(TAG, "Opened URL for ad: " + redirectUrl);
-            } catch (Exception e) {
-                Log.e(TAG, "Error opening URL for ad: " + e.getMessage());
-            }
-        }
-    }
-    
     /**
      * Track impression for an ad
      * @param ad The ad that was viewed
@@ -706,38 +378,11 @@ public class SponsoredAdViewModel extends ViewModel {
             return;
         }
         
-        // Get ad location with null check
-        String location = ad.getLocation() != null ? ad.getLocation() : "unknown";
-        
         // Record impression in factory for local stats
+        String location = ad.getLocation() != null ? ad.getLocation() : "unknown";
         SponsoredAdManagerFactory.getInstance().recordImpression(location);
         
-        // Get ad ID with null check
-        String adId = ad.getId() != null ? ad.getId() : "unknown";
-        
-        // Send impression to server (only if ID is not "unknown")
-        if (!"unknown".equals(adId)) {
-            repository.recordAdImpression(adId, new SponsoredAdRepository.SponsoredAdCallback() {
-                @Override
-                public void onSuccess(@NonNull List<SponsoredAd> ads) {
-                    Log.d(TAG, "Successfully recorded impression for ad: " + adId);
-                }
-                
-                @Override
-                public void onError(@NonNull String message) {
-                    Log.e(TAG, "Error recording impression for ad " + adId + ": " + message);
-                }
-            });
-        } else {
-            Log.w(TAG, "Skipping server impression recording for ad with null ID");
-        }
-    }
-    
-    @Override
-    protected void onCleared() {
-        super.onCleared();
-        // Clean up resources
-        Log.d(TAG, "SponsoredAdViewModel cleared");
+        handleAdImpression(ad);
     }
     
     /**
@@ -750,6 +395,12 @@ public class SponsoredAdViewModel extends ViewModel {
         if (repository == null) return null;
         
         try {
+            // Prefer the ad the shared clock will show next
+            SponsoredAd queued = rotationManager.peekNext(location);
+            if (queued != null && (excludeIds == null || !excludeIds.contains(queued.getId()))) {
+                return queued;
+            }
+            
             // Get the next rotation ad synchronously
             return repository.getNextRotationAdSync(location, excludeIds);
         } catch (Exception e) {
@@ -761,6 +412,8 @@ public class SponsoredAdViewModel extends ViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        // Release this view model's callbacks on the shared rotation clock
         stopRotation();
+        Log.d(TAG, "SponsoredAdViewModel cleared");
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package com.ds.eventwish.ui.detail;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.ds.eventwish.R;
+import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.databinding.ItemSimilarTemplateBinding;
+
+/**
+ * Adapter for the "More like this" row of the template detail screen
+ */
+public class SimilarTemplateAdapter extends ListAdapter<Template, SimilarTemplateAdapter.SimilarTemplateViewHolder> {
+    private final OnTemplateClickListener listener;
+
+    public interface OnTemplateClickListener {
+        void onTemplateClick(Template template);
+    }
+
+    public SimilarTemplateAdapter(OnTemplateClickListener listener) {
+        super(new DiffUtil.ItemCallback<Template>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull Template oldItem, @NonNull Template newItem) {
+                return oldItem.getId().equals(newItem.getId());
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull Template oldItem, @NonNull Template newItem) {
+                return oldItem.equals(newItem);
+            }
+        });
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public SimilarTemplateViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemSimilarTemplateBinding binding = ItemSimilarTemplateBinding.inflate(
+            LayoutInflater.from(parent.getContext()), parent, false);
+        return new SimilarTemplateViewHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SimilarTemplateViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    class SimilarTemplateViewHolder extends RecyclerView.ViewHolder {
+        private final ItemSimilarTemplateBinding binding;
+
+        SimilarTemplateViewHolder(ItemSimilarTemplateBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+
+        void bind(Template template) {
+            binding.titleText.setText(template.getTitle());
+
+            if (template.getThumbnailUrl() != null && !template.getThumbnailUrl().isEmpty()) {
+                Glide.with(binding.getRoot().getContext())
+                    .load(template.getThumbnailUrl())
+                    .centerCrop()
+                    .placeholder(R.drawable.placeholder_image)
+                    .into(binding.templateImage);
+            } else {
+                binding.templateImage.setImageResource(R.drawable.placeholder_image);
+            }
+
+            binding.getRoot().setOnClickListener(v -> {
+                if (listener != null) {
+                    listener.onTemplateClick(template);
+                }
+            });
+        }
+    }
+}
@@ -48,6 +48,7 @@ public class TemplateDetailFragment extends Fragment implements TemplateRenderer
     private Runnable analyticsHeartbeatRunnable;
     private long viewStartTime;
     private boolean isTracking = false;
+    private SimilarTemplateAdapter similarTemplateAdapter;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -89,6 +90,7 @@ public class TemplateDetailFragment extends Fragment implements TemplateRenderer
         
         setupWebView();
         setupInputListeners();
+        setupSimilarTemplates();
         setupObservers();
         setupClickListeners();
         
@@ -592,6 +594,24 @@ public class TemplateDetailFragment extends Fragment implements TemplateRenderer
                 Navigation.findNavController(requireView()).navigate(action);
             }
         });
+        
+        viewModel.getSimilarTemplates().observe(getViewLifecycleOwner(), similar -> {
+            if (binding != null && isAdded()) {
+                similarTemplateAdapter.submitList(similar);
+                binding.similarTemplatesSection.setVisibility(
+                    similar != null && !similar.isEmpty() ? View.VISIBLE : View.GONE);
+            }
+        });
+    }
+    
+    private void setupSimilarTemplates() {
+        similarTemplateAdapter = new SimilarTemplateAdapter(template -> {
+            if (template.getId() == null || !isAdded()) return;
+            Bundle args = new Bundle();
+            args.putString("templateId", template.getId());
+            Navigation.findNavController(requireView()).navigate(R.id.navigation_template_detail, args);
+        });
+        binding.similarTemplatesRecyclerView.setAdapter(similarTemplateAdapter);
     }
 
     private void showError(String message) {
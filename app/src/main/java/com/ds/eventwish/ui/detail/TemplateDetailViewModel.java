@@ -11,10 +11,12 @@ import com.ds.eventwish.data.model.SharedWish;
 import com.ds.eventwish.data.model.Template;
 import com.ds.eventwish.data.remote.ApiClient;
 import com.ds.eventwish.data.remote.ApiService;
+import com.ds.eventwish.data.repository.TemplateSimilarityIndex;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import com.google.gson.JsonObject;
 
@@ -25,12 +27,15 @@ public class TemplateDetailViewModel extends ViewModel {
     private final MutableLiveData<String> error = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> wishSaved = new MutableLiveData<>();
+    private final MutableLiveData<List<Template>> similarTemplates = new MutableLiveData<>();
 
     private String recipientName = "";
     private String senderName = "";
     private String templateId;
     private String customizedHtml = null;
     
+    private static final int SIMILAR_TEMPLATE_LIMIT = 10;
+    
     // Base URL for the backend server
     private static final String SERVER_BASE_URL = "https://eventwish2.onrender.com";
 
@@ -50,6 +55,10 @@ public class TemplateDetailViewModel extends ViewModel {
         return isLoading;
     }
 
+    public LiveData<List<Template>> getSimilarTemplates() {
+        return similarTemplates;
+    }
+
     public LiveData<String> getWishSaved() {
         return wishSaved;
     }
@@ -98,6 +107,7 @@ public class TemplateDetailViewModel extends ViewModel {
                 isLoading.setValue(false);
                 if (response.isSuccessful() && response.body() != null) {
                     template.setValue(response.body());
+                    loadSimilarTemplates(response.body());
                 } else {
                     error.setValue("Failed to load template");
                 }
@@ -111,6 +121,14 @@ public class TemplateDetailViewModel extends ViewModel {
         });
     }
 
+    /**
+     * Look up similar templates in the on-device index of the stored catalog
+     */
+    private void loadSimilarTemplates(Template loaded) {
+        similarTemplates.setValue(TemplateSimilarityIndex.getInstance()
+                .findSimilar(loaded.getId(), SIMILAR_TEMPLATE_LIMIT));
+    }
+
     public void saveWish() {
         Log.d(TAG, "Saving wish");
         if (templateId == null || templateId.isEmpty()) {
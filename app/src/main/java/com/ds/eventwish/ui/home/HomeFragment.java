@@ -35,6 +35,7 @@ import com.ds.eventwish.databinding.FragmentHomeBinding;
 import com.ds.eventwish.data.model.Template;
 import com.ds.eventwish.data.model.Category;
 import com.ds.eventwish.data.model.CategoryIcon;
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
 import com.ds.eventwish.ui.base.BaseFragment;
 import com.ds.eventwish.ui.home.adapter.RecommendedTemplateAdapter;
 import com.ds.eventwish.ui.home.adapter.CategoriesAdapter;
@@ -44,6 +45,7 @@ import com.ds.eventwish.data.remote.ApiClient;
 import com.ds.eventwish.data.remote.ApiService;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.snackbar.Snackbar;
+import com.google.android.material.chip.Chip;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +73,8 @@ import com.ds.eventwish.ads.InterstitialAdManager;
 import com.ds.eventwish.ads.AdMobRepository;
 import com.ds.eventwish.data.repository.UserRepository;
 import com.ds.eventwish.utils.AnalyticsUtils;
+import com.ds.eventwish.utils.Debouncer;
+import com.ds.eventwish.utils.ImagePrefetcher;
 import com.ds.eventwish.ui.ads.SponsoredAdCarousel;
 
 public class HomeFragment extends BaseFragment implements RecommendedTemplateAdapter.TemplateClickListener {
@@ -83,6 +87,8 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
     private CategoriesAdapter categoriesAdapter;
     private GridLayoutManager layoutManager;
     private static final int VISIBLE_THRESHOLD = 5;
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    private final Debouncer searchDebouncer = new Debouncer(SEARCH_DEBOUNCE_MS);
     private BottomNavigationView bottomNav;
     private long backPressedTime;
     private static final long BACK_PRESS_DELAY = 2000; // 2 seconds
@@ -96,14 +102,10 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
     private Template pendingTemplate = null;
     private int templateClickCount = 0;
     private static final int AD_SHOW_THRESHOLD = 3; // Show ad after every 3 template clicks
-<<<<<<< HEAD
-    private SponsoredAdView sponsoredAdView;
     private boolean hasShownEndMessage = false; // Add this flag at the class level
     private long lastPaginationCheck = 0;
     private static final long PAGINATION_CHECK_INTERVAL = 1500; // 1.5 seconds between checks
-=======
     private SponsoredAdCarousel sponsoredAdCarousel;
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -442,38 +444,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
             });
         }
 
-<<<<<<< HEAD
-        // Handle sponsored ad when the fragment resumes
-        if (sponsoredAdView != null) {
-            try {
-                // First make sure the sponsoredAdView is visible
-                sponsoredAdView.setVisibility(View.VISIBLE);
-                
-                Log.d(TAG, "Handling sponsored ad in onResume");
-                
-                // Call methods in a specific order to ensure proper state restoration
-                sponsoredAdView.handleResume();
-                
-                // Force reload of the ad content to ensure image is displayed
-                sponsoredAdView.forceReload();
-                
-                // Ensure text fields are visible if they contain content
-                sponsoredAdView.ensureTextVisible();
-                
-                // Enable rotation if supported
-                sponsoredAdView.enableRotation(true);
-                
-                Log.d(TAG, "Sponsored ad handling complete in onResume");
-            } catch (Exception e) {
-                Log.e(TAG, "Error handling sponsored ad in onResume: " + e.getMessage());
-            }
-=======
         // Refresh sponsored ads when the fragment resumes
         if (sponsoredAdCarousel != null) {
             // Use our category-based targeting method instead of simple refresh
             refreshSponsoredAdForCurrentCategory();
             Log.d(TAG, "Refreshed sponsored ads with category targeting on resume");
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
         }
     }
 
@@ -540,6 +515,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        // The search view starts collapsed when the view is recreated
+        searchDebouncer.cancel();
+        if (viewModel != null) {
+            viewModel.search(null);
+        }
         if (backPressedCallback != null) {
             backPressedCallback.remove();
         }
@@ -625,6 +605,9 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
         // Set up filter chips
         setupChips();
         
+        // Set up search
+        setupSearch();
+        
         // Set up filter icon
         ImageView filterIcon = binding.filterIcon;
         filterIcon.setOnClickListener(v -> {
@@ -655,19 +638,6 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
         sponsoredAdCarousel = binding.sponsoredAdCarousel;
         if (sponsoredAdCarousel != null) {
             // Use "category_below" location instead of "home_bottom" to match server ad
-<<<<<<< HEAD
-            sponsoredAdView.initialize("category_below", getViewLifecycleOwner(), requireActivity());
-            // Enable ad rotation with 3-minute interval for better user experience
-            sponsoredAdView.enableRotation(true);
-            sponsoredAdView.setRotationIntervalMinutes(3);
-            Log.d(TAG, "Initialized sponsored ad view with rotation enabled");
-            
-            // DEBUGGING: Watch for these logs to track ad rotation:
-            // - "LocalRotationManager": Shows rotation timing and ad selection
-            // - "SponsoredAdView": Shows UI updates and animations
-            // - "SponsoredAdRepository": Shows network and cache operations
-            // Filter LogCat with: "Rotat|LocalRotation|SponsoredAd"
-=======
             sponsoredAdCarousel.initialize("category_below", getViewLifecycleOwner(), requireActivity());
             Log.d(TAG, "Initialized sponsored ad carousel with location: category_below");
             
@@ -682,10 +652,102 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
             });
         } else {
             Log.e(TAG, "Failed to find sponsored ad carousel view");
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
         }
     }
 
+    /**
+     * Set up search-as-you-type over the local search index. Keystrokes are
+     * debounced, so only the text the user pauses on is searched.
+     */
+    private void setupSearch() {
+        binding.searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchDebouncer.cancel();
+                viewModel.search(query);
+                binding.searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (newText == null || newText.trim().isEmpty()) {
+                    endSearch();
+                } else {
+                    searchDebouncer.call(() -> viewModel.search(newText));
+                }
+                return true;
+            }
+        });
+        binding.searchView.setOnCloseListener(() -> {
+            endSearch();
+            return false;
+        });
+    }
+
+    /**
+     * Leave search mode and show the catalog again
+     */
+    private void endSearch() {
+        searchDebouncer.cancel();
+        if (!viewModel.isSearchActive()) {
+            return;
+        }
+        viewModel.search(null);
+        if (binding == null) {
+            return;
+        }
+        showSearchShortcuts(null);
+        List<Template> templates = viewModel.getTemplates().getValue();
+        adapter.updateTemplates(templates != null ? new ArrayList<>(templates) : new ArrayList<>());
+        binding.emptyView.setText(R.string.no_templates_found);
+        binding.emptyView.setVisibility(templates == null || templates.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Show the categories and festivals matching the search above the results
+     * @param shortcuts Category and festival documents, or null to hide them
+     */
+    private void showSearchShortcuts(List<SearchDocumentEntity> shortcuts) {
+        binding.chipGroupSearchShortcuts.removeAllViews();
+        if (shortcuts == null || shortcuts.isEmpty()) {
+            binding.searchShortcutsScrollView.setVisibility(View.GONE);
+            return;
+        }
+        for (SearchDocumentEntity shortcut : shortcuts) {
+            Chip chip = new Chip(requireContext());
+            chip.setText(SearchDocumentEntity.TYPE_FESTIVAL.equals(shortcut.getType())
+                ? getString(R.string.search_shortcut_festival, shortcut.getTitle())
+                : shortcut.getTitle());
+            chip.setTextSize(10);
+            chip.setOnClickListener(v -> openSearchShortcut(shortcut));
+            binding.chipGroupSearchShortcuts.addView(chip);
+        }
+        binding.searchShortcutsScrollView.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Leave the search for a matching category or festival
+     */
+    private void openSearchShortcut(SearchDocumentEntity shortcut) {
+        binding.searchView.setQuery("", false);
+        binding.searchView.setIconified(true);
+        endSearch();
+
+        if (SearchDocumentEntity.TYPE_FESTIVAL.equals(shortcut.getType())) {
+            NavController navController = Navigation.findNavController(requireActivity(), R.id.nav_host_fragment);
+            navController.navigate(R.id.action_home_to_festival_notification);
+            return;
+        }
+
+        String categoryName = shortcut.getDocId();
+        viewModel.setCategory(categoryName);
+        UserRepository.getInstance(requireContext()).trackCategoryClick(categoryName);
+        AnalyticsUtils.trackCategoryClick(categoryName);
+        categoriesAdapter.updateSelectedCategory(normalizeCategory(categoryName));
+        showCategoryLoadingSnackbar(categoryName);
+    }
+
     private void setupCategoriesAdapter() {
         // Initialize the categories adapter with loading state
         categoriesAdapter = new CategoriesAdapter(requireContext());
@@ -1111,6 +1173,10 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
         
         // Set item animator to null to prevent animation glitches
         binding.templatesRecyclerView.setItemAnimator(null);
+        
+        // Warm the image cache with thumbnails ahead of the scroll position
+        binding.templatesRecyclerView.addOnScrollListener(
+            ImagePrefetcher.getInstance(requireContext()).createScrollListener(adapter::getImageUrl));
 
         // Track if we've already shown the scrolling Snackbar
         final boolean[] hasShownScrollSnackbar = {false};
@@ -1165,6 +1231,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
                         endTriggered = false;
                     }
                     
+                    // Scrolling back up into pages dropped from memory
+                    if (dy < 0 && firstVisibleItem >= 0 && !viewModel.isSearchActive()) {
+                        viewModel.loadPreviousIfNeeded(firstVisibleItem);
+                    }
+                    
                     // If user has scrolled significantly, save the position
                     if (dy != 0 && firstVisibleItem >= 0) {
                         viewModel.saveScrollPosition(firstVisibleItem);
@@ -1256,6 +1327,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
 
     private void loadMoreItems() {
         try {
+            // Search results are not paged
+            if (viewModel.isSearchActive()) {
+                return;
+            }
+            
             // Skip if already loading or if pagination is in progress
             if (viewModel.getLoading().getValue() == Boolean.TRUE || 
                 viewModel.isPaginationInProgress()) {
@@ -1455,6 +1531,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
                 return;
             }
             
+            // Search results replace the list while a search is active
+            if (viewModel.isSearchActive()) {
+                return;
+            }
+            
             Log.d(TAG, "Templates updated - size: " + (templates != null ? templates.size() : 0));
             if (templates != null && !templates.isEmpty()) {
                 // Create a new list to avoid modification issues
@@ -1464,22 +1545,35 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
                 viewModel.checkForNewTemplates(newList);
                 
                 // Mark some templates as recommended for testing (in a real app, this would come from the server)
-                // This is just for demonstration purposes
-                Set<String> recommendedIds = new HashSet<>();
-                for (int i = 0; i < Math.min(newList.size(), 5); i++) {
-                    Template template = newList.get(i);
-                    if (template != null && template.getId() != null) {
-                        recommendedIds.add(template.getId());
-                        template.setRecommended(true);
+                // This is just for demonstration purposes; skipped once the top of the list was dropped
+                if (viewModel.isAtCatalogStart()) {
+                    Set<String> recommendedIds = new HashSet<>();
+                    for (int i = 0; i < Math.min(newList.size(), 5); i++) {
+                        Template template = newList.get(i);
+                        if (template != null && template.getId() != null) {
+                            recommendedIds.add(template.getId());
+                            template.setRecommended(true);
+                        }
                     }
+                    viewModel.setRecommendedTemplateIds(recommendedIds);
                 }
-                viewModel.setRecommendedTemplateIds(recommendedIds);
                 
                 // Update the adapter with the new list
                 binding.templatesRecyclerView.post(() -> {
                     // Check if we're in pagination mode or regular update
                     boolean isPagination = viewModel.isPaginationInProgress();
                     
+                    // Remember the first visible template; pages may be added or dropped above it
+                    String anchorId = null;
+                    int anchorTop = 0;
+                    int firstVisible = layoutManager.findFirstVisibleItemPosition();
+                    Object firstItem = adapter.getItem(firstVisible);
+                    if (isPagination && firstItem instanceof Template) {
+                        anchorId = ((Template) firstItem).getId();
+                        View firstView = layoutManager.findViewByPosition(firstVisible);
+                        anchorTop = firstView != null ? firstView.getTop() : 0;
+                    }
+                    
                     // Update adapter with new templates
                     adapter.updateTemplates(newList);
                     
@@ -1494,6 +1588,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
                         }
                     } else {
                         // For pagination, we'll maintain the current position
+                        int anchorPosition = anchorId != null ? adapter.getTemplatePosition(anchorId) : -1;
+                        if (anchorPosition >= 0 && anchorPosition != firstVisible) {
+                            layoutManager.scrollToPositionWithOffset(anchorPosition, anchorTop);
+                        }
+                        
                         // Reset pagination flag now that we've handled the update
                         Log.d(TAG, "Pagination update complete, maintaining current scroll position");
                         viewModel.setPaginationInProgress(false);
@@ -1527,6 +1626,26 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
             }
         });
         
+        // Observe search results
+        viewModel.getSearchResults().observe(getViewLifecycleOwner(), results -> {
+            if (!viewModel.isSearchActive() || results == null || binding == null) {
+                return;
+            }
+            Log.d(TAG, "Search results updated - size: " + results.size());
+            adapter.updateTemplates(new ArrayList<>(results));
+            layoutManager.scrollToPosition(0);
+            binding.emptyView.setText(R.string.no_search_results);
+            binding.emptyView.setVisibility(results.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+        
+        // Observe categories and festivals matching the search
+        viewModel.getSearchShortcuts().observe(getViewLifecycleOwner(), shortcuts -> {
+            if (binding == null) {
+                return;
+            }
+            showSearchShortcuts(viewModel.isSearchActive() ? shortcuts : null);
+        });
+        
         // Observe new template IDs
         viewModel.getNewTemplateIds().observe(getViewLifecycleOwner(), newIds -> {
             if (newIds != null && adapter != null) {
@@ -2191,7 +2310,6 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
         }
     }
 
-<<<<<<< HEAD
     @Override
     public void onPause() {
         super.onPause();
@@ -2207,16 +2325,11 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
         }
         
         // Pause sponsored ad rotation when the fragment is not visible
-        if (sponsoredAdView != null) {
-            try {
-                // Properly handle sponsored ad pause
-                sponsoredAdView.handlePause();
-                Log.d(TAG, "Called handlePause on sponsoredAdView");
-            } catch (Exception e) {
-                Log.e(TAG, "Error handling sponsored ad in onPause: " + e.getMessage());
-            }
+        if (sponsoredAdCarousel != null) {
+            sponsoredAdCarousel.pauseAutoScroll();
         }
-=======
+    }
+
     /**
      * Refresh sponsored ad based on the current category
      * This targets ads to the specific category the user is viewing
@@ -2249,7 +2362,6 @@ public class HomeFragment extends BaseFragment implements RecommendedTemplateAda
                 sponsoredAdCarousel.setVisibility(View.VISIBLE);
             }
         }, 1000); // Check after 1 second
->>>>>>> c9d6bc131c97ff1e271900b9a0cfd19fd38917f4
     }
 }
 
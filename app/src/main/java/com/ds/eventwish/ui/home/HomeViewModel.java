@@ -6,7 +6,9 @@ import androidx.lifecycle.ViewModel;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
+import com.ds.eventwish.data.local.entity.SearchDocumentEntity;
 import com.ds.eventwish.data.model.Template;
+import com.ds.eventwish.data.model.TemplateQuery;
 import com.ds.eventwish.data.repository.TemplateRepository;
 import com.ds.eventwish.utils.TemplateUpdateManager;
 import java.util.ArrayList;
@@ -46,6 +48,7 @@ public class HomeViewModel extends ViewModel {
     private String selectedCategory = null;
     private final MutableLiveData<SortOption> sortOption = new MutableLiveData<>(SortOption.TRENDING);
     private final MutableLiveData<TimeFilter> timeFilter = new MutableLiveData<>(TimeFilter.ALL);
+    private String searchQuery = "";
     
     // Store the last visible position
     private int lastVisiblePosition = 0;
@@ -239,6 +242,38 @@ public class HomeViewModel extends ViewModel {
         }
     }
 
+    /**
+     * Search the stored templates. Results arrive in {@link #getSearchResults()}.
+     * @param query Text as typed; blank ends the search
+     */
+    public void search(String query) {
+        searchQuery = query != null ? query.trim() : "";
+        repository.searchTemplates(searchQuery);
+    }
+
+    /**
+     * @return Whether a search query is active, so the list shows search results
+     */
+    public boolean isSearchActive() {
+        return !searchQuery.isEmpty();
+    }
+
+    /**
+     * Get the templates matching the current search
+     * @return LiveData of matching templates, best match first
+     */
+    public LiveData<List<Template>> getSearchResults() {
+        return repository.getSearchResults();
+    }
+
+    /**
+     * Get the categories and festivals matching the current search
+     * @return LiveData of category and festival documents, categories first
+     */
+    public LiveData<List<SearchDocumentEntity>> getSearchShortcuts() {
+        return repository.getSearchShortcuts();
+    }
+
     /**
      * Load templates from the repository
      * @param clearExisting Whether to clear existing templates
@@ -263,8 +298,8 @@ public class HomeViewModel extends ViewModel {
               ", time: " + timeFilter.getValue() + 
               ", clearExisting: " + clearExisting);
         
-        // Set category filter first
-        repository.setCategory(selectedCategory);
+        // Set category filter first; the load below picks it up
+        repository.setCategory(selectedCategory, false);
         
         // Apply sort option
         applySortOption(sortOption.getValue());
@@ -287,9 +322,24 @@ public class HomeViewModel extends ViewModel {
      * @param sortOption The sort option to apply
      */
     private void applySortOption(SortOption sortOption) {
-        // Implement this method based on your TemplateRepository implementation
-        // For example, you might set a sort parameter in the repository
-        // repository.setSortOption(sortOption);
+        if (sortOption == null) {
+            sortOption = SortOption.TRENDING;
+        }
+        switch (sortOption) {
+            case NEWEST:
+                repository.setSort(TemplateQuery.Sort.NEWEST);
+                break;
+            case OLDEST:
+                repository.setSort(TemplateQuery.Sort.OLDEST);
+                break;
+            case MOST_USED:
+                repository.setSort(TemplateQuery.Sort.MOST_USED);
+                break;
+            case TRENDING:
+            default:
+                repository.setSort(TemplateQuery.Sort.TRENDING);
+                break;
+        }
     }
 
     /**
@@ -297,9 +347,27 @@ public class HomeViewModel extends ViewModel {
      * @param timeFilter The time filter to apply
      */
     private void applyTimeFilter(TimeFilter timeFilter) {
-        // Implement this method based on your TemplateRepository implementation
-        // For example, you might set a time filter parameter in the repository
-        // repository.setTimeFilter(timeFilter);
+        if (timeFilter == null) {
+            timeFilter = TimeFilter.ALL;
+        }
+        switch (timeFilter) {
+            case TODAY:
+                repository.setTimeRange(TemplateQuery.TimeRange.TODAY);
+                break;
+            case THIS_WEEK:
+                repository.setTimeRange(TemplateQuery.TimeRange.WEEK);
+                break;
+            case THIS_MONTH:
+                repository.setTimeRange(TemplateQuery.TimeRange.MONTH);
+                break;
+            case THIS_YEAR:
+                repository.setTimeRange(TemplateQuery.TimeRange.YEAR);
+                break;
+            case ALL:
+            default:
+                repository.setTimeRange(TemplateQuery.TimeRange.ALL);
+                break;
+        }
     }
 
     /**
@@ -342,6 +410,29 @@ public class HomeViewModel extends ViewModel {
         }
     }
 
+    /**
+     * Re-load templates dropped from the top of the list when scrolling back
+     * up. Only a bounded window of pages is kept in memory.
+     * @param firstVisibleItem Position of the first visible item
+     */
+    public void loadPreviousIfNeeded(int firstVisibleItem) {
+        if (isPaginationInProgress || firstVisibleItem >= VISIBLE_THRESHOLD) {
+            return;
+        }
+        if (repository.loadPreviousTemplates()) {
+            Log.d(TAG, "Loading previous templates, pagination in progress");
+            isPaginationInProgress = true;
+        }
+    }
+
+    /**
+     * Check if the loaded templates start at the top of the catalog
+     * @return false if pages above the loaded ones were dropped
+     */
+    public boolean isAtCatalogStart() {
+        return repository.getWindowStartOffset() == 0;
+    }
+
     /**
      * Get the current category filter
      * @return The selected category, or null if no category is selected
@@ -489,19 +580,6 @@ public class HomeViewModel extends ViewModel {
         return lastVisiblePosition;
     }
 
-    public void saveCurrentPage(int page) {
-        if (repository instanceof TemplateRepository) {
-            ((TemplateRepository) repository).setCurrentPage(page);
-        }
-    }
-    
-    public int getCurrentPage() {
-        if (repository instanceof TemplateRepository) {
-            return ((TemplateRepository) repository).getCurrentPage();
-        }
-        return 0;
-    }
-
     /**
      * Get the selected category
      * @return The selected category, or null for all categories
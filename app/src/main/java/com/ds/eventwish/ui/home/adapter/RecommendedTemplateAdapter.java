@@ -25,6 +25,7 @@ import com.ds.eventwish.R;
 import com.ds.eventwish.data.model.Template;
 import com.ds.eventwish.data.repository.CategoryIconRepository;
 import com.ds.eventwish.data.repository.EngagementRepository;
+import com.ds.eventwish.utils.ImagePrefetcher;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -174,6 +175,7 @@ public class RecommendedTemplateAdapter extends RecyclerView.Adapter<RecyclerVie
                         
                         @Override
                         public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                            ImagePrefetcher.getInstance(templateImage.getContext()).recordDisplay(imageUrl, dataSource);
                             return false;
                         }
                     })
@@ -409,4 +411,31 @@ public class RecommendedTemplateAdapter extends RecyclerView.Adapter<RecyclerVie
         }
         return null;
     }
+    
+    /**
+     * Find the position of a template
+     * @param templateId Template ID
+     * @return Adapter position, or -1 if the template is not shown
+     */
+    public int getTemplatePosition(String templateId) {
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.get(i);
+            if (item instanceof Template && ((Template) item).getId() != null &&
+                    ((Template) item).getId().equals(templateId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Get the thumbnail URL at position, for prefetching
+     * @param position Adapter position
+     * @return Thumbnail URL, or null for headers and templates without one
+     */
+    @Nullable
+    public String getImageUrl(int position) {
+        Object item = getItem(position);
+        return item instanceof Template ? ((Template) item).getThumbnailUrl() : null;
+    }
 } 
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -37,6 +38,14 @@ public class SecureTokenManager {
     private final SharedPreferences authPrefs;
     private final Context context;
     private KeyStore keyStore;
+    private final CopyOnWriteArrayList<CredentialChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listener for changes to the stored API key, device ID or tokens
+     */
+    public interface CredentialChangeListener {
+        void onCredentialsChanged();
+    }
     
     private SecureTokenManager(Context context) {
         this.context = context.getApplicationContext();
@@ -61,6 +70,28 @@ public class SecureTokenManager {
             instance = new SecureTokenManager(context.getApplicationContext());
         }
     }
+
+    /**
+     * Register a listener that is called after any credential is saved or cleared
+     * @param listener Listener to add
+     */
+    public void addCredentialChangeListener(CredentialChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Unregister a credential change listener
+     * @param listener Listener to remove
+     */
+    public void removeCredentialChangeListener(CredentialChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyCredentialsChanged() {
+        for (CredentialChangeListener listener : listeners) {
+            listener.onCredentialsChanged();
+        }
+    }
     
     private void createKeyIfNotExists() throws GeneralSecurityException {
         keyStore = KeyStore.getInstance(ANDROID_KEYSTORE);
@@ -214,11 +245,13 @@ public class SecureTokenManager {
         String encryptedValue = encrypt(apiKey);
         if (encryptedValue != null) {
             securePrefs.edit().putString(API_KEY_PREF, encryptedValue).apply();
+            notifyCredentialsChanged();
         }
     }
     
     public void clearApiKey() {
         securePrefs.edit().remove(API_KEY_PREF).apply();
+        notifyCredentialsChanged();
     }
     
     public String getDeviceId() {
@@ -229,11 +262,13 @@ public class SecureTokenManager {
         String encryptedValue = encrypt(deviceId);
         if (encryptedValue != null) {
             securePrefs.edit().putString(DEVICE_ID_PREF, encryptedValue).apply();
+            notifyCredentialsChanged();
         }
     }
     
     public void clearDeviceId() {
         securePrefs.edit().remove(DEVICE_ID_PREF).apply();
+        notifyCredentialsChanged();
     }
     
     /**
@@ -256,6 +291,7 @@ public class SecureTokenManager {
         String encryptedToken = encrypt(token);
         if (encryptedToken != null) {
             authPrefs.edit().putString(ACCESS_TOKEN_PREF, encryptedToken).apply();
+            notifyCredentialsChanged();
         }
     }
     
@@ -301,5 +337,6 @@ public class SecureTokenManager {
             .remove(ACCESS_TOKEN_PREF)
             .remove(REFRESH_TOKEN_PREF)
             .apply();
+        notifyCredentialsChanged();
     }
 }
\ No newline at end of file
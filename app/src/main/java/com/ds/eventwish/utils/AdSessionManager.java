@@ -4,29 +4,45 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
-import java.util.Map;
-
 /**
  * Manages ad impressions sessions for the application
  * An ad session represents a single app launch-to-close cycle
+ *
+ * Impressions of the current session are kept in memory in an
+ * {@link ImpressionSet}. They are not persisted: a session ends when the
+ * app is closed or goes to the background, so a restarted process always
+ * starts a new one.
  */
 public class AdSessionManager {
     private static final String TAG = "AdSessionManager";
     private static final String PREFS_NAME = "sponsored_ad_tracking";
     private static final String KEY_APP_SESSION = "app_session";
+    private static final String LEGACY_SESSION_IMPRESSIONS = "session_impressions";
+    private static final String LEGACY_IMPRESSION_PREFIX = "impression_";
     
     private static volatile AdSessionManager instance;
     private final Context applicationContext;
+    private final SharedPreferences prefs;
+    private final AppExecutors executors;
     private boolean debugMode = false;
     
+    // Current session, guarded by this
+    private ImpressionSet impressions;
+    
     /**
      * Private constructor to prevent direct instantiation
      */
     private AdSessionManager(Context context) {
         this.applicationContext = context.getApplicationContext();
+        this.prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.executors = AppExecutors.getInstance();
+        this.impressions = new ImpressionSet(0);
         
         // Create a new session immediately
         createNewSession();
+        
+        // Drop the impression keys of earlier versions
+        executors.diskIO().execute(this::removeLegacyKeys);
     }
     
     /**
@@ -67,11 +83,16 @@ public class AdSessionManager {
      * This should be called when the app is started/resumed after being fully closed
      */
     public void createNewSession() {
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         long sessionId = System.currentTimeMillis();
+        synchronized (this) {
+            impressions.startSession(sessionId);
+        }
         prefs.edit().putLong(KEY_APP_SESSION, sessionId).apply();
         Log.d(TAG, "Created new ad impression session: " + sessionId);
         
+        // Image prefetching gets a fresh byte budget per session
+        ImagePrefetcher.getInstance(applicationContext).resetSession();
+        
         // Debug - dump existing session data
         if (debugMode) {
             dumpSessionData();
@@ -81,9 +102,8 @@ public class AdSessionManager {
     /**
      * Get the current session ID
      */
-    public long getCurrentSessionId() {
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        return prefs.getLong(KEY_APP_SESSION, 0);
+    public synchronized long getCurrentSessionId() {
+        return impressions.getSessionId();
     }
     
     /**
@@ -94,19 +114,15 @@ public class AdSessionManager {
     public boolean isImpressionTracked(String adId) {
         if (adId == null) return false;
         
-        long currentSession = getCurrentSessionId();
-        if (currentSession == 0) {
-            // No valid session, create a new one
-            createNewSession();
-            return false;
+        boolean isTracked;
+        synchronized (this) {
+            isTracked = impressions.contains(adId);
         }
         
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String impressionKey = "impression_" + adId + "_" + currentSession;
-        boolean isTracked = prefs.getBoolean(impressionKey, false);
-        
-        logDebug("Checking if impression tracked for ad " + adId + 
-                " in session " + currentSession + ": " + isTracked);
+        if (debugMode) {
+            logDebug("Checking if impression tracked for ad " + adId + 
+                    " in session " + getCurrentSessionId() + ": " + isTracked);
+        }
         
         return isTracked;
     }
@@ -118,16 +134,11 @@ public class AdSessionManager {
     public void trackImpression(String adId) {
         if (adId == null) return;
         
-        long currentSession = getCurrentSessionId();
-        if (currentSession == 0) {
-            // No valid session, create a new one
-            createNewSession();
-            currentSession = getCurrentSessionId();
+        long currentSession;
+        synchronized (this) {
+            impressions.add(adId);
+            currentSession = impressions.getSessionId();
         }
-        
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String impressionKey = "impression_" + adId + "_" + currentSession;
-        prefs.edit().putBoolean(impressionKey, true).apply();
         Log.d(TAG, "Marked ad " + adId + " as tracked in session " + currentSession);
     }
     
@@ -138,12 +149,11 @@ public class AdSessionManager {
     public void resetTracking(String adId) {
         if (adId == null) return;
         
-        long currentSession = getCurrentSessionId();
-        if (currentSession == 0) return;
-        
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        String impressionKey = "impression_" + adId + "_" + currentSession;
-        prefs.edit().remove(impressionKey).apply();
+        long currentSession;
+        synchronized (this) {
+            impressions.remove(adId);
+            currentSession = impressions.getSessionId();
+        }
         Log.d(TAG, "Reset tracking for ad " + adId + " in session " + currentSession);
     }
     
@@ -151,26 +161,21 @@ public class AdSessionManager {
      * Dump all session data for debugging
      */
     public void dumpSessionData() {
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        long currentSession = prefs.getLong(KEY_APP_SESSION, 0);
+        long currentSession;
+        Iterable<String> trackedIds;
+        synchronized (this) {
+            currentSession = impressions.getSessionId();
+            trackedIds = impressions.getTrackedIds();
+        }
         
         Log.d(TAG, "======== AD SESSION DATA DUMP ========");
         Log.d(TAG, "Current session ID: " + currentSession);
         
         // Count impressions
         int impressionCount = 0;
-        
-        // Get all keys
-        Map<String, ?> allEntries = prefs.getAll();
-        for (Map.Entry<String, ?> entry : allEntries.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
-            
-            // Print all impression entries
-            if (key.startsWith("impression_")) {
-                Log.d(TAG, key + ": " + value);
-                impressionCount++;
-            }
+        for (String adId : trackedIds) {
+            Log.d(TAG, "impression: " + adId);
+            impressionCount++;
         }
         
         Log.d(TAG, "Total impressions tracked: " + impressionCount);
@@ -178,41 +183,21 @@ public class AdSessionManager {
     }
     
     /**
-     * Check if any tracked impressions exist in storage
+     * Check if any tracked impressions exist in the current session
      */
-    public boolean hasTrackedImpressions() {
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        
-        // Count impression keys
-        Map<String, ?> allEntries = prefs.getAll();
-        for (String key : allEntries.keySet()) {
-            if (key.startsWith("impression_")) {
-                return true;
-            }
-        }
-        
-        return false;
+    public synchronized boolean hasTrackedImpressions() {
+        return impressions.size() > 0;
     }
     
     /**
      * Clear all tracked impressions data
      */
     public void clearAllTrackedImpressions() {
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        // Get all keys
-        Map<String, ?> allEntries = prefs.getAll();
-        int count = 0;
-        
-        for (String key : allEntries.keySet()) {
-            if (key.startsWith("impression_")) {
-                editor.remove(key);
-                count++;
-            }
+        int count;
+        synchronized (this) {
+            count = impressions.size();
+            impressions.startSession(impressions.getSessionId());
         }
-        
-        editor.apply();
         Log.d(TAG, "Cleared " + count + " tracked impressions");
     }
     
@@ -220,23 +205,28 @@ public class AdSessionManager {
      * Get the total number of tracked impressions in the current session
      * @return Count of tracked impressions
      */
-    public int getTrackedImpressionCount() {
-        SharedPreferences prefs = applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        long currentSession = prefs.getLong(KEY_APP_SESSION, 0);
-        
-        // Prefix for current session
-        String sessionPrefix = "_" + currentSession;
-        
-        // Count impression keys for the current session
+    public synchronized int getTrackedImpressionCount() {
+        int count = impressions.size();
+        logDebug("Current session has " + count + " tracked impressions");
+        return count;
+    }
+    
+    /**
+     * Remove the per-ad, per-session keys and the session snapshot written
+     * by earlier versions
+     */
+    private void removeLegacyKeys() {
+        SharedPreferences.Editor editor = prefs.edit();
         int count = 0;
-        Map<String, ?> allEntries = prefs.getAll();
-        for (String key : allEntries.keySet()) {
-            if (key.startsWith("impression_") && key.contains(sessionPrefix)) {
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(LEGACY_IMPRESSION_PREFIX) || key.equals(LEGACY_SESSION_IMPRESSIONS)) {
+                editor.remove(key);
                 count++;
             }
         }
-        
-        logDebug("Current session has " + count + " tracked impressions");
-        return count;
+        if (count > 0) {
+            editor.apply();
+            Log.d(TAG, "Removed " + count + " legacy impression keys");
+        }
     }
-} 
\ No newline at end of file
+}
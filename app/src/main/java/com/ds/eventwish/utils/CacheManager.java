@@ -1,65 +1,53 @@
 package com.ds.eventwish.utils;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 
-import androidx.room.Room;
-import androidx.work.Constraints;
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.NetworkType;
-import androidx.work.PeriodicWorkRequest;
-import androidx.work.WorkManager;
-
-import com.ds.eventwish.data.local.AppDatabase;
-import com.ds.eventwish.data.model.CategoryIcon;
-import com.ds.eventwish.data.model.Template;
-import com.ds.eventwish.workers.CacheClearWorker;
-import com.google.gson.Gson;
+import com.ds.eventwish.data.cache.CacheCodecs;
+import com.ds.eventwish.data.cache.CachePolicy;
+import com.ds.eventwish.data.cache.TieredCache;
 import com.google.gson.reflect.TypeToken;
 
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Utility class for managing cache data
+ * Utility class for managing cache data. Entries are stored in the shared
+ * {@link TieredCache}; expired entries remain readable for a while so callers
+ * can show them while they refresh.
  */
 public class CacheManager {
     private static final String TAG = "CacheManager";
-    private static final String PREF_NAME = "eventwish_cache";
-    private static final String KEY_CACHE_TIMESTAMP = "cache_timestamp";
-    private static final String KEY_DATA_SOURCE = "data_source";
     private static final long CACHE_EXPIRY_TIME = 30 * 60 * 1000; // 30 minutes in milliseconds
-    
+
+    // How long expired data is still returned by getFromCache
+    private static final long STALE_RETENTION_TIME = TimeUnit.DAYS.toMillis(7);
+
+    // Namespace of this cache's keys in the shared cache
+    private static final String NAMESPACE = "prefs:";
+
     private static CacheManager instance;
-    private final SharedPreferences preferences;
-    private final Gson gson;
-    private final Map<String, Object> memoryCache;
-    
+    private final TieredCache cache;
+    private final Map<String, DataSource> dataSources = new ConcurrentHashMap<>();
+
     public enum DataSource {
         NETWORK,
         DATABASE,
         CACHE
     }
-    
+
     private CacheManager(Context context) {
-        preferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
-        memoryCache = new HashMap<>();
+        cache = TieredCache.getInstance(context);
     }
-    
+
     public static synchronized CacheManager getInstance(Context context) {
         if (instance == null) {
             instance = new CacheManager(context.getApplicationContext());
         }
         return instance;
     }
-    
+
     /**
      * Save data to cache
      * @param key The cache key
@@ -71,135 +59,101 @@ public class CacheManager {
             Log.w(TAG, "Attempted to cache null data for key: " + key);
             return;
         }
-        
+
         try {
-            // Save to memory cache
-            memoryCache.put(key, data);
-            
-            // Save to disk cache
-            String json = gson.toJson(data);
-            preferences.edit()
-                    .putString(key, json)
-                    .putLong(KEY_CACHE_TIMESTAMP + "_" + key, new Date().getTime())
-                    .putString(KEY_DATA_SOURCE + "_" + key, DataSource.NETWORK.name())
-                    .apply();
-            
+            CachePolicy policy = CachePolicy.ttl(CACHE_EXPIRY_TIME)
+                    .withStaleWhileRevalidate(STALE_RETENTION_TIME);
+            cache.put(NAMESPACE + key, data, CacheCodecs.gson(data.getClass()), policy);
+            dataSources.put(key, DataSource.NETWORK);
+
             Log.d(TAG, "Saved data to cache for key: " + key);
         } catch (Exception e) {
             Log.e(TAG, "Error saving data to cache for key: " + key, e);
         }
     }
-    
+
     /**
      * Get data from cache
      * @param key The cache key
      * @param typeToken The type of data
      * @param <T> The type of data
-     * @return The cached data, or null if not found or expired
+     * @return The cached data, or null if not found. Expired data is returned
+     * until it ages out; use {@link #isCacheExpired} to check freshness.
      */
     public <T> T getFromCache(String key, TypeToken<T> typeToken) {
-        // Check memory cache first
-        if (memoryCache.containsKey(key)) {
-            try {
-                @SuppressWarnings("unchecked")
-                T data = (T) memoryCache.get(key);
-                if (data != null) {
-                    Log.d(TAG, "Retrieved data from memory cache for key: " + key);
-                    return data;
-                }
-            } catch (ClassCastException e) {
-                Log.e(TAG, "Error casting data from memory cache for key: " + key, e);
-            }
-        }
-        
-        // Check disk cache
-        try {
-            String json = preferences.getString(key, null);
-            if (json != null) {
-                Type type = typeToken.getType();
-                T data = gson.fromJson(json, type);
-                
-                // Update memory cache
-                if (data != null) {
-                    memoryCache.put(key, data);
-                    Log.d(TAG, "Retrieved data from disk cache for key: " + key);
-                    return data;
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error retrieving data from disk cache for key: " + key, e);
+        TieredCache.CacheResult<T> result =
+                cache.getEntry(NAMESPACE + key, CacheCodecs.<T>gson(typeToken.getType()));
+        if (result != null) {
+            Log.d(TAG, "Retrieved data from cache for key: " + key + (result.isStale() ? " (stale)" : ""));
+            return result.getValue();
         }
-        
+
         Log.d(TAG, "No cached data found for key: " + key);
         return null;
     }
-    
+
     /**
      * Check if cache is expired
      * @param key The cache key
      * @return true if cache is expired, false otherwise
      */
     public boolean isCacheExpired(String key) {
-        long timestamp = preferences.getLong(KEY_CACHE_TIMESTAMP + "_" + key, 0);
-        long currentTime = new Date().getTime();
-        boolean isExpired = (currentTime - timestamp) > CACHE_EXPIRY_TIME;
-        
+        boolean isExpired = !cache.contains(NAMESPACE + key);
+
         if (isExpired) {
             Log.d(TAG, "Cache expired for key: " + key);
         }
-        
+
         return isExpired;
     }
-    
+
     /**
      * Get the data source for the cached data
      * @param key The cache key
      * @return The data source
      */
     public DataSource getDataSource(String key) {
-        String source = preferences.getString(KEY_DATA_SOURCE + "_" + key, DataSource.NETWORK.name());
-        return DataSource.valueOf(source);
+        DataSource source = dataSources.get(key);
+        return source != null ? source : DataSource.NETWORK;
     }
-    
+
     /**
      * Set the data source for the cached data
      * @param key The cache key
      * @param source The data source
      */
     public void setDataSource(String key, DataSource source) {
-        preferences.edit()
-                .putString(KEY_DATA_SOURCE + "_" + key, source.name())
-                .apply();
+        dataSources.put(key, source);
     }
-    
+
     /**
      * Clear the cache for a specific key
      * @param key The cache key
      */
     public void clearCache(String key) {
-        memoryCache.remove(key);
-        preferences.edit()
-                .remove(key)
-                .remove(KEY_CACHE_TIMESTAMP + "_" + key)
-                .remove(KEY_DATA_SOURCE + "_" + key)
-                .apply();
+        cache.remove(NAMESPACE + key);
+        dataSources.remove(key);
         Log.d(TAG, "Cleared cache for key: " + key);
     }
-    
+
     /**
      * Clear all cache data
      */
     public void clearAllCache() {
-        memoryCache.clear();
-        preferences.edit().clear().apply();
-        Log.d(TAG, "Cleared all cache data");
+        // Drop from memory right away; disk entries have to be inspected one by one
+        cache.clearMemory(NAMESPACE);
+        dataSources.clear();
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            cache.removeByPrefix(NAMESPACE);
+            Log.d(TAG, "Cleared all cache data");
+        });
     }
-    
+
     /**
      * Clear memory cache only (keep disk cache)
      */
     public void clearMemoryCache() {
-        memoryCache.clear();
+        cache.clearMemory(NAMESPACE);
         Log.d(TAG, "Cleared memory cache");
     }
-} 
\ No newline at end of file
+}
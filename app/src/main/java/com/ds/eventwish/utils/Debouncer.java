@@ -17,4 +17,9 @@ public class Debouncer {
         runnable = action;
         handler.postDelayed(runnable, delay);
     }
+
+    public void cancel() {
+        handler.removeCallbacks(runnable);
+        runnable = null;
+    }
 }
\ No newline at end of file
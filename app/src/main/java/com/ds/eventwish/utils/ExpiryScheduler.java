@@ -0,0 +1,359 @@
+package com.ds.eventwish.utils;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Process-wide scheduler for deadlines such as cache expiry and periodic
+ * flushes, so that components register a deadline instead of each running
+ * its own polling timer.
+ *
+ * <p>Deadlines are kept in a hierarchical timing wheel with one-second ticks:
+ * four levels of 64 slots cover about 194 days, scheduling and cancelling are
+ * O(1), and deadlines further out are parked in the last slot and re-placed
+ * when they come round. A single handler message is pending at any time, set
+ * for the earliest slot that holds anything, so every deadline falling in the
+ * same tick shares one wakeup and an idle wheel posts nothing at all.
+ *
+ * <p>While the app is in the background the scheduler posts no wakeups.
+ * Deadlines that pass in the meantime fire together when the app returns to
+ * the foreground.
+ */
+public class ExpiryScheduler implements DefaultLifecycleObserver {
+    private static final String TAG = "ExpiryScheduler";
+
+    // Wheel geometry
+    private static final long TICK_MS = 1000;
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN_TICKS = 1L << (WHEEL_BITS * LEVELS);
+
+    private static final long NO_WAKEUP = Long.MAX_VALUE;
+
+    // Singleton instance
+    private static volatile ExpiryScheduler instance;
+
+    // wheels[level][slot]; guarded by this
+    private final ArrayDeque<Timeout>[][] wheels;
+    private long currentTick;
+    private int pendingCount;
+    private long scheduledWakeTick = NO_WAKEUP;
+    private boolean foreground = true;
+
+    private final Handler handler;
+    private final Runnable advanceRunnable = this::advance;
+
+    /**
+     * Handle of a scheduled task
+     */
+    public static final class Timeout {
+        private final ExpiryScheduler scheduler;
+        private final Executor executor;
+        private final Runnable task;
+        private final long intervalMs;
+        private long deadlineTick;
+        private ArrayDeque<Timeout> bucket;
+        private boolean cancelled;
+
+        private Timeout(ExpiryScheduler scheduler, Executor executor, Runnable task, long intervalMs) {
+            this.scheduler = scheduler;
+            this.executor = executor;
+            this.task = task;
+            this.intervalMs = intervalMs;
+        }
+
+        /**
+         * Cancel the task. A run already handed to its executor still happens.
+         */
+        public void cancel() {
+            scheduler.cancel(this);
+        }
+
+        public boolean isCancelled() {
+            synchronized (scheduler) {
+                return cancelled;
+            }
+        }
+    }
+
+    /**
+     * Get the singleton instance of ExpiryScheduler
+     * @return ExpiryScheduler instance
+     */
+    public static ExpiryScheduler getInstance() {
+        if (instance == null) {
+            synchronized (ExpiryScheduler.class) {
+                if (instance == null) {
+                    instance = new ExpiryScheduler();
+                }
+            }
+        }
+        return instance;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ExpiryScheduler() {
+        wheels = new ArrayDeque[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheels[level][slot] = new ArrayDeque<>();
+            }
+        }
+        currentTick = SystemClock.elapsedRealtime() / TICK_MS;
+
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+
+        // Lifecycle observers must be added on the main thread
+        new Handler(Looper.getMainLooper()).post(() -> {
+            Lifecycle lifecycle = ProcessLifecycleOwner.get().getLifecycle();
+            lifecycle.addObserver(this);
+            if (!lifecycle.getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                setForeground(false);
+            }
+        });
+    }
+
+    /**
+     * Run a task once after a delay. The delay is rounded up to the next
+     * whole second so that nearby deadlines share a wakeup.
+     * @param delayMs Delay in milliseconds
+     * @param executor Executor the task runs on
+     * @param task Task to run
+     * @return Handle that can cancel the task
+     */
+    @NonNull
+    public Timeout schedule(long delayMs, @NonNull Executor executor, @NonNull Runnable task) {
+        Timeout timeout = new Timeout(this, executor, task, 0);
+        synchronized (this) {
+            add(timeout, SystemClock.elapsedRealtime() + Math.max(delayMs, 0));
+            updateWakeup();
+        }
+        return timeout;
+    }
+
+    /**
+     * Run a task repeatedly until cancelled, first after one interval. Runs
+     * missed while the app was in the background are collapsed into one.
+     * @param intervalMs Interval in milliseconds
+     * @param executor Executor the task runs on
+     * @param task Task to run
+     * @return Handle that can cancel the task
+     */
+    @NonNull
+    public Timeout scheduleRepeating(long intervalMs, @NonNull Executor executor, @NonNull Runnable task) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMs);
+        }
+        Timeout timeout = new Timeout(this, executor, task, intervalMs);
+        synchronized (this) {
+            add(timeout, SystemClock.elapsedRealtime() + intervalMs);
+            updateWakeup();
+        }
+        return timeout;
+    }
+
+    /**
+     * Get the number of scheduled tasks
+     * @return Number of tasks waiting for their deadline
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        setForeground(true);
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        setForeground(false);
+    }
+
+    private synchronized void setForeground(boolean foreground) {
+        if (this.foreground == foreground) {
+            return;
+        }
+        this.foreground = foreground;
+        Log.d(TAG, (foreground ? "Resuming" : "Pausing") + " with " + pendingCount + " pending deadlines");
+        if (foreground) {
+            // Catch up on anything that fell due while paused
+            scheduledWakeTick = NO_WAKEUP;
+            handler.removeCallbacks(advanceRunnable);
+            handler.post(advanceRunnable);
+        } else {
+            updateWakeup();
+        }
+    }
+
+    private synchronized void cancel(Timeout timeout) {
+        if (timeout.cancelled) {
+            return;
+        }
+        timeout.cancelled = true;
+        if (timeout.bucket != null) {
+            timeout.bucket.remove(timeout);
+            timeout.bucket = null;
+            pendingCount--;
+            updateWakeup();
+        }
+    }
+
+    /**
+     * Fire everything that is due and arm the next wakeup. Runs on the
+     * scheduler thread.
+     */
+    private void advance() {
+        List<Timeout> due = new ArrayList<>();
+        synchronized (this) {
+            scheduledWakeTick = NO_WAKEUP;
+            long now = SystemClock.elapsedRealtime();
+            long nowTick = now / TICK_MS;
+            while (pendingCount > 0) {
+                // Jump straight over ticks with nothing to fire or cascade
+                long next = nextWorkTick();
+                if (next > nowTick) {
+                    break;
+                }
+                currentTick = next;
+                if ((currentTick & WHEEL_MASK) == 0) {
+                    cascade();
+                }
+                ArrayDeque<Timeout> bucket = wheels[0][(int) (currentTick & WHEEL_MASK)];
+                Timeout timeout;
+                while ((timeout = bucket.poll()) != null) {
+                    timeout.bucket = null;
+                    pendingCount--;
+                    due.add(timeout);
+                }
+                currentTick++;
+            }
+            for (Timeout timeout : due) {
+                if (timeout.intervalMs > 0 && !timeout.cancelled) {
+                    add(timeout, now + timeout.intervalMs);
+                }
+            }
+            updateWakeup();
+        }
+
+        for (Timeout timeout : due) {
+            try {
+                timeout.executor.execute(timeout.task);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to dispatch scheduled task", e);
+            }
+        }
+    }
+
+    /**
+     * Move the timeouts of the upper-level slots that are now current down
+     * towards level 0
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int slot = (int) ((currentTick >> (WHEEL_BITS * level)) & WHEEL_MASK);
+            ArrayDeque<Timeout> bucket = wheels[level][slot];
+            if (!bucket.isEmpty()) {
+                List<Timeout> moved = new ArrayList<>(bucket);
+                bucket.clear();
+                for (Timeout timeout : moved) {
+                    timeout.bucket = null;
+                    pendingCount--;
+                    place(timeout);
+                }
+            }
+            if (slot != 0) {
+                break;
+            }
+        }
+    }
+
+    private void add(Timeout timeout, long deadlineMs) {
+        if (pendingCount == 0) {
+            // Nothing is positioned relative to the old tick, so catch up with the clock
+            currentTick = Math.max(currentTick, SystemClock.elapsedRealtime() / TICK_MS);
+        }
+        // Round up so that a task never runs early
+        timeout.deadlineTick = (deadlineMs + TICK_MS - 1) / TICK_MS;
+        place(timeout);
+    }
+
+    private void place(Timeout timeout) {
+        long deadline = Math.max(timeout.deadlineTick, currentTick);
+        long delta = deadline - currentTick;
+        if (delta >= MAX_SPAN_TICKS) {
+            // Park in the furthest slot; it is placed again when that slot comes due
+            deadline = currentTick + MAX_SPAN_TICKS - 1;
+            delta = MAX_SPAN_TICKS - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        ArrayDeque<Timeout> bucket = wheels[level][(int) ((deadline >> (WHEEL_BITS * level)) & WHEEL_MASK)];
+        bucket.add(timeout);
+        timeout.bucket = bucket;
+        pendingCount++;
+    }
+
+    /**
+     * Earliest tick at which the wheel has work: a level-0 slot to fire or an
+     * upper slot to cascade
+     */
+    private long nextWorkTick() {
+        long next = NO_WAKEUP;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            long tick = currentTick + i;
+            if (!wheels[0][(int) (tick & WHEEL_MASK)].isEmpty()) {
+                next = tick;
+                break;
+            }
+        }
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = WHEEL_BITS * level;
+            // Starts at currentTick itself if it is a boundary that has not been processed yet
+            for (int i = 1; i <= WHEEL_SIZE; i++) {
+                long boundary = (((currentTick - 1) >> shift) + i) << shift;
+                if (boundary >= next) {
+                    break;
+                }
+                if (!wheels[level][(int) ((boundary >> shift) & WHEEL_MASK)].isEmpty()) {
+                    next = boundary;
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void updateWakeup() {
+        long next = foreground && pendingCount > 0 ? nextWorkTick() : NO_WAKEUP;
+        if (next == scheduledWakeTick) {
+            return;
+        }
+        handler.removeCallbacks(advanceRunnable);
+        scheduledWakeTick = next;
+        if (next != NO_WAKEUP) {
+            long delayMs = next * TICK_MS - SystemClock.elapsedRealtime();
+            handler.postDelayed(advanceRunnable, Math.max(delayMs, 0));
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.ds.eventwish.utils;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Central scheduler for warming Glide's caches with images that are about
+ * to be shown: template thumbnails ahead of the scroll position and the
+ * next sponsored ads in the rotation queue.
+ *
+ * Images are downloaded into the disk cache at low priority and, when the
+ * caller knows the target size, decoded into the memory cache as well.
+ * Downloads stop once the session's byte budget is used up; on a metered
+ * connection the budget and the look-ahead distance are smaller. Counters
+ * of prefetch hits and misses are kept so the look-ahead can be tuned.
+ */
+public class ImagePrefetcher {
+    private static final String TAG = "ImagePrefetcher";
+
+    // Bytes downloaded by prefetching per session
+    private static final long UNMETERED_BUDGET_BYTES = 30L * 1024 * 1024;
+    private static final long METERED_BUDGET_BYTES = 3L * 1024 * 1024;
+
+    // Items prefetched ahead of the scroll position
+    private static final int MIN_LOOKAHEAD = 4;
+    private static final int MAX_LOOKAHEAD = 12;
+    private static final int MAX_METERED_LOOKAHEAD = 3;
+    private static final float LOOKAHEAD_PER_VELOCITY = 2f; // Extra items per px/ms of scroll speed
+    private static final float FLING_VELOCITY = 8f; // px/ms above which prefetching waits for the scroll to settle
+
+    // Prefetches running at once, so that on-screen loads are not starved
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private static volatile ImagePrefetcher instance;
+
+    private final Context context;
+    private final NetworkUtils networkUtils;
+    private final AppExecutors executors;
+
+    // Session state, guarded by this. A URL is requested once for the disk
+    // cache and once per size it is decoded at for the memory cache.
+    private final Set<String> requested = new HashSet<>();
+    private final Set<String> requestedUrls = new HashSet<>();
+    private final Set<String> completed = new HashSet<>();
+    private final Set<String> displayed = new HashSet<>();
+    private long bytesDownloaded = 0;
+    private int inFlight = 0;
+
+    // Counters
+    private int hits = 0;          // Prefetched and served from a cache
+    private int late = 0;          // Prefetched, but still fetched from the network when shown
+    private int misses = 0;        // Not prefetched and fetched from the network when shown
+    private int skippedBudget = 0; // Not prefetched because the budget was used up
+    private int skippedBusy = 0;   // Not prefetched because too many prefetches were running
+
+    /**
+     * Supplies the image URL of an adapter position
+     */
+    public interface UrlProvider {
+        /**
+         * @param position Adapter position
+         * @return Image URL, or null if the item has no image
+         */
+        @Nullable
+        String getImageUrl(int position);
+    }
+
+    /**
+     * Get the singleton instance
+     * @param context Context
+     * @return ImagePrefetcher instance
+     */
+    public static ImagePrefetcher getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImagePrefetcher.class) {
+                if (instance == null) {
+                    instance = new ImagePrefetcher(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ImagePrefetcher(Context context) {
+        this.context = context;
+        this.networkUtils = NetworkUtils.getInstance(context);
+        this.executors = AppExecutors.getInstance();
+    }
+
+    /**
+     * Download an image into the disk cache
+     * @param url Image URL
+     */
+    public void prefetch(@Nullable String url) {
+        prefetch(url, null, 0, 0);
+    }
+
+    /**
+     * Download an image into the disk cache and, if a size is given, decode
+     * it into the memory cache with the options the view will load it with
+     * @param url Image URL
+     * @param options Request options of the eventual load, may be null
+     * @param width Target width in pixels, or 0 for disk only
+     * @param height Target height in pixels, or 0 for disk only
+     */
+    public void prefetch(@Nullable String url, @Nullable RequestOptions options, int width, int height) {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        final String key = width > 0 && height > 0 ? url + "@" + width + "x" + height : url;
+        synchronized (this) {
+            if (requested.contains(key)) {
+                return;
+            }
+            if (bytesDownloaded >= currentBudget()) {
+                skippedBudget++;
+                return;
+            }
+            if (inFlight >= MAX_IN_FLIGHT) {
+                skippedBusy++;
+                return;
+            }
+            requested.add(key);
+            requestedUrls.add(url);
+            inFlight++;
+        }
+
+        final FutureTarget<?>[] download = new FutureTarget<?>[1];
+        download[0] = Glide.with(context)
+            .downloadOnly()
+            .load(url)
+            .apply(new RequestOptions().priority(Priority.LOW))
+            .listener(new RequestListener<File>() {
+                @Override
+                public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                            Target<File> target, boolean isFirstResource) {
+                    synchronized (ImagePrefetcher.this) {
+                        inFlight--;
+                        // Allow a later attempt
+                        requested.remove(key);
+                        if (!completed.contains(url)) {
+                            requestedUrls.remove(url);
+                        }
+                    }
+                    Log.d(TAG, "Prefetch failed: " + url);
+                    release(download);
+                    return false;
+                }
+
+                @Override
+                public boolean onResourceReady(File resource, Object model, Target<File> target,
+                                               DataSource dataSource, boolean isFirstResource) {
+                    synchronized (ImagePrefetcher.this) {
+                        inFlight--;
+                        completed.add(url);
+                        if (dataSource == DataSource.REMOTE) {
+                            bytesDownloaded += resource.length();
+                        }
+                    }
+                    if (width > 0 && height > 0) {
+                        RequestOptions memoryOptions = options != null ? options : new RequestOptions();
+                        Glide.with(context)
+                            .load(url)
+                            .apply(memoryOptions
+                                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                                .priority(Priority.LOW))
+                            .preload(width, height);
+                    }
+                    release(download);
+                    return false;
+                }
+            })
+            .submit();
+    }
+
+    /**
+     * Release a finished download. The file stays in the disk cache. Glide
+     * does not allow clearing from its own callbacks, so this is posted.
+     * @param download Holder of the download's target
+     */
+    private void release(FutureTarget<?>[] download) {
+        executors.mainThread().execute(() -> {
+            if (download[0] != null) {
+                Glide.with(context).clear(download[0]);
+            }
+        });
+    }
+
+    /**
+     * Record that an image was shown, to count prefetch hits. Call from the
+     * view's Glide listener when the image is ready.
+     * @param url Image URL
+     * @param dataSource Where Glide got the image from
+     */
+    public synchronized void recordDisplay(@Nullable String url, @Nullable DataSource dataSource) {
+        if (url == null || !displayed.add(url)) {
+            return;
+        }
+        boolean fromNetwork = dataSource == DataSource.REMOTE;
+        if (requestedUrls.contains(url)) {
+            if (fromNetwork || !completed.contains(url)) {
+                late++;
+            } else {
+                hits++;
+            }
+        } else if (fromNetwork) {
+            misses++;
+        }
+    }
+
+    /**
+     * Create a scroll listener that prefetches the images ahead of the
+     * visible items. The distance grows with scroll speed; during a fast
+     * fling nothing is prefetched until the list settles.
+     * @param urls Supplies the image URL of a position
+     * @return Listener to add to a RecyclerView with a LinearLayoutManager
+     */
+    @NonNull
+    public RecyclerView.OnScrollListener createScrollListener(@NonNull UrlProvider urls) {
+        return new RecyclerView.OnScrollListener() {
+            private float velocity = 0; // px/ms, smoothed
+            private long lastScrollTime = 0;
+            private int lastEdge = RecyclerView.NO_POSITION;
+            private boolean forward = true;
+
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int delta = dy != 0 ? dy : dx;
+                if (delta == 0) {
+                    // Initial layout
+                    schedule(recyclerView, 0);
+                    return;
+                }
+                long now = SystemClock.uptimeMillis();
+                if (lastScrollTime > 0) {
+                    float instant = delta / (float) Math.max(1, now - lastScrollTime);
+                    velocity = 0.7f * velocity + 0.3f * instant;
+                }
+                lastScrollTime = now;
+                forward = delta > 0;
+                if (Math.abs(velocity) < FLING_VELOCITY) {
+                    schedule(recyclerView, velocity);
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    velocity = 0;
+                    lastScrollTime = 0;
+                    lastEdge = RecyclerView.NO_POSITION;
+                    schedule(recyclerView, 0);
+                }
+            }
+
+            private void schedule(RecyclerView recyclerView, float speed) {
+                if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+                    return;
+                }
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                int edge = forward ? layoutManager.findLastVisibleItemPosition()
+                                   : layoutManager.findFirstVisibleItemPosition();
+                if (edge == RecyclerView.NO_POSITION || edge == lastEdge) {
+                    return;
+                }
+                lastEdge = edge;
+
+                int itemCount = layoutManager.getItemCount();
+                int lookahead = lookaheadFor(speed);
+                for (int i = 1; i <= lookahead; i++) {
+                    int position = forward ? edge + i : edge - i;
+                    if (position < 0 || position >= itemCount) {
+                        break;
+                    }
+                    prefetch(urls.getImageUrl(position));
+                }
+            }
+        };
+    }
+
+    /**
+     * Number of items to prefetch at a scroll speed
+     * @param velocity Scroll speed in px/ms
+     * @return Number of items
+     */
+    int lookaheadFor(float velocity) {
+        int lookahead = MIN_LOOKAHEAD + Math.round(Math.abs(velocity) * LOOKAHEAD_PER_VELOCITY);
+        int max = networkUtils.isConnectionMeteredCached() ? MAX_METERED_LOOKAHEAD : MAX_LOOKAHEAD;
+        return Math.min(lookahead, max);
+    }
+
+    private long currentBudget() {
+        return networkUtils.isConnectionMeteredCached() ? METERED_BUDGET_BYTES : UNMETERED_BUDGET_BYTES;
+    }
+
+    /**
+     * Get the prefetch counters of this session
+     * @return Snapshot of the counters
+     */
+    @NonNull
+    public synchronized Stats getStats() {
+        int wasted = 0;
+        for (String url : completed) {
+            if (!displayed.contains(url)) {
+                wasted++;
+            }
+        }
+        return new Stats(requestedUrls.size(), completed.size(), hits, late, misses, wasted,
+            skippedBudget, skippedBusy, bytesDownloaded);
+    }
+
+    /**
+     * Start a new session: reset the byte budget and the counters. Called by
+     * {@link AdSessionManager} when a new app session starts.
+     */
+    public synchronized void resetSession() {
+        Log.d(TAG, "Session ended: " + getStats());
+        requested.clear();
+        requestedUrls.clear();
+        completed.clear();
+        displayed.clear();
+        bytesDownloaded = 0;
+        hits = late = misses = skippedBudget = skippedBusy = 0;
+    }
+
+    /**
+     * Prefetch counters
+     */
+    public static final class Stats {
+        public final int requested;
+        public final int completed;
+        public final int hits;
+        public final int late;
+        public final int misses;
+        public final int wasted;
+        public final int skippedBudget;
+        public final int skippedBusy;
+        public final long bytesDownloaded;
+
+        Stats(int requested, int completed, int hits, int late, int misses, int wasted,
+              int skippedBudget, int skippedBusy, long bytesDownloaded) {
+            this.requested = requested;
+            this.completed = completed;
+            this.hits = hits;
+            this.late = late;
+            this.misses = misses;
+            this.wasted = wasted;
+            this.skippedBudget = skippedBudget;
+            this.skippedBusy = skippedBusy;
+            this.bytesDownloaded = bytesDownloaded;
+        }
+
+        /**
+         * Share of shown images that a prefetch had already cached
+         * @return Hit rate between 0 and 1
+         */
+        public float getHitRate() {
+            int shown = hits + late + misses;
+            return shown == 0 ? 0f : hits / (float) shown;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "Stats{hitRate=%.2f, hits=%d, late=%d, misses=%d, wasted=%d, requested=%d, " +
+                "completed=%d, skippedBudget=%d, skippedBusy=%d, bytes=%d}",
+                getHitRate(), hits, late, misses, wasted, requested, completed,
+                skippedBudget, skippedBusy, bytesDownloaded);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ds.eventwish.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set of ad IDs whose impression was tracked in one session.
+ *
+ * Ad IDs are interned into small integers the first time they are tracked
+ * and membership is a bit in a {@link BitSet}, so checks are O(1) and the
+ * set costs one bit per known ad. Interned IDs are kept across sessions;
+ * starting a new session only clears the bits.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class ImpressionSet {
+    private final Map<String, Integer> index = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final BitSet tracked = new BitSet();
+    private long sessionId;
+
+    /**
+     * @param sessionId Session the set starts in
+     */
+    public ImpressionSet(long sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * @return Session the set belongs to
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Start a new session, forgetting the tracked impressions
+     * @param sessionId New session ID
+     */
+    public void startSession(long sessionId) {
+        this.sessionId = sessionId;
+        tracked.clear();
+    }
+
+    /**
+     * Check if an ad was tracked in this session
+     * @param adId Ad ID
+     * @return true if tracked
+     */
+    public boolean contains(@Nullable String adId) {
+        Integer i = adId != null ? index.get(adId) : null;
+        return i != null && tracked.get(i);
+    }
+
+    /**
+     * Mark an ad as tracked in this session
+     * @param adId Ad ID
+     * @return true if the ad was not tracked yet
+     */
+    public boolean add(@NonNull String adId) {
+        int i = intern(adId);
+        if (tracked.get(i)) {
+            return false;
+        }
+        tracked.set(i);
+        return true;
+    }
+
+    /**
+     * Unmark an ad in this session
+     * @param adId Ad ID
+     * @return true if the ad was tracked
+     */
+    public boolean remove(@Nullable String adId) {
+        Integer i = adId != null ? index.get(adId) : null;
+        if (i == null || !tracked.get(i)) {
+            return false;
+        }
+        tracked.clear(i);
+        return true;
+    }
+
+    /**
+     * @return Number of ads tracked in this session
+     */
+    public int size() {
+        return tracked.cardinality();
+    }
+
+    /**
+     * @return IDs of the ads tracked in this session
+     */
+    @NonNull
+    public List<String> getTrackedIds() {
+        List<String> result = new ArrayList<>(size());
+        for (int i = tracked.nextSetBit(0); i >= 0; i = tracked.nextSetBit(i + 1)) {
+            result.add(ids.get(i));
+        }
+        return result;
+    }
+
+    private int intern(String adId) {
+        Integer i = index.get(adId);
+        if (i == null) {
+            i = ids.size();
+            ids.add(adId);
+            index.put(adId, i);
+        }
+        return i;
+    }
+}
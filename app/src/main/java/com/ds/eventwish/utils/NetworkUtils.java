@@ -41,6 +41,9 @@ public class NetworkUtils {
     private final MutableLiveData<ConnectionType> connectionType = new MutableLiveData<>(ConnectionType.NONE);
     private final MutableLiveData<Boolean> meteredConnection = new MutableLiveData<>(true);
     
+    // Metered state as of the last network callback, readable without an IPC
+    private volatile boolean lastKnownMetered = true;
+    
     /**
      * Connection type enum
      */
@@ -137,6 +140,7 @@ public class NetworkUtils {
         boolean isConnected = isConnected();
         ConnectionType type = getConnectionType();
         boolean isMetered = isConnectionMetered();
+        lastKnownMetered = isMetered;
         
         networkAvailable.postValue(isConnected);
         connectionType.postValue(type);
@@ -233,6 +237,16 @@ public class NetworkUtils {
         return connectivityManager.isActiveNetworkMetered();
     }
     
+    /**
+     * Check if the connection was metered as of the last network change.
+     * Unlike {@link #isConnectionMetered()}, this does not query the
+     * system, so it is cheap enough for scroll callbacks.
+     * @return true if metered, false otherwise
+     */
+    public boolean isConnectionMeteredCached() {
+        return lastKnownMetered;
+    }
+    
     /**
      * Get the current connection quality
      * @return ConnectionQuality
@@ -4,14 +4,19 @@ import android.content.Context;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import com.ds.eventwish.utils.CacheManager;
-
 /**
- * Worker to clear the cache periodically
+ * Worker that used to clear the cache periodically.
+ *
+ * @deprecated Cache entries now carry their own deadlines, which the shared
+ * {@link com.ds.eventwish.utils.ExpiryScheduler} sweeps while the app is in
+ * use. This worker is kept only so that copies scheduled by older versions
+ * can run once and cancel themselves instead of failing to instantiate.
  */
+@Deprecated
 public class CacheClearWorker extends Worker {
     private static final String TAG = "CacheClearWorker";
 
@@ -22,16 +27,8 @@ public class CacheClearWorker extends Worker {
     @NonNull
     @Override
     public Result doWork() {
-        Log.d(TAG, "Starting cache clear operation");
-        
-        try {
-            // Use the clearAllCache method instead of clearCache
-            CacheManager.getInstance(getApplicationContext()).clearAllCache();
-            Log.d(TAG, "Cache cleared successfully");
-            return Result.success();
-        } catch (Exception e) {
-            Log.e(TAG, "Error clearing cache", e);
-            return Result.failure();
-        }
+        Log.d(TAG, "Cache clearing is handled by the expiry scheduler, cancelling this worker");
+        WorkManager.getInstance(getApplicationContext()).cancelWorkById(getId());
+        return Result.success();
     }
-} 
\ No newline at end of file
+}
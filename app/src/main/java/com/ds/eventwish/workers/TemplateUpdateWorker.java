@@ -47,7 +47,7 @@ public class TemplateUpdateWorker extends Worker {
             Set<String> savedTemplateIds = prefs.getStringSet(KEY_TEMPLATE_IDS, new HashSet<>());
             
             // Fetch the latest templates
-            Call<TemplateResponse> call = apiService.getTemplates(1, 20);
+            Call<TemplateResponse> call = apiService.getTemplates(1, 20, null, null);
             Response<TemplateResponse> response = call.execute();
             
             if (response.isSuccessful() && response.body() != null) {
@@ -4,9 +4,25 @@
  * This module handles business logic for sponsored banner ads.
  */
 
+const mongoose = require('mongoose');
 const SponsoredAd = require('../models/SponsoredAd');
+const AdEventBatch = require('../models/AdEventBatch');
 const logger = require('../config/logger');
 
+// Upper bound on the count of a single-event request
+const MAX_EVENT_COUNT = 1000;
+
+/**
+ * Number of events a single-event request stands for. Clients that report
+ * repeated events at once send their count; older clients send none.
+ * @param {Object} req - Express request object
+ * @returns {number} Count between 1 and MAX_EVENT_COUNT
+ */
+const eventCount = (req) => {
+  const count = parseInt(req.query.count, 10);
+  return Number.isNaN(count) ? 1 : Math.min(Math.max(count, 1), MAX_EVENT_COUNT);
+};
+
 /**
  * Get active sponsored ads
  * @param {Object} req - Express request object
@@ -216,8 +232,11 @@ exports.recordImpression = async (req, res) => {
     }
     
     try {
-      // Record impression in database
-      const updatedAd = await ad.recordImpression(deviceId);
+      // Record impressions in database, one at a time so the frequency caps apply
+      let updatedAd = ad;
+      for (let i = eventCount(req); i > 0; i--) {
+        updatedAd = await ad.recordImpression(deviceId);
+      }
       logger.debug(`Successfully recorded impression for ad ${id} from device ${deviceId || 'unknown'}`);
       
       // Capture state after recording impression
@@ -411,8 +430,11 @@ exports.recordClick = async (req, res) => {
       `impressions=${prevImpressionCount}, device_impressions=${prevDeviceImpressions}`);
     
     try {
-      // Record click in database
-      const updatedAd = await ad.recordClick(deviceId);
+      // Record clicks in database
+      let updatedAd = ad;
+      for (let i = eventCount(req); i > 0; i--) {
+        updatedAd = await ad.recordClick(deviceId);
+      }
       logger.debug(`Successfully recorded click for ad ${id} from device ${deviceId || 'unknown'}`);
       
       // Capture state after recording click
@@ -524,6 +546,104 @@ exports.recordClick = async (req, res) => {
   }
 };
 
+/**
+ * Record a batch of aggregated impressions and clicks. The client sends
+ * each batch under an Idempotency-Key header and retries with the same key,
+ * so a key that was already applied is acknowledged without counting again.
+ * @param {Object} req - Express request object
+ * @param {Object} res - Express response object
+ */
+exports.recordEventBatch = async (req, res) => {
+  const batchId = req.headers['idempotency-key'];
+  const deviceId = req.body.deviceId || req.headers['x-device-id'] || null;
+  const events = req.body.events;
+
+  if (!batchId) {
+    return res.status(400).json({
+      success: false,
+      message: 'Idempotency-Key header is required'
+    });
+  }
+
+  if (!Array.isArray(events)) {
+    return res.status(400).json({
+      success: false,
+      message: 'events must be an array'
+    });
+  }
+
+  try {
+    let recorded = 0;
+    let skipped = 0;
+
+    // The key is stored in the same transaction as the counts, so a batch
+    // that fails part way leaves neither behind and the client's retry is
+    // applied in full, while a batch that was applied keeps its key
+    const session = await mongoose.startSession();
+    try {
+      await session.withTransaction(async () => {
+        recorded = 0;
+        skipped = 0;
+
+        await AdEventBatch.create([{ _id: batchId, device_id: deviceId, event_count: events.length }], { session });
+
+        for (const event of events) {
+          const count = Math.max(0, parseInt(event.count, 10) || 0);
+          if (!event.adId || !mongoose.Types.ObjectId.isValid(event.adId) || count === 0 ||
+              (event.type !== 'impression' && event.type !== 'click')) {
+            skipped++;
+            continue;
+          }
+
+          // Loaded in the session, so each save below is part of the transaction
+          const ad = await SponsoredAd.findById(event.adId).session(session);
+          if (!ad) {
+            skipped++;
+            continue;
+          }
+
+          // One at a time, so the frequency caps apply as they do to single events
+          for (let i = 0; i < count; i++) {
+            if (event.type === 'click') {
+              await ad.recordClick(deviceId);
+            } else {
+              await ad.recordImpression(deviceId);
+            }
+          }
+          recorded += count;
+        }
+      });
+    } finally {
+      await session.endSession();
+    }
+
+    logger.debug(`Recorded ad event batch ${batchId}: ${recorded} events, ${skipped} skipped`);
+    res.json({
+      success: true,
+      message: 'Events recorded successfully',
+      recorded,
+      skipped
+    });
+  } catch (error) {
+    if (error.code === 11000) {
+      logger.debug(`Ad event batch ${batchId} already recorded`);
+      return res.json({
+        success: true,
+        message: 'Batch already recorded',
+        duplicate: true
+      });
+    }
+    logger.error(`Error in recordEventBatch: ${error.message}`);
+    logger.error(error.stack);
+
+    res.status(500).json({
+      success: false,
+      message: 'Failed to record events',
+      error: process.env.NODE_ENV === 'development' ? error.message : 'Server error'
+    });
+  }
+};
+
 /**
  * Get ad statistics
  * @param {Object} req - Express request object
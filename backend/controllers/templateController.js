@@ -1,21 +1,45 @@
 const Template = require('../models/Template');
 
+// Sort orders accepted in the `sort` query parameter. Ties are broken by
+// creation time and id so that pages do not overlap.
+const SORTS = {
+    newest: { createdAt: -1, _id: -1 },
+    oldest: { createdAt: 1, _id: 1 },
+    most_used: { shareCount: -1, createdAt: -1, _id: -1 },
+    trending: { trendingScore: -1, createdAt: -1, _id: -1 }
+};
+
+/**
+ * Build the filter and sort of a template listing from its query string.
+ * `sort` is one of SORTS (default newest) and `createdAfter` an optional
+ * time in milliseconds; only templates created at or after it are listed.
+ */
+const buildListQuery = (query, filter) => {
+    const sort = SORTS[query.sort] || SORTS.newest;
+    const createdAfter = parseInt(query.createdAfter);
+    if (!isNaN(createdAfter)) {
+        filter = { ...filter, createdAt: { $gte: new Date(createdAfter) } };
+    }
+    return { filter, sort };
+};
+
 // Get all templates with pagination
 exports.getTemplates = async (req, res) => {
     try {
         const page = parseInt(req.query.page) || 1;
         const limit = parseInt(req.query.limit) || 20;
         const skip = (page - 1) * limit;
+        const { filter, sort } = buildListQuery(req.query, { status: true });
 
-        const templates = await Template.find({ status: true })
-            .sort({ createdAt: -1 })
+        const templates = await Template.find(filter)
+            .sort(sort)
             .skip(skip)
             .limit(limit);
 
-        const totalTemplates = await Template.countDocuments({ status: true });
+        const totalTemplates = await Template.countDocuments(filter);
         const totalPages = Math.ceil(totalTemplates / limit);
 
-        // Get categories count
+        // Get categories count, over the whole catalog
         const categories = await Template.aggregate([
             { $match: { status: true } },
             { $group: { _id: '$category', count: { $sum: 1 } } }
@@ -47,19 +71,14 @@ exports.getTemplatesByCategory = async (req, res) => {
         const page = parseInt(req.query.page) || 1;
         const limit = parseInt(req.query.limit) || 20;
         const skip = (page - 1) * limit;
+        const { filter, sort } = buildListQuery(req.query, { category, status: true });
 
-        const templates = await Template.find({ 
-            category, 
-            status: true 
-        })
-            .sort({ createdAt: -1 })
+        const templates = await Template.find(filter)
+            .sort(sort)
             .skip(skip)
             .limit(limit);
 
-        const totalTemplates = await Template.countDocuments({ 
-            category, 
-            status: true 
-        });
+        const totalTemplates = await Template.countDocuments(filter);
         const totalPages = Math.ceil(totalTemplates / limit);
 
         res.json({
@@ -69,6 +69,13 @@ exports.createSharedWish = async (req, res) => {
         console.log(`Creating shared wish with shortCode: ${shortCode}, templateId: ${templateId}, previewUrl: ${previewUrl || 'none'}`);
         
         await sharedWish.save();
+
+        // Count the share for the most used and trending sorts
+        try {
+            await require('../models/Template').recordShare(templateId);
+        } catch (countError) {
+            console.error('Error counting template share:', countError);
+        }
         
         // Populate the template field for the response
         await sharedWish.populate('template');
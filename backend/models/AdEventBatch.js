@@ -0,0 +1,30 @@
+const mongoose = require('mongoose');
+
+/**
+ * Idempotency keys of sponsored ad event batches that have been applied.
+ * A client retries a batch under the same key until it gets a response,
+ * so a key seen before means the batch was already counted.
+ */
+const adEventBatchSchema = new mongoose.Schema({
+  _id: {
+    type: String,
+    required: true
+  },
+  device_id: {
+    type: String,
+    default: null
+  },
+  event_count: {
+    type: Number,
+    default: 0
+  },
+  created_at: {
+    type: Date,
+    default: Date.now
+  }
+});
+
+// Keys only need to outlive the client's retries
+adEventBatchSchema.index({ created_at: 1 }, { expireAfterSeconds: 7 * 24 * 60 * 60 });
+
+module.exports = mongoose.model('AdEventBatch', adEventBatchSchema);
@@ -0,0 +1,30 @@
+const mongoose = require('mongoose');
+
+/**
+ * Idempotency keys of engagement batches that have been applied.
+ * A client sends a batch again under the same key until it gets a
+ * response, so a key seen before means the batch was already counted.
+ */
+const engagementBatchSchema = new mongoose.Schema({
+    _id: {
+        type: String,
+        required: true
+    },
+    deviceId: {
+        type: String,
+        default: null
+    },
+    recordCount: {
+        type: Number,
+        default: 0
+    },
+    createdAt: {
+        type: Date,
+        default: Date.now
+    }
+});
+
+// Keys only need to outlive the client's retries
+engagementBatchSchema.index({ createdAt: 1 }, { expireAfterSeconds: 7 * 24 * 60 * 60 });
+
+module.exports = mongoose.model('EngagementBatch', engagementBatchSchema);
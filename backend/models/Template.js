@@ -29,6 +29,16 @@ const templateSchema = new mongoose.Schema({
         type: Boolean,
         default: true
     },
+    // Number of wishes shared from this template
+    shareCount: {
+        type: Number,
+        default: 0
+    },
+    // Share count with older shares decayed, for the trending sort
+    trendingScore: {
+        type: Number,
+        default: 0
+    },
     categoryIcon: {
         type: String,
         required: false,
@@ -51,4 +61,35 @@ const templateSchema = new mongoose.Schema({
     }
 });
 
+// Listings filter on status (and category) and sort by one of these
+templateSchema.index({ status: 1, createdAt: -1 });
+templateSchema.index({ status: 1, category: 1, createdAt: -1 });
+templateSchema.index({ status: 1, shareCount: -1, createdAt: -1 });
+templateSchema.index({ status: 1, category: 1, shareCount: -1, createdAt: -1 });
+templateSchema.index({ status: 1, trendingScore: -1, createdAt: -1 });
+templateSchema.index({ status: 1, category: 1, trendingScore: -1, createdAt: -1 });
+
+// Trending uses forward decay: a share adds 2^(age of the epoch / half-life),
+// so a share weighs twice as much as one made a half-life earlier and scores
+// never need rewriting as time passes. Scores stay within double range for
+// about 19 years after the epoch; move the epoch forward and rescale before then.
+const TRENDING_EPOCH = Date.UTC(2025, 0, 1);
+const TRENDING_HALF_LIFE_MS = 7 * 24 * 60 * 60 * 1000;
+
+templateSchema.statics.trendingWeight = function(now = Date.now()) {
+    return Math.pow(2, (now - TRENDING_EPOCH) / TRENDING_HALF_LIFE_MS);
+};
+
+/**
+ * Count a share of a template. Counters are not content edits, so
+ * updatedAt is left alone.
+ */
+templateSchema.statics.recordShare = function(templateId, now = Date.now()) {
+    return this.updateOne(
+        { _id: templateId },
+        { $inc: { shareCount: 1, trendingScore: this.trendingWeight(now) } },
+        { timestamps: false }
+    );
+};
+
 module.exports = mongoose.model('Template', templateSchema, 'templates');
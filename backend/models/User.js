@@ -51,8 +51,8 @@ UserSchema.methods.updateLastOnline = function() {
     return this.save();
 };
 
-// Add a method to record a category visit
-UserSchema.methods.visitCategory = function(categoryName, source = 'direct') {
+// Add a method to apply a category visit to the document without saving it
+UserSchema.methods.applyCategoryVisit = function(categoryName, source = 'direct') {
     // Check if we already have this category in the list
     const existingCategory = this.categories.find(c => 
         c.category.toLowerCase() === categoryName.toLowerCase()
@@ -75,7 +75,11 @@ UserSchema.methods.visitCategory = function(categoryName, source = 'direct') {
     
     // Also update lastOnline time
     this.lastOnline = Date.now();
-    
+};
+
+// Add a method to record a category visit
+UserSchema.methods.visitCategory = function(categoryName, source = 'direct') {
+    this.applyCategoryVisit(categoryName, source);
     return this.save();
 };
 
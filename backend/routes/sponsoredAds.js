@@ -45,18 +45,25 @@ router.get('/fair-distribution', sponsoredAdController.getFairDistributedAds);
 
 /**
  * @route POST /api/sponsored-ads/viewed/:id
- * @description Record ad impression
+ * @description Record ad impression, or ?count impressions at once
  * @access Public
  */
 router.post('/viewed/:id', [logApiRequest, validateObjectId('id')], sponsoredAdController.recordImpression);
 
 /**
  * @route POST /api/sponsored-ads/clicked/:id
- * @description Record ad click
+ * @description Record ad click, or ?count clicks at once
  * @access Public
  */
 router.post('/clicked/:id', [logApiRequest, validateObjectId('id')], sponsoredAdController.recordClick);
 
+/**
+ * @route POST /api/sponsored-ads/events/batch
+ * @description Record a batch of aggregated impressions and clicks, deduplicated by Idempotency-Key
+ * @access Public
+ */
+router.post('/events/batch', logApiRequest, sponsoredAdController.recordEventBatch);
+
 /**
  * @route GET /api/sponsored-ads/stats/:id
  * @description Get ad statistics
@@ -1,6 +1,8 @@
 const express = require('express');
+const mongoose = require('mongoose');
 const router = express.Router();
 const User = require('../models/User');
+const EngagementBatch = require('../models/EngagementBatch');
 const logger = require('../utils/logger');
 const { validateDeviceId } = require('../middleware/validators');
 const recommendationService = require('../services/recommendationService');
@@ -340,33 +342,62 @@ router.post('/engagement/sync', validateDeviceId, async (req, res) => {
             });
         }
         
-        // Process each engagement record
+        // A batch is sent again under the same key until the client gets a
+        // response; older clients send no key and are applied as they come
+        const batchId = req.get('Idempotency-Key') || req.body.batchId;
+        
+        // Records are applied to the document in memory and saved once, in
+        // the same transaction as the batch key, so a batch is either counted
+        // in full with its key stored or not at all
         let processed = 0;
-        for (const engagement of engagements) {
-            try {
-                const { type, templateId, category, source } = engagement;
+        const session = await mongoose.startSession();
+        try {
+            await session.withTransaction(async () => {
+                processed = 0;
+                user = await User.findById(user._id).session(session);
                 
-                // Process based on type (simplified implementation)
-                if (type === 1 && category) {
-                    // Category visit
-                    await user.visitCategory(category, source || 'direct');
-                    processed++;
-                } 
-                else if ((type === 2 || type === 3) && templateId && category) {
-                    // Template view or use
-                    await user.visitCategoryFromTemplate(category, templateId);
-                    processed++;
+                if (batchId) {
+                    await EngagementBatch.create([{
+                        _id: batchId,
+                        deviceId,
+                        recordCount: engagements.length
+                    }], { session });
+                }
+                
+                for (const engagement of engagements) {
+                    const { type, templateId, category, source } = engagement;
+                    
+                    // Process based on type (simplified implementation)
+                    if (type === 1 && category) {
+                        // Category visit
+                        user.applyCategoryVisit(category, source || 'direct');
+                        processed++;
+                    } 
+                    else if ((type === 2 || type === 3) && templateId && category) {
+                        // Template view or use
+                        user.applyCategoryVisit(category, 'template');
+                        processed++;
+                    }
                 }
-            } catch (err) {
-                logger.warn(`Error processing engagement record: ${err.message}`);
-                // Continue with next record even if one fails
+                
+                // Update last online time
+                user.lastOnline = Date.now();
+                await user.save({ session });
+            });
+        } catch (error) {
+            if (error.code === 11000) {
+                logger.debug(`Engagement batch ${batchId} already applied for ${deviceId}`);
+                return res.status(200).json({
+                    success: true,
+                    duplicate: true,
+                    message: 'Engagement batch already applied'
+                });
             }
+            throw error;
+        } finally {
+            await session.endSession();
         }
         
-        // Update last online time
-        user.lastOnline = Date.now();
-        await user.save();
-        
         // Invalidate recommendations cache
         await recommendationService.invalidateUserRecommendations(deviceId);
         